@@ -0,0 +1,61 @@
+package io.github.ryntric;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Pre-generated key sets shared by the benchmarks, so that key construction never shows up in a measurement.
+ * All sets use a fixed seed and a power-of-two size, allowing a cheap {@code index & MASK} cursor.
+ */
+final class BenchmarkKeys {
+    static final int SIZE = 1 << 16;
+    static final int MASK = SIZE - 1;
+
+    private static final long SEED = 0x5DEECE66DL;
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private BenchmarkKeys() {
+    }
+
+    static int[] ints() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[] keys = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) keys[i] = random.nextInt();
+        return keys;
+    }
+
+    /**
+     * Sequential keys such as order ids or timestamps, the worst case for weak mixers.
+     */
+    static long[] sequentialLongs() {
+        long[] keys = new long[SIZE];
+        long base = System.currentTimeMillis() << 20;
+        for (int i = 0; i < SIZE; i++) keys[i] = base + i;
+        return keys;
+    }
+
+    static long[] longs() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        long[] keys = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) keys[i] = random.nextLong();
+        return keys;
+    }
+
+    static String[] strings(int length) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        String[] keys = new String[SIZE];
+        char[] chars = new char[length];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < length; j++) chars[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+            keys[i] = new String(chars);
+        }
+        return keys;
+    }
+
+    static byte[][] bytes(int length) {
+        String[] strings = strings(length);
+        byte[][] keys = new byte[SIZE][];
+        for (int i = 0; i < SIZE; i++) keys[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+        return keys;
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.ryntric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the multiply-high scaling of a hash code onto the routing table for different table sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculateIndexBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int workerCount;
+
+    @Param({"100", "400"})
+    public int routingNodePerWorker;
+
+    private AffinityDispatcher<Object> dispatcher;
+    private int[] hashcodes;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Config config = Config.builder()
+                .setWorkerCount(workerCount)
+                .setRoutingNodePerWorker(routingNodePerWorker)
+                .setBufferSize(64)
+                .build();
+        // never started: only the routing structures are exercised
+        dispatcher = new AffinityDispatcher<>("bench", new CountingHandler<>(), DefaultHashCodeProvider.INSTANCE, config);
+        hashcodes = BenchmarkKeys.ints();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public int calculateIndex() {
+        return dispatcher.calculateIndex(hashcodes[cursor++ & BenchmarkKeys.MASK]);
+    }
+}
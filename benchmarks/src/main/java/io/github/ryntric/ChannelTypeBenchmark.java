@@ -0,0 +1,139 @@
+package io.github.ryntric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end dispatch throughput for SPSC, MPSC and sharded MPSC channels with one to N producers.
+ * SPSC only supports a single producer, so it is measured with one thread only. Sharded channels get a lane
+ * per benchmark thread, so they measure MPSC semantics without contention on the tail of a ring.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelTypeBenchmark {
+    private static final int MAX_PRODUCERS = 4;
+
+    @State(Scope.Benchmark)
+    public abstract static class DispatcherState {
+        @Param({"4"})
+        public int workerCount;
+
+        @Param({"4096"})
+        public int bufferSize;
+
+        @Param({"2048"})
+        public int batchSize;
+
+        AffinityDispatcher<Object> dispatcher;
+        int[] keys;
+
+        abstract ChannelType channelType();
+
+        @Setup
+        public void setup() {
+            Config config = Config.builder()
+                    .setWorkerCount(workerCount)
+                    .setBufferSize(bufferSize)
+                    .setBatchSize(batchSize)
+                    .setChannelType(channelType())
+                    .setProducerLanes(MAX_PRODUCERS)
+                    .build();
+            dispatcher = new AffinityDispatcher<>("bench", new CountingHandler<>(), DefaultHashCodeProvider.INSTANCE, config);
+            keys = BenchmarkKeys.ints();
+            dispatcher.start();
+        }
+
+        @TearDown
+        public void tearDown() {
+            dispatcher.shutdown();
+        }
+    }
+
+    public static class SpscState extends DispatcherState {
+        @Override
+        ChannelType channelType() {
+            return ChannelType.SPSC;
+        }
+    }
+
+    public static class MpscState extends DispatcherState {
+        @Override
+        ChannelType channelType() {
+            return ChannelType.MPSC;
+        }
+    }
+
+    public static class ShardedState extends DispatcherState {
+        @Override
+        ChannelType channelType() {
+            return ChannelType.SHARDED_MPSC;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int value;
+
+        int next() {
+            return value++ & BenchmarkKeys.MASK;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void spsc1Producer(SpscState state, Cursor cursor) {
+        state.dispatcher.dispatch(state.keys[cursor.next()], cursor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void mpsc1Producer(MpscState state, Cursor cursor) {
+        state.dispatcher.dispatch(state.keys[cursor.next()], cursor);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void mpsc2Producers(MpscState state, Cursor cursor) {
+        state.dispatcher.dispatch(state.keys[cursor.next()], cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void mpsc4Producers(MpscState state, Cursor cursor) {
+        state.dispatcher.dispatch(state.keys[cursor.next()], cursor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void sharded1Producer(ShardedState state, Cursor cursor) {
+        state.dispatcher.dispatch(state.keys[cursor.next()], cursor);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void sharded2Producers(ShardedState state, Cursor cursor) {
+        state.dispatcher.dispatch(state.keys[cursor.next()], cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void sharded4Producers(ShardedState state, Cursor cursor) {
+        state.dispatcher.dispatch(state.keys[cursor.next()], cursor);
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.ryntric;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handler that only counts what it receives. A single worker writes the counter,
+ * so an ordered store is enough and the consumer side stays as cheap as possible.
+ */
+final class CountingHandler<T> implements Handler<T> {
+    private final AtomicLong handled = new AtomicLong();
+
+    @Override
+    public void handle(String workerName, T value) {
+        handled.setRelease(handled.getPlain() + 1);
+    }
+
+    long getHandled() {
+        return handled.getAcquire();
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.ryntric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AffinityDispatcher#dispatch} per key type from a single producer.
+ * <p>
+ * The {@link Config} knobs are exposed as {@code @Param}s. The defaults keep a full run short;
+ * wider sweeps are passed on the command line, e.g.
+ * {@code -p producerWaitStrategy=SPINNING,YIELDING,PARKING -p consumerWaitStrategy=SPINNING,YIELDING,PARKING,BLOCKING}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"1", "4"})
+    public int workerCount;
+
+    @Param({"400"})
+    public int routingNodePerWorker;
+
+    @Param({"1024", "4096", "16384"})
+    public int bufferSize;
+
+    @Param({"256", "2048"})
+    public int batchSize;
+
+    @Param({"SPINNING"})
+    public ProducerWaitStrategyType producerWaitStrategy;
+
+    @Param({"BLOCKING", "PARKING"})
+    public ConsumerWaitStrategyType consumerWaitStrategy;
+
+    private AffinityDispatcher<Object> dispatcher;
+    private int[] ints;
+    private long[] longs;
+    private String[] strings;
+    private byte[][] bytes;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Config config = Config.builder()
+                .setWorkerCount(workerCount)
+                .setRoutingNodePerWorker(routingNodePerWorker)
+                .setBufferSize(bufferSize)
+                .setBatchSize(batchSize)
+                .setChannelType(ChannelType.SPSC)
+                .setProducerWaitStrategyType(producerWaitStrategy)
+                .setConsumerWaitStrategyType(consumerWaitStrategy)
+                .build();
+        dispatcher = new AffinityDispatcher<>("bench", new CountingHandler<>(), DefaultHashCodeProvider.INSTANCE, config);
+        ints = BenchmarkKeys.ints();
+        longs = BenchmarkKeys.longs();
+        strings = BenchmarkKeys.strings(16);
+        bytes = BenchmarkKeys.bytes(16);
+        dispatcher.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    private int next() {
+        return cursor++ & BenchmarkKeys.MASK;
+    }
+
+    @Benchmark
+    public void intKey() {
+        dispatcher.dispatch(ints[next()], this);
+    }
+
+    @Benchmark
+    public void longKey() {
+        dispatcher.dispatch(longs[next()], this);
+    }
+
+    @Benchmark
+    public void stringKey() {
+        dispatcher.dispatch(strings[next()], this);
+    }
+
+    @Benchmark
+    public void byteArrayKey() {
+        dispatcher.dispatch(bytes[next()], this);
+    }
+}
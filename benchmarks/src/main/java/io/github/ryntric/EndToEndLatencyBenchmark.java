@@ -0,0 +1,95 @@
+package io.github.ryntric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch-to-handle round trip latency. Every producer keeps exactly one message in flight
+ * and waits until a worker has handled it, so the sample distribution is the queueing plus hand-off latency.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndToEndLatencyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class DispatcherState {
+        @Param({"4"})
+        public int workerCount;
+
+        @Param({"BLOCKING", "SPINNING"})
+        public ConsumerWaitStrategyType consumerWaitStrategy;
+
+        AffinityDispatcher<Probe> dispatcher;
+
+        @Setup
+        public void setup() {
+            Config config = Config.builder()
+                    .setWorkerCount(workerCount)
+                    .setChannelType(ChannelType.MPSC)
+                    .setConsumerWaitStrategyType(consumerWaitStrategy)
+                    .build();
+            dispatcher = new AffinityDispatcher<>("bench", (workerName, probe) -> probe.ack(), DefaultHashCodeProvider.INSTANCE, config);
+            dispatcher.start();
+        }
+
+        @TearDown
+        public void tearDown() {
+            dispatcher.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Probe {
+        private final SplittableRandom random = new SplittableRandom();
+        private volatile long acked;
+        private long sent;
+
+        void ack() {
+            acked = sent;
+        }
+
+        long roundTrip(AffinityDispatcher<Probe> dispatcher) {
+            long expected = ++sent;
+            dispatcher.dispatch(random.nextInt(), this);
+            while (acked != expected) {
+                Thread.onSpinWait();
+            }
+            return expected;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long roundTrip1Producer(DispatcherState state, Probe probe) {
+        return probe.roundTrip(state.dispatcher);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public long roundTrip2Producers(DispatcherState state, Probe probe) {
+        return probe.roundTrip(state.dispatcher);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long roundTrip4Producers(DispatcherState state, Probe probe) {
+        return probe.roundTrip(state.dispatcher);
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.ryntric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link HashCodeProvider#provide} of every bundled provider for every supported key type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashCodeProviderBenchmark {
+
+    @Param({"DEFAULT", "MURMUR3", "XXHASH", "WYHASH"})
+    public String provider;
+
+    @Param({"16", "64"})
+    public int keyLength;
+
+    private HashCodeProvider hashCodeProvider;
+    private int[] ints;
+    private long[] longs;
+    private String[] strings;
+    private byte[][] bytes;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        hashCodeProvider = provider(provider);
+        ints = BenchmarkKeys.ints();
+        longs = BenchmarkKeys.longs();
+        strings = BenchmarkKeys.strings(keyLength);
+        bytes = BenchmarkKeys.bytes(keyLength);
+    }
+
+    static HashCodeProvider provider(String name) {
+        switch (name) {
+            case "DEFAULT":
+                return DefaultHashCodeProvider.INSTANCE;
+            case "MURMUR3":
+                return Murmur3HashCodeProvider.INSTANCE;
+            case "XXHASH":
+                return XxHashCodeProvider.INSTANCE;
+            case "WYHASH":
+                return WyHashCodeProvider.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Unknown provider: " + name);
+        }
+    }
+
+    private int next() {
+        return cursor++ & BenchmarkKeys.MASK;
+    }
+
+    @Benchmark
+    public int intKey() {
+        return hashCodeProvider.provide(ints[next()]);
+    }
+
+    @Benchmark
+    public int longKey() {
+        return hashCodeProvider.provide(longs[next()]);
+    }
+
+    @Benchmark
+    public int stringKey() {
+        // the String hash is cached after the first call; this is the cost dispatch pays in steady state
+        return hashCodeProvider.provide(strings[next()]);
+    }
+
+    @Benchmark
+    public int byteArrayKey() {
+        return hashCodeProvider.provide(bytes[next()]);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.ryntric;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Checks how evenly each bundled {@link HashCodeProvider} spreads keys over the routing table.
+ * <p>
+ * For every provider and key family the keys are mapped with {@link AffinityDispatcher#calculateIndex(int)}
+ * and the bucket counts are compared with a uniform distribution using Pearson's chi-squared test, both per
+ * routing node and per worker. The statistic is reported as a z-score, {@code (chi2 - df) / sqrt(2 df)}:
+ * a uniform hash stays within a few units of zero, a skewed one is far above. Run with:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar io.github.ryntric.HashDistributionReport
+ * </pre>
+ */
+public final class HashDistributionReport {
+    private static final String[] PROVIDERS = {"DEFAULT", "MURMUR3", "XXHASH", "WYHASH"};
+    private static final int WORKER_COUNT = 8;
+    private static final int NODES_PER_WORKER = 400;
+    private static final int KEY_COUNT = 1 << 20;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private HashDistributionReport() {
+    }
+
+    private interface KeyFamily {
+        int hash(HashCodeProvider provider, int i);
+    }
+
+    public static void main(String[] args) {
+        String[] names = {"sequential int", "sequential long", "random long", "sequential string", "sequential byte[]"};
+        long timestamp = 1_700_000_000_000L;
+        long[] randomLongs = new SplittableRandom(SEED).longs(KEY_COUNT).toArray();
+        KeyFamily[] families = {
+                (provider, i) -> provider.provide(i),
+                (provider, i) -> provider.provide(timestamp + i),
+                (provider, i) -> provider.provide(randomLongs[i]),
+                (provider, i) -> provider.provide("order-" + i),
+                (provider, i) -> provider.provide(("order-" + i).getBytes(StandardCharsets.US_ASCII))
+        };
+
+        Config config = Config.builder()
+                .setWorkerCount(WORKER_COUNT)
+                .setRoutingNodePerWorker(NODES_PER_WORKER)
+                .setBufferSize(64)
+                .build();
+        // never started: only the routing structures are exercised
+        AffinityDispatcher<Object> dispatcher = new AffinityDispatcher<>("report", new CountingHandler<>(), DefaultHashCodeProvider.INSTANCE, config);
+        int tableSize = dispatcher.getRoutingTableSize();
+
+        System.out.printf("%d keys, %d workers, %d routing nodes; z-score of chi-squared per node / per worker%n",
+                KEY_COUNT, WORKER_COUNT, tableSize);
+        System.out.printf("%-20s", "");
+        for (String provider : PROVIDERS) System.out.printf("%24s", provider);
+        System.out.println();
+
+        for (int f = 0; f < families.length; f++) {
+            System.out.printf("%-20s", names[f]);
+            for (String name : PROVIDERS) {
+                HashCodeProvider provider = HashCodeProviderBenchmark.provider(name);
+                long[] nodes = new long[tableSize];
+                long[] workers = new long[WORKER_COUNT];
+                for (int i = 0; i < KEY_COUNT; i++) {
+                    int index = dispatcher.calculateIndex(families[f].hash(provider, i));
+                    nodes[index]++;
+                    // nodes are laid out round-robin over the workers
+                    workers[index % WORKER_COUNT]++;
+                }
+                System.out.printf("%24s", String.format("%.1f / %.1f", zScore(nodes), zScore(workers)));
+            }
+            System.out.println();
+        }
+        dispatcher.shutdown();
+    }
+
+    private static double zScore(long[] counts) {
+        double expected = (double) KEY_COUNT / counts.length;
+        double chi2 = 0;
+        for (long count : counts) {
+            double diff = count - expected;
+            chi2 += diff * diff / expected;
+        }
+        int df = counts.length - 1;
+        return (chi2 - df) / Math.sqrt(2.0 * df);
+    }
+}
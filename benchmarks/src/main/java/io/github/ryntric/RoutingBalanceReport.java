@@ -0,0 +1,81 @@
+package io.github.ryntric;
+
+import java.util.SplittableRandom;
+
+/**
+ * Checks how evenly each {@link RoutingStrategy} spreads keys over the workers, and how many keys move when a
+ * worker is added.
+ * <p>
+ * Random keys are hashed with {@link Murmur3HashCodeProvider} and routed with every strategy. The load of the
+ * busiest worker is reported relative to the mean, next to the z-score of Pearson's chi-squared statistic against
+ * a uniform distribution, see {@link HashDistributionReport}. The last column is the share of keys routed to
+ * another worker after growing to one more worker; {@code 1 / (workers + 1)} is the minimum. Run with:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar io.github.ryntric.RoutingBalanceReport
+ * </pre>
+ */
+public final class RoutingBalanceReport {
+    private static final int[] WORKER_COUNTS = {4, 16, 64};
+    private static final int NODES_PER_WORKER = 400;
+    private static final int KEY_COUNT = 1 << 20;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private RoutingBalanceReport() {
+    }
+
+    public static void main(String[] args) {
+        long[] keys = new SplittableRandom(SEED).longs(KEY_COUNT).toArray();
+        int[] hashcodes = new int[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) hashcodes[i] = Murmur3HashCodeProvider.INSTANCE.provide(keys[i]);
+
+        System.out.printf("%d keys, %d routing nodes per worker; max / mean load, z-score of chi-squared, keys moved on +1 worker%n",
+                KEY_COUNT, NODES_PER_WORKER);
+        System.out.printf("%-22s%8s%14s%10s%10s%n", "", "workers", "max / mean", "z-score", "moved");
+        for (RoutingStrategy strategy : RoutingStrategy.values()) {
+            for (int workerCount : WORKER_COUNTS) {
+                AffinityDispatcher<Object> dispatcher = dispatcher(strategy, workerCount);
+                RoutingTable<Object> table = dispatcher.getRoutingTable();
+                int[] owners = new int[KEY_COUNT];
+                long[] loads = new long[workerCount];
+                for (int i = 0; i < KEY_COUNT; i++) {
+                    owners[i] = table.getOwnerIndex(table.route(hashcodes[i]));
+                    loads[owners[i]]++;
+                }
+
+                dispatcher.resize(workerCount + 1);
+                long moved = 0;
+                for (int i = 0; i < KEY_COUNT; i++) {
+                    if (table.getOwnerIndex(table.route(hashcodes[i])) != owners[i]) moved++;
+                }
+                dispatcher.shutdown();
+
+                long max = 0;
+                for (long load : loads) max = Math.max(max, load);
+                System.out.printf("%-22s%8d%14.3f%10.1f%9.1f%%%n", strategy, workerCount,
+                        max / ((double) KEY_COUNT / workerCount), zScore(loads), 100.0 * moved / KEY_COUNT);
+            }
+        }
+    }
+
+    private static AffinityDispatcher<Object> dispatcher(RoutingStrategy strategy, int workerCount) {
+        Config config = Config.builder()
+                .setWorkerCount(workerCount)
+                .setRoutingNodePerWorker(NODES_PER_WORKER)
+                .setRoutingStrategy(strategy)
+                .setBufferSize(64)
+                .build();
+        // never started: only the routing structures are exercised
+        return new AffinityDispatcher<>("report", new CountingHandler<>(), DefaultHashCodeProvider.INSTANCE, config);
+    }
+
+    private static double zScore(long[] counts) {
+        double expected = (double) KEY_COUNT / counts.length;
+        double chi2 = 0;
+        for (long count : counts) {
+            double diff = count - expected;
+            chi2 += diff * diff / expected;
+        }
+        int df = counts.length - 1;
+        return (chi2 - df) / Math.sqrt(2.0 * df);
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.ryntric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of routing a hash code to its worker with every {@link RoutingStrategy}: mapping it to a node,
+ * then resolving the node's owner. See {@link RoutingBalanceReport} for how evenly each strategy spreads keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingStrategyBenchmark {
+
+    @Param({"VIRTUAL_NODES", "JUMP_CONSISTENT_HASH", "RENDEZVOUS"})
+    public RoutingStrategy routingStrategy;
+
+    @Param({"4", "16", "64"})
+    public int workerCount;
+
+    private AffinityDispatcher<Object> dispatcher;
+    private RoutingTable<Object> table;
+    private int[] hashcodes;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Config config = Config.builder()
+                .setWorkerCount(workerCount)
+                .setRoutingStrategy(routingStrategy)
+                .setBufferSize(64)
+                .build();
+        // never started: only the routing structures are exercised
+        dispatcher = new AffinityDispatcher<>("bench", new CountingHandler<>(), DefaultHashCodeProvider.INSTANCE, config);
+        table = dispatcher.getRoutingTable();
+        hashcodes = BenchmarkKeys.ints();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public int route() {
+        return table.acquire(table.route(hashcodes[cursor++ & BenchmarkKeys.MASK])).getIndex();
+    }
+}
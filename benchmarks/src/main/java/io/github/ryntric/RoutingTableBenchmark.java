@@ -0,0 +1,94 @@
+package io.github.ryntric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of routing a hash code to its worker with the flat {@link RoutingTable} against the previous
+ * layout, an array of one routing node object per slot holding a volatile owner and handoff flag. Both resolve the
+ * same owners; only the memory layout differs, so the gap widens with the table size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingTableBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int workerCount;
+
+    @Param({"400"})
+    public int routingNodePerWorker;
+
+    private AffinityDispatcher<Object> dispatcher;
+    private RoutingTable<Object> table;
+    private Node[] nodes;
+    private int[] hashcodes;
+    private int cursor;
+
+    /**
+     * A slot of the previous object-per-node layout.
+     */
+    static final class Node {
+        volatile Worker<Object> worker;
+        volatile boolean handoff;
+        long published;
+
+        Node(Worker<Object> worker) {
+            this.worker = worker;
+        }
+
+        Worker<Object> acquire() {
+            Worker<Object> current = worker;
+            while (handoff) {
+                Thread.onSpinWait();
+                current = worker;
+            }
+            return current;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Config config = Config.builder()
+                .setWorkerCount(workerCount)
+                .setRoutingNodePerWorker(routingNodePerWorker)
+                .setBufferSize(64)
+                .build();
+        // never started: only the routing structures are exercised
+        dispatcher = new AffinityDispatcher<>("bench", new CountingHandler<>(), DefaultHashCodeProvider.INSTANCE, config);
+        table = dispatcher.getRoutingTable();
+        nodes = new Node[table.size()];
+        for (int i = 0; i < nodes.length; i++) nodes[i] = new Node(table.getOwner(i));
+        hashcodes = BenchmarkKeys.ints();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public int flatTable() {
+        return table.acquire(dispatcher.calculateIndex(hashcodes[cursor++ & BenchmarkKeys.MASK])).getIndex();
+    }
+
+    @Benchmark
+    public int nodeObjects() {
+        return nodes[dispatcher.calculateIndex(hashcodes[cursor++ & BenchmarkKeys.MASK])].acquire().getIndex();
+    }
+}
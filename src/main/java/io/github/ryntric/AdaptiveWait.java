@@ -0,0 +1,45 @@
+package io.github.ryntric;
+
+/**
+ * Budgets of the spin and yield phases of a worker waiting adaptively for messages, see
+ * {@link Config.Builder#setAdaptiveWaitEnabled(boolean)}. Worker thread only.
+ * <p>
+ * The budgets derive from a moving average of the time the worker waited for its next message: a phase lasts twice
+ * the average if that fits within its cap, so a worker spins while messages follow each other within microseconds,
+ * yields while they follow within a millisecond and otherwise parks almost at once. Observed waits are capped
+ * before averaging, so that a long silence is forgotten after some fifteen short gaps.
+ */
+final class AdaptiveWait {
+    static final long MIN_SPIN_NANOS = 1_000;
+    static final long MAX_SPIN_NANOS = 50_000;
+    static final long MAX_YIELD_NANOS = 1_000_000;
+    private static final long MAX_OBSERVED_NANOS = 2 * MAX_YIELD_NANOS;
+    /**
+     * Weight of a new observation in the average, as a shift: 1/4.
+     */
+    private static final int SMOOTHING_SHIFT = 2;
+
+    private long averageWaitNanos;
+
+    /**
+     * Records the time from the channel found empty to the next message.
+     */
+    void onWaited(long nanos) {
+        long observed = Math.min(nanos, MAX_OBSERVED_NANOS);
+        averageWaitNanos += (observed - averageWaitNanos) >> SMOOTHING_SHIFT;
+    }
+
+    long getAverageWaitNanos() {
+        return averageWaitNanos;
+    }
+
+    long getSpinNanos() {
+        long budget = 2 * averageWaitNanos;
+        return budget <= MAX_SPIN_NANOS ? Math.max(budget, MIN_SPIN_NANOS) : MIN_SPIN_NANOS;
+    }
+
+    long getYieldNanos() {
+        long budget = 2 * averageWaitNanos;
+        return budget <= MAX_YIELD_NANOS ? budget : 0;
+    }
+}
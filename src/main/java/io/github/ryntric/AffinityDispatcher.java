@@ -1,8 +1,34 @@
 package io.github.ryntric;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * AffinityDispatcher is a high-performance dispatcher that routes messages between workers based on a key's hash code.
@@ -10,137 +36,1450 @@ import java.util.concurrent.atomic.AtomicInteger;
  * It is suitable for low-latency message dispatching and ensures consistent routing for the same key.
  *
  */
-@SuppressWarnings("unchecked")
+@SuppressWarnings({"unchecked", "rawtypes"})
 public final class AffinityDispatcher<T> {
     private static final int NON_STARTED_STATE = 0;
     private static final int STARTED_STATE = 1;
     private static final int TERMINATED_STATE = 2;
+    private static final Logger LOGGER = Logger.getLogger(AffinityDispatcher.class.getName());
+    private static final Duration MAX_DRAIN_DEADLINE = Duration.ofNanos(Long.MAX_VALUE);
+    private static final long TERMINATION_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final String JOURNAL_PREFIX = "worker-";
 
     private final String name;
-    private final Worker<T>[] workers;
-    private final RoutingNode<T>[] routingTable;
     private final HashCodeProvider hashCodeProvider;
-    private final int workerCount;
     private final int nodesPerWorker;
     private final long routingTableSize;
+    private final boolean jmxEnabled;
     private final AtomicInteger state;
+    private final Object lifecycleLock = new Object();
+    private final Config config;
+    private final Rebalancer<T> rebalancer;
+    private final JournalSerializer<T> journalSerializer;
+    private final KeyType keyType;
+    private final EventFactory<T> eventFactory;
+    /**
+     * The lanes of the producer threads in every worker's channel, {@code null} unless the channel type is
+     * {@link ChannelType#SHARDED_MPSC}.
+     */
+    private final ProducerLanes producerLanes;
+    /**
+     * The reusable claim of every producer thread, {@code null} without preallocated events.
+     */
+    private final ThreadLocal<EventClaim<T>> claims;
+    /**
+     * The reusable batch buckets of every producer thread, {@code null} with a keyed handler, which never
+     * dispatches batches at once.
+     */
+    private final ThreadLocal<DispatchScratch<T>> scratches;
+    /**
+     * The unordered lane of every worker created so far, {@code null} unless unordered dispatch is enabled.
+     */
+    private final UnorderedLanes<T> unorderedLanes;
+    private final boolean workStealing;
+
+    private WorkerFactory<T> workerFactory;
+    private RoutingTable<T> routingTable;
+    private ScheduledExecutorService rebalancerExecutor;
+    private ScheduledExecutorService journalExecutor;
+    /**
+     * Every worker created so far. Workers at index {@code workerCount} and above are standby.
+     */
+    private volatile Worker<T>[] workers;
+    private volatile int workerCount;
+    /**
+     * The weight of every worker, at least as many as workers created so far, see
+     * {@link Config.Builder#setWorkerWeights(double...)}. Guarded by the lifecycle lock.
+     */
+    private double[] weights;
+
+    /**
+     * Constructs a new AffinityDispatcher with the given parameters.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the data handler for each worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     */
+    public AffinityDispatcher(String name, Handler<T> handler, HashCodeProvider hashCodeProvider, Config config) {
+        this(name, handler, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Constructs a new AffinityDispatcher that journals dispatched messages when {@link Config#getJournalDirectory()}
+     * is set.
+     *
+     * @param name              the name of the dispatcher
+     * @param handler           the data handler for each worker
+     * @param hashCodeProvider  provider to compute hash codes from keys
+     * @param config            dispatcher configuration (worker count, buffer size, etc.)
+     * @param journalSerializer serializer of the journaled messages, {@code null} if journaling is disabled
+     * @throws IllegalArgumentException if journaling is enabled without a serializer or with the
+     *                                  {@link OverflowPolicy#DROP_OLDEST} policy, or if the
+     *                                  {@link FailurePolicy#DEAD_LETTER} policy has no dead-letter handler
+     * @throws UncheckedIOException     if a journal cannot be opened
+     */
+    public AffinityDispatcher(String name, Handler<T> handler, HashCodeProvider hashCodeProvider, Config config, JournalSerializer<T> journalSerializer) {
+        this(name, handler, null, null, KeyType.NONE, null, null, false, hashCodeProvider, config, journalSerializer);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers hand every drained batch to a {@link BatchHandler}.
+     * A factory method rather than a constructor, since a lambda could not tell a batch handler from a
+     * {@link Handler}.
+     *
+     * @param name             the name of the dispatcher
+     * @param batchHandler     the batch handler for each worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     */
+    public static <T> AffinityDispatcher<T> withBatchHandler(String name, BatchHandler<T> batchHandler, HashCodeProvider hashCodeProvider, Config config) {
+        return new AffinityDispatcher<>(name, null, batchHandler, null, KeyType.NONE, null, null, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers hand every drained batch to a {@link BatchHandler}, and that
+     * journals dispatched messages when {@link Config#getJournalDirectory()} is set.
+     *
+     * @param name              the name of the dispatcher
+     * @param batchHandler      the batch handler for each worker
+     * @param hashCodeProvider  provider to compute hash codes from keys
+     * @param config            dispatcher configuration (worker count, buffer size, etc.)
+     * @param journalSerializer serializer of the journaled messages, {@code null} if journaling is disabled
+     * @return the new dispatcher
+     * @throws IllegalArgumentException see {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     * @throws UncheckedIOException     if a journal cannot be opened
+     */
+    public static <T> AffinityDispatcher<T> withBatchHandler(String name, BatchHandler<T> batchHandler, HashCodeProvider hashCodeProvider, Config config, JournalSerializer<T> journalSerializer) {
+        return new AffinityDispatcher<>(name, null, batchHandler, null, KeyType.NONE, null, null, false, hashCodeProvider, config, journalSerializer);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers each own a state object created by {@code stateFactory},
+     * passed to the handler along with every message. Since a key is always handled by the same worker, per-key
+     * state kept in it, typically in a {@link LongStateMap} or an {@link OffHeapLongStateMap}, needs no
+     * synchronization. Keys moved to another worker by {@link #resize(int)} or by rebalancing find no state there:
+     * the state stays with the worker, not with the key.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the stateful handler for each worker
+     * @param stateFactory     creates the state of a worker, called once per worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     * @see #getWorkerState(int)
+     */
+    public static <T, S> AffinityDispatcher<T> withState(String name, StatefulHandler<T, S> handler, Supplier<? extends S> stateFactory, HashCodeProvider hashCodeProvider, Config config) {
+        BiFunction<KeyCarrier, Object, Handler<T>> adapter = (channel, state) -> (workerName, value) -> handler.handle(workerName, (S) state, value);
+        return new AffinityDispatcher<>(name, null, null, stateFactory, KeyType.NONE, adapter, null, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers each own a state object, as described in
+     * {@link #withState}, and receive every message along with the key it was dispatched with, carried as described
+     * in {@link #withKeyedHandler}, whose restrictions apply. Keys must be of type {@code K}.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the keyed stateful handler for each worker
+     * @param stateFactory     creates the state of a worker, called once per worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     * @throws IllegalArgumentException if the overflow policy spills messages, see also
+     *                                  {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     * @see #getWorkerState(int)
+     */
+    public static <K, T, S> AffinityDispatcher<T> withKeyedState(String name, KeyedStatefulHandler<K, T, S> handler, Supplier<? extends S> stateFactory, HashCodeProvider hashCodeProvider, Config config) {
+        BiFunction<KeyCarrier, Object, Handler<T>> adapter = (channel, state) -> (workerName, value) -> handler.handle(workerName, (S) state, (K) channel.getKey(), value);
+        return new AffinityDispatcher<>(name, null, null, stateFactory, KeyType.OBJECT, adapter, null, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers each own a state object, as described in
+     * {@link #withState}, and receive every message along with the {@code long} key it was dispatched with,
+     * unboxed, as described in {@link #withLongKeyedHandler}: the key a {@link LongStateMap} or an
+     * {@link OffHeapLongStateMap} is indexed by. Messages can only be dispatched with {@code long} or {@code int}
+     * keys.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the keyed stateful handler for each worker
+     * @param stateFactory     creates the state of a worker, called once per worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     * @throws IllegalArgumentException if the overflow policy spills messages, see also
+     *                                  {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     * @see #getWorkerState(int)
+     */
+    public static <T, S> AffinityDispatcher<T> withLongKeyedState(String name, LongKeyedStatefulHandler<T, S> handler, Supplier<? extends S> stateFactory, HashCodeProvider hashCodeProvider, Config config) {
+        BiFunction<KeyCarrier, Object, Handler<T>> adapter = (channel, state) -> (workerName, value) -> handler.handle(workerName, (S) state, channel.getPrimitiveKey(), value);
+        return new AffinityDispatcher<>(name, null, null, stateFactory, KeyType.LONG, adapter, null, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers receive every message along with the key it was dispatched
+     * with. The key is stored next to the message in the worker's channel, so no wrapper object is allocated to
+     * carry it; {@code int} and {@code long} keys are boxed, see {@link #withIntKeyedHandler} and
+     * {@link #withLongKeyedHandler} to avoid it. Keys must be of type {@code K}.
+     * <p>
+     * Keyed dispatchers do not journal messages, and their overflow policy must be {@link OverflowPolicy#BLOCK} or
+     * {@link OverflowPolicy#DROP_NEWEST}: the overflow queue does not carry keys. Batch dispatches are published
+     * message by message.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the keyed handler for each worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     * @throws IllegalArgumentException if the overflow policy spills messages, see also
+     *                                  {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     */
+    public static <K, T> AffinityDispatcher<T> withKeyedHandler(String name, KeyedHandler<K, T> handler, HashCodeProvider hashCodeProvider, Config config) {
+        BiFunction<KeyCarrier, Object, Handler<T>> adapter = (channel, state) -> (workerName, value) -> handler.handle(workerName, (K) channel.getKey(), value);
+        return new AffinityDispatcher<>(name, null, null, null, KeyType.OBJECT, adapter, null, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers receive every message along with the {@code int} key it was
+     * dispatched with, unboxed, as described in {@link #withKeyedHandler}. Messages can only be dispatched with
+     * {@code int} keys.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the keyed handler for each worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     * @throws IllegalArgumentException if the overflow policy spills messages, see also
+     *                                  {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     */
+    public static <T> AffinityDispatcher<T> withIntKeyedHandler(String name, IntKeyedHandler<T> handler, HashCodeProvider hashCodeProvider, Config config) {
+        BiFunction<KeyCarrier, Object, Handler<T>> adapter = (channel, state) -> (workerName, value) -> handler.handle(workerName, (int) channel.getPrimitiveKey(), value);
+        return new AffinityDispatcher<>(name, null, null, null, KeyType.INT, adapter, null, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers receive every message along with the {@code long} key it was
+     * dispatched with, unboxed, as described in {@link #withKeyedHandler}. Messages can only be dispatched with
+     * {@code long} or {@code int} keys.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the keyed handler for each worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     * @throws IllegalArgumentException if the overflow policy spills messages, see also
+     *                                  {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     */
+    public static <T> AffinityDispatcher<T> withLongKeyedHandler(String name, LongKeyedHandler<T> handler, HashCodeProvider hashCodeProvider, Config config) {
+        BiFunction<KeyCarrier, Object, Handler<T>> adapter = (channel, state) -> (workerName, value) -> handler.handle(workerName, channel.getPrimitiveKey(), value);
+        return new AffinityDispatcher<>(name, null, null, null, KeyType.LONG, adapter, null, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers' channels are preallocated with mutable events created by
+     * {@code eventFactory}. Messages are not dispatched as objects but written in place into a claimed event, with
+     * {@link #claim(long)} and {@link EventClaim#commit()} or with {@link #dispatch(long, EventTranslator, Object)},
+     * so that dispatching allocates nothing; {@code dispatch(key, value)} and the other value-based methods throw
+     * {@link UnsupportedOperationException}.
+     * <p>
+     * The handler receives the event of the slot, which is reused once the worker has moved past it: copy what must
+     * outlive the call. Preallocated dispatchers do not journal messages, and their overflow policy must be
+     * {@link OverflowPolicy#BLOCK}: a claim waits for a free slot.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the data handler for each worker
+     * @param eventFactory     creates the event of every channel slot
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @return the new dispatcher
+     * @throws IllegalArgumentException if the overflow policy is not {@code BLOCK}, see also
+     *                                  {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     */
+    public static <T> AffinityDispatcher<T> withEventFactory(String name, Handler<T> handler, EventFactory<T> eventFactory, HashCodeProvider hashCodeProvider, Config config) {
+        return new AffinityDispatcher<>(name, handler, null, null, KeyType.NONE, null, eventFactory, false, hashCodeProvider, config, null);
+    }
+
+    /**
+     * Creates a new AffinityDispatcher whose workers' channels hold fixed-size binary records in native memory,
+     * for payloads with a fixed binary layout such as market data. The channel type of the configuration must be
+     * {@link ChannelType#OFF_HEAP_SPSC} or {@link ChannelType#OFF_HEAP_MPSC}, and records at most
+     * {@link Config#getRecordSize()} bytes long.
+     * <p>
+     * Records are copied into a channel slot with {@code dispatchRecord(key, ...)}, and the handler receives a
+     * {@link BinaryRecord} view over the slot, valid during the call only: messages never exist as heap objects, and
+     * each worker's channel takes {@code bufferSize} slots of native memory whatever its lag. {@code dispatch(key,
+     * value)} and the other value-based methods throw {@link UnsupportedOperationException}. Record dispatchers do
+     * not journal messages, and their overflow policy must be {@link OverflowPolicy#BLOCK}.
+     *
+     * @param name             the name of the dispatcher
+     * @param handler          the record handler for each worker
+     * @param hashCodeProvider provider to compute hash codes from keys
+     * @param config           dispatcher configuration with an off-heap channel type
+     * @return the new dispatcher
+     * @throws IllegalArgumentException if the channel type is not an off-heap one or the overflow policy is not
+     *                                  {@code BLOCK}, see also
+     *                                  {@link #AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}
+     */
+    public static AffinityDispatcher<BinaryRecord> withRecordHandler(String name, Handler<BinaryRecord> handler, HashCodeProvider hashCodeProvider, Config config) {
+        return new AffinityDispatcher<>(name, handler, null, null, KeyType.NONE, null, null, true, hashCodeProvider, config, null);
+    }
+
+    private AffinityDispatcher(String name, Handler<T> handler, BatchHandler<T> batchHandler, Supplier<?> stateFactory,
+                               KeyType keyType, BiFunction<KeyCarrier, Object, Handler<T>> handlerFactory, EventFactory<T> eventFactory, boolean recordHandler,
+                               HashCodeProvider hashCodeProvider, Config config, JournalSerializer<T> journalSerializer) {
+        if (config.getFailurePolicy() == FailurePolicy.DEAD_LETTER && config.getDeadLetterHandler() == null) {
+            throw new IllegalArgumentException(String.format("Dispatcher [%s] needs a dead-letter handler with the DEAD_LETTER failure policy", name));
+        }
+        if (keyType != KeyType.NONE && (config.getOverflowPolicy() == OverflowPolicy.SPILL || config.getOverflowPolicy() == OverflowPolicy.DROP_OLDEST)) {
+            // the overflow queue holds bare messages: a spilled message would reach the handler without its key
+            throw new IllegalArgumentException(String.format("Dispatcher [%s] cannot spill messages with a keyed handler", name));
+        }
+        if (recordHandler != config.getChannelType().isOffHeap()) {
+            throw new IllegalArgumentException(recordHandler
+                    ? String.format("Dispatcher [%s] needs an off-heap channel type for binary records", name)
+                    : String.format("Dispatcher [%s] needs a record handler with an off-heap channel type", name));
+        }
+        if ((eventFactory != null || recordHandler) && config.getOverflowPolicy() != OverflowPolicy.BLOCK) {
+            // an event or a record lives in its slot: there is nothing to drop or spill, only a free slot to wait for
+            throw new IllegalArgumentException(String.format("Dispatcher [%s] needs the BLOCK overflow policy with preallocated events or binary records", name));
+        }
+        if (config.getChannelType().isSharded()) {
+            if (eventFactory != null) {
+                // a claimed event is committed to the ring it was claimed from, which a lane per producer cannot tell apart
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] cannot claim preallocated events from a sharded channel", name));
+            }
+            if (config.getProducerLanes() < 1) {
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] needs at least one producer lane", name));
+            }
+        }
+        if (config.getJournalDirectory() != null) {
+            if (journalSerializer == null) {
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] needs a journal serializer to journal messages", name));
+            }
+            if (config.getOverflowPolicy() == OverflowPolicy.DROP_OLDEST) {
+                // an evicted message would leave a hole in the journal that the handled count cannot describe
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] cannot journal messages with the DROP_OLDEST overflow policy", name));
+            }
+        }
+        if (config.getRoutingStrategy().isDirect() && config.getRebalanceIntervalMs() > 0) {
+            // without a table there is no routing node to move
+            throw new IllegalArgumentException(String.format("Dispatcher [%s] can only rebalance with the VIRTUAL_NODES routing strategy", name));
+        }
+        double[] weights = config.getWorkerWeights();
+        if (weights != null) {
+            if (config.getRoutingStrategy().isDirect()) {
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] can only weigh workers with the VIRTUAL_NODES routing strategy", name));
+            }
+            for (int i = 0; i < weights.length; i++) checkWeight(i, weights[i]);
+        }
+        int unorderedLaneSize = config.getUnorderedLaneSize();
+        if (unorderedLaneSize < 0 || Integer.bitCount(unorderedLaneSize) > 1) {
+            throw new IllegalArgumentException(String.format("Unordered lane size [%d] must be 0 or a power of two", unorderedLaneSize));
+        }
+        if (unorderedLaneSize > 0) {
+            if (keyType != KeyType.NONE || eventFactory != null || recordHandler) {
+                // a lane holds bare messages, which are neither keyed nor claimed from a channel
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] cannot dispatch unordered messages with a keyed handler, preallocated events or binary records", name));
+            }
+            if (config.getJournalDirectory() != null) {
+                // the journal is checkpointed with the handled count, which unordered messages would throw off
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] cannot journal unordered messages", name));
+            }
+        } else if (config.isWorkStealingEnabled()) {
+            throw new IllegalArgumentException(String.format("Dispatcher [%s] needs unordered lanes to steal work", name));
+        }
+        int priorityLaneSize = config.getPriorityLaneSize();
+        if (priorityLaneSize < 0 || Integer.bitCount(priorityLaneSize) > 1) {
+            throw new IllegalArgumentException(String.format("Priority lane size [%d] must be 0 or a power of two", priorityLaneSize));
+        }
+        if (priorityLaneSize > 0) {
+            if (eventFactory != null || recordHandler) {
+                // events and records are claimed from the slots of the normal channel
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] cannot dispatch high-priority messages with preallocated events or binary records", name));
+            }
+            if (config.getJournalDirectory() != null) {
+                // the journal is replayed in the order of a single channel, which two channels do not keep
+                throw new IllegalArgumentException(String.format("Dispatcher [%s] cannot journal high-priority messages", name));
+            }
+            if (config.getPriorityStarvationLimit() < 1) {
+                throw new IllegalArgumentException(String.format("Priority starvation limit [%d] must be at least 1", config.getPriorityStarvationLimit()));
+            }
+        }
+        if (config.getWorkerCount() < 1 || config.getWorkerCount() > RoutingTable.MAX_WORKERS) {
+            throw new IllegalArgumentException(String.format("Worker count [%d] must be within [1, %d]", config.getWorkerCount(), RoutingTable.MAX_WORKERS));
+        }
+        this.name = name;
+        this.workerCount = config.getWorkerCount();
+        this.nodesPerWorker = config.getRoutingNodePerWorker();
+        this.routingTableSize = (long) workerCount * nodesPerWorker;
+        this.hashCodeProvider = hashCodeProvider;
+        this.jmxEnabled = config.isJmxEnabled();
+        this.config = config;
+        this.rebalancer = config.getRebalanceIntervalMs() > 0 ? new Rebalancer<>(config.getRebalanceThreshold(), config.getRebalanceMaxMoves()) : null;
+        this.journalSerializer = config.getJournalDirectory() != null ? journalSerializer : null;
+        this.keyType = keyType;
+        this.eventFactory = eventFactory;
+        this.claims = eventFactory != null ? ThreadLocal.withInitial(EventClaim::new) : null;
+        this.scratches = keyType == KeyType.NONE ? ThreadLocal.withInitial(DispatchScratch::new) : null;
+        this.producerLanes = config.getChannelType().isSharded() ? new ProducerLanes(config.getProducerLanes()) : null;
+        this.unorderedLanes = unorderedLaneSize > 0 ? new UnorderedLanes<>(unorderedLaneSize) : null;
+        this.workStealing = config.isWorkStealingEnabled();
+        this.workers = new Worker[workerCount];
+        this.weights = new double[Math.max(workerCount, weights != null ? weights.length : 0)];
+        Arrays.fill(this.weights, 1.0);
+        if (weights != null) System.arraycopy(weights, 0, this.weights, 0, weights.length);
+        this.state = new AtomicInteger(NON_STARTED_STATE);
+        this.init(name, handler, batchHandler, stateFactory, handlerFactory, config);
+    }
+
+    private void init(String name, Handler<T> handler, BatchHandler<T> batchHandler, Supplier<?> stateFactory,
+                      BiFunction<KeyCarrier, Object, Handler<T>> handlerFactory, Config config) {
+        this.workerFactory = new WorkerFactory<>(name, config.getWorkerMode(), config.getWorkerThreadPriority(), config.getBatchSize(), handler, batchHandler, stateFactory, handlerFactory, config.getCpuAffinity(), config.isLatencyTrackingEnabled(), config.isAdaptiveWaitEnabled(),
+                config.getOverflowPolicy(), config.getOverflowQueueCapacity(),
+                config.getFailurePolicy(), config.getFailureRetryAttempts(), (DeadLetterHandler<T>) config.getDeadLetterHandler(), unorderedLanes, workStealing);
+
+        Worker<T>[] workers = this.workers;
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = createWorker(i);
+        }
+
+        this.routingTable = new RoutingTable<>(config.getRoutingStrategy(), (int) routingTableSize, workers, workerCount, rebalancer != null);
+        if (config.getWorkerWeights() != null) {
+            // nodes are dealt evenly first; nothing is published yet, so the handoff waits for no one
+            handoff(planResize(workers, workerCount));
+        }
+    }
+
+    private static void checkWeight(int workerIndex, double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException(String.format("Weight [%s] of worker [%d] must be positive and finite", weight, workerIndex));
+        }
+    }
+
+    private Worker<T> createWorker(int index) {
+        // virtual, adaptive and multi-channel workers park on their own while idle; yielding keeps the rare in-channel
+        // waits short and off the carrier thread of a virtual worker, where a blocking monitor wait would pin it
+        ConsumerWaitStrategyType consumerWaitStrategyType = config.getWorkerMode() == WorkerMode.VIRTUAL_THREAD || config.isAdaptiveWaitEnabled() || unorderedLanes != null
+                || config.getPriorityLaneSize() > 0
+                ? ConsumerWaitStrategyType.YIELDING
+                : config.getConsumerWaitStrategyType();
+        WorkerChannel<T> channel;
+        if (config.getChannelType().isOffHeap()) {
+            channel = (WorkerChannel<T>) ChannelFactory.createBinaryChannel(config.getChannelType(), config.getBufferSize(), config.getRecordSize(), config.getProducerWaitStrategyType(), consumerWaitStrategyType);
+        } else if (producerLanes != null) {
+            channel = ChannelFactory.createLaneChannel(config.getBufferSize(), config.getProducerWaitStrategyType(), consumerWaitStrategyType, producerLanes, keyType != KeyType.NONE);
+        } else if (eventFactory != null) {
+            channel = ChannelFactory.createEventChannel(config.getChannelType(), config.getBufferSize(), config.getProducerWaitStrategyType(), consumerWaitStrategyType, eventFactory);
+        } else if (keyType != KeyType.NONE) {
+            channel = ChannelFactory.createKeyedChannel(config.getChannelType(), config.getBufferSize(), config.getProducerWaitStrategyType(), consumerWaitStrategyType);
+        } else {
+            channel = ChannelFactory.createChannel(config.getChannelType(), config.getBufferSize(), config.getProducerWaitStrategyType(), consumerWaitStrategyType);
+        }
+        boolean multiProducer = config.getChannelType().isMultiProducer();
+        int priorityLaneSize = config.getPriorityLaneSize();
+        if (priorityLaneSize > 0) {
+            // producers of a sharded channel share the priority ring: control messages are few
+            ChannelType type = multiProducer ? ChannelType.MPSC : ChannelType.SPSC;
+            WorkerChannel<T> priority = keyType != KeyType.NONE
+                    ? ChannelFactory.createKeyedChannel(type, priorityLaneSize, config.getProducerWaitStrategyType(), consumerWaitStrategyType)
+                    : ChannelFactory.createChannel(type, priorityLaneSize, config.getProducerWaitStrategyType(), consumerWaitStrategyType);
+            channel = new PriorityChannel<>(channel, priority, config.getPriorityStarvationLimit());
+        }
+        return new Worker<>(index, config.getBufferSize(), priorityLaneSize, multiProducer, config.getOverflowPolicy(), workerFactory.createWorker(index, channel, openJournal(index)));
+    }
+
+    private Journal<T> openJournal(int index) {
+        if (journalSerializer == null) {
+            return null;
+        }
+        try {
+            return new Journal<>(config.getJournalDirectory().resolve(name).resolve(JOURNAL_PREFIX + index), config.getJournalSegmentSize(), journalSerializer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Dispatcher [%s] failed to open the journal of worker %d", name, index), e);
+        }
+    }
+
+    /**
+     * Opens the journals left on disk by workers at index {@code workerCount} and above, which a previous run had
+     * and this one does not, in the order of their indexes.
+     */
+    private List<Journal<T>> openOrphanJournals(int workerCount) {
+        Map<Integer, Path> directories = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(config.getJournalDirectory().resolve(name))) {
+            paths.filter(Files::isDirectory).forEach(path -> {
+                String file = path.getFileName().toString();
+                if (file.startsWith(JOURNAL_PREFIX)) {
+                    try {
+                        int index = Integer.parseInt(file.substring(JOURNAL_PREFIX.length()));
+                        if (index >= workerCount) directories.put(index, path);
+                    } catch (NumberFormatException e) {
+                        // not a worker journal
+                    }
+                }
+            });
+            List<Journal<T>> journals = new ArrayList<>(directories.size());
+            for (Path directory : directories.values()) {
+                journals.add(new Journal<>(directory, config.getJournalSegmentSize(), journalSerializer));
+            }
+            return journals;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Dispatcher [%s] failed to open the journals of removed workers", name), e);
+        }
+    }
+
+    private void checkState() {
+        if (state.getAcquire() != STARTED_STATE) {
+            throw new DispatcherTerminatedException(name);
+        }
+    }
+
+    RoutingTable<T> getRoutingTable() {
+        return routingTable;
+    }
+
+    /**
+     * @param workerIndex index of the worker, in {@code [0, getWorkerCount())}, or above for a standby worker
+     */
+    Worker<T> getWorker(int workerIndex) {
+        return workers[workerIndex];
+    }
+
+    /**
+     * Calculates the routing node for a given hash code with the configured {@link RoutingStrategy}.
+     *
+     * @param hashcode the hash code of the key
+     * @return the routing node, see {@link RoutingTable#route(int)}
+     */
+    int calculateIndex(int hashcode) {
+        return routingTable.route(hashcode);
+    }
+
+    /**
+     * Returns the object key to carry to a keyed handler, {@code null} if there is none.
+     *
+     * @throws IllegalArgumentException if the handler takes primitive keys
+     */
+    private Object carriedKey(Object key) {
+        if (keyType == KeyType.INT || keyType == KeyType.LONG) {
+            throw new IllegalArgumentException(String.format("Dispatcher [%s] takes %s keys only", name, keyType == KeyType.INT ? "int" : "long"));
+        }
+        return keyType == KeyType.OBJECT ? key : null;
+    }
+
+    /**
+     * Returns a copy of the key to carry to a {@link KeyedHandler}, {@code null} for any other handler. The
+     * producer may reuse the array as soon as the dispatch returns.
+     */
+    private Object copiedKey(byte[] key) {
+        return carriedKey(key) != null ? key.clone() : null;
+    }
+
+    /**
+     * Returns a copy of the key bytes to carry to a {@link KeyedHandler}, {@code null} for any other handler.
+     * Only the range is carried, and the producer may reuse the array as soon as the dispatch returns.
+     */
+    private Object copiedKey(byte[] key, int offset, int length) {
+        return carriedKey(key) != null ? Arrays.copyOfRange(key, offset, offset + length) : null;
+    }
+
+    /**
+     * Returns a heap copy of the remaining key bytes to carry to a {@link KeyedHandler}, {@code null} for any
+     * other handler. The producer may reuse the buffer as soon as the dispatch returns.
+     */
+    private Object copiedKey(ByteBuffer key) {
+        if (carriedKey(key) == null) {
+            return null;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(key.remaining()).order(key.order());
+        copy.put(key.duplicate()).flip();
+        return copy;
+    }
+
+    /**
+     * Returns the characters of the key as a {@code String} to carry to a {@link KeyedHandler}, {@code null} for
+     * any other handler. The producer may reuse a mutable sequence as soon as the dispatch returns.
+     */
+    private Object copiedKey(CharSequence key) {
+        return carriedKey(key) != null ? key.toString() : null;
+    }
+
+    /**
+     * Returns the boxed key to carry to a {@link KeyedHandler}, {@code null} for any other handler.
+     */
+    private Object carriedKey(int key) {
+        return keyType == KeyType.OBJECT ? Integer.valueOf(key) : null;
+    }
+
+    /**
+     * Returns the boxed key to carry to a {@link KeyedHandler}, {@code null} for any other handler.
+     *
+     * @throws IllegalArgumentException if the handler takes {@code int} keys
+     */
+    private Object carriedKey(long key) {
+        if (keyType == KeyType.INT) {
+            throw new IllegalArgumentException(String.format("Dispatcher [%s] takes int keys only", name));
+        }
+        return keyType == KeyType.OBJECT ? Long.valueOf(key) : null;
+    }
+
+    /**
+     * Publishes a message to the routing node corresponding to the given hash code.
+     *
+     * @param hashcode     the hash code of the key
+     * @param key          the object key carried to a keyed handler, {@code null} if none
+     * @param primitiveKey the primitive key carried to a keyed handler, {@code 0} if none
+     * @param value        the message to publish
+     */
+    private void internalDispatch(int hashcode, Object key, long primitiveKey, T value) {
+        routingTable.publish(calculateIndex(hashcode), hashcode, key, primitiveKey, value);
+    }
+
+    /**
+     * Publishes a message with the given priority to the routing node corresponding to the given hash code.
+     *
+     * @throws UnsupportedOperationException if the priority is {@link Priority#HIGH} and the dispatcher has no
+     *                                       priority channels
+     */
+    private void internalDispatch(int hashcode, Object key, long primitiveKey, T value, Priority priority) {
+        if (priority == Priority.NORMAL) {
+            internalDispatch(hashcode, key, primitiveKey, value);
+            return;
+        }
+        if (config.getPriorityLaneSize() == 0) {
+            throw new UnsupportedOperationException(String.format("Dispatcher [%s] has no priority channels", name));
+        }
+        routingTable.publishPriority(calculateIndex(hashcode), key, primitiveKey, value);
+    }
+
+    private boolean internalTryDispatch(int hashcode, Object key, long primitiveKey, T value) {
+        return routingTable.tryPublish(calculateIndex(hashcode), hashcode, key, primitiveKey, value);
+    }
+
+    private boolean internalDispatch(int hashcode, Object key, long primitiveKey, T value, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return routingTable.tryPublish(calculateIndex(hashcode), hashcode, key, primitiveKey, value, deadline);
+    }
+
+    /**
+     * Claims a slot of the worker owning the routing node of the given hash code. The node is released by
+     * {@link EventClaim#commit()}.
+     */
+    private EventClaim<T> internalClaim(int hashcode) {
+        if (claims == null) {
+            throw new UnsupportedOperationException(String.format("Dispatcher [%s] has no preallocated events", name));
+        }
+        EventClaim<T> claim = claims.get();
+        if (claim.isPending()) {
+            throw new IllegalStateException(String.format("Dispatcher [%s] has an uncommitted claim on this thread", name));
+        }
+        RoutingTable<T> routingTable = this.routingTable;
+        int node = calculateIndex(hashcode);
+        Worker<T> worker = routingTable.acquire(node);
+        claim.begin(routingTable, node, worker, worker.claim());
+        return claim;
+    }
+
+    /**
+     * Claims a slot of the worker owning the routing node of the given hash code, fills its event with the
+     * translator and publishes it, even if the translator throws.
+     */
+    private <A> void internalDispatch(int hashcode, EventTranslator<T, A> translator, A arg) {
+        if (claims == null) {
+            throw new UnsupportedOperationException(String.format("Dispatcher [%s] has no preallocated events", name));
+        }
+        RoutingTable<T> routingTable = this.routingTable;
+        int node = calculateIndex(hashcode);
+        Worker<T> worker = routingTable.acquire(node);
+        long sequence = worker.claim();
+        try {
+            translator.translateTo(worker.getEvent(sequence), arg);
+        } finally {
+            worker.commit(sequence);
+            routingTable.onPublished(node, 1);
+            routingTable.release(node, worker);
+        }
+    }
+
+    private void internalDispatchRecord(int hashcode, byte[] record, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, record.length);
+        routingTable.publishRecord(calculateIndex(hashcode), record, offset, length);
+    }
+
+    private void internalDispatchRecord(int hashcode, ByteBuffer record) {
+        routingTable.publishRecord(calculateIndex(hashcode), record, record.position(), record.remaining());
+    }
+
+    /**
+     * Publishes a batch of messages, grouping them per worker so that each worker's channel
+     * is claimed once per bucket instead of once per message. The relative order of messages
+     * that land on the same worker is preserved.
+     * <p>
+     * The buckets are the producer thread's {@link DispatchScratch}, and every distinct node of the batch is
+     * acquired, counted and checked for a handoff once, however many messages it routes.
+     *
+     * @param scratch   the scratch of the calling thread, see {@link #scratch(int)}
+     * @param hashcodes the hash codes of the keys, at least as many as messages
+     * @param values    the messages to publish
+     */
+    private void internalDispatchAll(DispatchScratch<T> scratch, int[] hashcodes, T[] values) {
+        int length = values.length;
+        RoutingTable<T> routingTable = this.routingTable;
+        scratch.begin(length, routingTable.size());
+        int[] owners = scratch.owners;
+        int[] nodeOwners = scratch.nodeOwners;
+        int[] nodeCounts = scratch.nodeCounts;
+        for (int i = 0; i < length; i++) {
+            int node = calculateIndex(hashcodes[i]);
+            int index = scratch.indexOf(node);
+            if (index < 0) {
+                index = scratch.add(node, routingTable.acquire(node).getIndex());
+            }
+            owners[i] = nodeOwners[index];
+            nodeCounts[index]++;
+        }
+
+        // read after acquiring the owners: every owner is already in the array
+        Worker<T>[] workers = this.workers;
+        int[] counts = scratch.counts(workers.length);
+        for (int i = 0; i < length; i++) counts[owners[i]]++;
+        int[] starts = scratch.starts;
+        for (int workerIdx = 0, start = 0; workerIdx < workers.length; workerIdx++) {
+            starts[workerIdx] = start;
+            start += counts[workerIdx];
+        }
+
+        T[] buckets = scratch.values;
+        int[] hashBuckets = scratch.hashcodes;
+        for (int i = 0; i < length; i++) {
+            int position = starts[owners[i]]++;
+            buckets[position] = values[i];
+            hashBuckets[position] = hashcodes[i];
+        }
+
+        try {
+            // every start now points at the end of its bucket
+            for (int workerIdx = 0; workerIdx < workers.length; workerIdx++) {
+                int count = counts[workerIdx];
+                if (count > 0) {
+                    workers[workerIdx].publish(hashBuckets, buckets, starts[workerIdx] - count, count);
+                }
+            }
+        } finally {
+            scratch.end(length);
+        }
+
+        // same guarantee as RoutingTable.release for nodes handed off while the batch was published; a drained
+        // worker is marked with a negative count
+        int[] nodes = scratch.nodes;
+        for (int index = 0; index < scratch.nodeCount; index++) {
+            int node = nodes[index];
+            int workerIdx = nodeOwners[index];
+            routingTable.onPublished(node, nodeCounts[index]);
+            if (counts[workerIdx] >= 0 && routingTable.isMoved(node, workerIdx)) {
+                workers[workerIdx].awaitDrained();
+                counts[workerIdx] = -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the reusable scratch of the calling thread, or a new one for a batch too large to be kept.
+     */
+    private DispatchScratch<T> scratch(int length) {
+        return length <= DispatchScratch.MAX_BATCH_SIZE ? scratches.get() : new DispatchScratch<>();
+    }
+
+    private static void checkBatch(int keys, int values) {
+        if (keys != values) {
+            throw new IllegalArgumentException(String.format("Keys length [%d] does not match values length [%d]", keys, values));
+        }
+    }
+
+    /**
+     * Dispatches a message using a {@code byte[]} key.
+     * A {@link KeyedHandler} receives a copy of the key, so the array may be reused once this method returns.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public void dispatch(byte[] key, T value) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), copiedKey(key), 0, value);
+    }
+
+    /**
+     * Dispatches a message using a {@code String} key.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public void dispatch(String key, T value) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), carriedKey(key), 0, value);
+    }
+
+    /**
+     * Dispatches a message using {@code length} bytes of {@code key} starting at {@code offset}.
+     * Routes like {@link #dispatch(byte[], Object)} of the same bytes. A {@link KeyedHandler} receives a copy of
+     * the range, so the array may be reused once this method returns.
+     *
+     * @param key    the array holding the key used for routing
+     * @param offset the index of the first key byte
+     * @param length the number of key bytes
+     * @param value  the message to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws IndexOutOfBoundsException     if the range is out of the array bounds
+     */
+    public void dispatch(byte[] key, int offset, int length, T value) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key, offset, length), copiedKey(key, offset, length), 0, value);
+    }
+
+    /**
+     * Dispatches a message using the remaining bytes of a heap or direct buffer as the key.
+     * The buffer's position and limit are left unchanged.
+     * Routes like {@link #dispatch(byte[], Object)} of the same bytes. A {@link KeyedHandler} receives a heap copy
+     * of the remaining bytes, so the buffer may be reused once this method returns.
+     *
+     * @param key   the buffer holding the key used for routing
+     * @param value the message to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public void dispatch(ByteBuffer key, T value) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), copiedKey(key), 0, value);
+    }
+
+    /**
+     * Dispatches a message using a {@code CharSequence} key, such as a {@code StringBuilder} or a view over
+     * a network buffer, without converting it to a {@code String}.
+     * Routes like {@link #dispatch(String, Object)} of the same characters. A {@link KeyedHandler} receives the
+     * characters as a {@code String}, so the sequence may be reused once this method returns.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public void dispatch(CharSequence key, T value) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), copiedKey(key), 0, value);
+    }
+
+    /**
+     * Dispatches a message using an {@code int} key.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public void dispatch(int key, T value) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value);
+    }
+
+    /**
+     * Dispatches a message using a {@code long} key.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public void dispatch(long key, T value) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value);
+    }
+
+    /**
+     * Dispatches a message using a {@code byte[]} key, to the target worker's priority channel if the priority is
+     * {@link Priority#HIGH}. See {@link Config.Builder#setPriorityLaneSize(int)}. A {@link KeyedHandler} receives a copy of the key, so the array may be reused once this method returns.
+     *
+     * @param key      the key used for routing
+     * @param value    the message to dispatch
+     * @param priority the priority of the message
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the priority is {@code HIGH} and priority dispatch is disabled
+     */
+    public void dispatch(byte[] key, T value, Priority priority) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), copiedKey(key), 0, value, priority);
+    }
+
+    /**
+     * Dispatches a message using a {@code String} key, to the target worker's priority channel if the priority is
+     * {@link Priority#HIGH}. See {@link Config.Builder#setPriorityLaneSize(int)}.
+     *
+     * @param key      the key used for routing
+     * @param value    the message to dispatch
+     * @param priority the priority of the message
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the priority is {@code HIGH} and priority dispatch is disabled
+     */
+    public void dispatch(String key, T value, Priority priority) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), carriedKey(key), 0, value, priority);
+    }
+
+    /**
+     * Dispatches a message using an {@code int} key, to the target worker's priority channel if the priority is
+     * {@link Priority#HIGH}. See {@link Config.Builder#setPriorityLaneSize(int)}.
+     *
+     * @param key      the key used for routing
+     * @param value    the message to dispatch
+     * @param priority the priority of the message
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the priority is {@code HIGH} and priority dispatch is disabled
+     */
+    public void dispatch(int key, T value, Priority priority) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value, priority);
+    }
+
+    /**
+     * Dispatches a message using a {@code long} key, to the target worker's priority channel if the priority is
+     * {@link Priority#HIGH}. See {@link Config.Builder#setPriorityLaneSize(int)}.
+     *
+     * @param key      the key used for routing
+     * @param value    the message to dispatch
+     * @param priority the priority of the message
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the priority is {@code HIGH} and priority dispatch is disabled
+     */
+    public void dispatch(long key, T value, Priority priority) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value, priority);
+    }
+
+    /**
+     * Dispatches a message using a {@code byte[]} key if the target worker's channel has room for it, without waiting
+     * and regardless of the overflow policy. A {@link KeyedHandler} receives a copy of the key, so the array may be reused once this method returns.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @return {@code true} if the message was dispatched, {@code false} if the channel is full
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean tryDispatch(byte[] key, T value) {
+        checkState();
+        return internalTryDispatch(hashCodeProvider.provide(key), copiedKey(key), 0, value);
+    }
+
+    /**
+     * Dispatches a message using a {@code String} key if the target worker's channel has room for it, without waiting
+     * and regardless of the overflow policy.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @return {@code true} if the message was dispatched, {@code false} if the channel is full
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean tryDispatch(String key, T value) {
+        checkState();
+        return internalTryDispatch(hashCodeProvider.provide(key), carriedKey(key), 0, value);
+    }
+
+    /**
+     * Dispatches a message using an {@code int} key if the target worker's channel has room for it, without waiting
+     * and regardless of the overflow policy.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @return {@code true} if the message was dispatched, {@code false} if the channel is full
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean tryDispatch(int key, T value) {
+        checkState();
+        return internalTryDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value);
+    }
+
+    /**
+     * Dispatches a message using a {@code long} key if the target worker's channel has room for it, without waiting
+     * and regardless of the overflow policy.
+     *
+     * @param key   the key used for routing
+     * @param value the message to dispatch
+     * @return {@code true} if the message was dispatched, {@code false} if the channel is full
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean tryDispatch(long key, T value) {
+        checkState();
+        return internalTryDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value);
+    }
+
+    /**
+     * Dispatches a message using a {@code byte[]} key, waiting at most {@code timeout} for room in the target worker's
+     * channel, regardless of the overflow policy. A {@link KeyedHandler} receives a copy of the key, so the array may be reused once this method returns.
+     *
+     * @param key     the key used for routing
+     * @param value   the message to dispatch
+     * @param timeout how long to wait for room
+     * @param unit    the unit of {@code timeout}
+     * @return {@code true} if the message was dispatched, {@code false} if the timeout elapsed first
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean dispatch(byte[] key, T value, long timeout, TimeUnit unit) {
+        checkState();
+        return internalDispatch(hashCodeProvider.provide(key), copiedKey(key), 0, value, timeout, unit);
+    }
+
+    /**
+     * Dispatches a message using a {@code String} key, waiting at most {@code timeout} for room in the target worker's
+     * channel, regardless of the overflow policy.
+     *
+     * @param key     the key used for routing
+     * @param value   the message to dispatch
+     * @param timeout how long to wait for room
+     * @param unit    the unit of {@code timeout}
+     * @return {@code true} if the message was dispatched, {@code false} if the timeout elapsed first
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean dispatch(String key, T value, long timeout, TimeUnit unit) {
+        checkState();
+        return internalDispatch(hashCodeProvider.provide(key), carriedKey(key), 0, value, timeout, unit);
+    }
+
+    /**
+     * Dispatches a message using an {@code int} key, waiting at most {@code timeout} for room in the target worker's
+     * channel, regardless of the overflow policy.
+     *
+     * @param key     the key used for routing
+     * @param value   the message to dispatch
+     * @param timeout how long to wait for room
+     * @param unit    the unit of {@code timeout}
+     * @return {@code true} if the message was dispatched, {@code false} if the timeout elapsed first
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean dispatch(int key, T value, long timeout, TimeUnit unit) {
+        checkState();
+        return internalDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value, timeout, unit);
+    }
+
+    /**
+     * Dispatches a message using a {@code long} key, waiting at most {@code timeout} for room in the target worker's
+     * channel, regardless of the overflow policy.
+     *
+     * @param key     the key used for routing
+     * @param value   the message to dispatch
+     * @param timeout how long to wait for room
+     * @param unit    the unit of {@code timeout}
+     * @return {@code true} if the message was dispatched, {@code false} if the timeout elapsed first
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     */
+    public boolean dispatch(long key, T value, long timeout, TimeUnit unit) {
+        checkState();
+        return internalDispatch(hashCodeProvider.provide(key), carriedKey(key), key, value, timeout, unit);
+    }
+
+    /**
+     * Claims the next preallocated event of the worker a {@code byte[]} key routes to, waiting for a free slot. Fill the event
+     * returned by {@link EventClaim#get()}, then publish it with {@link EventClaim#commit()}.
+     *
+     * @param key the key used for routing
+     * @return the claim of the calling thread
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
+     * @throws IllegalStateException         if the calling thread has not committed its previous claim
+     */
+    public EventClaim<T> claim(byte[] key) {
+        checkState();
+        return internalClaim(hashCodeProvider.provide(key));
+    }
+
+    /**
+     * Claims the next preallocated event of the worker a {@code String} key routes to, waiting for a free slot. Fill the event
+     * returned by {@link EventClaim#get()}, then publish it with {@link EventClaim#commit()}.
+     *
+     * @param key the key used for routing
+     * @return the claim of the calling thread
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
+     * @throws IllegalStateException         if the calling thread has not committed its previous claim
+     */
+    public EventClaim<T> claim(String key) {
+        checkState();
+        return internalClaim(hashCodeProvider.provide(key));
+    }
+
+    /**
+     * Claims the next preallocated event of the worker an {@code int} key routes to, waiting for a free slot. Fill the event
+     * returned by {@link EventClaim#get()}, then publish it with {@link EventClaim#commit()}.
+     *
+     * @param key the key used for routing
+     * @return the claim of the calling thread
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
+     * @throws IllegalStateException         if the calling thread has not committed its previous claim
+     */
+    public EventClaim<T> claim(int key) {
+        checkState();
+        return internalClaim(hashCodeProvider.provide(key));
+    }
+
+    /**
+     * Claims the next preallocated event of the worker a {@code long} key routes to, waiting for a free slot. Fill the event
+     * returned by {@link EventClaim#get()}, then publish it with {@link EventClaim#commit()}.
+     *
+     * @param key the key used for routing
+     * @return the claim of the calling thread
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
+     * @throws IllegalStateException         if the calling thread has not committed its previous claim
+     */
+    public EventClaim<T> claim(long key) {
+        checkState();
+        return internalClaim(hashCodeProvider.provide(key));
+    }
+
+    /**
+     * Dispatches a message using a {@code byte[]} key by filling the next preallocated event of the target worker with the
+     * translator, waiting for a free slot. The event is published even if the translator throws.
+     *
+     * @param key        the key used for routing
+     * @param translator fills the event from the argument
+     * @param arg        the argument passed to the translator
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
+     */
+    public <A> void dispatch(byte[] key, EventTranslator<T, A> translator, A arg) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), translator, arg);
+    }
 
+    /**
+     * Dispatches a message using a {@code String} key by filling the next preallocated event of the target worker with the
+     * translator, waiting for a free slot. The event is published even if the translator throws.
+     *
+     * @param key        the key used for routing
+     * @param translator fills the event from the argument
+     * @param arg        the argument passed to the translator
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
+     */
+    public <A> void dispatch(String key, EventTranslator<T, A> translator, A arg) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), translator, arg);
+    }
 
     /**
-     * Constructs a new AffinityDispatcher with the given parameters.
+     * Dispatches a message using an {@code int} key by filling the next preallocated event of the target worker with the
+     * translator, waiting for a free slot. The event is published even if the translator throws.
      *
-     * @param name             the name of the dispatcher
-     * @param handler          the data handler for each worker
-     * @param hashCodeProvider provider to compute hash codes from keys
-     * @param config           dispatcher configuration (worker count, buffer size, etc.)
+     * @param key        the key used for routing
+     * @param translator fills the event from the argument
+     * @param arg        the argument passed to the translator
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
      */
-    public AffinityDispatcher(String name, Handler<T> handler, HashCodeProvider hashCodeProvider, Config config) {
-        this.name = name;
-        this.workerCount = config.getWorkerCount();
-        this.nodesPerWorker = config.getRoutingNodePerWorker();
-        this.routingTableSize = (long) workerCount * nodesPerWorker;
-        this.hashCodeProvider = hashCodeProvider;
-        this.workers = new Worker[workerCount];
-        this.routingTable = new RoutingNode[(int) routingTableSize];
-        this.state = new AtomicInteger(NON_STARTED_STATE);
-        this.init(name, handler, config);
+    public <A> void dispatch(int key, EventTranslator<T, A> translator, A arg) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), translator, arg);
     }
 
-    private void init(String name, Handler<T> handler, Config config) {
-        WorkerFactory<T> workerFactory = new WorkerFactory<>(name, config.getWorkerThreadPriority(), config.getBatchSize(), handler);
+    /**
+     * Dispatches a message using a {@code long} key by filling the next preallocated event of the target worker with the
+     * translator, waiting for a free slot. The event is published even if the translator throws.
+     *
+     * @param key        the key used for routing
+     * @param translator fills the event from the argument
+     * @param arg        the argument passed to the translator
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher has no preallocated events
+     */
+    public <A> void dispatch(long key, EventTranslator<T, A> translator, A arg) {
+        checkState();
+        internalDispatch(hashCodeProvider.provide(key), translator, arg);
+    }
 
-        for (int i = 0; i < workerCount; i++) {
-            Channel<T> channel = ChannelFactory.createChannel(
-                    config.getChannelType(),
-                    config.getBufferSize(),
-                    config.getProducerWaitStrategyType(),
-                    config.getConsumerWaitStrategyType()
-            );
-            workers[i] = new Worker<>(workerFactory.createWorker(channel));
-        }
+    /**
+     * Dispatches a binary record using a {@code byte[]} key by copying {@code length} bytes of {@code record} starting at
+     * {@code offset} into the off-heap channel of the target worker, waiting for a free slot. The array can be reused
+     * as soon as the call returns.
+     *
+     * @param key    the key used for routing
+     * @param record the array holding the record
+     * @param offset the index of the first record byte
+     * @param length the number of record bytes
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
+     * @throws IndexOutOfBoundsException     if the range is out of the array bounds
+     */
+    public void dispatchRecord(byte[] key, byte[] record, int offset, int length) {
+        checkState();
+        internalDispatchRecord(hashCodeProvider.provide(key), record, offset, length);
+    }
 
-        for (int nodeIdx = 0; nodeIdx < nodesPerWorker; nodeIdx++) {
-            for (int workerIdx = 0; workerIdx < workerCount; workerIdx++) {
-                routingTable[nodeIdx * workerCount + workerIdx] = new RoutingNode<>(workers[workerIdx]);
-            }
-        }
+    /**
+     * Dispatches a binary record using a {@code byte[]} key by copying the remaining bytes of a heap or direct buffer into the
+     * off-heap channel of the target worker, waiting for a free slot. The buffer's position and limit are left
+     * unchanged, and it can be reused as soon as the call returns.
+     *
+     * @param key    the key used for routing
+     * @param record the buffer holding the record
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
+     */
+    public void dispatchRecord(byte[] key, ByteBuffer record) {
+        checkState();
+        internalDispatchRecord(hashCodeProvider.provide(key), record);
     }
 
-    private void checkState() {
-        if (state.getAcquire() != STARTED_STATE) {
-            throw new DispatcherTerminatedException(name);
-        }
+    /**
+     * Dispatches a binary record using a {@code String} key by copying {@code length} bytes of {@code record} starting at
+     * {@code offset} into the off-heap channel of the target worker, waiting for a free slot. The array can be reused
+     * as soon as the call returns.
+     *
+     * @param key    the key used for routing
+     * @param record the array holding the record
+     * @param offset the index of the first record byte
+     * @param length the number of record bytes
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
+     * @throws IndexOutOfBoundsException     if the range is out of the array bounds
+     */
+    public void dispatchRecord(String key, byte[] record, int offset, int length) {
+        checkState();
+        internalDispatchRecord(hashCodeProvider.provide(key), record, offset, length);
     }
 
     /**
-     * Calculates the routing table index for a given hash code using a multiply-high scaling algorithm.
+     * Dispatches a binary record using a {@code String} key by copying the remaining bytes of a heap or direct buffer into the
+     * off-heap channel of the target worker, waiting for a free slot. The buffer's position and limit are left
+     * unchanged, and it can be reused as soon as the call returns.
      *
-     * @param hashcode the hash code of the key
-     * @return the index into the routing table
+     * @param key    the key used for routing
+     * @param record the buffer holding the record
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
      */
-    private int calculateIndex(int hashcode) {
-        long absolute = hashcode & 0xFFFFFFFFL;
-        return (int) ((absolute * routingTableSize) >>> 32);
+    public void dispatchRecord(String key, ByteBuffer record) {
+        checkState();
+        internalDispatchRecord(hashCodeProvider.provide(key), record);
     }
 
     /**
-     * Publishes a message to the routing node corresponding to the given hash code.
+     * Dispatches a binary record using an {@code int} key by copying {@code length} bytes of {@code record} starting at
+     * {@code offset} into the off-heap channel of the target worker, waiting for a free slot. The array can be reused
+     * as soon as the call returns.
      *
-     * @param hashcode the hash code of the key
-     * @param value    the message to publish
+     * @param key    the key used for routing
+     * @param record the array holding the record
+     * @param offset the index of the first record byte
+     * @param length the number of record bytes
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
+     * @throws IndexOutOfBoundsException     if the range is out of the array bounds
      */
-    private void internalDispatch(int hashcode, T value) {
-        int index = calculateIndex(hashcode);
-        RoutingNode<T> node = routingTable[index];
-        node.publish(value);
+    public void dispatchRecord(int key, byte[] record, int offset, int length) {
+        checkState();
+        internalDispatchRecord(hashCodeProvider.provide(key), record, offset, length);
     }
 
     /**
-     * Dispatches a message using a {@code byte[]} key.
+     * Dispatches a binary record using an {@code int} key by copying the remaining bytes of a heap or direct buffer into the
+     * off-heap channel of the target worker, waiting for a free slot. The buffer's position and limit are left
+     * unchanged, and it can be reused as soon as the call returns.
      *
-     * @param key   the key used for routing
-     * @param value the message to dispatch
+     * @param key    the key used for routing
+     * @param record the buffer holding the record
      * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
      */
-    public void dispatch(byte[] key, T value) {
+    public void dispatchRecord(int key, ByteBuffer record) {
         checkState();
-        internalDispatch(hashCodeProvider.provide(key), value);
+        internalDispatchRecord(hashCodeProvider.provide(key), record);
     }
 
     /**
-     * Dispatches a message using a {@code String} key.
+     * Dispatches a binary record using a {@code long} key by copying {@code length} bytes of {@code record} starting at
+     * {@code offset} into the off-heap channel of the target worker, waiting for a free slot. The array can be reused
+     * as soon as the call returns.
      *
-     * @param key   the key used for routing
-     * @param value the message to dispatch
+     * @param key    the key used for routing
+     * @param record the array holding the record
+     * @param offset the index of the first record byte
+     * @param length the number of record bytes
      * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
+     * @throws IndexOutOfBoundsException     if the range is out of the array bounds
      */
-    public void dispatch(String key, T value) {
+    public void dispatchRecord(long key, byte[] record, int offset, int length) {
         checkState();
-        internalDispatch(hashCodeProvider.provide(key), value);
+        internalDispatchRecord(hashCodeProvider.provide(key), record, offset, length);
     }
 
     /**
-     * Dispatches a message using an {@code int} key.
+     * Dispatches a binary record using a {@code long} key by copying the remaining bytes of a heap or direct buffer into the
+     * off-heap channel of the target worker, waiting for a free slot. The buffer's position and limit are left
+     * unchanged, and it can be reused as soon as the call returns.
+     *
+     * @param key    the key used for routing
+     * @param record the buffer holding the record
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if the dispatcher was not created with {@link #withRecordHandler}
+     * @throws IllegalArgumentException      if the record is larger than {@link Config#getRecordSize()}
+     */
+    public void dispatchRecord(long key, ByteBuffer record) {
+        checkState();
+        internalDispatchRecord(hashCodeProvider.provide(key), record);
+    }
+
+    /**
+     * Dispatches a batch of messages using {@code byte[]} keys.
+     * {@code keys[i]} is used to route {@code values[i]}. A {@link KeyedHandler} receives copies of the keys, so the
+     * arrays may be reused once this method returns.
+     *
+     * @param keys   the keys used for routing
+     * @param values the messages to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws IllegalArgumentException      if the arrays differ in length
+     */
+    public void dispatchAll(byte[][] keys, T[] values) {
+        checkState();
+        checkBatch(keys.length, values.length);
+        if (keyType != KeyType.NONE) {
+            for (int i = 0; i < keys.length; i++) internalDispatch(hashCodeProvider.provide(keys[i]), copiedKey(keys[i]), 0, values[i]);
+            return;
+        }
+        DispatchScratch<T> scratch = scratch(keys.length);
+        int[] hashcodes = scratch.keyHashcodes(keys.length);
+        for (int i = 0; i < keys.length; i++) hashcodes[i] = hashCodeProvider.provide(keys[i]);
+        internalDispatchAll(scratch, hashcodes, values);
+    }
+
+    /**
+     * Dispatches a batch of messages using {@code String} keys.
+     * {@code keys[i]} is used to route {@code values[i]}.
+     *
+     * @param keys   the keys used for routing
+     * @param values the messages to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws IllegalArgumentException      if the arrays differ in length
+     */
+    public void dispatchAll(String[] keys, T[] values) {
+        checkState();
+        checkBatch(keys.length, values.length);
+        if (keyType != KeyType.NONE) {
+            for (int i = 0; i < keys.length; i++) internalDispatch(hashCodeProvider.provide(keys[i]), carriedKey(keys[i]), 0, values[i]);
+            return;
+        }
+        DispatchScratch<T> scratch = scratch(keys.length);
+        int[] hashcodes = scratch.keyHashcodes(keys.length);
+        for (int i = 0; i < keys.length; i++) hashcodes[i] = hashCodeProvider.provide(keys[i]);
+        internalDispatchAll(scratch, hashcodes, values);
+    }
+
+    /**
+     * Dispatches a batch of messages using {@code int} keys.
+     * {@code keys[i]} is used to route {@code values[i]}.
+     *
+     * @param keys   the keys used for routing
+     * @param values the messages to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws IllegalArgumentException      if the arrays differ in length
+     */
+    public void dispatchAll(int[] keys, T[] values) {
+        checkState();
+        checkBatch(keys.length, values.length);
+        if (keyType != KeyType.NONE) {
+            for (int i = 0; i < keys.length; i++) internalDispatch(hashCodeProvider.provide(keys[i]), carriedKey(keys[i]), keys[i], values[i]);
+            return;
+        }
+        DispatchScratch<T> scratch = scratch(keys.length);
+        int[] hashcodes = scratch.keyHashcodes(keys.length);
+        for (int i = 0; i < keys.length; i++) hashcodes[i] = hashCodeProvider.provide(keys[i]);
+        internalDispatchAll(scratch, hashcodes, values);
+    }
+
+    /**
+     * Dispatches a batch of messages using {@code long} keys.
+     * {@code keys[i]} is used to route {@code values[i]}.
+     *
+     * @param keys   the keys used for routing
+     * @param values the messages to dispatch
+     * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws IllegalArgumentException      if the arrays differ in length
+     */
+    public void dispatchAll(long[] keys, T[] values) {
+        checkState();
+        checkBatch(keys.length, values.length);
+        if (keyType != KeyType.NONE) {
+            for (int i = 0; i < keys.length; i++) internalDispatch(hashCodeProvider.provide(keys[i]), carriedKey(keys[i]), keys[i], values[i]);
+            return;
+        }
+        DispatchScratch<T> scratch = scratch(keys.length);
+        int[] hashcodes = scratch.keyHashcodes(keys.length);
+        for (int i = 0; i < keys.length; i++) hashcodes[i] = hashCodeProvider.provide(keys[i]);
+        internalDispatchAll(scratch, hashcodes, values);
+    }
+
+    /**
+     * Dispatches a message without a key to the shorter of two active workers' unordered lanes drawn at random,
+     * waiting for a free slot if it is full. Unordered messages are handled in no particular order, alongside keyed
+     * messages, which keep their affinity; with work stealing, idle workers take them from busy workers' lanes.
+     * See {@link Config.Builder#setUnorderedLaneSize(int)}.
      *
-     * @param key   the key used for routing
      * @param value the message to dispatch
      * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if unordered dispatch is disabled
      */
-    public void dispatch(int key, T value) {
+    public void dispatchUnordered(T value) {
         checkState();
-        internalDispatch(hashCodeProvider.provide(key), value);
+        checkUnordered();
+        int count = workerCount;
+        int index = unorderedLanes.choose(count);
+        workers[index].publishUnordered(value);
+        wakeThief(index, count);
     }
 
     /**
-     * Dispatches a message using a {@code long} key.
+     * Dispatches a message without a key, see {@link #dispatchUnordered(Object)}, if the chosen worker's unordered
+     * lane has room for it, without waiting.
      *
-     * @param key   the key used for routing
      * @param value the message to dispatch
+     * @return {@code true} if the message was dispatched, {@code false} if the lane is full
      * @throws DispatcherTerminatedException if the dispatcher is not started
+     * @throws UnsupportedOperationException if unordered dispatch is disabled
      */
-    public void dispatch(long key, T value) {
+    public boolean tryDispatchUnordered(T value) {
         checkState();
-        internalDispatch(hashCodeProvider.provide(key), value);
+        checkUnordered();
+        int count = workerCount;
+        int index = unorderedLanes.choose(count);
+        if (!workers[index].tryPublishUnordered(value)) {
+            return false;
+        }
+        wakeThief(index, count);
+        return true;
+    }
+
+    private void checkUnordered() {
+        if (unorderedLanes == null) {
+            throw new UnsupportedOperationException(String.format("Dispatcher [%s] has no unordered lanes", name));
+        }
+    }
+
+    /**
+     * Wakes up another active worker drawn at random when the lane just published to backs up, so that a parked
+     * worker steals from it. Workers that are awake steal on their own.
+     */
+    private void wakeThief(int owner, int count) {
+        if (!workStealing || count == 1) {
+            return;
+        }
+        Worker<T>[] workers = this.workers;
+        if (workers[owner].getUnorderedSize() > 1) {
+            int thief = ThreadLocalRandom.current().nextInt(count - 1);
+            workers[thief >= owner ? thief + 1 : thief].signal();
+        }
     }
 
     /**
@@ -148,18 +1487,415 @@ public final class AffinityDispatcher<T> {
      * This method must be called before dispatching messages.
      */
     public void start() {
-        if (state.compareAndSet(NON_STARTED_STATE, STARTED_STATE)) {
-            for (Worker<T> worker : workers) worker.start();
+        synchronized (lifecycleLock) {
+            if (state.getAcquire() == NON_STARTED_STATE) {
+                for (Worker<T> worker : workers) startWorker(worker);
+                // replayed messages must reach the channels before anything new is dispatched
+                if (journalSerializer != null) replayJournals();
+                state.setRelease(STARTED_STATE);
+                if (rebalancer != null) startRebalancer();
+                if (journalSerializer != null && config.getJournalFlushIntervalMs() > 0) startJournalFlusher();
+            }
+        }
+    }
+
+    /**
+     * Publishes the messages journaled by a previous run, before anything new is dispatched. Every journal found on
+     * disk is read, those of worker indexes this run does not have included, and every entry is routed by the hash
+     * code of its key through the current routing table, so that a key whose owner changed between the runs, because
+     * the worker count or the routing did, is still handled by a single worker, in journal order.
+     * <p>
+     * The entries are appended to the journals of their new owners first; only once those are forced to disk are
+     * the journals they were read from truncated, and those of removed workers deleted, so that a crash in between
+     * replays an entry twice rather than never. The entries are then published in the order they were appended.
+     */
+    private void replayJournals() {
+        Worker<T>[] workers = this.workers;
+        List<Journal<T>> orphans = openOrphanJournals(workers.length);
+        List<T> values = new ArrayList<>();
+        List<Integer> hashcodes = new ArrayList<>();
+        ObjIntConsumer<T> collector = (value, hashcode) -> {
+            values.add(value);
+            hashcodes.add(hashcode);
+        };
+        long[] marks = new long[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            Journal<T> journal = workers[i].getJournal();
+            journal.replay(collector);
+            marks[i] = journal.getNextIndex();
+        }
+        for (Journal<T> orphan : orphans) orphan.replay(collector);
+
+        int[] owners = new int[values.size()];
+        for (int i = 0; i < owners.length; i++) {
+            Worker<T> owner = routingTable.getOwner(calculateIndex(hashcodes.get(i)));
+            owner.getJournal().append(hashcodes.get(i), values.get(i));
+            owners[i] = owner.getIndex();
+        }
+        for (int i = 0; i < workers.length; i++) workers[i].getJournal().acknowledge(marks[i]);
+        for (Journal<T> orphan : orphans) orphan.delete();
+
+        for (int i = 0; i < owners.length; i++) workers[owners[i]].publishReplayed(values.get(i));
+        if (owners.length > 0) {
+            LOGGER.log(Level.INFO, "Dispatcher [{0}] replayed {1} journaled messages from {2} journals", new Object[]{name, owners.length, workers.length + orphans.size()});
+        }
+    }
+
+    private void startJournalFlusher() {
+        journalExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getJournalFlushIntervalMs();
+        journalExecutor.scheduleWithFixedDelay(this::flushJournals, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushJournals() {
+        try {
+            for (Worker<T> worker : workers) worker.getJournal().flush();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Dispatcher [%s] failed to flush journals", name), e);
+        }
+    }
+
+    private void startWorker(Worker<T> worker) {
+        worker.start();
+        if (jmxEnabled) {
+            MetricsRegistry.register(name, worker.getMetrics());
+        }
+    }
+
+    private void startRebalancer() {
+        rebalancerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getRebalanceIntervalMs();
+        rebalancerExecutor.scheduleWithFixedDelay(this::rebalance, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves routing nodes from overloaded to underloaded workers, see {@link Rebalancer}.
+     */
+    private void rebalance() {
+        try {
+            synchronized (lifecycleLock) {
+                if (state.getAcquire() == STARTED_STATE) {
+                    handoff(rebalancer.plan(routingTable, workers, workerCount, weights));
+                }
+            }
+        } catch (RuntimeException e) {
+            // a failed round must not cancel the following ones
+            LOGGER.log(Level.WARNING, String.format("Dispatcher [%s] failed to rebalance routing nodes", name), e);
         }
     }
 
     /**
      * Shuts down all workers and transitions the dispatcher state to TERMINATED.
+     * Workers stop right away; messages still waiting in their channels are not handled,
+     * see {@link #shutdown(Duration)} to drain them first.
      */
     public void shutdown() {
         if (state.compareAndSet(STARTED_STATE, TERMINATED_STATE)) {
-            for (Worker<T> worker : workers) worker.terminate();
+            synchronized (lifecycleLock) {
+                stopBackgroundTasks();
+                for (Worker<T> worker : workers) worker.terminate();
+                releaseWorkers();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting messages, lets every worker handle what is left in its channel and overflow queue at full
+     * batch speed, and waits for the workers to stop. Workers still busy when the deadline passes are stopped
+     * after their current batch and their remaining messages are reported as dropped; a worker stuck in its
+     * handler for longer than a short grace period is reported as it stands. Transitions the dispatcher state
+     * to TERMINATED.
+     * <p>
+     * Producers already past the state check when the shutdown starts may still publish; their messages are
+     * drained as long as they reach the channel before the worker found it empty.
+     * If the calling thread is interrupted, the remaining workers are stopped right away and the interrupt
+     * status is kept.
+     *
+     * @param drainDeadline how long to wait for the workers to drain
+     * @return the drained and dropped counts of every worker, empty if the dispatcher was not running
+     */
+    public ShutdownReport shutdown(Duration drainDeadline) {
+        long timeout = drainDeadline.compareTo(MAX_DRAIN_DEADLINE) < 0 ? Math.max(0, drainDeadline.toNanos()) : Long.MAX_VALUE;
+        if (!state.compareAndSet(STARTED_STATE, TERMINATED_STATE)) {
+            return ShutdownReport.EMPTY;
+        }
+        synchronized (lifecycleLock) {
+            stopBackgroundTasks();
+            Worker<T>[] workers = this.workers;
+            long[] handled = new long[workers.length];
+            for (int i = 0; i < workers.length; i++) {
+                handled[i] = workers[i].getMetrics().getHandled();
+                workers[i].drain();
+            }
+
+            boolean drained = true;
+            boolean interrupted = false;
+            long start = System.nanoTime();
+            for (Worker<T> worker : workers) {
+                try {
+                    drained &= worker.awaitTermination(interrupted ? 0 : timeout - (System.nanoTime() - start));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    drained = false;
+                }
+            }
+            if (!drained) {
+                // a stopped worker finishes its current batch first; give it a moment so the counts are final
+                for (Worker<T> worker : workers) worker.terminate();
+                long graceStart = System.nanoTime();
+                for (Worker<T> worker : workers) {
+                    try {
+                        worker.awaitTermination(interrupted ? 0 : TERMINATION_GRACE_NANOS - (System.nanoTime() - graceStart));
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+
+            Map<String, Long> drainedCounts = new HashMap<>(workers.length);
+            Map<String, Long> droppedCounts = new HashMap<>(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                long dropped = workers[i].getPendingCount();
+                drainedCounts.put(workers[i].getName(), workers[i].getMetrics().getHandled() - handled[i]);
+                droppedCounts.put(workers[i].getName(), dropped);
+                drained &= dropped == 0;
+            }
+            releaseWorkers();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            ShutdownReport report = new ShutdownReport(drainedCounts, droppedCounts, drained);
+            if (!drained) {
+                LOGGER.log(Level.WARNING, "Dispatcher [{0}] dropped {1} messages at shutdown", new Object[]{name, report.getDroppedCount()});
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Waits until every worker has stopped after {@link #shutdown()} or {@link #shutdown(Duration)}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return {@code true} if every worker has stopped, {@code false} if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        for (Worker<T> worker : workers) {
+            if (!worker.awaitTermination(nanos - (System.nanoTime() - start))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void stopBackgroundTasks() {
+        if (rebalancerExecutor != null) rebalancerExecutor.shutdownNow();
+        if (journalExecutor != null) journalExecutor.shutdownNow();
+    }
+
+    private void releaseWorkers() {
+        if (journalSerializer != null) flushJournals();
+        if (jmxEnabled) {
+            for (Worker<T> worker : workers) MetricsRegistry.unregister(name, worker.getMetrics());
+        }
+    }
+
+    /**
+     * Changes the number of active workers while the dispatcher keeps running.
+     * <p>
+     * The routing table keeps its size, so a key always maps to the same routing node; only the minimal set of
+     * nodes changes owner: when growing, surplus nodes of the existing workers move to the new ones, when
+     * shrinking, the nodes of the removed workers move to the remaining ones. Each moved node is handed off only
+     * after its previous owner has handled everything already published through it, so per-key ordering holds.
+     * Producers only wait on the nodes being moved; every other node keeps dispatching.
+     * <p>
+     * With a direct {@link RoutingStrategy}, keys are rehashed over the new worker count instead, which moves the
+     * fewest keys possible, and every producer waits until the previously active workers have handled what was
+     * published to them.
+     * <p>
+     * Removed workers stay as standby: they no longer own routing nodes, poll their channel rarely and are
+     * reused first when the dispatcher grows again. They are stopped by {@link #shutdown()}.
+     *
+     * @param newWorkerCount the new number of workers, in {@code [1, getRoutingTableSize()]}, or up to 32768
+     *                       with a direct routing strategy
+     * @throws IllegalArgumentException      if the worker count is out of range
+     * @throws DispatcherTerminatedException if the dispatcher has been terminated
+     */
+    public void resize(int newWorkerCount) {
+        long maxWorkerCount = config.getRoutingStrategy().isDirect() ? RoutingTable.MAX_WORKERS : Math.min(routingTableSize, RoutingTable.MAX_WORKERS);
+        if (newWorkerCount < 1 || newWorkerCount > maxWorkerCount) {
+            throw new IllegalArgumentException(String.format("Worker count [%d] must be within [1, %d]", newWorkerCount, maxWorkerCount));
+        }
+        synchronized (lifecycleLock) {
+            if (state.getAcquire() == TERMINATED_STATE) {
+                throw new DispatcherTerminatedException(name);
+            }
+            if (newWorkerCount == workerCount) {
+                return;
+            }
+
+            Worker<T>[] workers = this.workers;
+            if (newWorkerCount > workers.length) {
+                workers = Arrays.copyOf(workers, newWorkerCount);
+                for (int i = this.workers.length; i < newWorkerCount; i++) {
+                    workers[i] = createWorker(i);
+                    if (state.getAcquire() == STARTED_STATE) {
+                        startWorker(workers[i]);
+                    }
+                }
+                routingTable.setWorkers(workers);
+                this.workers = workers;
+                if (weights.length < newWorkerCount) {
+                    int weighed = weights.length;
+                    weights = Arrays.copyOf(weights, newWorkerCount);
+                    Arrays.fill(weights, weighed, newWorkerCount, 1.0);
+                }
+            }
+            for (int i = 0; i < newWorkerCount; i++) workers[i].setStandby(false);
+
+            if (config.getRoutingStrategy().isDirect()) {
+                rehash(workers, newWorkerCount);
+            } else {
+                handoff(planResize(workers, newWorkerCount));
+            }
+
+            for (int i = newWorkerCount; i < workers.length; i++) workers[i].setStandby(true);
+            this.workerCount = newWorkerCount;
+        }
+    }
+
+    /**
+     * Computes which nodes move where so that every active worker owns its share of the nodes, see
+     * {@link #nodeTargets(int)}, while moving as few nodes as possible.
+     *
+     * @return the indexes of the moved nodes, mapped to their new owner
+     */
+    private Map<Integer, Worker<T>> planResize(Worker<T>[] workers, int newWorkerCount) {
+        List<List<Integer>> owned = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) owned.add(new ArrayList<>());
+        for (int node = 0; node < routingTableSize; node++) owned.get(routingTable.getOwnerIndex(node)).add(node);
+
+        int[] targets = nodeTargets(newWorkerCount);
+
+        Deque<Integer> surplus = new ArrayDeque<>();
+        for (int i = 0; i < workers.length; i++) {
+            List<Integer> nodes = owned.get(i);
+            int target = i < newWorkerCount ? targets[i] : 0;
+            while (nodes.size() > target) surplus.add(nodes.remove(nodes.size() - 1));
+        }
+
+        Map<Integer, Worker<T>> moves = new HashMap<>();
+        for (int i = 0; i < newWorkerCount; i++) {
+            for (int owns = owned.get(i).size(); owns < targets[i]; owns++) moves.put(surplus.poll(), workers[i]);
+        }
+        return moves;
+    }
+
+    /**
+     * Splits the routing table between the first {@code count} workers in proportion to their weights, with the
+     * largest remainder method: every worker gets the whole part of its share, and the nodes left over go to the
+     * largest fractional parts, lower indexes first. With equal weights, every worker owns {@code size / count}
+     * nodes and the first {@code size % count} workers one more.
+     */
+    private int[] nodeTargets(int count) {
+        double total = 0;
+        for (int i = 0; i < count; i++) total += weights[i];
+
+        int[] targets = new int[count];
+        double[] fractions = new double[count];
+        long assigned = 0;
+        for (int i = 0; i < count; i++) {
+            double share = routingTableSize * weights[i] / total;
+            targets[i] = (int) share;
+            fractions[i] = share - targets[i];
+            assigned += targets[i];
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        // stable: equal fractions keep the lower index first
+        Arrays.sort(order, (a, b) -> Double.compare(fractions[b], fractions[a]));
+        for (int i = 0; assigned < routingTableSize; i++, assigned++) targets[order[i % count]]++;
+        return targets;
+    }
+
+    /**
+     * Changes the weight of a worker while the dispatcher keeps running: active workers own routing nodes in
+     * proportion to their weights, see {@link Config.Builder#setWorkerWeights(double...)}. The nodes that change
+     * owner are moved with the same ordered handoff as {@link #resize(int)}. The weight of a standby worker applies
+     * when it becomes active again.
+     *
+     * @param workerIndex the index of the worker, active or not
+     * @param weight      the new weight, positive
+     * @throws IndexOutOfBoundsException     if the worker does not exist
+     * @throws IllegalArgumentException      if the weight is not positive
+     * @throws UnsupportedOperationException if the routing strategy is not {@link RoutingStrategy#VIRTUAL_NODES}
+     * @throws DispatcherTerminatedException if the dispatcher has been terminated
+     */
+    public void setWorkerWeight(int workerIndex, double weight) {
+        if (config.getRoutingStrategy().isDirect()) {
+            throw new UnsupportedOperationException(String.format("Dispatcher [%s] can only weigh workers with the VIRTUAL_NODES routing strategy", name));
+        }
+        Objects.checkIndex(workerIndex, workers.length);
+        checkWeight(workerIndex, weight);
+        synchronized (lifecycleLock) {
+            if (state.getAcquire() == TERMINATED_STATE) {
+                throw new DispatcherTerminatedException(name);
+            }
+            weights[workerIndex] = weight;
+            if (workerIndex < workerCount) {
+                handoff(planResize(workers, workerCount));
+            }
+        }
+    }
+
+    /**
+     * Returns the weight of a worker, active or not.
+     *
+     * @param workerIndex the index of the worker
+     * @return the worker's weight, 1 unless configured or changed
+     */
+    public double getWorkerWeight(int workerIndex) {
+        Objects.checkIndex(workerIndex, workers.length);
+        synchronized (lifecycleLock) {
+            return weights[workerIndex];
+        }
+    }
+
+    /**
+     * Moves the given nodes to their new owners: producers of the moved nodes are held back until every
+     * previous owner has been drained, then released at once. Each previous owner is drained only once.
+     *
+     * @param moves the indexes of the nodes to move, mapped to their new owner
+     */
+    private void handoff(Map<Integer, Worker<T>> moves) {
+        Set<Worker<T>> previousOwners = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Integer, Worker<T>> move : moves.entrySet()) {
+            previousOwners.add(routingTable.beginHandoff(move.getKey(), move.getValue()));
         }
+        for (Worker<T> worker : previousOwners) worker.awaitDrained();
+        for (int node : moves.keySet()) routingTable.completeHandoff(node);
+    }
+
+    /**
+     * Routes keys over the new worker count with a direct routing strategy: producers are held back until every
+     * previously active worker has been drained, then released at once.
+     */
+    private void rehash(Worker<T>[] workers, int newWorkerCount) {
+        routingTable.beginRehash(newWorkerCount);
+        for (int i = 0; i < workerCount; i++) workers[i].awaitDrained();
+        routingTable.completeRehash();
     }
 
     /**
@@ -172,7 +1908,7 @@ public final class AffinityDispatcher<T> {
     }
 
     /**
-     * Returns the number of workers.
+     * Returns the number of active workers.
      *
      * @return worker count
      */
@@ -181,16 +1917,18 @@ public final class AffinityDispatcher<T> {
     }
 
     /**
-     * Returns the total routing table size.
+     * Returns the total routing table size, or the number of active workers with a direct {@link RoutingStrategy},
+     * which routes keys straight onto them.
      *
      * @return routing table size
      */
     public int getRoutingTableSize() {
-        return (int) routingTableSize;
+        return routingTable.size();
     }
 
     /**
-     * Returns the number of routing nodes per worker.
+     * Returns the configured number of routing nodes per worker.
+     * After {@link #resize(int)}, workers own {@code getRoutingTableSize() / getWorkerCount()} nodes, give or take one.
      *
      * @return nodes per worker
      */
@@ -204,11 +1942,54 @@ public final class AffinityDispatcher<T> {
      * @return a map from worker name to channel size
      */
     public Map<String, Long> getChannelSizes() {
+        Worker<T>[] workers = this.workers;
+        int workerCount = this.workerCount;
         Map<String, Long> result = new HashMap<>(workerCount);
-        for (Worker<T> worker : workers) {
-            result.put(worker.getName(), worker.getChannelSize());
+        for (int i = 0; i < workerCount; i++) {
+            result.put(workers[i].getName(), workers[i].getChannelSize());
         }
         return result;
     }
 
+    /**
+     * Returns the size of the given worker's internal channel without allocating.
+     *
+     * @param workerIndex index of the worker, in {@code [0, getWorkerCount())}, or above for a standby worker
+     * @return channel size
+     */
+    public long getChannelSize(int workerIndex) {
+        return workers[workerIndex].getChannelSize();
+    }
+
+    /**
+     * Copies the metrics of the given worker into a reusable snapshot without allocating.
+     *
+     * @param workerIndex index of the worker, in {@code [0, getWorkerCount())}, or above for a standby worker
+     * @param snapshot    the snapshot to overwrite
+     * @return the given snapshot
+     */
+    public WorkerMetricsSnapshot getMetrics(int workerIndex, WorkerMetricsSnapshot snapshot) {
+        return workers[workerIndex].getMetrics().snapshot(snapshot);
+    }
+
+    /**
+     * Returns the state owned by the given worker, for a dispatcher created with
+     * {@link #withState(String, StatefulHandler, Supplier, HashCodeProvider, Config)} or its keyed variants. The worker keeps using it:
+     * read it from other threads only through thread-safe views such as {@link LongStateMap#snapshot()}.
+     *
+     * @param workerIndex index of the worker, in {@code [0, getWorkerCount())}, or above for a standby worker
+     * @return the worker's state, {@code null} if the dispatcher has none
+     */
+    public <S> S getWorkerState(int workerIndex) {
+        return (S) workers[workerIndex].getState();
+    }
+
+    /**
+     * The kind of key the handler receives, which decides whether keys are carried to the workers and which
+     * {@code dispatch} overloads are accepted.
+     */
+    private enum KeyType {
+        NONE, OBJECT, INT, LONG
+    }
+
 }
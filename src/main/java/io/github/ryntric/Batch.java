@@ -0,0 +1,73 @@
+package io.github.ryntric;
+
+import java.util.Arrays;
+
+/**
+ * The messages a worker drained from its channel in one go, in dispatch order, see {@link BatchHandler}.
+ * <p>
+ * A batch is a view that the worker reuses for every drain: it is valid only during the
+ * {@link BatchHandler#handle(String, Batch)} call and is emptied right after it. Copy the messages that must
+ * outlive the call. Reading a batch with {@link #size()} and {@link #get(int)} does not allocate.
+ */
+public final class Batch<T> {
+    private final Object[] values;
+    private int size;
+
+    Batch(int capacity) {
+        this.values = new Object[capacity];
+    }
+
+    void add(T value) {
+        values[size++] = value;
+    }
+
+    boolean isFull() {
+        return size == values.length;
+    }
+
+    /**
+     * Drops the references to the messages so that they can be collected while the worker is idle.
+     */
+    void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the number of messages in the batch.
+     *
+     * @return batch size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the batch holds no message.
+     *
+     * @return {@code true} if the batch is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the message at the given position.
+     *
+     * @param index position in the batch, in {@code [0, size())}
+     * @return the message
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index [%d] out of batch size [%d]", index, size));
+        }
+        return (T) values[index];
+    }
+
+    @Override
+    public String toString() {
+        return "Batch{size=" + size + '}';
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.ryntric;
+
+/**
+ * Handler of the messages a worker drains in one go, for work that is cheaper per batch than per message,
+ * such as a multi-row insert or a single socket flush. Called on the worker thread with at most
+ * {@link Config#getBatchSize()} messages, never with an empty batch.
+ * <p>
+ * The messages count as handled once the call returns. When it throws, the {@link FailurePolicy} applies to the
+ * batch as a whole: {@code RETRY} handles the same batch again, and a batch given up on is passed to the
+ * {@link DeadLetterHandler} message by message.
+ */
+public interface BatchHandler<T> {
+    /**
+     * @param workerName the name of the worker
+     * @param batch      a reusable view of the drained messages, valid during the call only
+     */
+    void handle(String workerName, Batch<T> batch);
+}
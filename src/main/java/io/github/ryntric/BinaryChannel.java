@@ -0,0 +1,99 @@
+package io.github.ryntric;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ring of fixed-size binary records kept in a direct buffer, see {@link ChannelType#OFF_HEAP_SPSC} and
+ * {@link ChannelType#OFF_HEAP_MPSC}. Producers copy the bytes of a record into the claimed slot, and the worker
+ * hands the handler a {@link BinaryRecord} view over the slot, so messages never exist as heap objects and the
+ * channel takes a fixed amount of memory whatever the workers' lag.
+ * <p>
+ * A slot is an 8-byte header holding the record length followed by {@code recordSize} bytes rounded up to 8, so that
+ * records start 8-byte aligned. Every slot has a little-endian view of its own, created once: the producer that
+ * claimed a slot and the worker that takes it own the view in turn, so its position can be moved without locking.
+ * The memory is allocated once and released with the buffer once the channel is unreachable: workers may still read
+ * it after {@link #close()}.
+ */
+final class BinaryChannel extends SequencedChannel<BinaryRecord> {
+    private static final int HEADER_SIZE = Long.BYTES;
+
+    private final int recordSize;
+    private final ByteBuffer[] slots;
+    private final BinaryRecord record = new BinaryRecord();
+
+    BinaryChannel(RingCoordinator coordinator, RingSequencer sequencer, int size, int recordSize) {
+        super(coordinator, sequencer, size);
+        if (recordSize < 1) {
+            throw new IllegalArgumentException(String.format("Record size [%d] must be positive", recordSize));
+        }
+        this.recordSize = recordSize;
+        long slotSize = HEADER_SIZE + ((recordSize + 7L) & ~7L);
+        if (size * slotSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Buffer size [%d] of records of [%d] bytes exceeds 2 GiB", size, recordSize));
+        }
+        ByteBuffer memory = ByteBuffer.allocateDirect((int) (size * slotSize));
+        this.slots = new ByteBuffer[size];
+        for (int slot = 0; slot < size; slot++) {
+            memory.limit((int) ((slot + 1) * slotSize)).position((int) (slot * slotSize));
+            slots[slot] = memory.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Checks that a record fits in a slot, before anything is claimed or counted.
+     *
+     * @throws IllegalArgumentException if the record is larger than the record size
+     */
+    void checkLength(int length) {
+        if (length > recordSize) {
+            throw new IllegalArgumentException(String.format("Record length [%d] exceeds the record size [%d]", length, recordSize));
+        }
+    }
+
+    /**
+     * Copies a record into the next slot and publishes it, waiting for the worker to free a slot if the ring is
+     * full. The source is a {@code byte[]}, or a {@link ByteBuffer} whose remaining bytes are the record, with
+     * {@code offset} its position: the position is restored once the bytes are copied.
+     */
+    void pushRecord(Object source, int offset, int length) {
+        long sequence = sequencer.next(coordinator);
+        ByteBuffer slot = slots[slot(sequence)];
+        slot.putInt(0, length).position(HEADER_SIZE);
+        if (source instanceof byte[]) {
+            slot.put((byte[]) source, offset, length);
+        } else {
+            ByteBuffer buffer = (ByteBuffer) source;
+            slot.put(buffer);
+            buffer.position(offset);
+        }
+        sequencer.publish(sequence);
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    public void push(BinaryRecord value) {
+        throw new UnsupportedOperationException("Binary records are copied, not pushed");
+    }
+
+    @Override
+    public void push(BinaryRecord[] values, int offset, int count) {
+        throw new UnsupportedOperationException("Binary records are copied, not pushed");
+    }
+
+    @Override
+    public void push(Object key, long primitiveKey, BinaryRecord value) {
+        throw new UnsupportedOperationException("Binary records are copied, not pushed");
+    }
+
+    @Override
+    BinaryRecord take(int slot) {
+        ByteBuffer buffer = slots[slot];
+        record.wrap(buffer, HEADER_SIZE, buffer.getInt(0));
+        return record;
+    }
+}
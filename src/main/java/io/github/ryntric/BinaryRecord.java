@@ -0,0 +1,117 @@
+package io.github.ryntric;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Objects;
+
+/**
+ * Flyweight view over a binary record in the off-heap channel of a worker, see
+ * {@link AffinityDispatcher#withRecordHandler(String, Handler, HashCodeProvider, Config)}. Multi-byte values are
+ * read in little-endian order, whatever the platform.
+ * <p>
+ * The worker reuses a single view for every record it handles, and the record's slot is overwritten by producers
+ * once the worker has moved past it: the view is valid only during the {@link Handler#handle(String, Object)} call.
+ * Copy the bytes that must outlive the call. Reading a record does not allocate.
+ */
+public final class BinaryRecord {
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    BinaryRecord() {
+    }
+
+    /**
+     * Points the view at {@code length} bytes of a little-endian buffer starting at {@code offset}.
+     */
+    void wrap(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    private int at(int index, int size) {
+        Objects.checkFromIndexSize(index, size, length);
+        return offset + index;
+    }
+
+    /**
+     * Returns the number of bytes of the record.
+     *
+     * @return record length
+     */
+    public int length() {
+        return length;
+    }
+
+    public byte getByte(int index) {
+        return buffer.get(at(index, Byte.BYTES));
+    }
+
+    public short getShort(int index) {
+        return buffer.getShort(at(index, Short.BYTES));
+    }
+
+    public int getInt(int index) {
+        return buffer.getInt(at(index, Integer.BYTES));
+    }
+
+    public long getLong(int index) {
+        return buffer.getLong(at(index, Long.BYTES));
+    }
+
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(getLong(index));
+    }
+
+    /**
+     * Copies {@code length} bytes of the record starting at {@code index} into the array.
+     *
+     * @param index  the index of the first record byte
+     * @param dst    the destination array
+     * @param offset the index of the first destination byte
+     * @param length the number of bytes to copy
+     * @throws IndexOutOfBoundsException if either range is out of bounds
+     */
+    public void getBytes(int index, byte[] dst, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, dst.length);
+        buffer.position(at(index, length));
+        buffer.get(dst, offset, length);
+    }
+
+    /**
+     * Copies the bytes of the record starting at {@code index} into the remaining space of the buffer, and
+     * advances its position.
+     *
+     * @param index the index of the first record byte
+     * @param dst   the destination buffer, heap or direct
+     * @throws IndexOutOfBoundsException if the record has fewer bytes left than the buffer has room
+     * @throws ReadOnlyBufferException   if the buffer is read-only
+     */
+    public void getBytes(int index, ByteBuffer dst) {
+        int length = dst.remaining();
+        int start = at(index, length);
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        buffer.limit(start + length).position(start);
+        dst.put(buffer);
+        buffer.limit(buffer.capacity());
+    }
+
+    /**
+     * Copies the record into a new array.
+     *
+     * @return the bytes of the record
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length];
+        getBytes(0, bytes, 0, length);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryRecord{length=" + length + '}';
+    }
+}
@@ -1,8 +1,8 @@
 package io.github.ryntric;
 
 /**
- * Factory class for creating {@link Channel} instances.
- * Provides a simple static method to create channels of type SPSC (single-producer, single-consumer)
+ * Factory class for creating the {@link WorkerChannel} instances of workers.
+ * Provides simple static methods to create channels of type SPSC (single-producer, single-consumer)
  * or MPSC (multi-producer, single-consumer) with the desired buffer size and wait strategies for producers and consumers.
  */
 final class ChannelFactory {
@@ -10,16 +10,16 @@ final class ChannelFactory {
     }
 
     /**
-     * Creates a {@link Channel} of the specified type, size, and wait strategies.
+     * Creates a channel over a {@link Channel} of the specified type, size, and wait strategies.
      *
      * @param <T>                      the type of messages stored in the channel
      * @param type                     the channel type (SPSC or MPSC)
      * @param size                     the buffer size of the channel
      * @param producerWaitStrategyType the wait strategy for the producer
      * @param consumerWaitStrategyType the wait strategy for the consumer
-     * @return a new {@link Channel} instance
+     * @return a new {@link RingChannel} instance
      */
-    public static <T> Channel<T> createChannel(ChannelType type, int size, ProducerWaitStrategyType producerWaitStrategyType, ConsumerWaitStrategyType consumerWaitStrategyType) {
+    public static <T> WorkerChannel<T> createChannel(ChannelType type, int size, ProducerWaitStrategyType producerWaitStrategyType, ConsumerWaitStrategyType consumerWaitStrategyType) {
         Channel<T> channel = null;
         switch (type) {
             case SPSC: {
@@ -31,7 +31,76 @@ final class ChannelFactory {
                 break;
             }
         }
-        return channel;
+        return new RingChannel<>(channel);
+    }
+
+    /**
+     * Creates a {@link KeyedChannel} of the specified type, size, and wait strategies.
+     *
+     * @param <T>                      the type of messages stored in the channel
+     * @param type                     the channel type (SPSC or MPSC)
+     * @param size                     the buffer size of the channel, a power of two
+     * @param producerWaitStrategyType the wait strategy for the producer
+     * @param consumerWaitStrategyType the wait strategy for the consumer
+     * @return a new {@link KeyedChannel} instance
+     */
+    public static <T> KeyedChannel<T> createKeyedChannel(ChannelType type, int size, ProducerWaitStrategyType producerWaitStrategyType, ConsumerWaitStrategyType consumerWaitStrategyType) {
+        return new KeyedChannel<>(new RingCoordinator(producerWaitStrategyType, consumerWaitStrategyType), RingSequencer.create(type, size), size);
+    }
+
+    /**
+     * Creates an {@link EventChannel} of the specified type, size, and wait strategies, preallocated with events
+     * of the given factory.
+     *
+     * @param <T>                      the type of events stored in the channel
+     * @param type                     the channel type (SPSC or MPSC)
+     * @param size                     the buffer size of the channel, a power of two
+     * @param producerWaitStrategyType the wait strategy for the producer
+     * @param consumerWaitStrategyType the wait strategy for the consumer
+     * @param eventFactory             creates the event of every slot
+     * @return a new {@link EventChannel} instance
+     */
+    public static <T> EventChannel<T> createEventChannel(ChannelType type, int size, ProducerWaitStrategyType producerWaitStrategyType, ConsumerWaitStrategyType consumerWaitStrategyType,
+                                                         EventFactory<T> eventFactory) {
+        return new EventChannel<>(new RingCoordinator(producerWaitStrategyType, consumerWaitStrategyType), RingSequencer.create(type, size), size, eventFactory);
+    }
+
+    /**
+     * Creates a {@link BinaryChannel} of the specified type, size, and wait strategies.
+     *
+     * @param type                     the channel type (OFF_HEAP_SPSC or OFF_HEAP_MPSC)
+     * @param size                     the buffer size of the channel, a power of two
+     * @param recordSize               the maximum size of a record in bytes
+     * @param producerWaitStrategyType the wait strategy for the producer
+     * @param consumerWaitStrategyType the wait strategy for the consumer
+     * @return a new {@link BinaryChannel} instance
+     */
+    public static BinaryChannel createBinaryChannel(ChannelType type, int size, int recordSize, ProducerWaitStrategyType producerWaitStrategyType, ConsumerWaitStrategyType consumerWaitStrategyType) {
+        return new BinaryChannel(new RingCoordinator(producerWaitStrategyType, consumerWaitStrategyType), RingSequencer.create(type, size), size, recordSize);
+    }
+
+    /**
+     * Creates a {@link LaneChannel} with one SPSC lane per producer of the given lanes and a shared MPSC lane.
+     *
+     * @param <T>                      the type of messages stored in the channel
+     * @param size                     the buffer size of each lane, a power of two
+     * @param producerWaitStrategyType the wait strategy for the producers
+     * @param consumerWaitStrategyType the wait strategy for the consumer
+     * @param producerLanes            the lanes of the producer threads
+     * @param keyed                    whether the lanes carry keys, see {@link KeyedChannel}
+     * @return a new {@link LaneChannel} instance
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> LaneChannel<T> createLaneChannel(int size, ProducerWaitStrategyType producerWaitStrategyType, ConsumerWaitStrategyType consumerWaitStrategyType,
+                                                       ProducerLanes producerLanes, boolean keyed) {
+        RingCoordinator coordinator = new RingCoordinator(producerWaitStrategyType, consumerWaitStrategyType);
+        SequencedChannel<T>[] lanes = new SequencedChannel[producerLanes.getLaneCount()];
+        for (int i = 0; i < lanes.length; i++) {
+            // the last lane is the shared one
+            ChannelType type = i == lanes.length - 1 ? ChannelType.MPSC : ChannelType.SPSC;
+            lanes[i] = keyed ? new KeyedChannel<>(coordinator, RingSequencer.create(type, size), size) : new ValueChannel<>(coordinator, RingSequencer.create(type, size), size);
+        }
+        return new LaneChannel<>(coordinator, producerLanes, lanes);
     }
 
 }
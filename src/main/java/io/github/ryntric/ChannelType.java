@@ -4,9 +4,25 @@ package io.github.ryntric;
  * Defines the types of channels supported by the system.
  * {@code SPSC} — Single-Producer, Single-Consumer channel.
  * {@code MPSC} — Multi-Producer, Single-Consumer channel.
+ * {@code OFF_HEAP_SPSC}, {@code OFF_HEAP_MPSC} — the same, holding fixed-size binary records in native memory
+ * instead of message objects, see {@link AffinityDispatcher#withRecordHandler(String, Handler, HashCodeProvider, Config)}.
+ * {@code SHARDED_MPSC} — Multi-Producer, Single-Consumer channel made of one SPSC lane per producer thread, see
+ * {@link Config.Builder#setProducerLanes(int)}: producers never contend on a shared tail.
  * These types determine the internal concurrency model and
  * behavior of the channel when multiple threads are producing or consuming messages.
  */
 public enum ChannelType {
-    SPSC, MPSC
+    SPSC, MPSC, OFF_HEAP_SPSC, OFF_HEAP_MPSC, SHARDED_MPSC;
+
+    boolean isMultiProducer() {
+        return this == MPSC || this == OFF_HEAP_MPSC || this == SHARDED_MPSC;
+    }
+
+    boolean isOffHeap() {
+        return this == OFF_HEAP_SPSC || this == OFF_HEAP_MPSC;
+    }
+
+    boolean isSharded() {
+        return this == SHARDED_MPSC;
+    }
 }
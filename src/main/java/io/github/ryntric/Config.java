@@ -1,5 +1,6 @@
 package io.github.ryntric;
 
+import java.nio.file.Path;
 
 /**
  * Configuration class for the dispatcher system.
@@ -16,6 +17,14 @@ public final class Config {
      * Number of routing nodes per worker (default: 400)
      */
     private int routingNodePerWorker = 400;
+    /**
+     * How key hash codes are mapped to workers (default: VIRTUAL_NODES)
+     */
+    private RoutingStrategy routingStrategy = RoutingStrategy.VIRTUAL_NODES;
+    /**
+     * Relative capacity of every worker, scaling the share of routing nodes it owns (default: null, all equal)
+     */
+    private double[] workerWeights;
     /**
      * Size of the internal channel buffer (default: 4096)
      */
@@ -24,6 +33,10 @@ public final class Config {
      * Batch size for processing messages (default: 2048)
      */
     private int batchSize = 2048;
+    /**
+     * Whether workers run on platform or virtual threads (default: PLATFORM_THREAD)
+     */
+    private WorkerMode workerMode = WorkerMode.PLATFORM_THREAD;
     /**
      * Worker thread priority (default: Thread.NORM_PRIORITY)
      */
@@ -32,6 +45,14 @@ public final class Config {
      * Channel type for message passing (default: SPSC)
      */
     private ChannelType channelType = ChannelType.SPSC;
+    /**
+     * Maximum size in bytes of a record in an off-heap channel (default: 256)
+     */
+    private int recordSize = 256;
+    /**
+     * Number of producer threads with their own lane in a sharded channel (default: available processors)
+     */
+    private int producerLanes = Utils.getAvailableProcessorsCount();
     /**
      * Producer wait strategy type (default: SPINNING)
      */
@@ -40,6 +61,82 @@ public final class Config {
      * Consumer wait strategy type (default: BLOCKING)
      */
     private ConsumerWaitStrategyType consumerWaitStrategyType = ConsumerWaitStrategyType.BLOCKING;
+    /**
+     * Whether workers wait for messages adaptively instead of with the consumer wait strategy (default: false)
+     */
+    private boolean adaptiveWaitEnabled = false;
+    /**
+     * Capacity of every worker's lane of unordered messages (default: 0, no lane)
+     */
+    private int unorderedLaneSize = 0;
+    /**
+     * Whether idle workers steal unordered messages from the lanes of busy ones (default: false)
+     */
+    private boolean workStealingEnabled = false;
+    /**
+     * Capacity of every worker's channel of high-priority messages (default: 0, no priority channel)
+     */
+    private int priorityLaneSize = 0;
+    /**
+     * Number of high-priority batches a worker handles in a row while normal messages wait (default: 8)
+     */
+    private int priorityStarvationLimit = 8;
+    /**
+     * What dispatch does when a worker's channel is full (default: BLOCK)
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    /**
+     * Capacity of each worker's overflow queue with the SPILL and DROP_OLDEST policies (default: 65536)
+     */
+    private int overflowQueueCapacity = 65536;
+    /**
+     * What a worker does with a message its handler throws on (default: LOG_AND_SKIP)
+     */
+    private FailurePolicy failurePolicy = FailurePolicy.LOG_AND_SKIP;
+    /**
+     * Number of attempts at handling a message with the RETRY policy, the first one included (default: 3)
+     */
+    private int failureRetryAttempts = 3;
+    /**
+     * Receiver of the messages given up on, required by the DEAD_LETTER policy (default: null)
+     */
+    private DeadLetterHandler<?> deadLetterHandler = null;
+    /**
+     * Directory of the per-worker write-ahead journals, null disables journaling (default: null)
+     */
+    private Path journalDirectory = null;
+    /**
+     * Size of a journal segment file in bytes (default: 64 MiB)
+     */
+    private int journalSegmentSize = 64 << 20;
+    /**
+     * Interval between two forces of the journals to disk in milliseconds, 0 leaves it to the OS (default: 10)
+     */
+    private long journalFlushIntervalMs = 10;
+    /**
+     * CPU affinity plan for worker threads (default: none)
+     */
+    private CpuAffinity cpuAffinity = CpuAffinity.none();
+    /**
+     * Whether enqueue-to-handle latency is estimated with a single probe into a histogram (default: false)
+     */
+    private boolean latencyTrackingEnabled = false;
+    /**
+     * Whether worker metrics are exposed as JMX MBeans (default: false)
+     */
+    private boolean jmxEnabled = false;
+    /**
+     * Interval between two load rebalancing rounds in milliseconds, 0 disables rebalancing (default: 0)
+     */
+    private long rebalanceIntervalMs = 0;
+    /**
+     * Load above the mean, as a fraction of it, that triggers rebalancing (default: 0.2)
+     */
+    private double rebalanceThreshold = 0.2;
+    /**
+     * Maximum number of routing nodes moved per rebalancing round (default: 16)
+     */
+    private int rebalanceMaxMoves = 16;
 
     private Config() {
     }
@@ -71,6 +168,24 @@ public final class Config {
         return routingNodePerWorker;
     }
 
+    /**
+     * Returns how key hash codes are mapped to workers.
+     *
+     * @return routing strategy
+     */
+    public RoutingStrategy getRoutingStrategy() {
+        return routingStrategy;
+    }
+
+    /**
+     * Returns the configured relative capacity of every worker, by worker index.
+     *
+     * @return a copy of the worker weights, {@code null} if all workers weigh the same
+     */
+    public double[] getWorkerWeights() {
+        return workerWeights != null ? workerWeights.clone() : null;
+    }
+
     /**
      * Returns the configured channel buffer size.
      *
@@ -89,6 +204,15 @@ public final class Config {
         return batchSize;
     }
 
+    /**
+     * Returns the configured worker mode.
+     *
+     * @return worker mode
+     */
+    public WorkerMode getWorkerMode() {
+        return workerMode;
+    }
+
     /**
      * Returns the configured worker thread priority.
      *
@@ -107,6 +231,24 @@ public final class Config {
         return channelType;
     }
 
+    /**
+     * Returns the configured maximum record size of off-heap channels.
+     *
+     * @return record size in bytes
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns the configured number of producer lanes of sharded channels.
+     *
+     * @return producer lane count
+     */
+    public int getProducerLanes() {
+        return producerLanes;
+    }
+
     /**
      * Returns the configured producer wait strategy type.
      *
@@ -125,6 +267,177 @@ public final class Config {
         return consumerWaitStrategyType;
     }
 
+    /**
+     * Returns whether workers wait for messages adaptively, spinning, then yielding, then parking.
+     *
+     * @return {@code true} if adaptive waiting is enabled
+     */
+    public boolean isAdaptiveWaitEnabled() {
+        return adaptiveWaitEnabled;
+    }
+
+    /**
+     * Returns the capacity of every worker's lane of unordered messages.
+     *
+     * @return unordered lane size, 0 if unordered dispatch is disabled
+     */
+    public int getUnorderedLaneSize() {
+        return unorderedLaneSize;
+    }
+
+    /**
+     * Returns whether idle workers steal unordered messages from the lanes of busy ones.
+     *
+     * @return {@code true} if work stealing is enabled
+     */
+    public boolean isWorkStealingEnabled() {
+        return workStealingEnabled;
+    }
+
+    /**
+     * Returns the capacity of every worker's channel of high-priority messages.
+     *
+     * @return priority lane size, 0 if priority dispatch is disabled
+     */
+    public int getPriorityLaneSize() {
+        return priorityLaneSize;
+    }
+
+    /**
+     * Returns the number of high-priority batches a worker handles in a row while normal messages wait.
+     *
+     * @return priority starvation limit
+     */
+    public int getPriorityStarvationLimit() {
+        return priorityStarvationLimit;
+    }
+
+    /**
+     * Returns the configured overflow policy.
+     *
+     * @return overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the configured capacity of each worker's overflow queue.
+     *
+     * @return overflow queue capacity
+     */
+    public int getOverflowQueueCapacity() {
+        return overflowQueueCapacity;
+    }
+
+    /**
+     * Returns the configured failure policy.
+     *
+     * @return failure policy
+     */
+    public FailurePolicy getFailurePolicy() {
+        return failurePolicy;
+    }
+
+    /**
+     * Returns the number of attempts at handling a message with the {@link FailurePolicy#RETRY} policy.
+     *
+     * @return retry attempts, the first one included
+     */
+    public int getFailureRetryAttempts() {
+        return failureRetryAttempts;
+    }
+
+    /**
+     * Returns the configured dead-letter handler.
+     *
+     * @return dead-letter handler, {@code null} if none
+     */
+    public DeadLetterHandler<?> getDeadLetterHandler() {
+        return deadLetterHandler;
+    }
+
+    /**
+     * Returns the configured directory of the write-ahead journals.
+     *
+     * @return journal directory, {@code null} if journaling is disabled
+     */
+    public Path getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    /**
+     * Returns the configured size of a journal segment file.
+     *
+     * @return segment size in bytes
+     */
+    public int getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+
+    /**
+     * Returns the interval between two forces of the journals to disk.
+     *
+     * @return flush interval in milliseconds, 0 if flushing is left to the OS
+     */
+    public long getJournalFlushIntervalMs() {
+        return journalFlushIntervalMs;
+    }
+
+    /**
+     * Returns the configured CPU affinity plan for worker threads.
+     *
+     * @return cpu affinity plan
+     */
+    public CpuAffinity getCpuAffinity() {
+        return cpuAffinity;
+    }
+
+    /**
+     * Returns whether enqueue-to-handle latency is estimated with a single probe into a histogram.
+     *
+     * @return {@code true} if latency tracking is enabled
+     */
+    public boolean isLatencyTrackingEnabled() {
+        return latencyTrackingEnabled;
+    }
+
+    /**
+     * Returns whether worker metrics are exposed as JMX MBeans.
+     *
+     * @return {@code true} if JMX is enabled
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * Returns the interval between two load rebalancing rounds.
+     *
+     * @return rebalance interval in milliseconds, 0 if rebalancing is disabled
+     */
+    public long getRebalanceIntervalMs() {
+        return rebalanceIntervalMs;
+    }
+
+    /**
+     * Returns the load above the mean, as a fraction of it, that triggers rebalancing.
+     *
+     * @return rebalance threshold
+     */
+    public double getRebalanceThreshold() {
+        return rebalanceThreshold;
+    }
+
+    /**
+     * Returns the maximum number of routing nodes moved per rebalancing round.
+     *
+     * @return maximum moves per round
+     */
+    public int getRebalanceMaxMoves() {
+        return rebalanceMaxMoves;
+    }
+
     /**
      * Builder for {@link Config}.
      * Allows fluent configuration of dispatcher parameters.
@@ -153,6 +466,33 @@ public final class Config {
             return this;
         }
 
+        /**
+         * Sets how key hash codes are mapped to workers. Routing nodes per worker only apply to
+         * {@link RoutingStrategy#VIRTUAL_NODES}, and rebalancing requires it.
+         *
+         * @param routingStrategy the routing strategy
+         * @return the builder
+         */
+        public Builder setRoutingStrategy(RoutingStrategy routingStrategy) {
+            Config.this.routingStrategy = routingStrategy;
+            return this;
+        }
+
+        /**
+         * Sets the relative capacity of every worker, by worker index: active workers own routing nodes in
+         * proportion to their weights, so a worker on an efficiency core or an SMT sibling can be given a smaller
+         * share. Workers without a weight, including those added by {@code resize}, weigh 1. Requires
+         * {@link RoutingStrategy#VIRTUAL_NODES}. Weights can be changed at runtime with
+         * {@link AffinityDispatcher#setWorkerWeight(int, double)}.
+         *
+         * @param workerWeights positive weights, e.g. 1.0 for full cores and 0.6 for efficiency cores
+         * @return the builder
+         */
+        public Builder setWorkerWeights(double... workerWeights) {
+            Config.this.workerWeights = workerWeights != null ? workerWeights.clone() : null;
+            return this;
+        }
+
         /**
          * Sets the internal channel buffer size.
          *
@@ -175,6 +515,19 @@ public final class Config {
             return this;
         }
 
+        /**
+         * Sets whether workers run on platform or virtual threads. In {@link WorkerMode#VIRTUAL_THREAD} mode idle
+         * workers park until a message is published to them, so the consumer wait strategy, the CPU affinity plan
+         * and the thread priority are ignored. Virtual threads require Java 21 or later.
+         *
+         * @param workerMode worker mode
+         * @return the builder
+         */
+        public Builder setWorkerMode(WorkerMode workerMode) {
+            Config.this.workerMode = workerMode;
+            return this;
+        }
+
         /**
          * Sets the worker thread priority.
          *
@@ -189,7 +542,7 @@ public final class Config {
         /**
          * Sets the channel type.
          *
-         * @param channelType type of channel (SPSC or MPSC)
+         * @param channelType type of channel (SPSC or MPSC, on or off the heap, or sharded MPSC)
          * @return the builder
          */
         public Builder setChannelType(ChannelType channelType) {
@@ -197,6 +550,33 @@ public final class Config {
             return this;
         }
 
+        /**
+         * Sets the maximum size of a record in an off-heap channel. Every slot of the channel reserves this many
+         * bytes, so a worker's channel takes about {@code bufferSize * recordSize} bytes of native memory.
+         *
+         * @param recordSize record size in bytes
+         * @return the builder
+         */
+        public Builder setRecordSize(int recordSize) {
+            Config.this.recordSize = recordSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of producer lanes of a {@link ChannelType#SHARDED_MPSC} channel. A thread dispatching for
+         * the first time gets its own SPSC lane into every worker while fewer than {@code producerLanes} live threads
+         * hold one, and keeps it until it terminates, when the lane goes to the next new thread; any other thread
+         * publishes to one lane shared by all of them. A worker's channel holds
+         * {@code producerLanes + 1} lanes of {@code bufferSize} slots each.
+         *
+         * @param producerLanes producer lane count
+         * @return the builder
+         */
+        public Builder setProducerLanes(int producerLanes) {
+            Config.this.producerLanes = producerLanes;
+            return this;
+        }
+
         /**
          * Sets the producer wait strategy type.
          *
@@ -219,6 +599,241 @@ public final class Config {
             return this;
         }
 
+        /**
+         * Enables adaptive waiting, which replaces the consumer wait strategy: a worker with an empty channel
+         * spins, then yields, then parks until a producer wakes it up. The spin and yield budgets follow the
+         * average time the worker has recently waited for a message, so it spins through the short gaps of a
+         * busy period and parks right away when traffic is sparse. Producers pay a fence per publish to check
+         * whether the worker is parked. The time spent in each phase is part of the worker metrics.
+         *
+         * @param adaptiveWaitEnabled whether workers wait adaptively
+         * @return the builder
+         */
+        public Builder setAdaptiveWaitEnabled(boolean adaptiveWaitEnabled) {
+            Config.this.adaptiveWaitEnabled = adaptiveWaitEnabled;
+            return this;
+        }
+
+        /**
+         * Gives every worker a lane of the given capacity for messages without ordering requirement, dispatched
+         * with {@link AffinityDispatcher#dispatchUnordered(Object)}. A worker alternates between batches of its
+         * channel and of its lane, and parks while both are empty, as with adaptive waiting. Not supported with
+         * keyed handlers, preallocated events, binary records or journaling.
+         *
+         * @param unorderedLaneSize the lane capacity, a power of two, or 0 to disable unordered dispatch
+         * @return the builder
+         */
+        public Builder setUnorderedLaneSize(int unorderedLaneSize) {
+            Config.this.unorderedLaneSize = unorderedLaneSize;
+            return this;
+        }
+
+        /**
+         * Enables work stealing: a worker with nothing left to handle takes a batch of unordered messages from the
+         * fullest lane of the other workers before waiting, and producers wake a parked worker up when the lane
+         * they publish to backs up. Keyed messages keep their affinity. Requires
+         * {@link #setUnorderedLaneSize(int)}.
+         *
+         * @param workStealingEnabled whether idle workers steal unordered messages
+         * @return the builder
+         */
+        public Builder setWorkStealingEnabled(boolean workStealingEnabled) {
+            Config.this.workStealingEnabled = workStealingEnabled;
+            return this;
+        }
+
+        /**
+         * Gives every worker a second channel of the given capacity for messages dispatched with
+         * {@link Priority#HIGH}, such as control messages that must not wait behind the data. A worker empties it
+         * before taking the next batch of its normal channel, see {@link #setPriorityStarvationLimit(int)}, and
+         * parks while both are empty, as with adaptive waiting. Keys keep their order within a priority, not across
+         * priorities. High-priority dispatch waits for a free slot whatever the overflow policy. Not supported with
+         * preallocated events, binary records or journaling.
+         *
+         * @param priorityLaneSize the priority channel capacity, a power of two, or 0 to disable priority dispatch
+         * @return the builder
+         */
+        public Builder setPriorityLaneSize(int priorityLaneSize) {
+            Config.this.priorityLaneSize = priorityLaneSize;
+            return this;
+        }
+
+        /**
+         * Sets how many high-priority batches a worker handles in a row while normal messages wait, after which it
+         * handles one normal batch, so that a flood of high-priority messages slows normal ones down without
+         * starving them.
+         *
+         * @param priorityStarvationLimit the number of batches, at least 1
+         * @return the builder
+         */
+        public Builder setPriorityStarvationLimit(int priorityStarvationLimit) {
+            Config.this.priorityStarvationLimit = priorityStarvationLimit;
+            return this;
+        }
+
+        /**
+         * Sets what dispatch does when a worker's channel is full.
+         *
+         * @param overflowPolicy overflow policy
+         * @return the builder
+         */
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            Config.this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the capacity of each worker's overflow queue, used by the SPILL and DROP_OLDEST policies.
+         *
+         * @param overflowQueueCapacity overflow queue capacity
+         * @return the builder
+         */
+        public Builder setOverflowQueueCapacity(int overflowQueueCapacity) {
+            Config.this.overflowQueueCapacity = overflowQueueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets what a worker does with a message its handler throws on.
+         *
+         * @param failurePolicy failure policy
+         * @return the builder
+         */
+        public Builder setFailurePolicy(FailurePolicy failurePolicy) {
+            Config.this.failurePolicy = failurePolicy;
+            return this;
+        }
+
+        /**
+         * Sets the number of attempts at handling a message with the {@link FailurePolicy#RETRY} policy.
+         * Attempts are made right away, one after the other, on the worker thread.
+         *
+         * @param failureRetryAttempts retry attempts, the first one included
+         * @return the builder
+         */
+        public Builder setFailureRetryAttempts(int failureRetryAttempts) {
+            Config.this.failureRetryAttempts = failureRetryAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the receiver of the messages given up on. Its message type must match the dispatcher's.
+         *
+         * @param deadLetterHandler dead-letter handler, {@code null} for none
+         * @return the builder
+         */
+        public Builder setDeadLetterHandler(DeadLetterHandler<?> deadLetterHandler) {
+            Config.this.deadLetterHandler = deadLetterHandler;
+            return this;
+        }
+
+        /**
+         * Enables a write-ahead journal per worker under the given directory. Every dispatched message is appended
+         * to the journal of its worker before being published, and messages left unhandled by a crash are replayed
+         * on {@link AffinityDispatcher#start()}, routed by their keys to the workers owning them in the new run,
+         * even if the worker count changed. Requires a {@link JournalSerializer}, see
+         * {@link AffinityDispatcher#AffinityDispatcher(String, Handler, HashCodeProvider, Config, JournalSerializer)}.
+         *
+         * @param journalDirectory journal directory, {@code null} to disable journaling
+         * @return the builder
+         */
+        public Builder setJournalDirectory(Path journalDirectory) {
+            Config.this.journalDirectory = journalDirectory;
+            return this;
+        }
+
+        /**
+         * Sets the size of a journal segment file. A single message must fit in a segment.
+         *
+         * @param journalSegmentSize segment size in bytes
+         * @return the builder
+         */
+        public Builder setJournalSegmentSize(int journalSegmentSize) {
+            Config.this.journalSegmentSize = journalSegmentSize;
+            return this;
+        }
+
+        /**
+         * Sets the interval between two forces of the journals to disk. Messages are in the OS page cache as soon
+         * as they are appended, which survives a crash of the JVM; forcing protects them against a crash of the
+         * machine and commits everything appended during the interval with a single fsync.
+         *
+         * @param journalFlushIntervalMs flush interval in milliseconds, 0 to leave flushing to the OS
+         * @return the builder
+         */
+        public Builder setJournalFlushIntervalMs(long journalFlushIntervalMs) {
+            Config.this.journalFlushIntervalMs = journalFlushIntervalMs;
+            return this;
+        }
+
+        /**
+         * Sets the CPU affinity plan for worker threads. A worker that cannot be pinned runs unpinned; see
+         * {@link WorkerMetricsSnapshot#getPinnedCpu()}.
+         *
+         * @param cpuAffinity cpu affinity plan
+         * @return the builder
+         */
+        public Builder setCpuAffinity(CpuAffinity cpuAffinity) {
+            Config.this.cpuAffinity = cpuAffinity;
+            return this;
+        }
+
+        /**
+         * Enables the estimate of enqueue-to-handle latency in a per-worker histogram, fed by one probe in flight at
+         * a time rather than by every message, see {@link WorkerMetricsSnapshot#getQueueWaitEstimate(double)}.
+         *
+         * @param latencyTrackingEnabled whether latency is tracked
+         * @return the builder
+         */
+        public Builder setLatencyTrackingEnabled(boolean latencyTrackingEnabled) {
+            Config.this.latencyTrackingEnabled = latencyTrackingEnabled;
+            return this;
+        }
+
+        /**
+         * Enables registration of worker metrics as JMX MBeans while the dispatcher is running.
+         *
+         * @param jmxEnabled whether JMX is enabled
+         * @return the builder
+         */
+        public Builder setJmxEnabled(boolean jmxEnabled) {
+            Config.this.jmxEnabled = jmxEnabled;
+            return this;
+        }
+
+        /**
+         * Enables background rebalancing of routing nodes between workers, based on the publish rate of every node.
+         *
+         * @param rebalanceIntervalMs interval between two rounds in milliseconds, 0 to disable
+         * @return the builder
+         */
+        public Builder setRebalanceIntervalMs(long rebalanceIntervalMs) {
+            Config.this.rebalanceIntervalMs = rebalanceIntervalMs;
+            return this;
+        }
+
+        /**
+         * Sets the load above the mean, as a fraction of it, that triggers rebalancing.
+         *
+         * @param rebalanceThreshold rebalance threshold, e.g. 0.2 for 20% above the mean
+         * @return the builder
+         */
+        public Builder setRebalanceThreshold(double rebalanceThreshold) {
+            Config.this.rebalanceThreshold = rebalanceThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of routing nodes moved per rebalancing round.
+         *
+         * @param rebalanceMaxMoves maximum moves per round
+         * @return the builder
+         */
+        public Builder setRebalanceMaxMoves(int rebalanceMaxMoves) {
+            Config.this.rebalanceMaxMoves = rebalanceMaxMoves;
+            return this;
+        }
+
         /**
          * Builds and returns the configured {@link Config} instance.
          *
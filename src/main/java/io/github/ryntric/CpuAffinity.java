@@ -0,0 +1,140 @@
+package io.github.ryntric;
+
+import java.util.Arrays;
+
+/**
+ * CPU affinity plan for worker threads.
+ * <p>
+ * Each worker thread pins itself to one CPU of the plan when it starts, so the state of the keys routed
+ * to it stays in that core's caches instead of following the thread across migrations.
+ * Workers are assigned to the CPUs of the plan in order, wrapping around when there are more workers than CPUs.
+ * The CPUs are resolved against the current topology whenever a worker is created, so workers added by a resize
+ * take the CPUs following those of the existing workers.
+ * <p>
+ * Pinning is only supported on Linux. On other systems, or when pinning fails, workers run unpinned: the CPU a
+ * worker was planned on and the one it is pinned to are reported by {@link WorkerMetricsSnapshot#getPlannedCpu()}
+ * and {@link WorkerMetricsSnapshot#getPinnedCpu()}.
+ */
+public final class CpuAffinity {
+    private static final int UNPINNED = -1;
+
+    private enum Kind {
+        NONE, CORES, SKIP_FIRST_CORE, PHYSICAL_CORES, ISOLATED_CORES
+    }
+
+    private static final CpuAffinity NONE = new CpuAffinity(Kind.NONE, new int[0]);
+    private static final CpuAffinity SKIP_FIRST_CORE = new CpuAffinity(Kind.SKIP_FIRST_CORE, new int[0]);
+    private static final CpuAffinity PHYSICAL_CORES = new CpuAffinity(Kind.PHYSICAL_CORES, new int[0]);
+    private static final CpuAffinity ISOLATED_CORES = new CpuAffinity(Kind.ISOLATED_CORES, new int[0]);
+
+    private final Kind kind;
+    private final int[] cores;
+
+    private CpuAffinity(Kind kind, int[] cores) {
+        this.kind = kind;
+        this.cores = cores;
+    }
+
+    /**
+     * Workers are not pinned and the OS schedules them freely. This is the default.
+     *
+     * @return the plan
+     */
+    public static CpuAffinity none() {
+        return NONE;
+    }
+
+    /**
+     * Pins worker {@code i} to {@code cores[i % cores.length]}.
+     *
+     * @param cores the CPU ids to use, in worker order
+     * @return the plan
+     */
+    public static CpuAffinity cores(int... cores) {
+        if (cores.length == 0) {
+            throw new IllegalArgumentException("At least one core must be specified");
+        }
+        for (int core : cores) {
+            if (core < 0) {
+                throw new IllegalArgumentException(String.format("Invalid core id [%d]", core));
+            }
+        }
+        return new CpuAffinity(Kind.CORES, cores.clone());
+    }
+
+    /**
+     * Uses every online CPU except CPU 0, which usually takes most of the interrupt and housekeeping load.
+     *
+     * @return the plan
+     */
+    public static CpuAffinity skipFirstCore() {
+        return SKIP_FIRST_CORE;
+    }
+
+    /**
+     * Uses one hardware thread per physical core, so that no two workers share a core through SMT.
+     *
+     * @return the plan
+     */
+    public static CpuAffinity onePerPhysicalCore() {
+        return PHYSICAL_CORES;
+    }
+
+    /**
+     * Uses the CPUs isolated from the scheduler with the {@code isolcpus} kernel parameter.
+     * Workers run unpinned when no CPU is isolated.
+     *
+     * @return the plan
+     */
+    public static CpuAffinity isolatedCores() {
+        return ISOLATED_CORES;
+    }
+
+    /**
+     * Resolves the CPU of a worker against the topology of the running system.
+     *
+     * @param workerIndex index of the worker
+     * @return the CPU id of the worker, {@code -1} meaning unpinned
+     */
+    int resolve(int workerIndex) {
+        return resolve(workerIndex, CpuTopology.SYSTEM);
+    }
+
+    /**
+     * Resolves the CPU of a worker against the given topology.
+     *
+     * @param workerIndex index of the worker
+     * @param topology    the topology to pick the CPUs from
+     * @return the CPU id of the worker, {@code -1} meaning unpinned
+     */
+    int resolve(int workerIndex, CpuTopology topology) {
+        int[] candidates;
+        switch (kind) {
+            case CORES: {
+                candidates = cores;
+                break;
+            }
+            case SKIP_FIRST_CORE: {
+                candidates = Arrays.stream(topology.onlineCpus()).filter(cpu -> cpu != 0).toArray();
+                break;
+            }
+            case PHYSICAL_CORES: {
+                candidates = topology.physicalCoreCpus();
+                break;
+            }
+            case ISOLATED_CORES: {
+                candidates = topology.isolatedCpus();
+                break;
+            }
+            default: {
+                candidates = new int[0];
+            }
+        }
+        return candidates.length == 0 ? UNPINNED : candidates[workerIndex % candidates.length];
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.CORES ? kind + Arrays.toString(cores) : kind.toString();
+    }
+}
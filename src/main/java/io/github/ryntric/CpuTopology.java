@@ -0,0 +1,78 @@
+package io.github.ryntric;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the CPU topology exposed by Linux under {@code /sys/devices/system/cpu}, or under another root laid out
+ * the same way.
+ * Every method returns an empty array when the information is not available.
+ */
+final class CpuTopology {
+    /**
+     * The topology of the running system.
+     */
+    static final CpuTopology SYSTEM = new CpuTopology(Paths.get("/sys/devices/system/cpu"));
+
+    private final Path root;
+
+    /**
+     * @param root the directory holding the {@code online} and {@code isolated} cpu lists and a {@code cpu<N>}
+     *             directory per CPU
+     */
+    CpuTopology(Path root) {
+        this.root = root;
+    }
+
+    int[] onlineCpus() {
+        return parseCpuList(read(root.resolve("online")));
+    }
+
+    int[] isolatedCpus() {
+        return parseCpuList(read(root.resolve("isolated")));
+    }
+
+    /**
+     * Returns the lowest numbered online CPU of every physical core.
+     */
+    int[] physicalCoreCpus() {
+        Set<String> cores = new HashSet<>();
+        return IntStream.of(onlineCpus())
+                .filter(cpu -> {
+                    Path topology = root.resolve("cpu" + cpu).resolve("topology");
+                    String pkg = read(topology.resolve("physical_package_id"));
+                    String core = read(topology.resolve("core_id"));
+                    return pkg.isEmpty() || core.isEmpty() || cores.add(pkg + ':' + core);
+                })
+                .toArray();
+    }
+
+    /**
+     * Parses the kernel cpu list format, e.g. {@code 0-3,8,10-11}.
+     */
+    static int[] parseCpuList(String list) {
+        IntStream.Builder builder = IntStream.builder();
+        for (String range : list.trim().split(",")) {
+            if (range.isEmpty()) continue;
+            int dash = range.indexOf('-');
+            int from = Integer.parseInt(range.substring(0, dash < 0 ? range.length() : dash).trim());
+            int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1).trim());
+            for (int cpu = from; cpu <= to; cpu++) builder.add(cpu);
+        }
+        return builder.build().toArray();
+    }
+
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.US_ASCII).trim();
+        } catch (IOException | SecurityException e) {
+            return "";
+        }
+    }
+}
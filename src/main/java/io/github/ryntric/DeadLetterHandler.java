@@ -0,0 +1,8 @@
+package io.github.ryntric;
+
+/**
+ * Receives the messages a worker gave up on, see {@link FailurePolicy}. Called on the worker thread.
+ */
+public interface DeadLetterHandler<T> {
+    void handle(String workerName, T value, Throwable cause);
+}
@@ -1,7 +1,9 @@
 package io.github.ryntric;
 
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Default implementation of {@link HashCodeProvider}.
@@ -14,6 +16,9 @@ import java.util.Arrays;
  * This normalization technique is similar to the one used in
  * {@link java.util.HashMap} to reduce collisions caused by
  * poorly distributed higher-order bits.
+ * <p>
+ * The in-place variants compute the same polynomial hashes as {@link String#hashCode()} and
+ * {@link Arrays#hashCode(byte[])} without copying the key.
  */
 public final class DefaultHashCodeProvider implements HashCodeProvider {
     public static final DefaultHashCodeProvider INSTANCE = new DefaultHashCodeProvider();
@@ -43,4 +48,38 @@ public final class DefaultHashCodeProvider implements HashCodeProvider {
     public int provide(byte[] key) {
         return normalize(Arrays.hashCode(key));
     }
+
+    @Override
+    public int provide(CharSequence key) {
+        if (key instanceof String) {
+            return provide((String) key);
+        }
+        int hashcode = 0;
+        for (int i = 0, length = key.length(); i < length; i++) {
+            hashcode = 31 * hashcode + key.charAt(i);
+        }
+        return normalize(hashcode);
+    }
+
+    @Override
+    public int provide(byte[] key, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, key.length);
+        int hashcode = 1;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hashcode = 31 * hashcode + key[i];
+        }
+        return normalize(hashcode);
+    }
+
+    @Override
+    public int provide(ByteBuffer key) {
+        if (key.hasArray()) {
+            return provide(key.array(), key.arrayOffset() + key.position(), key.remaining());
+        }
+        int hashcode = 1;
+        for (int i = key.position(), limit = key.limit(); i < limit; i++) {
+            hashcode = 31 * hashcode + key.get(i);
+        }
+        return normalize(hashcode);
+    }
 }
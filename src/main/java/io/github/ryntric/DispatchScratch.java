@@ -0,0 +1,153 @@
+package io.github.ryntric;
+
+import java.util.Arrays;
+
+/**
+ * The arrays a producer thread groups a batch of {@code dispatchAll} into per worker buckets with, reused for each
+ * of its batches so that dispatching a batch allocates nothing once they have grown to the batch and worker counts.
+ * <p>
+ * The buckets lie back to back in {@link #values} and {@link #hashcodes}: the bucket of worker {@code w} starts at
+ * {@code starts[w]} and holds {@code counts[w]} messages, in dispatch order. Every distinct node of the batch is
+ * acquired once, through a memo of the nodes seen in the current batch, stamped with the batch number so that it is
+ * never cleared.
+ */
+final class DispatchScratch<T> {
+    /**
+     * Batches larger than this get scratch arrays of their own, so that one large batch does not pin its arrays
+     * to the thread for good.
+     */
+    static final int MAX_BATCH_SIZE = 1 << 16;
+
+    /**
+     * The hash codes of the keys of the batch, in dispatch order.
+     */
+    int[] keyHashcodes;
+    T[] values;
+    int[] hashcodes;
+    /**
+     * The owner of each message of the batch, in dispatch order.
+     */
+    int[] owners;
+    int[] counts;
+    int[] starts;
+    /**
+     * The distinct nodes of the batch, with their owners and message counts.
+     */
+    int[] nodes;
+    int[] nodeOwners;
+    int[] nodeCounts;
+    int nodeCount;
+
+    private int[] memoNodes;
+    private int[] memoIndexes;
+    private int[] memoStamps;
+    private int stamp;
+
+    DispatchScratch() {
+        this.keyHashcodes = new int[16];
+        this.values = newValues(16);
+        this.hashcodes = new int[16];
+        this.owners = new int[16];
+        this.nodes = new int[16];
+        this.nodeOwners = new int[16];
+        this.nodeCounts = new int[16];
+        this.counts = new int[0];
+        this.starts = new int[0];
+        this.memoNodes = new int[1];
+        this.memoIndexes = new int[1];
+        this.memoStamps = new int[1];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newValues(int length) {
+        return (T[]) new Object[length];
+    }
+
+    private static int capacityFor(int length) {
+        return length <= 1 ? 1 : Integer.highestOneBit(length - 1) << 1;
+    }
+
+    /**
+     * Returns an array for the hash codes of {@code length} keys.
+     */
+    int[] keyHashcodes(int length) {
+        if (keyHashcodes.length < length) {
+            keyHashcodes = new int[capacityFor(length)];
+        }
+        return keyHashcodes;
+    }
+
+    /**
+     * Prepares the arrays for a batch of {@code length} messages routed over {@code nodeCount} nodes, and starts a
+     * new batch of the node memo.
+     */
+    void begin(int length, int nodeCount) {
+        if (values.length < length) {
+            int capacity = capacityFor(length);
+            values = newValues(capacity);
+            hashcodes = new int[capacity];
+            owners = new int[capacity];
+            nodes = new int[capacity];
+            nodeOwners = new int[capacity];
+            nodeCounts = new int[capacity];
+        }
+        // a batch has at most as many distinct nodes as messages: a memo twice that size keeps collisions rare
+        int memoSize = (int) Math.min(nodeCount, 2L * length);
+        if (memoNodes.length < memoSize) {
+            int capacity = capacityFor(memoSize);
+            memoNodes = new int[capacity];
+            memoIndexes = new int[capacity];
+            memoStamps = new int[capacity];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(memoStamps, 0);
+            stamp = 1;
+        }
+        this.nodeCount = 0;
+    }
+
+    /**
+     * Returns the bucket sizes of {@code workerCount} workers, all zero.
+     */
+    int[] counts(int workerCount) {
+        if (counts.length < workerCount) {
+            counts = new int[workerCount];
+            starts = new int[workerCount];
+        } else {
+            Arrays.fill(counts, 0, workerCount, 0);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the index of the node in {@link #nodes} if it has been seen in the current batch, {@code -1} otherwise.
+     * Nodes colliding in the memo are acquired again, which is only slower.
+     */
+    int indexOf(int node) {
+        int slot = node & (memoNodes.length - 1);
+        return memoStamps[slot] == stamp && memoNodes[slot] == node ? memoIndexes[slot] : -1;
+    }
+
+    /**
+     * Records a node of the batch along with its owner, and returns its index in {@link #nodes}.
+     */
+    int add(int node, int owner) {
+        int index = nodeCount++;
+        nodes[index] = node;
+        nodeOwners[index] = owner;
+        nodeCounts[index] = 0;
+        int slot = node & (memoNodes.length - 1);
+        memoNodes[slot] = node;
+        memoIndexes[slot] = index;
+        memoStamps[slot] = stamp;
+        return index;
+    }
+
+    /**
+     * Drops the references to the messages of the batch.
+     */
+    void end(int length) {
+        Arrays.fill(values, 0, length, null);
+    }
+}
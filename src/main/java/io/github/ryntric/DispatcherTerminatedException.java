@@ -1,6 +1,8 @@
 package io.github.ryntric;
 
 public final class DispatcherTerminatedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
     public DispatcherTerminatedException(String name) {
         super(String.format("Dispatcher [%s] has been terminated", name));
     }
@@ -0,0 +1,68 @@
+package io.github.ryntric;
+
+/**
+ * Ring of preallocated, mutable events, see {@link EventFactory}: every slot holds an event created once by the
+ * factory, which producers claim with {@link #next()}, fill in place and publish with {@link #publish(long)}, so
+ * that dispatching allocates nothing. The worker hands the events to the handler as they are and never clears them:
+ * a slot is overwritten by the next claim of the same slot once the worker has moved past it.
+ * <p>
+ * Messages cannot be pushed: the ring would end up holding the producers' objects instead of its own events.
+ */
+final class EventChannel<T> extends SequencedChannel<T> {
+    private final Object[] events;
+
+    EventChannel(RingCoordinator coordinator, RingSequencer sequencer, int size, EventFactory<T> factory) {
+        super(coordinator, sequencer, size);
+        this.events = new Object[size];
+        for (int slot = 0; slot < size; slot++) {
+            events[slot] = factory.newInstance();
+        }
+    }
+
+    /**
+     * Claims the next slot, waiting for the worker to free one if the ring is full.
+     *
+     * @return the sequence of the claimed slot
+     */
+    long next() {
+        return sequencer.next(coordinator);
+    }
+
+    /**
+     * Returns the event of a claimed slot.
+     */
+    @SuppressWarnings("unchecked")
+    T get(long sequence) {
+        return (T) events[slot(sequence)];
+    }
+
+    /**
+     * Makes a claimed slot visible to the worker. Every claimed sequence must be published, or the worker stalls
+     * at it.
+     */
+    void publish(long sequence) {
+        sequencer.publish(sequence);
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    public void push(T value) {
+        throw new UnsupportedOperationException("Preallocated events are claimed, not pushed");
+    }
+
+    @Override
+    public void push(T[] values, int offset, int count) {
+        throw new UnsupportedOperationException("Preallocated events are claimed, not pushed");
+    }
+
+    @Override
+    public void push(Object key, long primitiveKey, T value) {
+        throw new UnsupportedOperationException("Preallocated events are claimed, not pushed");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    T take(int slot) {
+        return (T) events[slot];
+    }
+}
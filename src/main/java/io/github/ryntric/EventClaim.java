@@ -0,0 +1,62 @@
+package io.github.ryntric;
+
+/**
+ * A slot claimed with {@link AffinityDispatcher#claim(long)}: fill the event returned by {@link #get()} in place,
+ * then publish it with {@link #commit()}.
+ * <p>
+ * Every producer thread owns one claim per dispatcher, reused for each of its claims, so claiming allocates
+ * nothing. A thread has at most one pending claim and must commit it, even if filling the event fails: the worker
+ * cannot move past an uncommitted slot. While a claim is pending, producers of other keys routed to the same worker
+ * may already wait for it.
+ */
+public final class EventClaim<T> {
+    private RoutingTable<T> table;
+    private int node;
+    private Worker<T> worker;
+    private long sequence;
+
+    EventClaim() {
+    }
+
+    boolean isPending() {
+        return worker != null;
+    }
+
+    void begin(RoutingTable<T> table, int node, Worker<T> worker, long sequence) {
+        this.table = table;
+        this.node = node;
+        this.worker = worker;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the event of the claimed slot, holding what a previous message left in it.
+     *
+     * @return the event to fill
+     * @throws IllegalStateException if there is no pending claim
+     */
+    public T get() {
+        if (worker == null) {
+            throw new IllegalStateException("No pending claim");
+        }
+        return worker.getEvent(sequence);
+    }
+
+    /**
+     * Publishes the event to its worker. The event must not be touched afterwards.
+     *
+     * @throws IllegalStateException if there is no pending claim
+     */
+    public void commit() {
+        Worker<T> worker = this.worker;
+        if (worker == null) {
+            throw new IllegalStateException("No pending claim");
+        }
+        RoutingTable<T> table = this.table;
+        this.worker = null;
+        this.table = null;
+        worker.commit(sequence);
+        table.onPublished(node, 1);
+        table.release(node, worker);
+    }
+}
@@ -0,0 +1,10 @@
+package io.github.ryntric;
+
+/**
+ * Creates the mutable events that preallocate the channel slots of a dispatcher, see
+ * {@link AffinityDispatcher#withEventFactory(String, Handler, EventFactory, HashCodeProvider, Config)}.
+ * Called {@link Config#getBufferSize()} times per worker when the worker is created, never while dispatching.
+ */
+public interface EventFactory<T> {
+    T newInstance();
+}
@@ -0,0 +1,14 @@
+package io.github.ryntric;
+
+/**
+ * Fills a claimed preallocated event from an argument, see
+ * {@link AffinityDispatcher#dispatch(long, EventTranslator, Object)}. A non-capturing translator and a reused
+ * argument keep dispatching free of allocation.
+ */
+public interface EventTranslator<T, A> {
+    /**
+     * @param event the event of the claimed slot, holding what a previous message left in it
+     * @param arg   the argument passed to {@code dispatch}
+     */
+    void translateTo(T event, A arg);
+}
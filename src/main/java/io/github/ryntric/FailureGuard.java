@@ -0,0 +1,216 @@
+package io.github.ryntric;
+
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the handler of a worker and applies the {@link FailurePolicy} when it throws, so that the exception never
+ * unwinds the worker loop: neither the channel's drain loop nor {@link #endBatch()}, which the worker calls
+ * outside of it. Any {@link Throwable} goes through the policy, errors such as a {@link StackOverflowError} or an
+ * {@link AssertionError} included, except {@link VirtualMachineError}s, which are rethrown: the JVM may not be able
+ * to go on. The drain loop of a {@link Channel} catches and logs whatever its consumer throws, so the error is also
+ * kept and rethrown by {@link #rethrowFatal()} once the drain returns; the messages drained in between are not
+ * handled. With a {@link BatchHandler}, drained messages are collected into a reusable {@link Batch} and handled
+ * together by {@link #endBatch()}. Used by the worker thread only.
+ */
+final class FailureGuard<T> implements Consumer<T> {
+    private static final Logger LOGGER = Logger.getLogger(FailureGuard.class.getName());
+
+    private final String workerName;
+    private final Handler<T> handler;
+    private final BatchHandler<T> batchHandler;
+    private final Batch<T> batch;
+    private final FailurePolicy policy;
+    private final int attempts;
+    private final DeadLetterHandler<T> deadLetterHandler;
+    private final WorkerMetrics metrics;
+    private boolean handledSinceBatchEnd;
+    private boolean restartRequested;
+    private VirtualMachineError fatal;
+
+    /**
+     * @param handler           the per-message handler, {@code null} if {@code batchHandler} is set
+     * @param batchHandler      the batch handler, {@code null} if {@code handler} is set
+     * @param batchsize         the maximum number of messages drained in one go
+     * @param attempts          number of attempts with the {@link FailurePolicy#RETRY} policy, the first one included
+     * @param deadLetterHandler receiver of the messages given up on, {@code null} to log and skip them
+     */
+    FailureGuard(String workerName, Handler<T> handler, BatchHandler<T> batchHandler, int batchsize, FailurePolicy policy, int attempts, DeadLetterHandler<T> deadLetterHandler, WorkerMetrics metrics) {
+        this.workerName = workerName;
+        this.handler = handler;
+        this.batchHandler = batchHandler;
+        this.batch = batchHandler != null ? new Batch<>(batchsize) : null;
+        this.policy = policy;
+        this.attempts = attempts;
+        this.deadLetterHandler = policy == FailurePolicy.LOG_AND_SKIP ? null : deadLetterHandler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Handles a drained message, or adds it to the current batch with a batch handler.
+     */
+    @Override
+    public void accept(T value) {
+        if (fatal != null) {
+            return;
+        }
+        if (batch != null) {
+            // no drain hands over more than the batch size; were one to, the full batch is handled first rather
+            // than overflowing it outside of the failure policy
+            if (batch.isFull()) {
+                handleBatch();
+            }
+            batch.add(value);
+            return;
+        }
+        handledSinceBatchEnd = true;
+        try {
+            handler.handle(workerName, value);
+        } catch (Throwable e) {
+            rethrowIfFatal(e);
+            onFailure(value, e);
+        } finally {
+            metrics.onHandled();
+        }
+    }
+
+    /**
+     * Ends the current drain: hands the collected batch to the batch handler, or notifies the per-message
+     * handler with {@link Handler#onBatchEnd(String)} if it handled anything since the last call.
+     */
+    void endBatch() {
+        if (batch != null) {
+            if (!batch.isEmpty()) {
+                handleBatch();
+            }
+            return;
+        }
+        if (handledSinceBatchEnd) {
+            handledSinceBatchEnd = false;
+            try {
+                handler.onBatchEnd(workerName);
+            } catch (Throwable e) {
+                rethrowIfFatal(e);
+                onBatchEndFailure(e);
+            }
+        }
+    }
+
+    private void handleBatch() {
+        int size = batch.size();
+        try {
+            batchHandler.handle(workerName, batch);
+        } catch (Throwable e) {
+            rethrowIfFatal(e);
+            onBatchFailure(e);
+        } finally {
+            batch.clear();
+            metrics.onHandled(size);
+        }
+    }
+
+    private void rethrowIfFatal(Throwable failure) {
+        if (failure instanceof VirtualMachineError) {
+            fatal = (VirtualMachineError) failure;
+            throw fatal;
+        }
+    }
+
+    /**
+     * Rethrows the {@link VirtualMachineError} a handler threw during the last drain, if any.
+     */
+    void rethrowFatal() {
+        if (fatal != null) {
+            throw fatal;
+        }
+    }
+
+    private void onFailure(T value, Throwable failure) {
+        if (policy == FailurePolicy.RETRY) {
+            for (int attempt = 1; attempt < attempts; attempt++) {
+                metrics.onRetried();
+                try {
+                    handler.handle(workerName, value);
+                    return;
+                } catch (Throwable e) {
+                    rethrowIfFatal(e);
+                    failure = e;
+                }
+            }
+        }
+        metrics.onFailed(1);
+        restartRequested |= policy == FailurePolicy.RESTART;
+        if (deadLetterHandler == null) {
+            LOGGER.log(Level.WARNING, String.format("Worker [%s] failed to handle a message, skipping it", workerName), failure);
+            return;
+        }
+        deadLetter(value, failure);
+    }
+
+    private void onBatchFailure(Throwable failure) {
+        if (policy == FailurePolicy.RETRY) {
+            for (int attempt = 1; attempt < attempts; attempt++) {
+                metrics.onRetried();
+                try {
+                    batchHandler.handle(workerName, batch);
+                    return;
+                } catch (Throwable e) {
+                    rethrowIfFatal(e);
+                    failure = e;
+                }
+            }
+        }
+        metrics.onFailed(batch.size());
+        restartRequested |= policy == FailurePolicy.RESTART;
+        if (deadLetterHandler == null) {
+            LOGGER.log(Level.WARNING, String.format("Worker [%s] failed to handle a batch of %d messages, skipping it", workerName, batch.size()), failure);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            deadLetter(batch.get(i), failure);
+        }
+    }
+
+    /**
+     * Applies the policy to a failed {@link Handler#onBatchEnd(String)}: the messages of the batch are handled
+     * already, so there is nothing to skip or dead-letter, but the call is retried with {@code RETRY} and the
+     * thread replaced with {@code RESTART}.
+     */
+    private void onBatchEndFailure(Throwable failure) {
+        if (policy == FailurePolicy.RETRY) {
+            for (int attempt = 1; attempt < attempts; attempt++) {
+                metrics.onRetried();
+                try {
+                    handler.onBatchEnd(workerName);
+                    return;
+                } catch (Throwable e) {
+                    rethrowIfFatal(e);
+                    failure = e;
+                }
+            }
+        }
+        restartRequested |= policy == FailurePolicy.RESTART;
+        LOGGER.log(Level.WARNING, String.format("Worker [%s] failed to end a batch", workerName), failure);
+    }
+
+    private void deadLetter(T value, Throwable failure) {
+        try {
+            deadLetterHandler.handle(workerName, value, failure);
+            metrics.onDeadLettered();
+        } catch (Throwable e) {
+            rethrowIfFatal(e);
+            e.addSuppressed(failure);
+            LOGGER.log(Level.WARNING, String.format("Worker [%s] failed to dead-letter a message, skipping it", workerName), e);
+        }
+    }
+
+    /**
+     * Returns whether a failure asked for the worker thread to be replaced since the last call.
+     */
+    boolean takeRestartRequest() {
+        boolean requested = restartRequested;
+        restartRequested = false;
+        return requested;
+    }
+}
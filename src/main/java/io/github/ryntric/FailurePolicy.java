@@ -0,0 +1,21 @@
+package io.github.ryntric;
+
+/**
+ * Defines what a worker does with a message its handler throws on. The exception, or error other than a
+ * {@link VirtualMachineError}, never reaches the worker loop, so a failing message costs that message only, and
+ * the worker moves on to the next one. A failing {@link Handler#onBatchEnd(String)} is retried or restarts the
+ * worker thread alike, and logged otherwise.
+ * {@code LOG_AND_SKIP} — log the exception and skip the message.
+ * {@code RETRY} — handle the message again, up to {@link Config#getFailureRetryAttempts()} attempts in all,
+ * then give up on it.
+ * {@code DEAD_LETTER} — pass the message and the exception to the {@link DeadLetterHandler}.
+ * {@code RESTART} — give up on the message, then replace the worker thread with a new one consuming the same
+ * channel, for handlers that keep state on their thread.
+ * <p>
+ * {@code RETRY} and {@code RESTART} give up on a message like {@code DEAD_LETTER} if a dead-letter handler is
+ * configured, like {@code LOG_AND_SKIP} otherwise. Failures are counted in the worker's metrics; a given up
+ * message still counts as handled.
+ */
+public enum FailurePolicy {
+    LOG_AND_SKIP, RETRY, DEAD_LETTER, RESTART
+}
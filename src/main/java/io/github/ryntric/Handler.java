@@ -2,4 +2,13 @@ package io.github.ryntric;
 
 public interface Handler<T> {
     void handle(String workerName, T value);
+
+    /**
+     * Called on the worker thread after the messages of a drained batch have been handled, so that work such as
+     * a flush can be done once per batch. Not called when a drain finds no message.
+     *
+     * @param workerName the name of the worker
+     */
+    default void onBatchEnd(String workerName) {
+    }
 }
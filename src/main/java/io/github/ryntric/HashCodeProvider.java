@@ -1,10 +1,20 @@
 package io.github.ryntric;
 
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Strategy interface for computing hash codes from different types of keys.
  * Typical implementations may use simple wrappers around
  * {@link Object#hashCode()} or custom hashing algorithms optimized for specific use cases.
+ * <p>
+ * The in-place variants must return the same hash code as their materialized counterpart, so that a key routes
+ * to the same worker whichever way it is dispatched: {@link #provide(CharSequence)} as {@link #provide(String)}
+ * of the same characters, {@link #provide(byte[], int, int)} and {@link #provide(ByteBuffer)} as
+ * {@link #provide(byte[])} of the same bytes. Their default implementations copy the key; the bundled providers
+ * override them to read the key in place.
  */
 public interface HashCodeProvider {
 
@@ -15,4 +25,25 @@ public interface HashCodeProvider {
     int provide(long key);
 
     int provide(byte[] key);
+
+    default int provide(CharSequence key) {
+        return provide(key.toString());
+    }
+
+    /**
+     * Hashes {@code length} bytes of {@code key} starting at {@code offset}.
+     */
+    default int provide(byte[] key, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, key.length);
+        return provide(Arrays.copyOfRange(key, offset, offset + length));
+    }
+
+    /**
+     * Hashes the remaining bytes of {@code key}, between its position and limit, without moving the position.
+     */
+    default int provide(ByteBuffer key) {
+        byte[] bytes = new byte[key.remaining()];
+        key.duplicate().get(bytes);
+        return provide(bytes);
+    }
 }
@@ -0,0 +1,9 @@
+package io.github.ryntric;
+
+/**
+ * {@link KeyedHandler} of messages dispatched with {@code int} keys, which are carried unboxed, see
+ * {@link AffinityDispatcher#withIntKeyedHandler(String, IntKeyedHandler, HashCodeProvider, Config)}.
+ */
+public interface IntKeyedHandler<T> {
+    void handle(String workerName, int key, T value);
+}
@@ -0,0 +1,306 @@
+package io.github.ryntric;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of the messages published to one worker.
+ * <p>
+ * Records are appended to memory-mapped segment files named after the index of their first entry. A record is an
+ * 8-byte aligned header, holding the record size and a CRC32C of the payload, followed by the payload: the hash code
+ * of the message's key, so that a replayed entry can be routed by its key again, and the serialized message.
+ * The size is stored last, with release semantics, so a record torn by a crash reads as the end of the journal.
+ * Once written to the mapping, a record survives a crash of the JVM; {@link #flush()} forces the segment to disk,
+ * so that a single fsync commits every record appended since the previous flush.
+ * <p>
+ * Entries are appended in the order the worker handles them. The worker stores its handled count, offset by the
+ * entries already acknowledged when the journal was opened, into a mapped checkpoint after every batch, and
+ * {@link #replay(ObjIntConsumer)} hands back the entries past the checkpoint. Delivery across a crash is therefore
+ * at-least-once: entries handled after the last checkpoint are replayed. Replayed entries are appended again by
+ * their new owner, after which {@link #acknowledge(long)} drops them from the journal they were read from.
+ * <p>
+ * Appends must be serialized by the caller; checkpoints come from the worker thread only.
+ */
+final class Journal<T> {
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_SIZE = 8;
+    private static final int HASH_SIZE = Integer.BYTES;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final JournalSerializer<T> serializer;
+    private final CRC32C crc = new CRC32C();
+    private final MappedByteBuffer checkpoint;
+    /**
+     * Number of entries acknowledged when the journal was opened, or by {@link #acknowledge(long)}.
+     */
+    private long base;
+    /**
+     * First entry index of every segment on disk, oldest first.
+     */
+    private final Deque<Long> segments = new ArrayDeque<>();
+
+    private volatile MappedByteBuffer segment;
+    private ByteBuffer writeView;
+    private int position;
+    private long nextIndex;
+
+    Journal(Path directory, int segmentSize, JournalSerializer<T> serializer) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.serializer = serializer;
+        Files.createDirectories(directory);
+        this.checkpoint = map(directory.resolve(CHECKPOINT_FILE), Long.BYTES);
+        this.base = (long) LONG.getVolatile(checkpoint, 0);
+
+        List<Long> existing = listSegments();
+        for (int i = 0; i < existing.size(); i++) {
+            boolean acknowledged = i + 1 < existing.size() && existing.get(i + 1) <= base;
+            if (acknowledged) {
+                Files.deleteIfExists(segmentPath(existing.get(i)));
+            } else {
+                segments.addLast(existing.get(i));
+            }
+        }
+
+        if (segments.isEmpty()) {
+            openSegment(base);
+        } else {
+            long first = segments.removeLast();
+            openSegment(first);
+            int end = 0;
+            long count = 0;
+            for (int next; (next = nextRecord(segment, end)) >= 0; end = next) count++;
+            this.position = end;
+            this.nextIndex = first + count;
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Path segmentPath(long firstIndex) {
+        return directory.resolve(String.format("%020d%s", firstIndex, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(file -> file.endsWith(SEGMENT_SUFFIX))
+                    .forEach(file -> indexes.add(Long.parseLong(file.substring(0, file.length() - SEGMENT_SUFFIX.length()))));
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private void openSegment(long firstIndex) throws IOException {
+        MappedByteBuffer mapped = map(segmentPath(firstIndex), segmentSize);
+        segments.addLast(firstIndex);
+        this.writeView = mapped.duplicate();
+        this.position = 0;
+        this.nextIndex = firstIndex;
+        this.segment = mapped;
+    }
+
+    /**
+     * Returns the offset following the valid record at {@code offset}, or -1 if there is none.
+     */
+    private int nextRecord(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_SIZE > buffer.capacity()) {
+            return -1;
+        }
+        int size = (int) INT.getAcquire(buffer, offset);
+        if (size < HEADER_SIZE + HASH_SIZE || size > buffer.capacity() - offset) {
+            return -1;
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(offset + size).position(offset + HEADER_SIZE);
+        CRC32C checksum = new CRC32C();
+        checksum.update(payload);
+        if ((int) checksum.getValue() != (int) INT.get(buffer, offset + 4)) {
+            return -1;
+        }
+        return align(offset + size);
+    }
+
+    private static int align(int offset) {
+        return (offset + HEADER_SIZE - 1) & -HEADER_SIZE;
+    }
+
+    /**
+     * Appends a message along with the hash code of its key, rolling over to a new segment when the current one is
+     * full.
+     *
+     * @throws IllegalArgumentException if the message does not fit in an empty segment
+     */
+    void append(int hashcode, T value) {
+        if (tryAppend(hashcode, value)) {
+            return;
+        }
+        roll();
+        if (!tryAppend(hashcode, value)) {
+            throw new IllegalArgumentException(String.format("Message does not fit in a journal segment of %d bytes", segmentSize));
+        }
+    }
+
+    private boolean tryAppend(int hashcode, T value) {
+        int start = position;
+        if (start + HEADER_SIZE + HASH_SIZE > segmentSize) {
+            return false;
+        }
+        ByteBuffer view = writeView;
+        view.limit(segmentSize).position(start + HEADER_SIZE + HASH_SIZE);
+        try {
+            serializer.serialize(value, view);
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        int end = view.position();
+        MappedByteBuffer mapped = segment;
+        INT.set(mapped, start + HEADER_SIZE, hashcode);
+        view.limit(end).position(start + HEADER_SIZE);
+        crc.reset();
+        crc.update(view);
+        INT.set(mapped, start + 4, (int) crc.getValue());
+        INT.setRelease(mapped, start, end - start);
+        position = align(end);
+        nextIndex++;
+        return true;
+    }
+
+    private void roll() {
+        try {
+            segment.force();
+            openSegment(nextIndex);
+            deleteAcknowledged((long) LONG.getAcquire(checkpoint, 0));
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to roll journal [%s]", directory), e);
+        }
+    }
+
+    /**
+     * Deletes the segments whose entries all precede {@code acknowledged}: a segment is acknowledged once the first
+     * entry of the next one is.
+     */
+    private void deleteAcknowledged(long acknowledged) throws IOException {
+        while (segments.size() > 1) {
+            Iterator<Long> iterator = segments.iterator();
+            long oldest = iterator.next();
+            if (iterator.next() > acknowledged) {
+                break;
+            }
+            segments.removeFirst();
+            Files.deleteIfExists(segmentPath(oldest));
+        }
+    }
+
+    /**
+     * Returns the index the next appended entry gets.
+     */
+    long getNextIndex() {
+        return nextIndex;
+    }
+
+    /**
+     * Acknowledges every entry before {@code index}, whatever the worker has handled, and forces the journal to disk
+     * first, so that entries appended since are durable before those they were copied from are dropped. Must be
+     * called before the worker handles anything.
+     */
+    void acknowledge(long index) {
+        flush();
+        base = index;
+        LONG.setRelease(checkpoint, 0, index);
+        checkpoint.force();
+        try {
+            deleteAcknowledged(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to truncate journal [%s]", directory), e);
+        }
+    }
+
+    /**
+     * Deletes the journal: its segments, its checkpoint and its directory. The journal must not be used afterwards.
+     */
+    void delete() {
+        try {
+            for (long first : segments) Files.deleteIfExists(segmentPath(first));
+            Files.deleteIfExists(directory.resolve(CHECKPOINT_FILE));
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to delete journal [%s]", directory), e);
+        }
+    }
+
+    /**
+     * Records that the worker has handled {@code handled} messages since the journal was opened.
+     */
+    void checkpoint(long handled) {
+        LONG.setRelease(checkpoint, 0, base + handled);
+    }
+
+    /**
+     * Forces the current segment and the checkpoint to disk.
+     */
+    void flush() {
+        segment.force();
+        checkpoint.force();
+    }
+
+    /**
+     * Hands the entries that were not acknowledged when the journal was opened to {@code sink}, in order, along
+     * with the hash codes of their keys. Must be called before anything new is appended.
+     *
+     * @return the number of replayed entries
+     */
+    long replay(ObjIntConsumer<T> sink) {
+        long replayed = 0;
+        for (long first : segments) {
+            ByteBuffer buffer;
+            if (first == segments.getLast()) {
+                buffer = segment.duplicate();
+            } else {
+                try (FileChannel channel = FileChannel.open(segmentPath(first), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(String.format("Failed to read journal [%s]", directory), e);
+                }
+            }
+            long index = first;
+            for (int offset = 0, next; (next = nextRecord(buffer, offset)) >= 0; offset = next, index++) {
+                if (index >= base) {
+                    ByteBuffer payload = buffer.duplicate();
+                    payload.limit(offset + (int) INT.get(buffer, offset)).position(offset + HEADER_SIZE + HASH_SIZE);
+                    sink.accept(serializer.deserialize(payload.slice()), (int) INT.get(buffer, offset + HEADER_SIZE));
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.ryntric;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts messages to and from the bytes stored in the write-ahead journal.
+ * <p>
+ * Both methods work directly on the journal's memory-mapped segment, so an implementation should use relative
+ * {@code put}/{@code get} calls and must not keep a reference to the buffer.
+ *
+ * @param <T> the message type
+ */
+public interface JournalSerializer<T> {
+
+    /**
+     * Writes {@code value} at the position of {@code buffer}, advancing it. A value that does not fit in the
+     * remaining bytes must let the {@link java.nio.BufferOverflowException} propagate; the journal then retries
+     * in a new segment.
+     */
+    void serialize(T value, ByteBuffer buffer);
+
+    /**
+     * Reads a value written by {@link #serialize(Object, ByteBuffer)}; {@code buffer} holds exactly its bytes.
+     */
+    T deserialize(ByteBuffer buffer);
+}
@@ -0,0 +1,101 @@
+package io.github.ryntric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Little-endian reads over the bytes of a key, shared by the hash functions.
+ * <p>
+ * {@link #BYTES} reads a {@code byte[]} with offsets counted from index 0, or a {@link ByteBuffer}, heap, read-only
+ * or direct, with offsets being absolute buffer indexes, so that a buffer key is hashed from its
+ * {@link ByteBuffer#position()} without touching its position or order. {@link #CHARS} reads the UTF-16LE encoding
+ * of a {@link CharSequence} in place, with offsets counted in bytes from 0, so that a character key hashes exactly
+ * like its UTF-16LE bytes without being encoded. Keeping only two implementations lets the JIT inline both at every
+ * call site.
+ */
+abstract class KeyAccess {
+    private static final VarHandle ARRAY_LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle ARRAY_INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    static final KeyAccess BYTES = new Bytes();
+    static final KeyAccess CHARS = new Chars();
+
+    /**
+     * Reads 8 bytes as a little-endian {@code long}.
+     */
+    abstract long getLong(Object base, long offset);
+
+    /**
+     * Reads 4 bytes as a little-endian {@code int}.
+     */
+    abstract int getInt(Object base, long offset);
+
+    /**
+     * Reads one byte as an unsigned value.
+     */
+    abstract int getByte(Object base, long offset);
+
+    private static final class Bytes extends KeyAccess {
+        @Override
+        long getLong(Object base, long offset) {
+            if (base instanceof byte[]) {
+                return (long) ARRAY_LONGS.get((byte[]) base, (int) offset);
+            }
+            return (long) BUFFER_LONGS.get((ByteBuffer) base, (int) offset);
+        }
+
+        @Override
+        int getInt(Object base, long offset) {
+            if (base instanceof byte[]) {
+                return (int) ARRAY_INTS.get((byte[]) base, (int) offset);
+            }
+            return (int) BUFFER_INTS.get((ByteBuffer) base, (int) offset);
+        }
+
+        @Override
+        int getByte(Object base, long offset) {
+            if (base instanceof byte[]) {
+                return ((byte[]) base)[(int) offset] & 0xFF;
+            }
+            return ((ByteBuffer) base).get((int) offset) & 0xFF;
+        }
+    }
+
+    private static final class Chars extends KeyAccess {
+        @Override
+        long getLong(Object base, long offset) {
+            if ((offset & 1) != 0) {
+                return (getInt(base, offset) & 0xFFFFFFFFL) | ((long) getInt(base, offset + 4) << 32);
+            }
+            CharSequence chars = (CharSequence) base;
+            int index = (int) (offset >>> 1);
+            return chars.charAt(index)
+                    | (long) chars.charAt(index + 1) << 16
+                    | (long) chars.charAt(index + 2) << 32
+                    | (long) chars.charAt(index + 3) << 48;
+        }
+
+        @Override
+        int getInt(Object base, long offset) {
+            if ((offset & 1) != 0) {
+                return getByte(base, offset)
+                        | getByte(base, offset + 1) << 8
+                        | getByte(base, offset + 2) << 16
+                        | getByte(base, offset + 3) << 24;
+            }
+            CharSequence chars = (CharSequence) base;
+            int index = (int) (offset >>> 1);
+            return chars.charAt(index) | chars.charAt(index + 1) << 16;
+        }
+
+        @Override
+        int getByte(Object base, long offset) {
+            char c = ((CharSequence) base).charAt((int) (offset >>> 1));
+            return (offset & 1) == 0 ? c & 0xFF : c >>> 8;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.ryntric;
+
+/**
+ * The channel of a keyed handler, exposing the key of the message being handled, see {@link KeyedHandler}.
+ */
+interface KeyCarrier {
+    /**
+     * Returns the object key of the message being handled, {@code null} if it was dispatched with a primitive key.
+     * Worker thread only.
+     */
+    Object getKey();
+
+    /**
+     * Returns the primitive key of the message being handled, {@code 0} if it was dispatched with an object key.
+     * Worker thread only.
+     */
+    long getPrimitiveKey();
+}
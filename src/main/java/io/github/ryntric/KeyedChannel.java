@@ -0,0 +1,80 @@
+package io.github.ryntric;
+
+/**
+ * Ring of the workers of a keyed handler, see {@link KeyedHandler}: every slot holds the message together with the
+ * key it was dispatched with, so the key reaches the worker without a wrapper object per message. Object keys and
+ * primitive keys are kept in separate arrays, so {@code int} and {@code long} keys are not boxed either.
+ * <p>
+ * Producers fill the three arrays of the claimed slot before publishing it; the worker exposes the key of the
+ * message being handled through {@link KeyCarrier}.
+ */
+final class KeyedChannel<T> extends SequencedChannel<T> implements KeyCarrier {
+    private final Object[] values;
+    private final Object[] keys;
+    private final long[] primitiveKeys;
+    private Object key;
+    private long primitiveKey;
+
+    KeyedChannel(RingCoordinator coordinator, RingSequencer sequencer, int size) {
+        super(coordinator, sequencer, size);
+        this.values = new Object[size];
+        this.keys = new Object[size];
+        this.primitiveKeys = new long[size];
+    }
+
+    @Override
+    public void push(T value) {
+        push(null, 0, value);
+    }
+
+    @Override
+    public void push(T[] values, int offset, int count) {
+        long high = sequencer.next(coordinator, count);
+        long low = high - (count - 1);
+        for (int i = 0; i < count; i++) {
+            int slot = slot(low + i);
+            this.values[slot] = values[offset + i];
+            keys[slot] = null;
+            primitiveKeys[slot] = 0;
+        }
+        sequencer.publish(low, high);
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    public void push(Object key, long primitiveKey, T value) {
+        long sequence = sequencer.next(coordinator);
+        int slot = slot(sequence);
+        values[slot] = value;
+        keys[slot] = key;
+        primitiveKeys[slot] = primitiveKey;
+        sequencer.publish(sequence);
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    T take(int slot) {
+        T value = (T) values[slot];
+        key = keys[slot];
+        primitiveKey = primitiveKeys[slot];
+        values[slot] = null;
+        keys[slot] = null;
+        return value;
+    }
+
+    @Override
+    void endReceive() {
+        key = null;
+    }
+
+    @Override
+    public Object getKey() {
+        return key;
+    }
+
+    @Override
+    public long getPrimitiveKey() {
+        return primitiveKey;
+    }
+}
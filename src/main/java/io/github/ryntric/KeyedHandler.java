@@ -0,0 +1,17 @@
+package io.github.ryntric;
+
+/**
+ * Handler that receives every message along with the key it was dispatched with, see
+ * {@link AffinityDispatcher#withKeyedHandler(String, KeyedHandler, HashCodeProvider, Config)}. The key is stored in
+ * the channel slot next to the message, so there is no need to wrap the message in an object carrying the key.
+ * <p>
+ * A carried key is read by the worker thread later, so the keys a producer may reuse are copied at dispatch: a
+ * {@code byte[]} arrives as a copy of the array, a {@code byte[]} range as a {@code byte[]} of the range only, a
+ * {@code ByteBuffer} as a heap buffer holding its remaining bytes and a {@code CharSequence} as a {@code String}.
+ * Handlers taking those keys pay one allocation per message; a {@code String} key is immutable and passed as is.
+ * {@code int} and {@code long} keys are boxed; use an {@link IntKeyedHandler} or a {@link LongKeyedHandler} to
+ * receive them unboxed.
+ */
+public interface KeyedHandler<K, T> {
+    void handle(String workerName, K key, T value);
+}
@@ -0,0 +1,11 @@
+package io.github.ryntric;
+
+/**
+ * {@link StatefulHandler} that also receives the key each message was dispatched with, carried as described in
+ * {@link KeyedHandler}, see
+ * {@link AffinityDispatcher#withKeyedState(String, KeyedStatefulHandler, java.util.function.Supplier, HashCodeProvider, Config)}.
+ * Use a {@link LongKeyedStatefulHandler} to receive {@code long} keys unboxed.
+ */
+public interface KeyedStatefulHandler<K, T, S> {
+    void handle(String workerName, S state, K key, T value);
+}
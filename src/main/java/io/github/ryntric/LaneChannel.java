@@ -0,0 +1,98 @@
+package io.github.ryntric;
+
+import java.util.function.Consumer;
+
+/**
+ * Channel of a {@link ChannelType#SHARDED_MPSC} worker: one SPSC lane per producer thread, see
+ * {@link ProducerLanes}, plus an MPSC lane shared by the threads beyond the lane count. Producers never contend
+ * on a tail, yet any thread can publish, and the messages of a producer stay in order since it always publishes
+ * to the same lane.
+ * <p>
+ * The lanes share the coordinator, so the worker waits once for all of them. It drains them round-robin,
+ * resuming each {@link #receive(int, Consumer)} at the lane after the last one it polled, so a busy lane cannot
+ * starve the others.
+ */
+final class LaneChannel<T> implements WorkerChannel<T>, KeyCarrier {
+    private final RingCoordinator coordinator;
+    private final ProducerLanes producerLanes;
+    private final SequencedChannel<T>[] lanes;
+    private SequencedChannel<T> current;
+    private int next;
+
+    LaneChannel(RingCoordinator coordinator, ProducerLanes producerLanes, SequencedChannel<T>[] lanes) {
+        this.coordinator = coordinator;
+        this.producerLanes = producerLanes;
+        this.lanes = lanes;
+    }
+
+    private SequencedChannel<T> lane() {
+        return lanes[producerLanes.lane()];
+    }
+
+    @Override
+    public void push(T value) {
+        lane().push(value);
+    }
+
+    @Override
+    public void push(T[] values, int offset, int count) {
+        lane().push(values, offset, count);
+    }
+
+    @Override
+    public void push(Object key, long primitiveKey, T value) {
+        lane().push(key, primitiveKey, value);
+    }
+
+    @Override
+    public void receive(int batchsize, Consumer<T> consumer) {
+        int count = lanes.length;
+        int remaining = batchsize;
+        int lane = next;
+        for (int i = 0; i < count && remaining > 0; i++) {
+            current = lanes[lane];
+            remaining -= current.poll(remaining, consumer);
+            lane = lane + 1 == count ? 0 : lane + 1;
+        }
+        next = lane;
+        if (remaining == batchsize) {
+            coordinator.consumerWait();
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (SequencedChannel<T> lane : lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long producerSize() {
+        return lane().size();
+    }
+
+    @Override
+    public void wakeupConsumer() {
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    public void close() {
+        for (SequencedChannel<T> lane : lanes) {
+            lane.close();
+        }
+    }
+
+    @Override
+    public Object getKey() {
+        return ((KeyCarrier) current).getKey();
+    }
+
+    @Override
+    public long getPrimitiveKey() {
+        return ((KeyCarrier) current).getPrimitiveKey();
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.ryntric;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear histogram in the spirit of HdrHistogram.
+ * <p>
+ * Values below 32 get an exact bucket, larger values are grouped by their highest bit and the next four bits,
+ * which bounds the relative error to about 6% over the whole {@code long} range with 960 buckets.
+ * The histogram has a single writer; readers copy the counts without blocking it.
+ */
+final class LatencyHistogram {
+    static final int BUCKET_COUNT = 960;
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) Math.max(value, 0);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value that maps to the given bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a value. Must only be called by the owning worker.
+     */
+    void record(long value) {
+        int index = bucketIndex(value);
+        counts.setRelease(index, counts.getPlain(index) + 1);
+    }
+
+    void copyInto(long[] target) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            target[i] = counts.getAcquire(i);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package io.github.ryntric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Open-addressing table of {@code long} keys with linear probing and backward-shift deletion, the key side of the
+ * worker-local state maps. Values live in the subclasses, which move them along with their keys.
+ * <p>
+ * Entries can be kept in access order in an intrusive doubly linked list, most recent first, for LRU eviction once
+ * {@code maxEntries} is reached and for expiry of the entries not accessed for {@code ttlNanos}: the least recently
+ * accessed entry is also the one closest to expiry, so expiry only ever looks at the tail of the list.
+ * <p>
+ * The table has a single writer, the worker owning it. Subclasses bracket every change of the keys or values with
+ * {@link #beginWrite()} and {@link #endWrite()}, which make a version counter odd for the duration of the change,
+ * so that other threads can copy the table without locking: they read the version with {@link #beginRead()},
+ * copy, and start over unless {@link #validate(long)} finds the version unchanged. Access order and timestamps
+ * are not part of a copy and are updated outside of the brackets.
+ */
+abstract class LongKeyTable {
+    static final int NIL = -1;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(LongKeyTable.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final int maxEntries;
+    final long ttlNanos;
+    private final boolean ordered;
+
+    long[] keys;
+    boolean[] used;
+    private int[] prev;
+    private int[] next;
+    private long[] stamps;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private int head = NIL;
+    private int tail = NIL;
+    private long version;
+
+    /**
+     * @param initialCapacity number of entries held without resizing, ignored if {@code maxEntries} is set
+     * @param maxEntries      number of entries above which the least recently accessed one is evicted, 0 for none
+     * @param ttlNanos        time after its last access an entry expires, 0 for never
+     */
+    LongKeyTable(int initialCapacity, int maxEntries, long ttlNanos) {
+        if (maxEntries < 0 || ttlNanos < 0) {
+            throw new IllegalArgumentException(String.format("Max entries [%d] and ttl [%d ns] must not be negative", maxEntries, ttlNanos));
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.ordered = maxEntries > 0 || ttlNanos > 0;
+        allocate(tableSizeFor(maxEntries > 0 ? maxEntries : initialCapacity));
+    }
+
+    private static int tableSizeFor(int entries) {
+        long capacity = Math.max(MIN_CAPACITY, (long) Math.ceil(entries / LOAD_FACTOR));
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException(String.format("Capacity [%d] exceeds the maximum table size", entries));
+        }
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        if (ordered) {
+            prev = new int[capacity];
+            next = new int[capacity];
+        }
+        if (ttlNanos > 0) {
+            stamps = new long[capacity];
+        }
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long key) {
+        return (int) Murmur3.fmix64(key);
+    }
+
+    /**
+     * Returns the number of slots of the table.
+     */
+    final int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of entries, expired ones not yet removed included.
+     */
+    final int entryCount() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of the key, expired or not, or {@link #NIL}.
+     */
+    final int lookup(long key) {
+        for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return NIL;
+    }
+
+    final boolean isExpired(int slot, long now) {
+        return ttlNanos > 0 && now - stamps[slot] >= ttlNanos;
+    }
+
+    /**
+     * Returns the slot of the live entry of the key, or {@link #NIL}, and records the access.
+     */
+    final int find(long key) {
+        int slot = lookup(key);
+        if (slot != NIL && ordered) {
+            long now = ttlNanos > 0 ? System.nanoTime() : 0;
+            if (isExpired(slot, now)) {
+                return NIL;
+            }
+            touch(slot, now);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot of the live entry of the key, inserting it if absent, and records the access.
+     * The value of an inserted entry, or of an expired one that is revived, is cleared.
+     * Must be called between {@link #beginWrite()} and {@link #endWrite()}.
+     */
+    final int findOrInsert(long key) {
+        long now = ttlNanos > 0 ? System.nanoTime() : 0;
+        int slot = lookup(key);
+        if (slot != NIL) {
+            if (isExpired(slot, now)) {
+                clearValue(slot);
+            }
+            if (ordered) {
+                touch(slot, now);
+            }
+            return slot;
+        }
+        if (ttlNanos > 0) {
+            expire(now);
+        }
+        if (maxEntries > 0 && size >= maxEntries) {
+            removeSlot(tail);
+        } else if (size >= resizeThreshold) {
+            resize();
+        }
+        slot = hash(key) & mask;
+        while (used[slot]) slot = (slot + 1) & mask;
+        keys[slot] = key;
+        used[slot] = true;
+        size++;
+        if (ordered) {
+            if (stamps != null) stamps[slot] = now;
+            linkHead(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Removes the entry of the given slot, shifting back the entries probed past it.
+     * Must be called between {@link #beginWrite()} and {@link #endWrite()}.
+     */
+    final void removeSlot(int slot) {
+        if (ordered) {
+            unlink(slot);
+        }
+        size--;
+        int hole = slot;
+        for (int i = (hole + 1) & mask; used[i]; i = (i + 1) & mask) {
+            // the entry can fill the hole if the hole lies between its home slot and its current one
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+        used[hole] = false;
+        clearValue(hole);
+    }
+
+    /**
+     * Removes the entries not accessed for the ttl, oldest first.
+     * Must be called between {@link #beginWrite()} and {@link #endWrite()}.
+     *
+     * @return the number of entries removed
+     */
+    final int expire(long now) {
+        int expired = 0;
+        while (tail != NIL && isExpired(tail, now)) {
+            removeSlot(tail);
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * Removes every entry. Must be called between {@link #beginWrite()} and {@link #endWrite()}.
+     */
+    final void removeAll() {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (used[slot]) {
+                used[slot] = false;
+                clearValue(slot);
+            }
+        }
+        size = 0;
+        head = tail = NIL;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        used[to] = true;
+        if (ordered) {
+            if (stamps != null) stamps[to] = stamps[from];
+            int before = prev[from];
+            int after = next[from];
+            prev[to] = before;
+            next[to] = after;
+            if (before != NIL) next[before] = to; else head = to;
+            if (after != NIL) prev[after] = to; else tail = to;
+        }
+        moveValue(from, to);
+    }
+
+    private void touch(int slot, long now) {
+        if (stamps != null) {
+            stamps[slot] = now;
+        }
+        if (head != slot) {
+            unlink(slot);
+            linkHead(slot);
+        }
+    }
+
+    private void linkHead(int slot) {
+        prev[slot] = NIL;
+        next[slot] = head;
+        if (head != NIL) prev[head] = slot; else tail = slot;
+        head = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before != NIL) next[before] = after; else head = after;
+        if (after != NIL) prev[after] = before; else tail = before;
+    }
+
+    /**
+     * Doubles the table, keeping the access order. Only unbounded tables grow.
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        int[] oldPrev = prev;
+        long[] oldStamps = stamps;
+        int oldTail = tail;
+        int capacity = oldKeys.length << 1;
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("State table is full");
+        }
+        allocate(capacity);
+        beginRehash(capacity);
+        head = tail = NIL;
+        if (ordered) {
+            // from the least recently accessed entry on, so that relinking each at the head restores the order
+            for (int slot = oldTail; slot != NIL; slot = oldPrev[slot]) rehash(slot, oldKeys, oldStamps);
+        } else {
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldUsed[slot]) rehash(slot, oldKeys, oldStamps);
+            }
+        }
+        endRehash();
+    }
+
+    private void rehash(int from, long[] oldKeys, long[] oldStamps) {
+        long key = oldKeys[from];
+        int slot = hash(key) & mask;
+        while (used[slot]) slot = (slot + 1) & mask;
+        keys[slot] = key;
+        used[slot] = true;
+        if (ordered) {
+            if (stamps != null) stamps[slot] = oldStamps[from];
+            linkHead(slot);
+        }
+        rehashValue(from, slot);
+    }
+
+    final void beginWrite() {
+        VERSION.setOpaque(this, version + 1);
+        VarHandle.storeStoreFence();
+    }
+
+    final void endWrite() {
+        VERSION.setRelease(this, version + 1);
+    }
+
+    /**
+     * Waits until no change is in progress and returns the version to validate a copy against.
+     */
+    final long beginRead() {
+        long current;
+        while (((current = (long) VERSION.getAcquire(this)) & 1) != 0) {
+            Thread.onSpinWait();
+        }
+        return current;
+    }
+
+    /**
+     * Returns whether the table is still at the given version, that is, whether what was read since
+     * {@link #beginRead()} is a consistent copy.
+     */
+    final boolean validate(long version) {
+        VarHandle.loadLoadFence();
+        return (long) VERSION.getOpaque(this) == version;
+    }
+
+    /**
+     * Moves the value of a slot to another one, the source slot being freed or overwritten next.
+     */
+    abstract void moveValue(int from, int to);
+
+    /**
+     * Clears the value of a slot.
+     */
+    abstract void clearValue(int slot);
+
+    /**
+     * Starts moving the values to a table of the given capacity; the slots passed to
+     * {@link #rehashValue(int, int)} refer to the previous table and to the new one.
+     */
+    abstract void beginRehash(int capacity);
+
+    /**
+     * Moves the value of a slot of the previous table to a slot of the new one.
+     */
+    abstract void rehashValue(int from, int to);
+
+    /**
+     * Ends the move started by {@link #beginRehash(int)}, releasing the previous values.
+     */
+    abstract void endRehash();
+}
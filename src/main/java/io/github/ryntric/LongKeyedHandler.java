@@ -0,0 +1,10 @@
+package io.github.ryntric;
+
+/**
+ * {@link KeyedHandler} of messages dispatched with {@code long} keys, which are carried unboxed, see
+ * {@link AffinityDispatcher#withLongKeyedHandler(String, LongKeyedHandler, HashCodeProvider, Config)}.
+ * Messages dispatched with {@code int} keys are handled with the key widened to {@code long}.
+ */
+public interface LongKeyedHandler<T> {
+    void handle(String workerName, long key, T value);
+}
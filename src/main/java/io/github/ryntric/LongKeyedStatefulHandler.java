@@ -0,0 +1,11 @@
+package io.github.ryntric;
+
+/**
+ * {@link StatefulHandler} of messages dispatched with {@code long} keys, which are carried unboxed, see
+ * {@link AffinityDispatcher#withLongKeyedState(String, LongKeyedStatefulHandler, java.util.function.Supplier, HashCodeProvider, Config)}.
+ * The key is the routing key, so it can index the worker's {@link LongStateMap} or {@link OffHeapLongStateMap}
+ * directly. Messages dispatched with {@code int} keys are handled with the key widened to {@code long}.
+ */
+public interface LongKeyedStatefulHandler<T, S> {
+    void handle(String workerName, S state, long key, T value);
+}
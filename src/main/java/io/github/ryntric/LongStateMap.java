@@ -0,0 +1,228 @@
+package io.github.ryntric;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Worker-local map from a {@code long} key to a state object, for handlers that keep per-key state, see
+ * {@link StatefulHandler}. Keys are stored unboxed in an open-addressing table; {@code int} keys are widened
+ * to {@code long} without boxing either.
+ * <p>
+ * A map can be bounded: once it holds {@code maxEntries} entries, inserting a new key evicts the least recently
+ * accessed one. Entries can also expire once not accessed for a ttl; expired entries read as absent and are
+ * removed when new keys are inserted or on {@link #expire()}. An unbounded map grows as needed.
+ * <p>
+ * The map must be read and written by the worker owning it only, with the exception of {@link #snapshot()},
+ * which any thread may call at any time without blocking the worker. Values are copied by reference, so a
+ * snapshot is consistent only for immutable values.
+ */
+@SuppressWarnings("unchecked")
+public final class LongStateMap<V> extends LongKeyTable {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private Object[] values;
+    private Object[] rehashed;
+
+    /**
+     * Creates an unbounded map without expiry.
+     */
+    public LongStateMap() {
+        this(0, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a map with the given bound and ttl.
+     *
+     * @param maxEntries number of entries above which the least recently accessed one is evicted, 0 for unbounded
+     * @param ttl        time after its last access an entry expires, 0 for never
+     * @param unit       the unit of the ttl
+     * @throws IllegalArgumentException if the bound or the ttl is negative
+     */
+    public LongStateMap(int maxEntries, long ttl, TimeUnit unit) {
+        super(DEFAULT_CAPACITY, maxEntries, unit.toNanos(ttl));
+        this.values = new Object[capacity()];
+    }
+
+    /**
+     * Returns the value of the key, recording the access.
+     *
+     * @param key the key
+     * @return the value, {@code null} if absent or expired
+     */
+    public V get(long key) {
+        int slot = find(key);
+        return slot == NIL ? null : (V) values[slot];
+    }
+
+    /**
+     * Returns whether the key has a live entry, recording the access.
+     *
+     * @param key the key
+     * @return {@code true} if the key is present and not expired
+     */
+    public boolean containsKey(long key) {
+        return find(key) != NIL;
+    }
+
+    /**
+     * Associates the value with the key, possibly evicting the least recently accessed entry.
+     *
+     * @param key   the key
+     * @param value the value, not {@code null}
+     * @return the previous value, {@code null} if absent or expired
+     */
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "value");
+        beginWrite();
+        try {
+            int slot = findOrInsert(key);
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns the value of the key, creating it with the given function if absent or expired.
+     * The function must not access the map.
+     *
+     * @param key     the key
+     * @param factory creates the value from the key, must not return {@code null}
+     * @return the current or created value
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        int slot = find(key);
+        if (slot != NIL) {
+            return (V) values[slot];
+        }
+        V value = Objects.requireNonNull(factory.apply(key), "value");
+        beginWrite();
+        try {
+            values[findOrInsert(key)] = value;
+            return value;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Removes the entry of the key.
+     *
+     * @param key the key
+     * @return the removed value, {@code null} if absent or expired
+     */
+    public V remove(long key) {
+        int slot = lookup(key);
+        if (slot == NIL) {
+            return null;
+        }
+        V previous = isExpired(slot, ttlNanos > 0 ? System.nanoTime() : 0) ? null : (V) values[slot];
+        beginWrite();
+        try {
+            removeSlot(slot);
+        } finally {
+            endWrite();
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the entries that have not been accessed for the ttl.
+     *
+     * @return the number of entries removed
+     */
+    public int expire() {
+        if (ttlNanos == 0) {
+            return 0;
+        }
+        beginWrite();
+        try {
+            return expire(System.nanoTime());
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        beginWrite();
+        try {
+            removeAll();
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns the number of entries, including expired ones not yet removed.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return entryCount();
+    }
+
+    /**
+     * Copies the entries into a new map. Safe to call from any thread: the copy is taken without locking and
+     * started over if the owning worker changed the map in the meantime, so a large map under a steady stream
+     * of writes may take several attempts. It may include expired entries not yet removed.
+     *
+     * @return a copy of the entries, keyed by boxed keys
+     */
+    public Map<Long, V> snapshot() {
+        while (true) {
+            long version = beginRead();
+            long[] keys = this.keys;
+            boolean[] used = this.used;
+            Object[] values = this.values;
+            int length = Math.min(Math.min(keys.length, used.length), values.length);
+            Map<Long, V> copy = new HashMap<>();
+            for (int slot = 0; slot < length; slot++) {
+                if (used[slot]) {
+                    copy.put(keys[slot], (V) values[slot]);
+                }
+            }
+            if (validate(version)) {
+                return copy;
+            }
+        }
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int slot) {
+        values[slot] = null;
+    }
+
+    @Override
+    void beginRehash(int capacity) {
+        rehashed = values;
+        values = new Object[capacity];
+    }
+
+    @Override
+    void rehashValue(int from, int to) {
+        values[to] = rehashed[from];
+    }
+
+    @Override
+    void endRehash() {
+        rehashed = null;
+    }
+
+    @Override
+    public String toString() {
+        return "LongStateMap{size=" + size() + ", maxEntries=" + maxEntries + ", ttlNanos=" + ttlNanos + '}';
+    }
+}
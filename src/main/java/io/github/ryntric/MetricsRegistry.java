@@ -0,0 +1,48 @@
+package io.github.ryntric;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registers worker metrics with the platform MBean server.
+ * JMX failures are logged and never prevent the dispatcher from running.
+ */
+final class MetricsRegistry {
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final String NAME_TEMPLATE = "io.github.ryntric:type=AffinityDispatcher,name=%s,worker=%s";
+
+    private MetricsRegistry() {
+    }
+
+    static ObjectName objectName(String dispatcherName, String workerName) throws JMException {
+        return new ObjectName(String.format(NAME_TEMPLATE, ObjectName.quote(dispatcherName), ObjectName.quote(workerName)));
+    }
+
+    static void register(String dispatcherName, WorkerMetrics metrics) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(metrics, objectName(dispatcherName, metrics.getWorkerName()));
+        } catch (InstanceAlreadyExistsException e) {
+            LOGGER.log(Level.WARNING, "Metrics of worker [{0}] are already registered", metrics.getWorkerName());
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to register metrics of worker [%s]", metrics.getWorkerName()), e);
+        }
+    }
+
+    static void unregister(String dispatcherName, WorkerMetrics metrics) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName(dispatcherName, metrics.getWorkerName()));
+        } catch (InstanceNotFoundException ignored) {
+            // never registered, e.g. a name clash on start
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to unregister metrics of worker [%s]", metrics.getWorkerName()), e);
+        }
+    }
+}
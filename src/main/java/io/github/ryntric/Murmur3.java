@@ -0,0 +1,60 @@
+package io.github.ryntric;
+
+/**
+ * MurmurHash3 by Austin Appleby: the x86 32-bit variant and the 32/64-bit finalizers.
+ */
+final class Murmur3 {
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private Murmur3() {
+    }
+
+    static int fmix32(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static int mixK1(int k1) {
+        k1 *= C1;
+        k1 = Integer.rotateLeft(k1, 15);
+        return k1 * C2;
+    }
+
+    @SuppressWarnings("fallthrough")
+    static int hash32(KeyAccess access, Object base, long offset, int length, int seed) {
+        int h1 = seed;
+        long end = offset + (length & ~3);
+        for (long p = offset; p < end; p += 4) {
+            h1 ^= mixK1(access.getInt(base, p));
+            h1 = Integer.rotateLeft(h1, 13);
+            h1 = h1 * 5 + 0xe6546b64;
+        }
+
+        int k1 = 0;
+        switch (length & 3) {
+            case 3:
+                k1 ^= access.getByte(base, end + 2) << 16;
+            case 2:
+                k1 ^= access.getByte(base, end + 1) << 8;
+            case 1:
+                k1 ^= access.getByte(base, end);
+                h1 ^= mixK1(k1);
+        }
+
+        return fmix32(h1 ^ length);
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.ryntric;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * {@link HashCodeProvider} based on MurmurHash3.
+ * <p>
+ * {@code int} keys go through the 32-bit finalizer and {@code long} keys through the 64-bit one, folded to 32 bits.
+ * {@code byte[]} keys are hashed with the x86 32-bit variant, seed 0; {@code String} keys are hashed the same way
+ * over their UTF-16LE code units, read in place without encoding the string.
+ * <p>
+ * Unlike {@link DefaultHashCodeProvider}, sequential and low-entropy keys spread evenly over the routing table.
+ * No method allocates, and {@code CharSequence}, {@code ByteBuffer} and {@code byte[]} range keys are read in place.
+ */
+public final class Murmur3HashCodeProvider implements HashCodeProvider {
+    public static final Murmur3HashCodeProvider INSTANCE = new Murmur3HashCodeProvider();
+
+    private Murmur3HashCodeProvider() {}
+
+    @Override
+    public int provide(String key) {
+        return Murmur3.hash32(KeyAccess.CHARS, key, 0, key.length() << 1, 0);
+    }
+
+    @Override
+    public int provide(int key) {
+        return Murmur3.fmix32(key);
+    }
+
+    @Override
+    public int provide(long key) {
+        long hash = Murmur3.fmix64(key);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public int provide(byte[] key) {
+        return Murmur3.hash32(KeyAccess.BYTES, key, 0, key.length, 0);
+    }
+
+    @Override
+    public int provide(CharSequence key) {
+        return Murmur3.hash32(KeyAccess.CHARS, key, 0, key.length() << 1, 0);
+    }
+
+    @Override
+    public int provide(byte[] key, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, key.length);
+        return Murmur3.hash32(KeyAccess.BYTES, key, offset, length, 0);
+    }
+
+    @Override
+    public int provide(ByteBuffer key) {
+        return Murmur3.hash32(KeyAccess.BYTES, key, key.position(), key.remaining(), 0);
+    }
+}
@@ -0,0 +1,287 @@
+package io.github.ryntric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker-local map from a {@code long} key to a fixed-size record of {@code long} fields kept off the heap, for
+ * per-key counters and aggregates that should neither box nor weigh on the garbage collector, see
+ * {@link StatefulHandler}. Records are zeroed when their key is inserted; {@code int} keys are widened to
+ * {@code long}.
+ * <p>
+ * The map is bounded: its memory is allocated once, and inserting a key into a full map evicts the least recently
+ * accessed entry. Entries can also expire once not accessed for a ttl, as with {@link LongStateMap}. Keys and
+ * bookkeeping are kept in primitive arrays, the records in a direct buffer dropped by {@link #close()} and released
+ * with it once no snapshot still reads it.
+ * <p>
+ * The map must be read and written by the worker owning it only, with the exception of {@link #snapshot()},
+ * which any thread may call at any time before the map is closed without blocking the worker.
+ */
+public final class OffHeapLongStateMap extends LongKeyTable implements AutoCloseable {
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int fields;
+    private final int recordSize;
+    private ByteBuffer records;
+    private ByteBuffer rehashed;
+    private volatile boolean closed;
+
+    /**
+     * Creates a map of at most {@code maxEntries} records of {@code fields} longs each.
+     *
+     * @param maxEntries number of entries above which the least recently accessed one is evicted
+     * @param fields     number of {@code long} fields of a record
+     * @param ttl        time after its last access an entry expires, 0 for never
+     * @param unit       the unit of the ttl
+     * @throws IllegalArgumentException if the bound or the number of fields is not positive, or the ttl is negative
+     */
+    public OffHeapLongStateMap(int maxEntries, int fields, long ttl, TimeUnit unit) {
+        super(0, checkPositive(maxEntries, "Max entries"), unit.toNanos(ttl));
+        this.fields = checkPositive(fields, "Fields");
+        long bytes = (long) capacity() * fields * Long.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Records of [%d] entries of [%d] fields exceed 2 GiB", maxEntries, fields));
+        }
+        this.recordSize = fields * Long.BYTES;
+        this.records = ByteBuffer.allocateDirect((int) bytes);
+    }
+
+    private static int checkPositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(String.format("%s [%d] must be positive", name, value));
+        }
+        return value;
+    }
+
+    private int fieldIndex(int slot, int field) {
+        if (closed) {
+            throw new IllegalStateException("State map is closed");
+        }
+        if (field < 0 || field >= fields) {
+            throw new IndexOutOfBoundsException(String.format("Field [%d] out of record size [%d]", field, fields));
+        }
+        return slot * recordSize + field * Long.BYTES;
+    }
+
+    /**
+     * Returns a field of the key's record, recording the access.
+     *
+     * @param key          the key
+     * @param field        index of the field, in {@code [0, fields)}
+     * @param defaultValue returned if the key is absent or expired
+     * @return the field value
+     */
+    public long getLong(long key, int field, long defaultValue) {
+        int slot = find(key);
+        return slot == NIL ? defaultValue : (long) LONGS.get(records, fieldIndex(slot, field));
+    }
+
+    /**
+     * Sets a field of the key's record, inserting a zeroed record if the key is absent or expired.
+     *
+     * @param key   the key
+     * @param field index of the field, in {@code [0, fields)}
+     * @param value the field value
+     */
+    public void putLong(long key, int field, long value) {
+        beginWrite();
+        try {
+            LONGS.set(records, fieldIndex(findOrInsert(key), field), value);
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Adds to a field of the key's record, inserting a zeroed record if the key is absent or expired.
+     *
+     * @param key   the key
+     * @param field index of the field, in {@code [0, fields)}
+     * @param delta the value to add
+     * @return the new field value
+     */
+    public long addLong(long key, int field, long delta) {
+        beginWrite();
+        try {
+            int index = fieldIndex(findOrInsert(key), field);
+            long value = (long) LONGS.get(records, index) + delta;
+            LONGS.set(records, index, value);
+            return value;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns whether the key has a live record, recording the access.
+     *
+     * @param key the key
+     * @return {@code true} if the key is present and not expired
+     */
+    public boolean containsKey(long key) {
+        return find(key) != NIL;
+    }
+
+    /**
+     * Removes the record of the key.
+     *
+     * @param key the key
+     * @return {@code true} if a live record was removed
+     */
+    public boolean remove(long key) {
+        int slot = lookup(key);
+        if (slot == NIL) {
+            return false;
+        }
+        boolean live = !isExpired(slot, ttlNanos > 0 ? System.nanoTime() : 0);
+        beginWrite();
+        try {
+            removeSlot(slot);
+        } finally {
+            endWrite();
+        }
+        return live;
+    }
+
+    /**
+     * Removes the records that have not been accessed for the ttl.
+     *
+     * @return the number of records removed
+     */
+    public int expire() {
+        if (ttlNanos == 0) {
+            return 0;
+        }
+        beginWrite();
+        try {
+            return expire(System.nanoTime());
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Removes every record.
+     */
+    public void clear() {
+        beginWrite();
+        try {
+            removeAll();
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Returns the number of records, including expired ones not yet removed.
+     *
+     * @return record count
+     */
+    public int size() {
+        return entryCount();
+    }
+
+    /**
+     * Returns the number of {@code long} fields of a record.
+     *
+     * @return record size in longs
+     */
+    public int getFields() {
+        return fields;
+    }
+
+    /**
+     * Copies the records onto the heap. Safe to call from any thread until the map is closed: the copy is taken
+     * without locking and started over if the owning worker changed the map in the meantime. It may include
+     * expired records not yet removed. A snapshot racing with {@link #close()} either completes or fails, and
+     * never reads released memory: it holds on to the buffer it copies from.
+     *
+     * @return a copy of the records, keyed by boxed keys
+     * @throws IllegalStateException if the map is closed
+     */
+    public Map<Long, long[]> snapshot() {
+        while (true) {
+            long version = beginRead();
+            ByteBuffer records = this.records;
+            if (closed || records == null) {
+                throw new IllegalStateException("State map is closed");
+            }
+            long[] keys = this.keys;
+            boolean[] used = this.used;
+            Map<Long, long[]> copy = new HashMap<>();
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot]) {
+                    long[] record = new long[fields];
+                    int recordIndex = slot * recordSize;
+                    for (int field = 0; field < fields; field++) {
+                        record[field] = (long) LONGS.get(records, recordIndex + field * Long.BYTES);
+                    }
+                    copy.put(keys[slot], record);
+                }
+            }
+            if (validate(version)) {
+                return copy;
+            }
+        }
+    }
+
+    /**
+     * Drops the records, whose memory is released once the buffer is collected. The map must not be used
+     * afterwards, by its worker or by snapshots.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        records = null;
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        int source = from * recordSize;
+        int target = to * recordSize;
+        for (int offset = 0; offset < recordSize; offset += Long.BYTES) {
+            LONGS.set(records, target + offset, (long) LONGS.get(records, source + offset));
+        }
+    }
+
+    /**
+     * The map is bounded, so the table never grows; the records are moved all the same should it ever do.
+     */
+    @Override
+    void beginRehash(int capacity) {
+        rehashed = records;
+        records = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, recordSize));
+    }
+
+    @Override
+    void rehashValue(int from, int to) {
+        int source = from * recordSize;
+        int target = to * recordSize;
+        for (int offset = 0; offset < recordSize; offset += Long.BYTES) {
+            LONGS.set(records, target + offset, (long) LONGS.get(rehashed, source + offset));
+        }
+    }
+
+    @Override
+    void endRehash() {
+        rehashed = null;
+    }
+
+    @Override
+    void clearValue(int slot) {
+        int index = slot * recordSize;
+        for (int offset = 0; offset < recordSize; offset += Long.BYTES) {
+            LONGS.set(records, index + offset, 0L);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapLongStateMap{size=" + size() + ", maxEntries=" + maxEntries + ", fields=" + fields + ", ttlNanos=" + ttlNanos + '}';
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.ryntric;
+
+/**
+ * Defines what {@code dispatch} does when the target worker's channel is full.
+ * {@code BLOCK} — wait for free space with the producer wait strategy, for as long as it takes.
+ * {@code DROP_NEWEST} — discard the message being dispatched.
+ * {@code DROP_OLDEST} — spill the message to the worker's overflow queue; when the queue is full,
+ * discard its oldest message to make room. Messages already in the channel are never discarded.
+ * {@code SPILL} — spill the message to the worker's overflow queue; when the queue is full,
+ * discard the message being dispatched.
+ * <p>
+ * Except with {@code BLOCK}, a full or stuck worker never makes the producer wait, so it cannot delay
+ * messages bound to other workers. Spilled messages are handled after the channel has been drained,
+ * in dispatch order, and discarded messages are counted in the worker's metrics.
+ */
+public enum OverflowPolicy {
+    BLOCK, DROP_NEWEST, DROP_OLDEST, SPILL
+}
@@ -0,0 +1,50 @@
+package io.github.ryntric;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded multi-producer queue holding the messages of a worker that did not fit in its channel.
+ * Only used once the channel is full, so the per-message node allocation stays off the regular path.
+ */
+final class OverflowQueue<T> {
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+
+    OverflowQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    boolean isFull() {
+        return size.get() >= capacity;
+    }
+
+    /**
+     * Appends the value unless the queue is full.
+     */
+    boolean offer(T value) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        queue.offer(value);
+        return true;
+    }
+
+    T poll() {
+        T value = queue.poll();
+        if (value != null) {
+            size.decrementAndGet();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.ryntric;
+
+/**
+ * Defines which channel of its worker a message is dispatched to.
+ * {@code NORMAL} — the worker's channel, as with the dispatch methods that take no priority.
+ * {@code HIGH} — the worker's priority channel, see {@link Config.Builder#setPriorityLaneSize(int)}, emptied
+ * before the worker takes the next batch of its channel. For control messages that must not wait behind the data.
+ * <p>
+ * Keys keep their order within a priority: two messages of a key dispatched with the same priority are handled
+ * in dispatch order, two dispatched with different priorities may not be.
+ */
+public enum Priority {
+    NORMAL, HIGH
+}
@@ -0,0 +1,110 @@
+package io.github.ryntric;
+
+import java.util.function.Consumer;
+
+/**
+ * Channel of a worker with a priority channel, see {@link Config.Builder#setPriorityLaneSize(int)}: the normal
+ * channel plus a small one for {@link Priority#HIGH} messages, on rings of their own.
+ * <p>
+ * Every {@link #receive(int, Consumer)} takes a batch of the priority channel if it holds messages, so the worker
+ * empties it before going back to the normal channel. After {@code starvationLimit} priority batches in a row while
+ * normal messages wait, it takes one normal batch. Each ring keeps its own order, so keys keep theirs within a
+ * priority. Neither ring is waited on: the worker parks while both are empty.
+ */
+final class PriorityChannel<T> implements WorkerChannel<T>, KeyCarrier {
+    private final WorkerChannel<T> normal;
+    private final WorkerChannel<T> priority;
+    private final int starvationLimit;
+    private WorkerChannel<T> current;
+    /**
+     * The number of priority batches taken in a row while normal messages waited. Worker thread only.
+     */
+    private int streak;
+
+    PriorityChannel(WorkerChannel<T> normal, WorkerChannel<T> priority, int starvationLimit) {
+        this.normal = normal;
+        this.priority = priority;
+        this.starvationLimit = starvationLimit;
+        this.current = normal;
+    }
+
+    WorkerChannel<T> getNormal() {
+        return normal;
+    }
+
+    /**
+     * Publishes the value to the priority channel, waiting for a free slot with the producer wait strategy if it
+     * is full.
+     */
+    void pushPriority(Object key, long primitiveKey, T value) {
+        priority.push(key, primitiveKey, value);
+    }
+
+    long prioritySize() {
+        return priority.size();
+    }
+
+    @Override
+    public void push(T value) {
+        normal.push(value);
+    }
+
+    @Override
+    public void push(T[] values, int offset, int count) {
+        normal.push(values, offset, count);
+    }
+
+    @Override
+    public void push(Object key, long primitiveKey, T value) {
+        normal.push(key, primitiveKey, value);
+    }
+
+    @Override
+    public void receive(int batchsize, Consumer<T> consumer) {
+        boolean waiting = normal.size() > 0;
+        if (priority.size() > 0 && (streak < starvationLimit || !waiting)) {
+            streak = waiting ? streak + 1 : 0;
+            current = priority;
+        } else {
+            streak = 0;
+            current = normal;
+        }
+        current.receive(batchsize, consumer);
+    }
+
+    @Override
+    public long size() {
+        return normal.size() + priority.size();
+    }
+
+    /**
+     * Returns the number of messages in the normal ring the calling producer publishes to: the overflow policy
+     * applies to the normal channel only.
+     */
+    @Override
+    public long producerSize() {
+        return normal.producerSize();
+    }
+
+    @Override
+    public void wakeupConsumer() {
+        normal.wakeupConsumer();
+        priority.wakeupConsumer();
+    }
+
+    @Override
+    public void close() {
+        normal.close();
+        priority.close();
+    }
+
+    @Override
+    public Object getKey() {
+        return ((KeyCarrier) current).getKey();
+    }
+
+    @Override
+    public long getPrimitiveKey() {
+        return ((KeyCarrier) current).getPrimitiveKey();
+    }
+}
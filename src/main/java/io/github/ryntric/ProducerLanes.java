@@ -0,0 +1,56 @@
+package io.github.ryntric;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns producer threads their lane of the {@link LaneChannel}s of a dispatcher, the same in every worker. A
+ * thread publishing for the first time takes a free lane of its own and keeps it for as long as it lives; when
+ * every lane belongs to a live thread, it gets the shared lane, at index {@code count}, for good, since moving it
+ * to another lane later could reorder its messages.
+ * <p>
+ * The owners are held through weak references, so that a pool replacing its threads neither keeps the dead ones
+ * reachable nor runs out of lanes: the lane of a thread that has terminated, or has been collected, is handed to
+ * the next new thread. Seeing the owner terminated through {@link Thread#isAlive()} orders everything the owner
+ * did on the lane's SPSC ring before the first push of its successor.
+ */
+final class ProducerLanes {
+    private final int count;
+    private final AtomicReferenceArray<WeakReference<Thread>> owners;
+    private final ThreadLocal<Integer> lane = ThreadLocal.withInitial(this::assign);
+
+    ProducerLanes(int count) {
+        this.count = count;
+        this.owners = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * Returns the number of lanes of a channel, the shared one included.
+     */
+    int getLaneCount() {
+        return count + 1;
+    }
+
+    /**
+     * Returns the lane of the calling thread.
+     */
+    int lane() {
+        return lane.get();
+    }
+
+    private Integer assign() {
+        WeakReference<Thread> self = new WeakReference<>(Thread.currentThread());
+        for (int i = 0; i < count; i++) {
+            WeakReference<Thread> owner = owners.get(i);
+            if ((owner == null || isTerminated(owner)) && owners.compareAndSet(i, owner, self)) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isTerminated(WeakReference<Thread> owner) {
+        Thread thread = owner.get();
+        return thread == null || !thread.isAlive();
+    }
+}
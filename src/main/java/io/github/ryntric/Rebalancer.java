@@ -0,0 +1,111 @@
+package io.github.ryntric;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plans routing node migrations from overloaded to underloaded workers.
+ * <p>
+ * Every round compares the number of messages published through each node since the previous round.
+ * Loads are divided by the worker weights, so that a worker of weight 0.5 is as busy with half the messages.
+ * When the busiest worker exceeds the mean load by more than the configured threshold, nodes are moved
+ * from the busiest to the idlest worker, each time picking the node whose load would bring them closest to
+ * each other, until the imbalance falls below the threshold or the move budget is spent.
+ * The plan is executed by the dispatcher with the same ordered handoff as {@link AffinityDispatcher#resize(int)}.
+ * <p>
+ * Not thread-safe: the dispatcher calls it under its lifecycle lock.
+ */
+final class Rebalancer<T> {
+    private final double threshold;
+    private final int maxMoves;
+    private long[] previous;
+
+    Rebalancer(double threshold, int maxMoves) {
+        this.threshold = threshold;
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * Computes the moves of this round.
+     *
+     * @param routingTable the routing table
+     * @param workers      all workers, the first {@code workerCount} of which are active
+     * @param workerCount  number of active workers
+     * @param weights      the weight of every worker
+     * @return the indexes of the nodes to move, mapped to their new owner
+     */
+    Map<Integer, Worker<T>> plan(RoutingTable<T> routingTable, Worker<T>[] workers, int workerCount, double[] weights) {
+        long[] rates = sample(routingTable);
+        Map<Integer, Worker<T>> moves = new HashMap<>();
+        if (rates == null || workerCount < 2) {
+            return moves;
+        }
+
+        int[] owners = new int[routingTable.size()];
+        long[] loads = new long[workerCount];
+        long total = 0;
+        double totalWeight = 0;
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = routingTable.getOwnerIndex(i);
+            if (owners[i] < workerCount) {
+                loads[owners[i]] += rates[i];
+                total += rates[i];
+            }
+        }
+        for (int w = 0; w < workerCount; w++) totalWeight += weights[w];
+        double limit = total / totalWeight * (1 + threshold);
+
+        for (int move = 0; move < maxMoves; move++) {
+            int busiest = 0, idlest = 0;
+            for (int w = 1; w < workerCount; w++) {
+                if (loads[w] / weights[w] > loads[busiest] / weights[busiest]) busiest = w;
+                if (loads[w] / weights[w] < loads[idlest] / weights[idlest]) idlest = w;
+            }
+            if (loads[busiest] / weights[busiest] <= limit) {
+                break;
+            }
+
+            // the load that would leave both workers equally busy, and the one that would swap their places
+            double even = (loads[busiest] * weights[idlest] - loads[idlest] * weights[busiest]) / (weights[busiest] + weights[idlest]);
+            double swap = loads[busiest] * weights[idlest] / weights[busiest] - loads[idlest];
+            int candidate = -1;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < owners.length; i++) {
+                // a node carrying the swap load or more would only move the hot spot
+                if (owners[i] != busiest || rates[i] == 0 || rates[i] >= swap) continue;
+                double distance = Math.abs(even - rates[i]);
+                if (distance < best) {
+                    best = distance;
+                    candidate = i;
+                }
+            }
+            if (candidate < 0) {
+                break;
+            }
+
+            owners[candidate] = idlest;
+            loads[busiest] -= rates[candidate];
+            loads[idlest] += rates[candidate];
+            moves.put(candidate, workers[idlest]);
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the number of messages published through every node since the previous call,
+     * or {@code null} on the first call.
+     */
+    private long[] sample(RoutingTable<T> routingTable) {
+        long[] current = new long[routingTable.size()];
+        for (int i = 0; i < current.length; i++) current[i] = routingTable.getPublishedCount(i);
+
+        long[] previous = this.previous;
+        this.previous = current;
+        if (previous == null) {
+            return null;
+        }
+        long[] rates = new long[current.length];
+        for (int i = 0; i < current.length; i++) rates[i] = Math.max(0, current[i] - previous[i]);
+        return rates;
+    }
+}
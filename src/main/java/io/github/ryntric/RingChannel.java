@@ -0,0 +1,58 @@
+package io.github.ryntric;
+
+import java.util.function.Consumer;
+
+/**
+ * {@link WorkerChannel} over a {@link Channel} of the channels library, the ring of workers whose handler does not
+ * need the key.
+ */
+final class RingChannel<T> implements WorkerChannel<T> {
+    private final Channel<T> channel;
+
+    RingChannel(Channel<T> channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void push(T value) {
+        channel.push(value);
+    }
+
+    @Override
+    public void push(T[] values, int offset, int count) {
+        if (offset == 0 && count == values.length) {
+            channel.push(values);
+        } else {
+            // the library pushes whole arrays or collections only, and a view of the range would be allocated on
+            // every call: a range is pushed message by message, each one claiming its own slot
+            for (int i = offset, end = offset + count; i < end; i++) {
+                channel.push(values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void push(Object key, long primitiveKey, T value) {
+        channel.push(value);
+    }
+
+    @Override
+    public void receive(int batchsize, Consumer<T> consumer) {
+        channel.receive(batchsize, consumer);
+    }
+
+    @Override
+    public long size() {
+        return channel.size();
+    }
+
+    @Override
+    public void wakeupConsumer() {
+        channel.wakeupConsumer();
+    }
+
+    @Override
+    public void close() {
+        channel.close();
+    }
+}
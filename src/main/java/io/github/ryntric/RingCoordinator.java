@@ -0,0 +1,93 @@
+package io.github.ryntric;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the producers and the worker of a {@link SequencedChannel} wait: producers for a free slot, the worker for a
+ * published one. Implements the wait strategy types of the channels library, the same way its {@link Channel} does,
+ * on this library's own rings.
+ * <p>
+ * With {@link ConsumerWaitStrategyType#BLOCKING}, the worker waits on a monitor until a publish wakes it up. A wakeup
+ * that comes first is kept, so the worker does not block on a message published between its last look at the ring
+ * and the wait. Every other strategy needs no wakeup.
+ */
+final class RingCoordinator {
+    private final ProducerWaitStrategyType producerWaitStrategyType;
+    private final ConsumerWaitStrategyType consumerWaitStrategyType;
+    private final Object mutex = new Object();
+    /**
+     * Whether no wakeup came since the worker last waited. Guarded by the mutex.
+     */
+    private boolean blocked = true;
+
+    RingCoordinator(ProducerWaitStrategyType producerWaitStrategyType, ConsumerWaitStrategyType consumerWaitStrategyType) {
+        this.producerWaitStrategyType = producerWaitStrategyType;
+        this.consumerWaitStrategyType = consumerWaitStrategyType;
+    }
+
+    /**
+     * Waits a little for the worker to free a slot. Called in a loop until it has.
+     */
+    void producerWait() {
+        switch (producerWaitStrategyType) {
+            case SPINNING: {
+                Thread.onSpinWait();
+                break;
+            }
+            case YIELDING: {
+                Thread.yield();
+                break;
+            }
+            case PARKING: {
+                LockSupport.parkNanos(1);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Waits a little, or with {@code BLOCKING} until the next wakeup, for a producer to publish. Worker thread only;
+     * the caller checks the ring again afterwards.
+     */
+    void consumerWait() {
+        switch (consumerWaitStrategyType) {
+            case SPINNING: {
+                Thread.onSpinWait();
+                break;
+            }
+            case YIELDING: {
+                Thread.yield();
+                break;
+            }
+            case PARKING: {
+                LockSupport.parkNanos(1);
+                break;
+            }
+            case BLOCKING: {
+                synchronized (mutex) {
+                    try {
+                        while (blocked) {
+                            mutex.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        // same as the channels library: the worker stops on its running flag, not on interrupts
+                    }
+                    blocked = true;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Wakes the worker up if it waits with {@code BLOCKING}. Called after every publish and on termination.
+     */
+    void wakeupConsumer() {
+        if (consumerWaitStrategyType == ConsumerWaitStrategyType.BLOCKING) {
+            synchronized (mutex) {
+                blocked = false;
+                mutex.notifyAll();
+            }
+        }
+    }
+}
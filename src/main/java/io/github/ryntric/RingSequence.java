@@ -0,0 +1,35 @@
+package io.github.ryntric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A sequence of a {@link RingSequencer}, kept in the middle of an array of 15 longs so that it does not share a cache
+ * line with anything else: the cursor is written by producers and the gating sequence by the worker.
+ */
+final class RingSequence {
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int INDEX = 7;
+
+    private final long[] values = new long[2 * INDEX + 1];
+
+    RingSequence(long value) {
+        values[INDEX] = value;
+    }
+
+    long getPlain() {
+        return values[INDEX];
+    }
+
+    long getAcquire() {
+        return (long) VALUES.getAcquire(values, INDEX);
+    }
+
+    void setRelease(long value) {
+        VALUES.setRelease(values, INDEX, value);
+    }
+
+    long getAndAdd(long delta) {
+        return (long) VALUES.getAndAdd(values, INDEX, delta);
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.ryntric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Claims and publishes the slots of a {@link SequencedChannel}, the same way as the sequencers behind a
+ * {@link Channel}: producers claim sequences past the cursor, waiting while that would overwrite a slot the worker
+ * has not released yet, and publish them once filled; the worker reads up to the highest published sequence and
+ * releases what it has read by moving the gating sequence.
+ * <p>
+ * With a single producer the cursor is the last published sequence. With several, it is the last claimed one and
+ * every slot records the lap it was last published in, so the worker stops at the first slot still being filled.
+ */
+abstract class RingSequencer {
+    static final long INITIAL_SEQUENCE = -1;
+
+    final int size;
+    final RingSequence cursor = new RingSequence(INITIAL_SEQUENCE);
+    final RingSequence gating = new RingSequence(INITIAL_SEQUENCE);
+
+    RingSequencer(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @param size a power of two
+     */
+    static RingSequencer create(ChannelType type, int size) {
+        return type.isMultiProducer() ? new MultiProducer(size) : new SingleProducer(size);
+    }
+
+    final long next(RingCoordinator coordinator) {
+        return next(coordinator, 1);
+    }
+
+    /**
+     * Claims {@code count} consecutive sequences, at most the ring size, waiting for the worker to free their slots.
+     *
+     * @return the highest claimed sequence
+     */
+    abstract long next(RingCoordinator coordinator, int count);
+
+    abstract void publish(long sequence);
+
+    abstract void publish(long low, long high);
+
+    /**
+     * Returns the highest sequence of {@code [next, available]} up to which every slot is published, {@code next - 1}
+     * if the slot of {@code next} is not. Worker thread only.
+     */
+    abstract long getHighest(long next, long available);
+
+    /**
+     * Releases the slots up to the given sequence to the producers. Worker thread only.
+     */
+    final void release(long sequence) {
+        gating.setRelease(sequence);
+    }
+
+    /**
+     * Waits until the worker has released the slot of the given sequence one lap earlier.
+     *
+     * @return the gating sequence, at least {@code wrapPoint}
+     */
+    final long awaitGating(RingCoordinator coordinator, long wrapPoint) {
+        long gating;
+        while (wrapPoint > (gating = this.gating.getAcquire())) {
+            coordinator.producerWait();
+        }
+        return gating;
+    }
+
+    private static final class SingleProducer extends RingSequencer {
+        private long claimed = INITIAL_SEQUENCE;
+        private long cachedGating = INITIAL_SEQUENCE;
+
+        SingleProducer(int size) {
+            super(size);
+        }
+
+        @Override
+        long next(RingCoordinator coordinator, int count) {
+            long high = claimed + count;
+            long wrapPoint = high - size;
+            if (wrapPoint > cachedGating) {
+                cachedGating = awaitGating(coordinator, wrapPoint);
+            }
+            claimed = high;
+            return high;
+        }
+
+        @Override
+        void publish(long sequence) {
+            cursor.setRelease(sequence);
+        }
+
+        @Override
+        void publish(long low, long high) {
+            cursor.setRelease(high);
+        }
+
+        @Override
+        long getHighest(long next, long available) {
+            return available;
+        }
+    }
+
+    private static final class MultiProducer extends RingSequencer {
+        private static final VarHandle LAPS = MethodHandles.arrayElementVarHandle(int[].class);
+        private static final VarHandle CACHED_GATING;
+
+        static {
+            try {
+                CACHED_GATING = MethodHandles.lookup().findVarHandle(MultiProducer.class, "cachedGating", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * The lap of the sequence last published in every slot, {@code -1} before the first.
+         */
+        private final int[] laps;
+        private final int mask;
+        private final int shift;
+        /**
+         * The gating sequence last seen by any producer, a lower bound of the current one. Producers read and write
+         * it without ordering, so one may overwrite a newer value with an older one it saw: every value written was
+         * read from the gating sequence, which only moves forward, so the field never runs ahead of it, and a stale
+         * value only makes a producer read the gating sequence again. Accesses are opaque rather than plain because
+         * a plain {@code long} may be torn on 32-bit JVMs, and a torn value could run ahead of the gating sequence
+         * and let a producer overwrite a slot the worker has not released.
+         */
+        private long cachedGating = INITIAL_SEQUENCE;
+
+        MultiProducer(int size) {
+            super(size);
+            this.laps = new int[size];
+            this.mask = size - 1;
+            this.shift = Integer.numberOfTrailingZeros(size);
+            Arrays.fill(laps, -1);
+        }
+
+        @Override
+        long next(RingCoordinator coordinator, int count) {
+            long high = cursor.getAndAdd(count) + count;
+            long wrapPoint = high - size;
+            if (wrapPoint > (long) CACHED_GATING.getOpaque(this)) {
+                CACHED_GATING.setOpaque(this, awaitGating(coordinator, wrapPoint));
+            }
+            return high;
+        }
+
+        @Override
+        void publish(long sequence) {
+            LAPS.setRelease(laps, (int) sequence & mask, (int) (sequence >>> shift));
+        }
+
+        @Override
+        void publish(long low, long high) {
+            for (long sequence = low; sequence <= high; sequence++) {
+                publish(sequence);
+            }
+        }
+
+        @Override
+        long getHighest(long next, long available) {
+            for (long sequence = next; sequence <= available; sequence++) {
+                if ((int) LAPS.getAcquire(laps, (int) sequence & mask) != (int) (sequence >>> shift)) {
+                    return sequence - 1;
+                }
+            }
+            return available;
+        }
+    }
+}
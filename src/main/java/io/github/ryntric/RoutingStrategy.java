@@ -0,0 +1,78 @@
+package io.github.ryntric;
+
+/**
+ * Defines how the hash code of a key is mapped to a worker.
+ * {@code VIRTUAL_NODES} — multiply-high scaling onto a table of {@link Config#getRoutingNodePerWorker()} routing
+ * nodes per worker, each owned by a worker. Balance improves with the number of nodes; resizing moves the fewest
+ * nodes possible and holds back only their producers, and hot nodes can be rebalanced.
+ * {@code JUMP_CONSISTENT_HASH} — Lamping and Veach's jump consistent hash straight onto the workers, with no
+ * table: a few multiplications per message, growing with the logarithm of the worker count. Resizing moves the
+ * fewest keys possible.
+ * {@code RENDEZVOUS} — highest random weight hashing straight onto the workers: every worker is scored for the
+ * key and the highest score wins. One hash per worker and message, so best suited to a few workers; resizing moves
+ * the fewest keys possible.
+ * <p>
+ * With {@code JUMP_CONSISTENT_HASH} and {@code RENDEZVOUS}, a resize holds back every producer until the previous
+ * workers have handled what was published to them, and routing nodes cannot be rebalanced.
+ */
+public enum RoutingStrategy {
+    VIRTUAL_NODES {
+        @Override
+        int route(int hashcode, int buckets) {
+            return (int) (((hashcode & 0xFFFFFFFFL) * buckets) >>> 32);
+        }
+    },
+    JUMP_CONSISTENT_HASH {
+        @Override
+        int route(int hashcode, int buckets) {
+            long key = hashcode & 0xFFFFFFFFL;
+            long bucket = -1;
+            long next = 0;
+            while (next < buckets) {
+                bucket = next;
+                key = key * 2862933555777941757L + 1;
+                next = (long) ((bucket + 1) * (JUMP_SCALE / ((key >>> 33) + 1)));
+            }
+            return (int) bucket;
+        }
+    },
+    RENDEZVOUS {
+        @Override
+        int route(int hashcode, int buckets) {
+            long seed = hashcode * 0x9E3779B97F4A7C15L;
+            int winner = 0;
+            long best = Long.MIN_VALUE;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long score = mix(seed + bucket * 0xC2B2AE3D27D4EB4FL);
+                if (score > best) {
+                    best = score;
+                    winner = bucket;
+                }
+            }
+            return winner;
+        }
+    };
+
+    private static final double JUMP_SCALE = 1L << 31;
+
+    /**
+     * Maps a hash code to one of {@code buckets} buckets, uniformly for uniform hash codes.
+     *
+     * @param buckets the number of routing nodes or workers, at least 1
+     * @return the bucket index, in {@code [0, buckets)}
+     */
+    abstract int route(int hashcode, int buckets);
+
+    boolean isDirect() {
+        return this != VIRTUAL_NODES;
+    }
+
+    /**
+     * The MurmurHash3 64-bit finalizer.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
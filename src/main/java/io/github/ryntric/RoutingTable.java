@@ -0,0 +1,321 @@
+package io.github.ryntric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The routing table: the index of the worker owning every routing node, in a flat {@code byte[]}, or a
+ * {@code short[]} once there are more than {@value #MAX_NARROW_WORKERS} workers, next to the dense array of workers.
+ * Routing a message costs one array load and one worker lookup, and the table of a few thousand nodes stays in the
+ * L1 cache instead of being spread over as many heap objects.
+ * <p>
+ * With a direct {@link RoutingStrategy}, keys are mapped straight onto the active workers and the table holds one
+ * entry per worker, owned by that worker; the entries only carry the handoff flag. A node then also carries the
+ * worker count it was routed with, so that a producer detects a resize that happened in the meantime, see
+ * {@link #beginRehash(int)}.
+ * <p>
+ * Ownership of a node can be handed off to another worker with {@link #beginHandoff(int, Worker)} and
+ * {@link #completeHandoff(int)}. The handoff flag is the high bit of the node's entry, so producers read the owner
+ * and the flag at once. While a handoff is pending, producers wait until the previous owner has handled everything
+ * published through the node, so that per-key ordering holds across the switch. A producer that read the previous
+ * owner right before the switch detects it after publishing and waits for the previous owner to handle its message
+ * before returning. The fast path costs two volatile reads and no atomic read-modify-write.
+ * <p>
+ * When sampling is enabled, the table counts the messages published through every node for the rebalancer.
+ * The counts are updated with opaque stores, so concurrent producers may lose increments; they are a load
+ * estimate, not an exact figure.
+ * <p>
+ * Entries and workers change only under the dispatcher's lifecycle lock; producers read them from any thread.
+ */
+final class RoutingTable<T> {
+    static final int MAX_NARROW_WORKERS = 0x80;
+    static final int MAX_WORKERS = 0x8000;
+    private static final int NARROW_HANDOFF = 0x80;
+    private static final int HANDOFF = 0x8000;
+    private static final int SLOT_MASK = MAX_WORKERS - 1;
+    private static final int COUNT_SHIFT = 15;
+    private static final VarHandle NARROW = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle WIDE = MethodHandles.arrayElementVarHandle(short[].class);
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final RoutingStrategy strategy;
+    private final boolean direct;
+    /**
+     * The number of nodes, fixed unless the strategy is direct.
+     */
+    private final int size;
+    private volatile Layout<T> layout;
+    private final long[] published;
+
+    /**
+     * The entries, the workers they index and the number of nodes keys are routed over, read through a single
+     * volatile field. The arrays of entries are updated in place; a new layout is published only when workers are
+     * added or, with a direct strategy, when the worker count changes.
+     */
+    private static final class Layout<T> {
+        /**
+         * The entries while every worker index fits in 7 bits, {@code null} once widened.
+         */
+        final byte[] narrow;
+        /**
+         * The entries once widened, {@code null} before.
+         */
+        final short[] wide;
+        final Worker<T>[] workers;
+        final int count;
+
+        Layout(byte[] narrow, short[] wide, Worker<T>[] workers, int count) {
+            this.narrow = narrow;
+            this.wide = wide;
+            this.workers = workers;
+            this.count = count;
+        }
+
+        /**
+         * Returns the entry of the node: the owner's index, with {@link #HANDOFF} set while a handoff is pending.
+         */
+        int entry(int node) {
+            if (narrow != null) {
+                int entry = (byte) NARROW.getAcquire(narrow, node);
+                return entry & (NARROW_HANDOFF - 1) | (entry & NARROW_HANDOFF) << 8;
+            }
+            return (short) WIDE.getAcquire(wide, node) & 0xFFFF;
+        }
+
+        void setEntry(int node, int entry) {
+            if (narrow != null) {
+                NARROW.setVolatile(narrow, node, (byte) (entry & (NARROW_HANDOFF - 1) | (entry & HANDOFF) >>> 8));
+            } else {
+                WIDE.setVolatile(wide, node, (short) entry);
+            }
+        }
+    }
+
+    /**
+     * Creates a table of the given size whose nodes are dealt to the first {@code workerCount} workers in turn,
+     * or, with a direct strategy, a table of one node per worker routing keys over the first {@code workerCount}.
+     *
+     * @param size     the number of nodes, ignored with a direct strategy
+     * @param workers  all workers, at most {@link #MAX_WORKERS}
+     * @param sampling whether published messages are counted per node, not supported with a direct strategy
+     */
+    RoutingTable(RoutingStrategy strategy, int size, Worker<T>[] workers, int workerCount, boolean sampling) {
+        this.strategy = strategy;
+        this.direct = strategy.isDirect();
+        this.size = size;
+        this.published = sampling ? new long[size] : null;
+        this.layout = direct
+                ? newLayout(workers, workerCount, workers.length, workers.length)
+                : newLayout(workers, size, size, workerCount);
+    }
+
+    /**
+     * Creates a layout of {@code entries} entries whose nodes are dealt to the first {@code owners} workers in turn.
+     */
+    private static <T> Layout<T> newLayout(Worker<T>[] workers, int count, int entries, int owners) {
+        if (workers.length <= MAX_NARROW_WORKERS) {
+            byte[] narrow = new byte[entries];
+            for (int node = 0; node < entries; node++) narrow[node] = (byte) (node % owners);
+            return new Layout<>(narrow, null, workers, count);
+        }
+        short[] wide = new short[entries];
+        for (int node = 0; node < entries; node++) wide[node] = (short) (node % owners);
+        return new Layout<>(null, wide, workers, count);
+    }
+
+    /**
+     * Returns the number of nodes keys are routed over: the table size, or the number of active workers with a
+     * direct strategy.
+     */
+    int size() {
+        return direct ? layout.count : size;
+    }
+
+    /**
+     * Maps a hash code to its routing node with the routing strategy.
+     */
+    int route(int hashcode) {
+        if (!direct) {
+            return strategy.route(hashcode, size);
+        }
+        int count = layout.count;
+        return count << COUNT_SHIFT | strategy.route(hashcode, count);
+    }
+
+    private int slot(int node) {
+        return direct ? node & SLOT_MASK : node;
+    }
+
+    /**
+     * Returns the index of the node's current owner, or of its next owner while a handoff is pending.
+     */
+    int getOwnerIndex(int node) {
+        return layout.entry(slot(node)) & (HANDOFF - 1);
+    }
+
+    Worker<T> getOwner(int node) {
+        Layout<T> layout = this.layout;
+        return layout.workers[layout.entry(slot(node)) & (HANDOFF - 1)];
+    }
+
+    /**
+     * Replaces the workers with a larger array holding the same workers first, widening the entries if the new
+     * workers do not fit in a byte. Must not be called while a handoff is pending.
+     */
+    void setWorkers(Worker<T>[] workers) {
+        Layout<T> layout = this.layout;
+        if (direct) {
+            // every worker owns its own entry, so the entries are rebuilt rather than copied
+            this.layout = newLayout(workers, layout.count, workers.length, workers.length);
+        } else if (workers.length > MAX_NARROW_WORKERS && layout.narrow != null) {
+            short[] wide = new short[layout.count];
+            for (int node = 0; node < wide.length; node++) wide[node] = layout.narrow[node];
+            // producers still on the narrow entries see the same owners, and release() reads the wide ones
+            this.layout = new Layout<>(null, wide, workers, layout.count);
+        } else {
+            this.layout = new Layout<>(layout.narrow, layout.wide, workers, layout.count);
+        }
+    }
+
+    /**
+     * Returns the current owner of the node, waiting while a handoff is pending.
+     */
+    Worker<T> acquire(int node) {
+        int slot = slot(node);
+        Layout<T> layout = this.layout;
+        int entry = layout.entry(slot);
+        while (entry >= HANDOFF) {
+            Thread.onSpinWait();
+            layout = this.layout;
+            entry = layout.entry(slot);
+        }
+        return layout.workers[entry];
+    }
+
+    /**
+     * Waits until the given worker has handled what this producer published to it,
+     * if the node has been handed off in the meantime.
+     */
+    void release(int node, Worker<T> published) {
+        if (isMoved(node, published.getIndex())) {
+            published.awaitDrained();
+        }
+    }
+
+    /**
+     * Returns whether the node has been handed off, or the keys rehashed, since it was routed to the given worker,
+     * so that what was published to that worker must be handled before anything else is published through the node.
+     */
+    boolean isMoved(int node, int worker) {
+        if (direct) {
+            return layout.count != node >>> COUNT_SHIFT;
+        }
+        return getOwnerIndex(node) != worker;
+    }
+
+    /**
+     * Returns the number of messages published through the node, if sampling is enabled.
+     */
+    long getPublishedCount(int node) {
+        return (long) PUBLISHED.getOpaque(published, node);
+    }
+
+    void onPublished(int node, int count) {
+        long[] published = this.published;
+        if (published != null) {
+            PUBLISHED.setOpaque(published, node, (long) PUBLISHED.getOpaque(published, node) + count);
+        }
+    }
+
+    void publish(int node, int hashcode, Object key, long primitiveKey, T value) {
+        Worker<T> current = acquire(node);
+        current.publish(hashcode, key, primitiveKey, value);
+        onPublished(node, 1);
+        release(node, current);
+    }
+
+    /**
+     * Publishes the value to the owner's priority channel, see {@link Worker#publishPriority(Object, long, Object)}.
+     */
+    void publishPriority(int node, Object key, long primitiveKey, T value) {
+        Worker<T> current = acquire(node);
+        current.publishPriority(key, primitiveKey, value);
+        onPublished(node, 1);
+        release(node, current);
+    }
+
+    /**
+     * Copies a binary record into the owner's off-heap channel, see {@link Worker#publishRecord(Object, int, int)}.
+     */
+    void publishRecord(int node, Object source, int offset, int length) {
+        Worker<T> current = acquire(node);
+        current.publishRecord(source, offset, length);
+        onPublished(node, 1);
+        release(node, current);
+    }
+
+    /**
+     * Publishes the value if the owner has room for it, without waiting.
+     *
+     * @return {@code true} if the value was published
+     */
+    boolean tryPublish(int node, int hashcode, Object key, long primitiveKey, T value) {
+        Worker<T> current = acquire(node);
+        boolean published = current.tryPublish(hashcode, key, primitiveKey, value);
+        if (published) {
+            onPublished(node, 1);
+        }
+        release(node, current);
+        return published;
+    }
+
+    /**
+     * Publishes the value, waiting at most until the given {@link System#nanoTime()} deadline for room.
+     *
+     * @return {@code true} if the value was published
+     */
+    boolean tryPublish(int node, int hashcode, Object key, long primitiveKey, T value, long deadlineNanos) {
+        Worker<T> current = acquire(node);
+        boolean published = current.tryPublish(hashcode, key, primitiveKey, value, deadlineNanos);
+        if (published) {
+            onPublished(node, 1);
+        }
+        release(node, current);
+        return published;
+    }
+
+    /**
+     * Starts handing the node off to the given worker. Producers wait from now on until
+     * {@link #completeHandoff(int)} is called, which must happen once the previous owner is drained.
+     *
+     * @param target the new owner
+     * @return the previous owner
+     */
+    Worker<T> beginHandoff(int node, Worker<T> target) {
+        Worker<T> previous = getOwner(node);
+        layout.setEntry(node, target.getIndex() | HANDOFF);
+        return previous;
+    }
+
+    void completeHandoff(int node) {
+        layout.setEntry(node, getOwnerIndex(node));
+    }
+
+    /**
+     * Starts routing keys over the first {@code count} workers, with a direct strategy. Producers wait from now on
+     * until {@link #completeRehash()} is called, which must happen once the previously active workers are drained.
+     * A producer that routed a key with the previous count detects the change after publishing, see
+     * {@link #release(int, Worker)}.
+     */
+    void beginRehash(int count) {
+        Layout<T> layout = this.layout;
+        int slots = Math.max(layout.count, count);
+        for (int slot = 0; slot < slots; slot++) layout.setEntry(slot, slot | HANDOFF);
+        this.layout = new Layout<>(layout.narrow, layout.wide, layout.workers, count);
+    }
+
+    void completeRehash() {
+        Layout<T> layout = this.layout;
+        for (int slot = 0; slot < layout.workers.length; slot++) layout.setEntry(slot, slot);
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.ryntric;
+
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base of the rings that lay out their slots themselves, built on a {@link RingSequencer} and a
+ * {@link RingCoordinator}: producers claim a sequence, fill the slot and publish the sequence; the worker reads the
+ * slots up to the published cursor and then releases them to the producers at once.
+ */
+abstract class SequencedChannel<T> implements WorkerChannel<T> {
+    private static final Logger LOGGER = Logger.getLogger(SequencedChannel.class.getName());
+
+    final RingCoordinator coordinator;
+    final RingSequencer sequencer;
+    final int mask;
+
+    SequencedChannel(RingCoordinator coordinator, RingSequencer sequencer, int size) {
+        this.coordinator = coordinator;
+        this.sequencer = sequencer;
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException(String.format("Buffer size [%d] must be a power of two", size));
+        }
+        this.mask = size - 1;
+    }
+
+    final int slot(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    /**
+     * Returns the message of a published slot, worker thread only. The slot is released to the producers once
+     * the current {@link #receive(int, Consumer)} returns.
+     */
+    abstract T take(int slot);
+
+    /**
+     * Called once the messages of a {@link #receive(int, Consumer)} have been handled.
+     */
+    void endReceive() {
+    }
+
+    @Override
+    public final void receive(int batchsize, Consumer<T> consumer) {
+        if (poll(batchsize, consumer) == 0) {
+            coordinator.consumerWait();
+        }
+    }
+
+    /**
+     * Hands at most {@code batchsize} messages to the consumer without waiting if there is none.
+     *
+     * @return the number of messages handed
+     */
+    final int poll(int batchsize, Consumer<T> consumer) {
+        long gating = sequencer.gating.getPlain();
+        long next = gating + 1;
+        long available = Math.min(sequencer.cursor.getAcquire(), gating + batchsize);
+        if (next > available) {
+            return 0;
+        }
+        long highest = sequencer.getHighest(next, available);
+        for (long sequence = next; sequence <= highest; sequence++) {
+            T value = take(slot(sequence));
+            try {
+                consumer.accept(value);
+            } catch (Throwable e) {
+                // same as the channels library: a failing consumer must not stall the ring
+                LOGGER.log(Level.WARNING, String.format("Failed to handle message at sequence %d", sequence), e);
+            }
+        }
+        endReceive();
+        sequencer.release(highest);
+        return (int) (highest - gating);
+    }
+
+    @Override
+    public final long size() {
+        return sequencer.cursor.getAcquire() - sequencer.gating.getAcquire();
+    }
+
+    @Override
+    public final void wakeupConsumer() {
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    public final void close() {
+        // the ring holds no resource beyond its arrays
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.ryntric;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of {@link AffinityDispatcher#shutdown(java.time.Duration)}: how many messages each worker handled
+ * while draining, and how many it left behind when the deadline passed.
+ */
+public final class ShutdownReport {
+    static final ShutdownReport EMPTY = new ShutdownReport(Collections.emptyMap(), Collections.emptyMap(), true);
+
+    private final Map<String, Long> drainedCounts;
+    private final Map<String, Long> droppedCounts;
+    private final boolean drained;
+
+    ShutdownReport(Map<String, Long> drainedCounts, Map<String, Long> droppedCounts, boolean drained) {
+        this.drainedCounts = Collections.unmodifiableMap(drainedCounts);
+        this.droppedCounts = Collections.unmodifiableMap(droppedCounts);
+        this.drained = drained;
+    }
+
+    /**
+     * Returns whether every worker emptied its channel and overflow queue and stopped before the deadline.
+     *
+     * @return {@code true} if nothing was dropped
+     */
+    public boolean isDrained() {
+        return drained;
+    }
+
+    /**
+     * Returns the number of messages each worker handled between the shutdown request and its stop.
+     *
+     * @return a map from worker name to drained count
+     */
+    public Map<String, Long> getDrainedCounts() {
+        return drainedCounts;
+    }
+
+    /**
+     * Returns the number of messages each worker had been dispatched but not handled when it was stopped.
+     *
+     * @return a map from worker name to dropped count
+     */
+    public Map<String, Long> getDroppedCounts() {
+        return droppedCounts;
+    }
+
+    /**
+     * Returns the number of messages handled while draining, over all workers.
+     *
+     * @return total drained count
+     */
+    public long getDrainedCount() {
+        return sum(drainedCounts);
+    }
+
+    /**
+     * Returns the number of messages left unhandled, over all workers.
+     *
+     * @return total dropped count
+     */
+    public long getDroppedCount() {
+        return sum(droppedCounts);
+    }
+
+    private static long sum(Map<String, Long> counts) {
+        long sum = 0;
+        for (long count : counts.values()) sum += count;
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ShutdownReport{drained=%b, drainedCount=%d, droppedCount=%d}", drained, getDrainedCount(), getDroppedCount());
+    }
+}
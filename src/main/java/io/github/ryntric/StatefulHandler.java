@@ -0,0 +1,12 @@
+package io.github.ryntric;
+
+/**
+ * Handler with access to a state object owned by its worker, created once per worker, see
+ * {@link AffinityDispatcher#withState(String, StatefulHandler, java.util.function.Supplier, HashCodeProvider, Config)}.
+ * Since a key is always handled by the same worker, the state of a key can be kept in a {@link LongStateMap} or an
+ * {@link OffHeapLongStateMap} of that worker and updated without synchronization. The handler does not receive the
+ * key; use a {@link LongKeyedStatefulHandler} or a {@link KeyedStatefulHandler} to index the state by it.
+ */
+public interface StatefulHandler<T, S> {
+    void handle(String workerName, S state, T value);
+}
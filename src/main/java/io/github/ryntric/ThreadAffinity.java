@@ -0,0 +1,85 @@
+package io.github.ryntric;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pins the calling thread to a CPU on Linux.
+ * <p>
+ * The native thread id is resolved through {@code /proc/thread-self} and the affinity mask is applied with
+ * {@code taskset}, which calls {@code sched_setaffinity} for that thread. This keeps the library free of JNI
+ * while the byte-code level stays at Java 11.
+ * <p>
+ * Pinning is given up for the whole process the first time it cannot work at all, because the system is not Linux
+ * or {@code taskset} cannot be run, so later worker starts and restarts neither fork again nor log again.
+ */
+final class ThreadAffinity {
+    private static final Logger LOGGER = Logger.getLogger(ThreadAffinity.class.getName());
+    private static final boolean IS_LINUX = System.getProperty("os.name", "").toLowerCase().startsWith("linux");
+    private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+    private static final long TIMEOUT_SECONDS = 1;
+    private static final AtomicBoolean UNAVAILABLE = new AtomicBoolean(!IS_LINUX);
+    private static final AtomicBoolean WARNED = new AtomicBoolean();
+
+    private ThreadAffinity() {
+    }
+
+    /**
+     * Pins the calling thread to the given CPU.
+     *
+     * @param cpu the CPU id
+     * @return {@code true} if the thread has been pinned
+     */
+    static boolean pinCurrentThread(int cpu) {
+        if (UNAVAILABLE.get()) {
+            if (!IS_LINUX && WARNED.compareAndSet(false, true)) {
+                LOGGER.log(Level.WARNING, "CPU pinning is only supported on Linux, worker threads run unpinned");
+            }
+            return false;
+        }
+        Path self;
+        try {
+            // resolves to "<pid>/task/<tid>"
+            self = Files.readSymbolicLink(THREAD_SELF);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            giveUp("Failed to resolve the native thread id, worker threads run unpinned", e);
+            return false;
+        }
+        String tid = self.getFileName().toString();
+        Process process;
+        try {
+            process = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(cpu), tid)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            giveUp("Failed to run taskset, worker threads run unpinned", e);
+            return false;
+        }
+        try {
+            if (process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                return true;
+            }
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        // taskset runs but rejects this CPU, e.g. one outside the cpuset of the process: other CPUs may still work
+        LOGGER.log(Level.WARNING, "Failed to pin thread [{0}] to cpu [{1}]", new Object[]{Thread.currentThread().getName(), cpu});
+        return false;
+    }
+
+    private static void giveUp(String message, Throwable cause) {
+        if (UNAVAILABLE.compareAndSet(false, true)) {
+            LOGGER.log(Level.WARNING, message, cause);
+        }
+    }
+}
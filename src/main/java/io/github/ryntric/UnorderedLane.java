@@ -0,0 +1,95 @@
+package io.github.ryntric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bounded multi-producer, multi-consumer queue of the messages dispatched to a worker without a key, see
+ * {@link AffinityDispatcher#dispatchUnordered(Object)}. Drained by its worker and, with work stealing, by idle
+ * workers.
+ * <p>
+ * Dmitry Vyukov's bounded MPMC queue: every slot carries a sequence telling producers and consumers whose turn it
+ * is, so producers only contend on the tail, consumers on the head, and neither allocates.
+ */
+final class UnorderedLane<T> {
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(UnorderedLane.class, "head", long.class);
+            TAIL = lookup.findVarHandle(UnorderedLane.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object[] values;
+    private final long[] sequences;
+    private final int mask;
+    private volatile long head;
+    private volatile long tail;
+
+    /**
+     * @param capacity a power of two
+     */
+    UnorderedLane(int capacity) {
+        this.values = new Object[capacity];
+        this.sequences = new long[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) sequences[i] = i;
+    }
+
+    int size() {
+        long size = tail - head;
+        return (int) Math.max(0, Math.min(size, values.length));
+    }
+
+    boolean isEmpty() {
+        return tail - head <= 0;
+    }
+
+    /**
+     * Appends the value unless the queue is full.
+     */
+    boolean offer(T value) {
+        long tail = this.tail;
+        while (true) {
+            int index = (int) tail & mask;
+            long sequence = (long) SEQUENCES.getAcquire(sequences, index);
+            if (sequence == tail) {
+                if (TAIL.compareAndSet(this, tail, tail + 1)) {
+                    values[index] = value;
+                    SEQUENCES.setRelease(sequences, index, tail + 1);
+                    return true;
+                }
+            } else if (sequence < tail) {
+                // the slot still holds the value of the previous lap
+                return false;
+            }
+            tail = this.tail;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T poll() {
+        long head = this.head;
+        while (true) {
+            int index = (int) head & mask;
+            long sequence = (long) SEQUENCES.getAcquire(sequences, index);
+            if (sequence == head + 1) {
+                if (HEAD.compareAndSet(this, head, head + 1)) {
+                    T value = (T) values[index];
+                    values[index] = null;
+                    SEQUENCES.setRelease(sequences, index, head + values.length);
+                    return value;
+                }
+            } else if (sequence < head + 1) {
+                return null;
+            }
+            head = this.head;
+        }
+    }
+}
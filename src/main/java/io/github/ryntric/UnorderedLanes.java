@@ -0,0 +1,67 @@
+package io.github.ryntric;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The unordered lanes of every worker of a dispatcher, by worker index. Picks the lane of each unordered message
+ * and, with work stealing, the lane an idle worker steals from.
+ * <p>
+ * Lanes are added under the dispatcher's lifecycle lock, producers and workers read them from any thread.
+ */
+final class UnorderedLanes<T> {
+    private final int capacity;
+    private volatile UnorderedLane<T>[] lanes;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    UnorderedLanes(int capacity) {
+        this.capacity = capacity;
+        this.lanes = new UnorderedLane[0];
+    }
+
+    /**
+     * Creates the lane of the next worker.
+     */
+    UnorderedLane<T> add() {
+        UnorderedLane<T> lane = new UnorderedLane<>(capacity);
+        UnorderedLane<T>[] lanes = Arrays.copyOf(this.lanes, this.lanes.length + 1);
+        lanes[lanes.length - 1] = lane;
+        this.lanes = lanes;
+        return lane;
+    }
+
+    /**
+     * Picks the lane of a message among the first {@code count}: the shorter of two lanes drawn at random, which
+     * keeps the longest lane within a few messages of the mean without reading every lane.
+     *
+     * @return the index of the lane, the same as its worker's
+     */
+    int choose(int count) {
+        if (count == 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (second >= first) second++;
+        UnorderedLane<T>[] lanes = this.lanes;
+        return lanes[second].size() < lanes[first].size() ? second : first;
+    }
+
+    /**
+     * Returns the fullest lane other than the given one, standby workers' included, or {@code null} if they are all
+     * empty.
+     */
+    UnorderedLane<T> victim(UnorderedLane<T> own) {
+        UnorderedLane<T> victim = null;
+        int most = 0;
+        for (UnorderedLane<T> lane : lanes) {
+            int size = lane.size();
+            if (lane != own && size > most) {
+                most = size;
+                victim = lane;
+            }
+        }
+        return victim;
+    }
+}
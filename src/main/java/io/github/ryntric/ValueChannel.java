@@ -0,0 +1,46 @@
+package io.github.ryntric;
+
+/**
+ * Ring of plain messages on a {@link RingSequencer}, for the lanes of a {@link LaneChannel}, which need to be polled
+ * without waiting.
+ */
+final class ValueChannel<T> extends SequencedChannel<T> {
+    private final Object[] values;
+
+    ValueChannel(RingCoordinator coordinator, RingSequencer sequencer, int size) {
+        super(coordinator, sequencer, size);
+        this.values = new Object[size];
+    }
+
+    @Override
+    public void push(T value) {
+        long sequence = sequencer.next(coordinator);
+        values[slot(sequence)] = value;
+        sequencer.publish(sequence);
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    public void push(T[] values, int offset, int count) {
+        long high = sequencer.next(coordinator, count);
+        long low = high - (count - 1);
+        for (int i = 0; i < count; i++) {
+            this.values[slot(low + i)] = values[offset + i];
+        }
+        sequencer.publish(low, high);
+        coordinator.wakeupConsumer();
+    }
+
+    @Override
+    public void push(Object key, long primitiveKey, T value) {
+        push(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    T take(int slot) {
+        T value = (T) values[slot];
+        values[slot] = null;
+        return value;
+    }
+}
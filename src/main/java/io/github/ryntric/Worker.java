@@ -1,14 +1,85 @@
 package io.github.ryntric;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
 final class Worker<T> {
+    private static final int DRAIN_SPINS = 100;
+    private static final long DRAIN_PARK_NANOS = 50_000;
+    private static final int OFFER_SPINS = 100;
+    private static final long OFFER_PARK_NANOS = 10_000;
+
+    private final int index;
+    private final int capacity;
     private final String name;
-    private final Channel<T> channel;
+    private final WorkerChannel<T> channel;
+    /**
+     * The channel if it is preallocated with events, which are claimed instead of published. {@code null} otherwise.
+     */
+    private final EventChannel<T> events;
+    /**
+     * The channel if it holds binary records off the heap, which are copied in instead of published.
+     * {@code null} otherwise.
+     */
+    private final BinaryChannel records;
+    /**
+     * The channel if it has a priority channel next to the normal one, {@code null} otherwise.
+     */
+    private final PriorityChannel<T> priority;
+    private final int priorityCapacity;
     private final WorkerThread<T> thread;
+    private final WorkerMetrics metrics;
+    private final OverflowPolicy overflowPolicy;
+    private final OverflowQueue<T> overflow;
+    /**
+     * The number of slots ever reserved by non-blocking publishes of several producers, and of those reservations
+     * whose push has completed. A producer reserves a slot by moving {@code reserved} past the value it checked the
+     * free room against, so that one free slot is never promised twice, then pushes without holding anything: it
+     * retries only if another producer reserved in between and never waits for another producer's push.
+     * {@code null} for a single-producer channel or a channel with a lane per producer.
+     */
+    private final AtomicLong reserved;
+    private final AtomicLong pushed;
+    private final Journal<T> journal;
+    /**
+     * Keeps the journal in the order of the channel when several producers publish to a journaled worker.
+     */
+    private final ReentrantLock journalLock;
+    /**
+     * The lane of unordered messages, {@code null} unless unordered dispatch is enabled.
+     */
+    private final UnorderedLane<T> lane;
 
-    Worker(WorkerThread<T> thread) {
+    /**
+     * @param priorityCapacity the capacity of the priority channel, 0 if the worker has none
+     */
+    Worker(int index, int capacity, int priorityCapacity, boolean multiProducer, OverflowPolicy overflowPolicy, WorkerThread<T> thread) {
+        this.index = index;
+        this.capacity = capacity;
+        this.priorityCapacity = priorityCapacity;
         this.name = thread.getName();
         this.channel = thread.getChannel();
+        this.events = channel instanceof EventChannel ? (EventChannel<T>) channel : null;
+        this.records = channel instanceof BinaryChannel ? (BinaryChannel) channel : null;
+        this.priority = channel instanceof PriorityChannel ? (PriorityChannel<T>) channel : null;
+        WorkerChannel<T> normal = priority != null ? priority.getNormal() : channel;
         this.thread = thread;
+        this.metrics = thread.getMetrics();
+        this.overflowPolicy = overflowPolicy;
+        this.overflow = thread.getOverflow();
+        // a producer with a lane of its own checks and pushes without a race; on the shared lane, a slot taken in
+        // between only makes the push wait, as with a concurrent blocking publish
+        boolean reserving = multiProducer && !(normal instanceof LaneChannel);
+        this.reserved = reserving ? new AtomicLong() : null;
+        this.pushed = reserving ? new AtomicLong() : null;
+        this.journal = thread.getJournal();
+        this.journalLock = journal != null && multiProducer ? new ReentrantLock() : null;
+        this.lane = thread.getLane();
+    }
+
+    public final int getIndex() {
+        return index;
     }
 
     public final String getName() {
@@ -19,19 +90,418 @@ final class Worker<T> {
         return channel.size();
     }
 
-    public final void publish(T value) {
+    public final WorkerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public final Journal<T> getJournal() {
+        return journal;
+    }
+
+    public final Object getState() {
+        return thread.getState();
+    }
+
+    private void checkTakesMessages() {
+        if (events != null) {
+            throw new UnsupportedOperationException(String.format("Worker [%s] has preallocated events, which are claimed, not published", name));
+        }
+        if (records != null) {
+            throw new UnsupportedOperationException(String.format("Worker [%s] has an off-heap channel, which takes binary records only", name));
+        }
+    }
+
+    private void appendToJournal(int hashcode, T value) {
+        if (journal != null) {
+            journal.append(hashcode, value);
+        }
+    }
+
+    /**
+     * Publishes the value along with its key, applying the overflow policy if the channel is full.
+     * The key is kept only by a channel carrying keys, see {@link WorkerChannel#push(Object, long, Object)}, and the
+     * hash code of the key only by the journal, see {@link Journal#append(int, Object)}.
+     */
+    public final void publish(int hashcode, Object key, long primitiveKey, T value) {
+        checkTakesMessages();
+        if (journalLock == null) {
+            doPublish(hashcode, key, primitiveKey, value);
+            return;
+        }
+        journalLock.lock();
+        try {
+            doPublish(hashcode, key, primitiveKey, value);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private void doPublish(int hashcode, Object key, long primitiveKey, T value) {
+        if (overflowPolicy != OverflowPolicy.BLOCK) {
+            publishOrOverflow(hashcode, key, primitiveKey, value);
+            return;
+        }
+        metrics.onDispatched(1);
+        appendToJournal(hashcode, value);
+        if (channel.producerSize() < capacity) {
+            channel.push(key, primitiveKey, value);
+        } else {
+            long start = System.nanoTime();
+            channel.push(key, primitiveKey, value);
+            metrics.onProducerStall(System.nanoTime() - start);
+        }
+        thread.signal();
+    }
+
+    private void push(T[] values, int offset, int count) {
+        if (channel.producerSize() + count <= capacity) {
+            channel.push(values, offset, count);
+        } else {
+            long start = System.nanoTime();
+            channel.push(values, offset, count);
+            metrics.onProducerStall(System.nanoTime() - start);
+        }
+        thread.signal();
+    }
+
+    /**
+     * Publishes {@code count} values from {@code offset} in order, {@code hashcodes} holding the hash codes of their
+     * keys at the same indexes for the journal. Ranges larger than the channel capacity are pushed in capacity-sized
+     * chunks, since a single claim can never exceed the ring size. Unless the overflow policy is
+     * {@link OverflowPolicy#BLOCK}, values are published one by one.
+     */
+    public final void publish(int[] hashcodes, T[] values, int offset, int count) {
+        checkTakesMessages();
+        if (journalLock == null) {
+            doPublish(hashcodes, values, offset, count);
+            return;
+        }
+        journalLock.lock();
+        try {
+            doPublish(hashcodes, values, offset, count);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private void doPublish(int[] hashcodes, T[] values, int offset, int count) {
+        int end = offset + count;
+        if (overflowPolicy != OverflowPolicy.BLOCK) {
+            for (int i = offset; i < end; i++) publishOrOverflow(hashcodes[i], null, 0, values[i]);
+            return;
+        }
+        metrics.onDispatched(count);
+        for (int i = offset; i < end; i++) appendToJournal(hashcodes[i], values[i]);
+        for (int from = offset; from < end; from += capacity) {
+            push(values, from, Math.min(capacity, end - from));
+        }
+    }
+
+    /**
+     * Spilled messages lose their key: dispatchers with a keyed handler never spill.
+     */
+    private void publishOrOverflow(int hashcode, Object key, long primitiveKey, T value) {
+        if (doTryPublish(hashcode, key, primitiveKey, value)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+            metrics.onDropped();
+            return;
+        }
+        if (journal != null) {
+            // journaled workers are serialized and never evict, so the offer below cannot fail once checked
+            if (overflow.isFull()) {
+                metrics.onDropped();
+                return;
+            }
+            journal.append(hashcode, value);
+        }
+        if (!overflow.offer(value)) {
+            if (overflowPolicy == OverflowPolicy.SPILL) {
+                metrics.onDropped();
+                return;
+            }
+            do {
+                if (overflow.poll() != null) {
+                    metrics.onEvicted();
+                }
+            } while (!overflow.offer(value));
+        }
+        metrics.onDispatched(1);
+        metrics.onSpilled();
+        // the worker may have emptied its channel and gone to sleep since the channel was found full
+        channel.wakeupConsumer();
+        thread.signal();
+    }
+
+    /**
+     * Publishes the value if the channel has a free slot, without waiting.
+     * Fails while spilled messages are pending, so that they are not overtaken.
+     * <p>
+     * Non-blocking publishes of several producers reserve their slot before pushing, so a checked free slot is
+     * never lost to another one of them. A concurrent blocking publish can still take it, in which case the push
+     * waits for the worker to free a slot.
+     *
+     * @return {@code true} if the value was published
+     */
+    public final boolean tryPublish(int hashcode, Object key, long primitiveKey, T value) {
+        checkTakesMessages();
+        if (journalLock == null) {
+            return doTryPublish(hashcode, key, primitiveKey, value);
+        }
+        journalLock.lock();
+        try {
+            return doTryPublish(hashcode, key, primitiveKey, value);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private boolean doTryPublish(int hashcode, Object key, long primitiveKey, T value) {
+        if (overflow != null && !overflow.isEmpty()) {
+            return false;
+        }
+        if (!reserveSlot()) {
+            return false;
+        }
+        try {
+            metrics.onDispatched(1);
+            appendToJournal(hashcode, value);
+            channel.push(key, primitiveKey, value);
+        } finally {
+            if (pushed != null) {
+                pushed.incrementAndGet();
+            }
+        }
+        thread.signal();
+        return true;
+    }
+
+    /**
+     * Reserves a free slot of the channel for a non-blocking push, see {@link #reserved}.
+     *
+     * @return {@code false} if the channel has no slot left that is not already promised to another producer
+     */
+    private boolean reserveSlot() {
+        if (reserved == null) {
+            return channel.producerSize() < capacity;
+        }
+        long current;
+        do {
+            current = reserved.get();
+            // read in this order, a reservation pushed in the meantime counts in the size, in flight or in both
+            long inFlight = current - pushed.get();
+            if (channel.producerSize() + inFlight >= capacity) {
+                return false;
+            }
+        } while (!reserved.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Publishes the value, waiting at most until the given {@link System#nanoTime()} deadline for a free slot.
+     *
+     * @return {@code true} if the value was published
+     */
+    public final boolean tryPublish(int hashcode, Object key, long primitiveKey, T value, long deadlineNanos) {
+        int spins = 0;
+        while (!tryPublish(hashcode, key, primitiveKey, value)) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            if (spins++ < OFFER_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(OFFER_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the value along with its key to the worker's priority channel, waiting for a free slot if it is
+     * full whatever the overflow policy: a control message is neither dropped nor spilled.
+     *
+     * @throws UnsupportedOperationException if the worker has no priority channel
+     */
+    public final void publishPriority(Object key, long primitiveKey, T value) {
+        if (priority == null) {
+            throw new UnsupportedOperationException(String.format("Worker [%s] has no priority channel", name));
+        }
+        metrics.onDispatched(1);
+        if (priority.prioritySize() < priorityCapacity) {
+            priority.pushPriority(key, primitiveKey, value);
+        } else {
+            long start = System.nanoTime();
+            priority.pushPriority(key, primitiveKey, value);
+            metrics.onProducerStall(System.nanoTime() - start);
+        }
+        thread.signal();
+    }
+
+    /**
+     * Publishes a message without ordering requirement to the worker's unordered lane, waiting for a free slot if
+     * it is full. The overflow policy does not apply.
+     */
+    public final void publishUnordered(T value) {
+        int spins = 0;
+        while (!tryPublishUnordered(value)) {
+            if (spins++ < OFFER_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(OFFER_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Publishes a message without ordering requirement to the worker's unordered lane if it has a free slot.
+     *
+     * @return {@code true} if the value was published
+     */
+    public final boolean tryPublishUnordered(T value) {
+        if (!lane.offer(value)) {
+            return false;
+        }
+        metrics.onUnorderedDispatched();
+        thread.signal();
+        return true;
+    }
+
+    /**
+     * Returns the number of unordered messages waiting in the worker's lane, 0 if it has none.
+     */
+    public final int getUnorderedSize() {
+        return lane != null ? lane.size() : 0;
+    }
+
+    /**
+     * Wakes the worker up if it is parked, so that it steals unordered messages from a lane that backs up.
+     */
+    public final void signal() {
+        thread.signal();
+    }
+
+    /**
+     * Claims the next slot of the preallocated event channel, waiting for the worker to free one if it is full.
+     * The slot must be committed with {@link #commit(long)}.
+     *
+     * @return the sequence of the claimed slot
+     * @throws UnsupportedOperationException if the channel is not preallocated with events
+     */
+    public final long claim() {
+        if (events == null) {
+            throw new UnsupportedOperationException(String.format("Worker [%s] has no preallocated events", name));
+        }
+        if (channel.size() < capacity) {
+            return events.next();
+        }
+        long start = System.nanoTime();
+        long sequence = events.next();
+        metrics.onProducerStall(System.nanoTime() - start);
+        return sequence;
+    }
+
+    public final T getEvent(long sequence) {
+        return events.get(sequence);
+    }
+
+    /**
+     * Publishes a slot claimed with {@link #claim()}.
+     */
+    public final void commit(long sequence) {
+        metrics.onDispatched(1);
+        events.publish(sequence);
+        thread.signal();
+    }
+
+    /**
+     * Copies a binary record into the off-heap channel, waiting for a free slot if it is full.
+     *
+     * @param source the {@code byte[]} or {@link java.nio.ByteBuffer} holding the record
+     * @param offset the index of the first record byte in {@code source}
+     * @param length the number of bytes of the record
+     * @throws UnsupportedOperationException if the channel is not an off-heap one
+     * @throws IllegalArgumentException      if the record is larger than the record size
+     */
+    public final void publishRecord(Object source, int offset, int length) {
+        if (records == null) {
+            throw new UnsupportedOperationException(String.format("Worker [%s] has no off-heap channel", name));
+        }
+        records.checkLength(length);
+        metrics.onDispatched(1);
+        if (channel.size() < capacity) {
+            records.pushRecord(source, offset, length);
+        } else {
+            long start = System.nanoTime();
+            records.pushRecord(source, offset, length);
+            metrics.onProducerStall(System.nanoTime() - start);
+        }
+        thread.signal();
+    }
+
+    /**
+     * Publishes a message recovered from the journal, waiting for room regardless of the overflow policy.
+     * The message is already journaled and is not appended again.
+     */
+    public final void publishReplayed(T value) {
+        metrics.onDispatched(1);
         channel.push(value);
+        thread.signal();
     }
 
-    @SafeVarargs
-    public final void publish(T... values) {
-        channel.push(values);
+    /**
+     * Waits until the worker has handled or evicted every message dispatched to it so far,
+     * or until the worker stops running.
+     */
+    public final void awaitDrained() {
+        long mark = metrics.getDispatched();
+        int spins = 0;
+        while (metrics.getCompleted() < mark && thread.isRunning()) {
+            if (spins++ < DRAIN_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(DRAIN_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Marks the worker as standby when it no longer owns routing nodes. A standby worker keeps running
+     * so that late messages from producers that raced with a handoff are still handled.
+     */
+    public final void setStandby(boolean standby) {
+        thread.setStandby(standby);
     }
 
     public final void start() {
         thread.start();
     }
 
+    /**
+     * Asks the worker to stop once its channel and overflow queue are empty, see {@link #awaitTermination(long)}.
+     */
+    public final void drain() {
+        thread.drain();
+    }
+
+    /**
+     * Waits for the worker to stop, at most the given number of nanoseconds.
+     *
+     * @return {@code true} if the worker has stopped
+     */
+    public final boolean awaitTermination(long nanos) throws InterruptedException {
+        return thread.join(nanos);
+    }
+
+    /**
+     * Returns the number of dispatched messages the worker has neither handled nor evicted, unordered messages
+     * still in its lane or taken but not yet handled included.
+     */
+    public final long getPendingCount() {
+        return Math.max(0, metrics.getDispatched() - metrics.getCompleted()) + getUnorderedSize();
+    }
+
     public final void terminate() {
         thread.terminate();
     }
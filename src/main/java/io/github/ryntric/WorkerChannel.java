@@ -0,0 +1,46 @@
+package io.github.ryntric;
+
+import java.util.function.Consumer;
+
+/**
+ * The ring a worker drains: producers publish from any thread, or from a single one for an SPSC ring, and the
+ * worker thread is the only consumer.
+ */
+interface WorkerChannel<T> {
+    void push(T value);
+
+    /**
+     * Publishes {@code count} values from {@code offset} in order, with a single claim where the ring allows it;
+     * {@code count} must not exceed the ring size. Values pushed concurrently by other producers may land between
+     * them.
+     */
+    void push(T[] values, int offset, int count);
+
+    /**
+     * Publishes the value along with the key it was dispatched with. Rings that do not carry keys ignore them.
+     *
+     * @param key          the object key, {@code null} for a primitive one
+     * @param primitiveKey the {@code int} or {@code long} key, {@code 0} for an object one
+     */
+    void push(Object key, long primitiveKey, T value);
+
+    /**
+     * Hands at most {@code batchsize} messages to the consumer, or waits with the consumer wait strategy if there
+     * is none.
+     */
+    void receive(int batchsize, Consumer<T> consumer);
+
+    long size();
+
+    /**
+     * Returns the number of messages in the ring the calling producer publishes to, {@link #size()} unless the
+     * channel has a lane per producer.
+     */
+    default long producerSize() {
+        return size();
+    }
+
+    void wakeupConsumer();
+
+    void close();
+}
@@ -1,30 +1,89 @@
 package io.github.ryntric;
 
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
 final class WorkerFactory<T> {
     private static final String NAME_TEMPLATE = "%s-worker-th-%d";
 
     private final String name;
     private final int priority;
     private final ThreadGroup group;
+    private final WorkerMode mode;
     private final int batchsize;
     private final Handler<T> handler;
+    private final BatchHandler<T> batchHandler;
+    private final Supplier<?> stateFactory;
+    /**
+     * Creates the handler of a worker from its channel, a {@link KeyCarrier} for keyed handlers, and its state,
+     * {@code null} if the dispatcher takes a plain handler.
+     */
+    private final BiFunction<KeyCarrier, Object, Handler<T>> handlerFactory;
+    private final CpuAffinity cpuAffinity;
+    private final boolean latencyTracking;
+    private final boolean adaptiveWait;
+    private final OverflowPolicy overflowPolicy;
+    private final int overflowQueueCapacity;
+    private final FailurePolicy failurePolicy;
+    private final int failureRetryAttempts;
+    private final DeadLetterHandler<T> deadLetterHandler;
+    /**
+     * The unordered lanes of the workers, {@code null} unless unordered dispatch is enabled.
+     */
+    private final UnorderedLanes<T> unorderedLanes;
+    private final boolean workStealing;
 
-    private int nextId = 0;
-
-    public WorkerFactory(String name, int priority, int batchsize, Handler<T> handler) {
+    public WorkerFactory(String name, WorkerMode mode, int priority, int batchsize, Handler<T> handler, BatchHandler<T> batchHandler,
+                         Supplier<?> stateFactory, BiFunction<KeyCarrier, Object, Handler<T>> handlerFactory, CpuAffinity cpuAffinity, boolean latencyTracking, boolean adaptiveWait, OverflowPolicy overflowPolicy, int overflowQueueCapacity,
+                         FailurePolicy failurePolicy, int failureRetryAttempts, DeadLetterHandler<T> deadLetterHandler, UnorderedLanes<T> unorderedLanes, boolean workStealing) {
         this.name = name;
+        this.mode = mode;
         this.priority = priority;
         this.group = new ThreadGroup(name);
         this.batchsize = batchsize;
         this.handler = handler;
+        this.batchHandler = batchHandler;
+        this.stateFactory = stateFactory;
+        this.handlerFactory = handlerFactory;
+        this.cpuAffinity = cpuAffinity;
+        this.latencyTracking = latencyTracking;
+        this.adaptiveWait = adaptiveWait;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowQueueCapacity = overflowQueueCapacity;
+        this.failurePolicy = failurePolicy;
+        this.failureRetryAttempts = failureRetryAttempts;
+        this.deadLetterHandler = deadLetterHandler;
+        this.unorderedLanes = unorderedLanes;
+        this.workStealing = workStealing;
     }
 
-    private String getName(String prefix) {
-        return String.format(NAME_TEMPLATE, prefix, nextId++);
+    private String getName(String prefix, int id) {
+        return String.format(NAME_TEMPLATE, prefix, id);
     }
 
-    public WorkerThread<T> createWorker(Channel<T> channel) {
-        WorkerThread<T> thread = new WorkerThread<>(getName(name), group, batchsize, channel, handler);
+    /**
+     * @param id      index of the worker, which also picks its CPU
+     * @param channel a {@link KeyCarrier} if the handler is a keyed one
+     */
+    public WorkerThread<T> createWorker(int id, WorkerChannel<T> channel, Journal<T> journal) {
+        String threadName = getName(name, id);
+        WorkerMetrics metrics = new WorkerMetrics(threadName, latencyTracking);
+        boolean spilling = overflowPolicy == OverflowPolicy.SPILL || overflowPolicy == OverflowPolicy.DROP_OLDEST;
+        OverflowQueue<T> overflow = spilling ? new OverflowQueue<>(overflowQueueCapacity) : null;
+        Object state = stateFactory != null ? stateFactory.get() : null;
+        Handler<T> handler = this.handler;
+        if (handlerFactory != null) {
+            handler = handlerFactory.apply(channel instanceof KeyCarrier ? (KeyCarrier) channel : null, state);
+        }
+        FailureGuard<T> guard = new FailureGuard<>(threadName, handler, batchHandler, batchsize, failurePolicy, failureRetryAttempts, deadLetterHandler, metrics);
+        UnorderedLane<T> lane = unorderedLanes != null ? unorderedLanes.add() : null;
+        UnorderedLanes<T> stealFrom = workStealing ? unorderedLanes : null;
+        if (mode == WorkerMode.VIRTUAL_THREAD) {
+            // virtual threads move between carriers: neither pinning nor priorities apply
+            return new WorkerThread<>(threadName, group, mode, batchsize, -1, channel, overflow, journal, guard, state, metrics, adaptiveWait, lane, stealFrom);
+        }
+        int cpu = cpuAffinity.resolve(id);
+        WorkerThread<T> thread = new WorkerThread<>(threadName, group, mode, batchsize, cpu, channel, overflow, journal, guard, state, metrics, adaptiveWait, lane, stealFrom);
         thread.setPriority(priority);
         return thread;
     }
@@ -0,0 +1,393 @@
+package io.github.ryntric;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a single worker.
+ * <p>
+ * Producer side counters are {@link LongAdder}s since several producers may publish to the same worker.
+ * Consumer side counters have a single writer, the worker thread, and are updated with ordered stores only.
+ * <p>
+ * Queue wait is a sampled estimate, not a per-message measurement: a single probe is in flight at a time. A
+ * producer finding no probe in flight arms one with the dispatched count that includes its message, and the worker
+ * records the elapsed time once its completed count, see {@link #getCompleted()}, reaches that target; messages
+ * dispatched while the probe is in flight are not sampled. Under a steady load that is about one sample per queue
+ * turnover, so short bursts are under-represented. Timestamps are not stored with the messages: with several
+ * producers the target may be reached by another producer's message, and high-priority messages overtake normal
+ * ones, so a sample is the wait of a message dispatched at about the same time rather than of the probed one.
+ */
+final class WorkerMetrics implements WorkerMetricsMXBean {
+    private static final long PROBE_IDLE = Long.MAX_VALUE;
+    private static final long PROBE_ARMING = Long.MAX_VALUE - 1;
+
+    private final String workerName;
+    private final boolean latencyTracking;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder producerStalls = new LongAdder();
+    private final LongAdder producerStallNanos = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder unorderedDispatched = new LongAdder();
+
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong consumerIdleNanos = new AtomicLong();
+    private final AtomicLong consumerSpinNanos = new AtomicLong();
+    private final AtomicLong consumerYieldNanos = new AtomicLong();
+    private final AtomicLong consumerParkNanos = new AtomicLong();
+    private final AtomicLong consumerParks = new AtomicLong();
+    private final AtomicLong unorderedTaken = new AtomicLong();
+    private final AtomicLong stolen = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private volatile int plannedCpu = -1;
+    private volatile int pinnedCpu = -1;
+
+    private final AtomicLong probeTarget = new AtomicLong(PROBE_IDLE);
+    private final LatencyHistogram queueWait;
+    private long probeStartNanos;
+
+    private final WorkerMetricsSnapshot jmxSnapshot = new WorkerMetricsSnapshot();
+
+    private WorkerChannel<?> channel;
+    private OverflowQueue<?> overflow;
+
+    WorkerMetrics(String workerName, boolean latencyTracking) {
+        this.workerName = workerName;
+        this.latencyTracking = latencyTracking;
+        this.queueWait = latencyTracking ? new LatencyHistogram() : null;
+    }
+
+    void bind(WorkerChannel<?> channel, OverflowQueue<?> overflow) {
+        this.channel = channel;
+        this.overflow = overflow;
+    }
+
+    void onDispatched(int count) {
+        dispatched.add(count);
+        if (latencyTracking && probeTarget.getAcquire() == PROBE_IDLE && probeTarget.compareAndSet(PROBE_IDLE, PROBE_ARMING)) {
+            probeStartNanos = System.nanoTime();
+            probeTarget.setRelease(dispatched.sum());
+        }
+    }
+
+    void onProducerStall(long nanos) {
+        producerStalls.increment();
+        producerStallNanos.add(nanos);
+    }
+
+    /**
+     * A message was discarded by the overflow policy before being dispatched.
+     */
+    void onDropped() {
+        dropped.increment();
+    }
+
+    /**
+     * A dispatched message was discarded from the overflow queue by the overflow policy.
+     */
+    void onEvicted() {
+        evicted.increment();
+        dropped.increment();
+    }
+
+    void onSpilled() {
+        spilled.increment();
+    }
+
+    /**
+     * A message was published to the worker's unordered lane.
+     */
+    void onUnorderedDispatched() {
+        unorderedDispatched.increment();
+    }
+
+    /**
+     * The worker took unordered messages from its lane, or from another worker's lane if {@code stolen}, and is
+     * about to handle them.
+     */
+    void onUnorderedTaken(int count, boolean stolen) {
+        unorderedTaken.setRelease(unorderedTaken.getPlain() + count);
+        if (stolen) {
+            this.stolen.setRelease(this.stolen.getPlain() + count);
+        }
+    }
+
+    void onHandled() {
+        onHandled(1);
+    }
+
+    void onHandled(int n) {
+        long count = handled.getPlain() + n;
+        handled.setRelease(count);
+        if (latencyTracking) {
+            long target = probeTarget.getAcquire();
+            // compared with the completed count: the target counts neither unordered nor stolen messages, and
+            // evicted messages are never handled
+            if (target < PROBE_ARMING && count - unorderedTaken.getPlain() + evicted.sum() >= target) {
+                queueWait.record(System.nanoTime() - probeStartNanos);
+                probeTarget.setRelease(PROBE_IDLE);
+            }
+        }
+    }
+
+    void onDrained(long count) {
+        batches.setRelease(batches.getPlain() + 1);
+        if (count > maxBatchSize.getPlain()) {
+            maxBatchSize.setRelease(count);
+        }
+    }
+
+    void onConsumerIdle(long nanos) {
+        consumerIdleNanos.setRelease(consumerIdleNanos.getPlain() + nanos);
+    }
+
+    /**
+     * An adaptive wait for messages ended after the given time in each of its phases, a parked time of 0 meaning
+     * that the worker did not park.
+     */
+    void onConsumerWait(long spinNanos, long yieldNanos, long parkNanos) {
+        consumerSpinNanos.setRelease(consumerSpinNanos.getPlain() + spinNanos);
+        consumerYieldNanos.setRelease(consumerYieldNanos.getPlain() + yieldNanos);
+        if (parkNanos > 0) {
+            consumerParkNanos.setRelease(consumerParkNanos.getPlain() + parkNanos);
+            consumerParks.setRelease(consumerParks.getPlain() + 1);
+        }
+    }
+
+    /**
+     * The handler threw on every attempt at the given number of messages, which were given up on.
+     */
+    void onFailed(int count) {
+        failed.setRelease(failed.getPlain() + count);
+    }
+
+    void onRetried() {
+        retried.setRelease(retried.getPlain() + 1);
+    }
+
+    void onDeadLettered() {
+        deadLettered.setRelease(deadLettered.getPlain() + 1);
+    }
+
+    void onRestarted() {
+        restarts.setRelease(restarts.getPlain() + 1);
+    }
+
+    /**
+     * The worker thread started on the given CPU of the affinity plan, {@code -1} if unplanned, and pinned itself
+     * to it if {@code pinned}.
+     */
+    void onPinning(int cpu, boolean pinned) {
+        plannedCpu = cpu;
+        pinnedCpu = pinned ? cpu : -1;
+    }
+
+    /**
+     * Copies the current values into the given snapshot without allocating.
+     *
+     * @param snapshot the snapshot to fill
+     * @return the same snapshot
+     */
+    WorkerMetricsSnapshot snapshot(WorkerMetricsSnapshot snapshot) {
+        snapshot.workerName = workerName;
+        snapshot.handled = handled.getAcquire();
+        snapshot.stolen = stolen.getAcquire();
+        snapshot.dispatched = Math.max(dispatched.sum() + unorderedDispatched.sum(), snapshot.handled - snapshot.stolen);
+        snapshot.channelSize = channel.size();
+        snapshot.batches = batches.getAcquire();
+        snapshot.maxBatchSize = maxBatchSize.getAcquire();
+        snapshot.producerStalls = producerStalls.sum();
+        snapshot.producerStallNanos = producerStallNanos.sum();
+        snapshot.consumerIdleNanos = consumerIdleNanos.getAcquire();
+        snapshot.consumerSpinNanos = consumerSpinNanos.getAcquire();
+        snapshot.consumerYieldNanos = consumerYieldNanos.getAcquire();
+        snapshot.consumerParkNanos = consumerParkNanos.getAcquire();
+        snapshot.consumerParks = consumerParks.getAcquire();
+        snapshot.dropped = dropped.sum();
+        snapshot.spilled = spilled.sum();
+        snapshot.overflowSize = overflow == null ? 0 : overflow.size();
+        snapshot.failed = failed.getAcquire();
+        snapshot.retried = retried.getAcquire();
+        snapshot.deadLettered = deadLettered.getAcquire();
+        snapshot.restarts = restarts.getAcquire();
+        snapshot.plannedCpu = plannedCpu;
+        snapshot.pinnedCpu = pinnedCpu;
+        snapshot.latencyTracking = latencyTracking;
+        if (latencyTracking) {
+            queueWait.copyInto(snapshot.queueWaitCounts);
+        } else {
+            Arrays.fill(snapshot.queueWaitCounts, 0);
+        }
+        return snapshot;
+    }
+
+    long getHandled() {
+        return handled.getAcquire();
+    }
+
+    /**
+     * Returns the number of messages published to the worker's channel or overflow queue, unordered ones aside.
+     */
+    long getDispatched() {
+        return dispatched.sum();
+    }
+
+    /**
+     * Returns the number of dispatched messages that are done with: handled, or evicted from the overflow queue.
+     * Unordered messages are taken out of the handled count as soon as they are taken from a lane, so the result
+     * never runs ahead of the dispatched count.
+     */
+    long getCompleted() {
+        long handled = this.handled.getAcquire();
+        return handled - unorderedTaken.getAcquire() + evicted.sum();
+    }
+
+    @Override
+    public String getWorkerName() {
+        return workerName;
+    }
+
+    @Override
+    public long getDispatchedCount() {
+        return dispatched.sum() + unorderedDispatched.sum();
+    }
+
+    @Override
+    public long getHandledCount() {
+        return handled.getAcquire();
+    }
+
+    @Override
+    public long getChannelSize() {
+        return channel.size();
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batches.getAcquire();
+    }
+
+    @Override
+    public long getMaxBatchSize() {
+        return maxBatchSize.getAcquire();
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        long count = batches.getAcquire();
+        return count == 0 ? 0 : (double) handled.getAcquire() / count;
+    }
+
+    @Override
+    public long getProducerStallCount() {
+        return producerStalls.sum();
+    }
+
+    @Override
+    public long getProducerStallNanos() {
+        return producerStallNanos.sum();
+    }
+
+    @Override
+    public long getConsumerIdleNanos() {
+        return consumerIdleNanos.getAcquire();
+    }
+
+    @Override
+    public long getConsumerSpinNanos() {
+        return consumerSpinNanos.getAcquire();
+    }
+
+    @Override
+    public long getConsumerYieldNanos() {
+        return consumerYieldNanos.getAcquire();
+    }
+
+    @Override
+    public long getConsumerParkNanos() {
+        return consumerParkNanos.getAcquire();
+    }
+
+    @Override
+    public long getConsumerParkCount() {
+        return consumerParks.getAcquire();
+    }
+
+    @Override
+    public long getStolenCount() {
+        return stolen.getAcquire();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    @Override
+    public long getOverflowSize() {
+        return overflow == null ? 0 : overflow.size();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.getAcquire();
+    }
+
+    @Override
+    public long getRetriedCount() {
+        return retried.getAcquire();
+    }
+
+    @Override
+    public long getDeadLetteredCount() {
+        return deadLettered.getAcquire();
+    }
+
+    @Override
+    public long getRestartCount() {
+        return restarts.getAcquire();
+    }
+
+    @Override
+    public int getPlannedCpu() {
+        return plannedCpu;
+    }
+
+    @Override
+    public int getPinnedCpu() {
+        return pinnedCpu;
+    }
+
+    @Override
+    public synchronized long getQueueWaitEstimateP50Nanos() {
+        return snapshot(jmxSnapshot).getQueueWaitEstimate(50);
+    }
+
+    @Override
+    public synchronized long getQueueWaitEstimateP99Nanos() {
+        return snapshot(jmxSnapshot).getQueueWaitEstimate(99);
+    }
+
+    @Override
+    public synchronized long getQueueWaitEstimateP999Nanos() {
+        return snapshot(jmxSnapshot).getQueueWaitEstimate(99.9);
+    }
+
+    @Override
+    public synchronized long getQueueWaitEstimateMaxNanos() {
+        return snapshot(jmxSnapshot).getQueueWaitEstimate(100);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.ryntric;
+
+/**
+ * JMX view of a single worker's metrics.
+ * Registered by {@link AffinityDispatcher#start()} when {@link Config#isJmxEnabled()} is set, under
+ * {@code io.github.ryntric:type=AffinityDispatcher,name=<dispatcher>,worker=<worker>}.
+ */
+public interface WorkerMetricsMXBean {
+
+    String getWorkerName();
+
+    long getDispatchedCount();
+
+    long getHandledCount();
+
+    long getChannelSize();
+
+    long getBatchCount();
+
+    long getMaxBatchSize();
+
+    double getAverageBatchSize();
+
+    long getProducerStallCount();
+
+    long getProducerStallNanos();
+
+    long getConsumerIdleNanos();
+
+    long getConsumerSpinNanos();
+
+    long getConsumerYieldNanos();
+
+    long getConsumerParkNanos();
+
+    long getConsumerParkCount();
+
+    long getStolenCount();
+
+    long getDroppedCount();
+
+    long getSpilledCount();
+
+    long getOverflowSize();
+
+    long getFailedCount();
+
+    long getRetriedCount();
+
+    long getDeadLetteredCount();
+
+    long getRestartCount();
+
+    /**
+     * Returns the CPU the affinity plan assigns to the worker thread, {@code -1} if none.
+     */
+    int getPlannedCpu();
+
+    /**
+     * Returns the CPU the worker thread is pinned to, {@code -1} if it runs unpinned, such as when pinning the
+     * planned CPU failed.
+     */
+    int getPinnedCpu();
+
+    /**
+     * Returns the estimated median queue wait, from a single probe in flight at a time rather than from every
+     * message, see {@link WorkerMetricsSnapshot#getQueueWaitEstimate(double)}.
+     */
+    long getQueueWaitEstimateP50Nanos();
+
+    /**
+     * Returns the estimated 99th percentile of the queue wait, see {@link #getQueueWaitEstimateP50Nanos()}.
+     */
+    long getQueueWaitEstimateP99Nanos();
+
+    /**
+     * Returns the estimated 99.9th percentile of the queue wait, see {@link #getQueueWaitEstimateP50Nanos()}.
+     */
+    long getQueueWaitEstimateP999Nanos();
+
+    /**
+     * Returns the longest queue wait among the probes, see {@link #getQueueWaitEstimateP50Nanos()}.
+     */
+    long getQueueWaitEstimateMaxNanos();
+}
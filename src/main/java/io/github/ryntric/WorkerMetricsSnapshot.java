@@ -0,0 +1,337 @@
+package io.github.ryntric;
+
+/**
+ * Point-in-time copy of a worker's metrics.
+ * <p>
+ * A snapshot is meant to be reused: {@link AffinityDispatcher#getMetrics(int, WorkerMetricsSnapshot)}
+ * overwrites it in place, so metrics can be scraped at high frequency without allocating.
+ * Counters are read one by one while the worker keeps running, so they are individually
+ * accurate but not an atomic view of the worker.
+ */
+public final class WorkerMetricsSnapshot {
+    String workerName;
+    long dispatched;
+    long handled;
+    long channelSize;
+    long batches;
+    long maxBatchSize;
+    long producerStalls;
+    long producerStallNanos;
+    long consumerIdleNanos;
+    long consumerSpinNanos;
+    long consumerYieldNanos;
+    long consumerParkNanos;
+    long consumerParks;
+    long stolen;
+    long dropped;
+    long spilled;
+    long overflowSize;
+    long failed;
+    long retried;
+    long deadLettered;
+    long restarts;
+    int plannedCpu;
+    int pinnedCpu;
+    boolean latencyTracking;
+    final long[] queueWaitCounts = new long[LatencyHistogram.BUCKET_COUNT];
+
+    /**
+     * Returns the name of the worker the snapshot was taken from.
+     *
+     * @return worker name
+     */
+    public String getWorkerName() {
+        return workerName;
+    }
+
+    /**
+     * Returns the number of messages published to the worker.
+     *
+     * @return dispatched count
+     */
+    public long getDispatchedCount() {
+        return dispatched;
+    }
+
+    /**
+     * Returns the number of messages handled by the worker.
+     *
+     * @return handled count
+     */
+    public long getHandledCount() {
+        return handled;
+    }
+
+    /**
+     * Returns the number of messages waiting in the worker's channel.
+     *
+     * @return channel size
+     */
+    public long getChannelSize() {
+        return channelSize;
+    }
+
+    /**
+     * Returns the number of non-empty batches drained from the channel.
+     *
+     * @return batch count
+     */
+    public long getBatchCount() {
+        return batches;
+    }
+
+    /**
+     * Returns the largest number of messages drained in a single batch.
+     *
+     * @return max batch size
+     */
+    public long getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Returns the average number of messages drained per batch.
+     *
+     * @return average batch size
+     */
+    public double getAverageBatchSize() {
+        return batches == 0 ? 0 : (double) handled / batches;
+    }
+
+    /**
+     * Returns how many publishes found the channel full and had to wait.
+     *
+     * @return producer stall count
+     */
+    public long getProducerStallCount() {
+        return producerStalls;
+    }
+
+    /**
+     * Returns the total time producers spent waiting for free space in the channel.
+     *
+     * @return producer stall time in nanoseconds
+     */
+    public long getProducerStallNanos() {
+        return producerStallNanos;
+    }
+
+    /**
+     * Returns the total time the worker spent waiting for messages.
+     *
+     * @return consumer idle time in nanoseconds
+     */
+    public long getConsumerIdleNanos() {
+        return consumerIdleNanos;
+    }
+
+    /**
+     * Returns the part of the idle time the worker spent spinning, with adaptive waiting, see
+     * {@link Config.Builder#setAdaptiveWaitEnabled(boolean)}.
+     *
+     * @return spin time in nanoseconds, 0 without adaptive waiting
+     */
+    public long getConsumerSpinNanos() {
+        return consumerSpinNanos;
+    }
+
+    /**
+     * Returns the part of the idle time the worker spent yielding, with adaptive waiting.
+     *
+     * @return yield time in nanoseconds, 0 without adaptive waiting
+     */
+    public long getConsumerYieldNanos() {
+        return consumerYieldNanos;
+    }
+
+    /**
+     * Returns the part of the idle time the worker spent parked, with adaptive waiting.
+     *
+     * @return park time in nanoseconds, 0 without adaptive waiting
+     */
+    public long getConsumerParkNanos() {
+        return consumerParkNanos;
+    }
+
+    /**
+     * Returns how many times the worker parked, with adaptive waiting.
+     *
+     * @return park count, 0 without adaptive waiting
+     */
+    public long getConsumerParkCount() {
+        return consumerParks;
+    }
+
+    /**
+     * Returns the number of unordered messages the worker took from other workers' lanes, with work stealing.
+     * They are part of its handled count, and of the dispatched count of the workers they were published to.
+     *
+     * @return stolen count
+     */
+    public long getStolenCount() {
+        return stolen;
+    }
+
+    /**
+     * Returns the number of messages discarded by the overflow policy.
+     *
+     * @return dropped count
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Returns the number of messages spilled to the overflow queue because the channel was full.
+     *
+     * @return spilled count
+     */
+    public long getSpilledCount() {
+        return spilled;
+    }
+
+    /**
+     * Returns the number of messages waiting in the worker's overflow queue.
+     *
+     * @return overflow queue size
+     */
+    public long getOverflowSize() {
+        return overflowSize;
+    }
+
+    /**
+     * Returns the number of messages the handler threw on and that were given up on, see {@link FailurePolicy}.
+     *
+     * @return failed count
+     */
+    public long getFailedCount() {
+        return failed;
+    }
+
+    /**
+     * Returns the number of extra handling attempts made by the {@link FailurePolicy#RETRY} policy.
+     *
+     * @return retried count
+     */
+    public long getRetriedCount() {
+        return retried;
+    }
+
+    /**
+     * Returns the number of failed messages passed to the dead-letter handler.
+     *
+     * @return dead-lettered count
+     */
+    public long getDeadLetteredCount() {
+        return deadLettered;
+    }
+
+    /**
+     * Returns the number of times the worker thread was replaced by the {@link FailurePolicy#RESTART} policy.
+     *
+     * @return restart count
+     */
+    public long getRestartCount() {
+        return restarts;
+    }
+
+    /**
+     * Returns the CPU the {@link CpuAffinity} plan assigns to the worker thread. Set when the thread starts.
+     *
+     * @return CPU id, -1 without a plan, for a virtual thread or before the worker thread has started
+     */
+    public int getPlannedCpu() {
+        return plannedCpu;
+    }
+
+    /**
+     * Returns the CPU the worker thread pinned itself to when it started. A planned CPU the thread is not pinned to
+     * means that pinning failed, see {@link CpuAffinity}.
+     *
+     * @return CPU id, -1 if the worker thread runs unpinned
+     */
+    public int getPinnedCpu() {
+        return pinnedCpu;
+    }
+
+    /**
+     * Returns the number of queue-wait probes recorded, see {@link #getQueueWaitEstimate(double)}.
+     *
+     * @return probe count, 0 if latency tracking is disabled
+     */
+    public long getQueueWaitProbeCount() {
+        long total = 0;
+        for (long count : queueWaitCounts) total += count;
+        return total;
+    }
+
+    /**
+     * Returns an estimate of the given percentile of the enqueue-to-handle latency, the upper bound of the
+     * histogram bucket the percentile falls into.
+     * <p>
+     * The histogram is fed by a single probe in flight at a time, not by every message: a producer arms the probe
+     * when none is in flight, and it completes once the worker is done with as many messages as had been dispatched
+     * to it, about one probe per queue turnover. Messages dispatched while a probe is in flight are not sampled, so
+     * bursts are under-represented, and with several producers or high-priority messages a probe measures a message
+     * dispatched at about the same time rather than the one that armed it.
+     *
+     * @param percentile percentile in the range {@code [0, 100]}
+     * @return latency in nanoseconds, 0 if no probe has been recorded
+     */
+    public long getQueueWaitEstimate(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(String.format("Percentile [%s] must be within [0, 100]", percentile));
+        }
+        long total = getQueueWaitProbeCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < queueWaitCounts.length; i++) {
+            seen += queueWaitCounts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.bucketUpperBound(i);
+            }
+        }
+        return LatencyHistogram.bucketUpperBound(queueWaitCounts.length - 1);
+    }
+
+    /**
+     * Returns whether queue-wait latency is tracked for the worker.
+     *
+     * @return {@code true} if latency tracking is enabled
+     */
+    public boolean isLatencyTracking() {
+        return latencyTracking;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerMetricsSnapshot{" +
+                "workerName='" + workerName + '\'' +
+                ", dispatched=" + dispatched +
+                ", handled=" + handled +
+                ", channelSize=" + channelSize +
+                ", batches=" + batches +
+                ", maxBatchSize=" + maxBatchSize +
+                ", producerStalls=" + producerStalls +
+                ", producerStallNanos=" + producerStallNanos +
+                ", consumerIdleNanos=" + consumerIdleNanos +
+                ", consumerSpinNanos=" + consumerSpinNanos +
+                ", consumerYieldNanos=" + consumerYieldNanos +
+                ", consumerParkNanos=" + consumerParkNanos +
+                ", consumerParks=" + consumerParks +
+                ", stolen=" + stolen +
+                ", dropped=" + dropped +
+                ", spilled=" + spilled +
+                ", overflowSize=" + overflowSize +
+                ", failed=" + failed +
+                ", retried=" + retried +
+                ", deadLettered=" + deadLettered +
+                ", restarts=" + restarts +
+                ", plannedCpu=" + plannedCpu +
+                ", pinnedCpu=" + pinnedCpu +
+                '}';
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.ryntric;
+
+/**
+ * Defines how worker drain loops are run.
+ * {@code PLATFORM_THREAD} — one platform thread per worker, waiting with the configured consumer wait strategy.
+ * Suited to CPU-bound handlers, one worker per core.
+ * {@code VIRTUAL_THREAD} — one virtual thread per worker, parked with {@link java.util.concurrent.locks.LockSupport}
+ * while its channel is empty and unparked by the producer that publishes to it. Suited to handlers that block on
+ * I/O, with thousands of workers. Requires Java 21 or later.
+ */
+public enum WorkerMode {
+    PLATFORM_THREAD, VIRTUAL_THREAD
+}
@@ -1,43 +1,434 @@
 package io.github.ryntric;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Consumer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-final class WorkerThread<T> extends Thread {
-    private final Channel<T> channel;
+/**
+ * The drain loop of a worker and the platform or virtual thread running it.
+ * <p>
+ * In parking mode the loop does not rely on the channel's consumer wait strategy when the channel is empty:
+ * it parks with {@link LockSupport#park(Object)} and the producer that publishes next unparks it, see
+ * {@link #signal()}. This is what lets a virtual thread release its carrier while idle. With adaptive waiting the
+ * loop spins and yields first, for as long as {@link AdaptiveWait} expects the next message to take, and parks the
+ * same way if it has not come by then.
+ * <p>
+ * A worker with an unordered lane handles a batch of it after every batch of its channel, and parks while both are
+ * empty. With work stealing, it takes half of the fullest other lane before waiting, so a busy worker's unordered
+ * messages are spread over idle ones while its keyed messages stay with it. A worker with a priority channel
+ * parks likewise, see {@link PriorityChannel}.
+ */
+final class WorkerThread<T> implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(WorkerThread.class.getName());
+    private static final long STANDBY_PARK_NANOS = 1_000_000;
+    private static final VarHandle SLEEPING;
+
+    static {
+        try {
+            SLEEPING = MethodHandles.lookup().findVarHandle(WorkerThread.class, "sleeping", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String name;
+    private final ThreadGroup group;
+    private final WorkerMode mode;
+    /**
+     * Replaced with a new thread running this loop when the {@link FailurePolicy#RESTART} policy asks for it.
+     */
+    private volatile Thread thread;
+    /**
+     * The number of times the thread was replaced, which numbers the names of the replacements.
+     */
+    private int restarts;
+    private final WorkerChannel<T> channel;
+    private final OverflowQueue<T> overflow;
+    private final Journal<T> journal;
     private final int batchsize;
+    private final int cpu;
+    private final boolean parking;
+    /**
+     * The phase budgets of adaptive waiting, {@code null} unless enabled.
+     */
+    private final AdaptiveWait adaptiveWait;
+    /**
+     * The lane of unordered messages, {@code null} unless unordered dispatch is enabled.
+     */
+    private final UnorderedLane<T> lane;
+    /**
+     * The lanes unordered messages are stolen from, {@code null} unless work stealing is enabled.
+     */
+    private final UnorderedLanes<T> stealFrom;
+    /**
+     * The unordered messages taken in the current lane batch, {@code null} without a lane.
+     */
+    private final Object[] unordered;
     private final AtomicBoolean isRunning;
-    private final Consumer<T> handler;
+    private final FailureGuard<T> guard;
+    private final Object state;
+    private final WorkerMetrics metrics;
+    private int priority = Thread.NORM_PRIORITY;
+    private volatile boolean standby;
+    private volatile boolean draining;
+    private boolean sleeping;
 
-    public WorkerThread(String name, ThreadGroup group, int batchsize, Channel<T> channel, Handler<T> delegated) {
-        super(group, name);
+    /**
+     * Creates a worker running on a new platform thread of {@code group}, or on a new virtual thread in
+     * {@link WorkerMode#VIRTUAL_THREAD} mode. Virtual workers park while their channel is empty.
+     *
+     * @param overflow the queue of messages spilled when the channel is full, {@code null} if the overflow
+     *                 policy never spills
+     * @param journal  the write-ahead journal checkpointed after every batch, {@code null} if disabled
+     * @param guard    the handler or batch handler, wrapped with the failure policy
+     * @param state    the worker-local state of a {@link StatefulHandler}, {@code null} if none
+     * @param adaptive  whether the worker waits adaptively for messages instead of with the consumer wait strategy
+     * @param lane      the lane of unordered messages, {@code null} if none
+     * @param stealFrom the lanes to steal unordered messages from when idle, {@code null} if work stealing is disabled
+     */
+    public WorkerThread(String name, ThreadGroup group, WorkerMode mode, int batchsize, int cpu, WorkerChannel<T> channel, OverflowQueue<T> overflow, Journal<T> journal, FailureGuard<T> guard, Object state, WorkerMetrics metrics,
+                        boolean adaptive, UnorderedLane<T> lane, UnorderedLanes<T> stealFrom) {
+        this.name = name;
+        this.group = group;
+        this.mode = mode;
+        // the consumer wait strategy only watches one ring: a worker with a lane or a priority channel parks to be
+        // woken up for any of them
+        this.parking = mode == WorkerMode.VIRTUAL_THREAD || adaptive || lane != null || channel instanceof PriorityChannel;
+        this.adaptiveWait = adaptive ? new AdaptiveWait() : null;
+        this.lane = lane;
+        this.stealFrom = stealFrom;
+        this.unordered = lane != null ? new Object[batchsize] : null;
+        this.thread = newThread(name);
         this.batchsize = batchsize;
+        this.cpu = cpu;
         this.channel = channel;
-        this.handler = (value) -> delegated.handle(name, value);
+        this.overflow = overflow;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.guard = guard;
+        this.state = state;
         this.isRunning = new AtomicBoolean(false);
+        metrics.bind(channel, overflow);
     }
 
-    public Channel<T> getChannel() {
+    public String getName() {
+        return name;
+    }
+
+    public WorkerChannel<T> getChannel() {
         return channel;
     }
 
-    @Override
+    public OverflowQueue<T> getOverflow() {
+        return overflow;
+    }
+
+    public Journal<T> getJournal() {
+        return journal;
+    }
+
+    public UnorderedLane<T> getLane() {
+        return lane;
+    }
+
+    public Object getState() {
+        return state;
+    }
+
+    public WorkerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isRunning() {
+        return isRunning.getAcquire();
+    }
+
+    public void setStandby(boolean standby) {
+        this.standby = standby;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+        thread.setPriority(priority);
+    }
+
+    private Thread newThread(String threadName) {
+        if (mode == WorkerMode.VIRTUAL_THREAD) {
+            return VirtualThreads.unstarted(threadName, this);
+        }
+        Thread thread = new Thread(group, this, threadName);
+        thread.setPriority(priority);
+        return thread;
+    }
+
     public void start() {
         if (isRunning.compareAndSet(false, true)) {
-            super.start();
+            thread.start();
         }
     }
 
     @Override
     public void run() {
+        if (cpu >= 0) {
+            metrics.onPinning(cpu, ThreadAffinity.pinCurrentThread(cpu));
+        }
+        try {
+            loop();
+        } catch (VirtualMachineError e) {
+            // nothing is handled any more: producers and shutdown must not wait for this worker
+            isRunning.setRelease(false);
+            throw e;
+        }
+    }
+
+    private void loop() {
         while (isRunning.getAcquire()) {
-            channel.receive(batchsize, handler);
+            if (draining && channel.size() == 0 && (overflow == null || overflow.isEmpty()) && (lane == null || lane.isEmpty())) {
+                isRunning.setRelease(false);
+                break;
+            }
+            if (overflow != null && !overflow.isEmpty() && channel.size() == 0) {
+                // spilled messages are newer than anything left in the channel
+                drainOverflow();
+                if (guard.takeRestartRequest()) {
+                    restart();
+                    return;
+                }
+                continue;
+            }
+            if (lane != null && drainUnordered()) {
+                if (guard.takeRestartRequest()) {
+                    restart();
+                    return;
+                }
+                if (channel.size() == 0) {
+                    continue;
+                }
+            }
+            if (adaptiveWait != null && channel.size() == 0) {
+                awaitAdaptively();
+                continue;
+            }
+            if (parking && channel.size() == 0) {
+                long start = System.nanoTime();
+                awaitSignal();
+                metrics.onConsumerIdle(System.nanoTime() - start);
+                continue;
+            }
+            if (standby && channel.size() == 0) {
+                // no routing node left: poll rarely regardless of the consumer wait strategy
+                LockSupport.parkNanos(STANDBY_PARK_NANOS);
+                continue;
+            }
+            long handled = metrics.getHandled();
+            long start = System.nanoTime();
+            channel.receive(batchsize, guard);
+            guard.rethrowFatal();
+            guard.endBatch();
+            long drained = metrics.getHandled() - handled;
+            if (drained > 0) {
+                onDrained(drained);
+                if (guard.takeRestartRequest()) {
+                    restart();
+                    return;
+                }
+            } else {
+                metrics.onConsumerIdle(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Hands the loop over to a new thread and lets the current one end. The channel keeps a single consumer:
+     * the current thread touches it no more once the new one is started. The new thread is named after the worker
+     * and the number of restarts, {@code name#1} and so on, so that thread dumps tell it from the one it replaced;
+     * handlers are still given the worker name.
+     */
+    private void restart() {
+        if (!isRunning.getAcquire()) {
+            return;
+        }
+        LOGGER.log(Level.WARNING, "Worker [{0}] restarts its thread after a handler failure", name);
+        metrics.onRestarted();
+        Thread next = newThread(name + "#" + ++restarts);
+        thread = next;
+        next.start();
+    }
+
+    private void drainOverflow() {
+        long drained = 0;
+        T value;
+        while (drained < batchsize && (value = overflow.poll()) != null) {
+            guard.accept(value);
+            drained++;
+        }
+        guard.endBatch();
+        if (drained > 0) {
+            onDrained(drained);
+        }
+    }
+
+    /**
+     * Handles a batch of the worker's own lane or, if it is empty and the worker has nothing else to handle, a
+     * batch stolen from the fullest other lane: half of it, so that its owner keeps the rest.
+     * <p>
+     * The messages are counted as taken before they are handled, see {@link WorkerMetrics#getCompleted()}.
+     *
+     * @return {@code true} if any message was handled
+     */
+    @SuppressWarnings("unchecked")
+    private boolean drainUnordered() {
+        int taken = take(lane, batchsize);
+        boolean stolen = false;
+        if (taken == 0 && stealFrom != null && channel.size() == 0) {
+            UnorderedLane<T> victim = stealFrom.victim(lane);
+            if (victim != null) {
+                taken = take(victim, Math.min(batchsize, (victim.size() + 1) / 2));
+                stolen = true;
+            }
+        }
+        if (taken == 0) {
+            return false;
+        }
+        metrics.onUnorderedTaken(taken, stolen);
+        for (int i = 0; i < taken; i++) {
+            T value = (T) unordered[i];
+            unordered[i] = null;
+            guard.accept(value);
+        }
+        guard.endBatch();
+        onDrained(taken);
+        return true;
+    }
+
+    private int take(UnorderedLane<T> from, int limit) {
+        int taken = 0;
+        T value;
+        while (taken < limit && (value = from.poll()) != null) {
+            unordered[taken++] = value;
+        }
+        return taken;
+    }
+
+    /**
+     * Returns whether another worker's lane holds messages this worker could steal.
+     */
+    private boolean canSteal() {
+        return stealFrom != null && stealFrom.victim(lane) != null;
+    }
+
+    private void onDrained(long drained) {
+        metrics.onDrained(drained);
+        if (journal != null) {
+            journal.checkpoint(metrics.getHandled());
+        }
+    }
+
+    private boolean isIdle() {
+        return channel.size() == 0 && (overflow == null || overflow.isEmpty()) && (lane == null || lane.isEmpty()) && !canSteal()
+                && !draining && isRunning.getAcquire();
+    }
+
+    /**
+     * Waits for a message in three phases, spinning, then yielding, then parking, each skipped once a message is
+     * there. The wait is recorded to tune the next one unless the worker stopped meanwhile.
+     */
+    private void awaitAdaptively() {
+        long start = System.nanoTime();
+        long spinDeadline = start + adaptiveWait.getSpinNanos();
+        long now = start;
+        while (isIdle() && (now = System.nanoTime()) - spinDeadline < 0) {
+            Thread.onSpinWait();
+        }
+        long spun = now - start;
+        long yielded = 0;
+        long parked = 0;
+        if (isIdle()) {
+            long yieldStart = now;
+            long yieldDeadline = yieldStart + adaptiveWait.getYieldNanos();
+            while (isIdle() && (now = System.nanoTime()) - yieldDeadline < 0) {
+                Thread.yield();
+            }
+            yielded = now - yieldStart;
+            if (isIdle()) {
+                awaitSignal();
+                parked = System.nanoTime() - now;
+            }
+        }
+        long waited = spun + yielded + parked;
+        if (isRunning.getAcquire() && !draining) {
+            adaptiveWait.onWaited(waited);
+        }
+        metrics.onConsumerWait(spun, yielded, parked);
+        metrics.onConsumerIdle(waited);
+    }
+
+    /**
+     * Parks until a producer signals or the worker terminates. The sleeping flag is raised before the channel
+     * is checked one last time, and producers check the flag after publishing, with a full fence on both sides,
+     * so either this thread sees the message or the producer sees the flag. A worker that can steal does not park
+     * while another lane holds messages.
+     */
+    private void awaitSignal() {
+        SLEEPING.setVolatile(this, true);
+        VarHandle.fullFence();
+        if (channel.size() == 0 && (overflow == null || overflow.isEmpty()) && (lane == null || lane.isEmpty()) && !canSteal()
+                && isRunning.getAcquire()) {
+            LockSupport.park(this);
         }
+        SLEEPING.setVolatile(this, false);
+    }
+
+    /**
+     * Wakes the worker up if it is parked waiting for messages. Called by producers after publishing;
+     * a no-op unless the worker is in parking mode or waits adaptively.
+     */
+    public void signal() {
+        if (parking) {
+            VarHandle.fullFence();
+            if ((boolean) SLEEPING.getVolatile(this)) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Lets the worker handle what is left in its channel, overflow queue and lane at full batch speed, then stop.
+     * Messages published after the worker found both empty are not handled.
+     */
+    public void drain() {
+        draining = true;
+        channel.wakeupConsumer();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits for the thread to stop, at most the given number of nanoseconds.
+     *
+     * @return {@code true} if the thread has stopped or was never started
+     */
+    public boolean join(long nanos) throws InterruptedException {
+        long start = System.nanoTime();
+        Thread current;
+        do {
+            // a restart may have handed the loop over to a new thread in the meantime
+            current = thread;
+            long remaining = nanos - (System.nanoTime() - start);
+            if (remaining > 0 && current.isAlive()) {
+                current.join(TimeUnit.NANOSECONDS.toMillis(remaining), (int) (remaining % 1_000_000));
+            }
+        } while (current != thread);
+        return !current.isAlive();
     }
 
     public void terminate() {
         isRunning.setRelease(false);
         channel.wakeupConsumer();
+        LockSupport.unpark(thread);
     }
 
 }
@@ -0,0 +1,99 @@
+package io.github.ryntric;
+
+/**
+ * wyhash (final version 4) by Wang Yi, with the default secret.
+ */
+final class WyHash {
+    private static final long S0 = 0x2d358dccaa6c78a5L;
+    private static final long S1 = 0x8bb84b93962eacc9L;
+    private static final long S2 = 0x4b33a62ed433d4a3L;
+    private static final long S3 = 0x4d5a2da51de1aa47L;
+    private static final long SEED_0 = mix(S0, S1);
+
+    private WyHash() {
+    }
+
+    /**
+     * High 64 bits of the unsigned 128-bit product.
+     */
+    private static long multiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    private static long mix(long a, long b) {
+        return a * b ^ multiplyHigh(a, b);
+    }
+
+    private static long finish(long a, long b, long seed, int length) {
+        a ^= S1;
+        b ^= seed;
+        long lo = a * b;
+        long hi = multiplyHigh(a, b);
+        return mix(lo ^ S0 ^ length, hi ^ S1);
+    }
+
+    /**
+     * wyhash of the 8 little-endian bytes of {@code key}, with seed 0.
+     */
+    static long hash(long key) {
+        long lo = key & 0xFFFFFFFFL;
+        long hi = key >>> 32;
+        return finish(lo << 32 | hi, hi << 32 | lo, SEED_0, 8);
+    }
+
+    /**
+     * wyhash of the 4 little-endian bytes of {@code key}, with seed 0.
+     */
+    static long hash(int key) {
+        long value = key & 0xFFFFFFFFL;
+        long ab = value << 32 | value;
+        return finish(ab, ab, SEED_0, 4);
+    }
+
+    private static long read4(KeyAccess access, Object base, long offset) {
+        return access.getInt(base, offset) & 0xFFFFFFFFL;
+    }
+
+    static long hash(KeyAccess access, Object base, long offset, int length, long seed) {
+        seed ^= mix(seed ^ S0, S1);
+        long a;
+        long b;
+        if (length <= 16) {
+            if (length >= 4) {
+                long shift = (length >>> 3) << 2;
+                a = read4(access, base, offset) << 32 | read4(access, base, offset + shift);
+                b = read4(access, base, offset + length - 4) << 32 | read4(access, base, offset + length - 4 - shift);
+            } else if (length > 0) {
+                a = (long) access.getByte(base, offset) << 16
+                        | (long) access.getByte(base, offset + (length >>> 1)) << 8
+                        | access.getByte(base, offset + length - 1);
+                b = 0;
+            } else {
+                a = b = 0;
+            }
+        } else {
+            long p = offset;
+            int i = length;
+            if (i >= 48) {
+                long see1 = seed;
+                long see2 = seed;
+                do {
+                    seed = mix(access.getLong(base, p) ^ S1, access.getLong(base, p + 8) ^ seed);
+                    see1 = mix(access.getLong(base, p + 16) ^ S2, access.getLong(base, p + 24) ^ see1);
+                    see2 = mix(access.getLong(base, p + 32) ^ S3, access.getLong(base, p + 40) ^ see2);
+                    p += 48;
+                    i -= 48;
+                } while (i >= 48);
+                seed ^= see1 ^ see2;
+            }
+            while (i > 16) {
+                seed = mix(access.getLong(base, p) ^ S1, access.getLong(base, p + 8) ^ seed);
+                i -= 16;
+                p += 16;
+            }
+            a = access.getLong(base, p + i - 16);
+            b = access.getLong(base, p + i - 8);
+        }
+        return finish(a, b, seed, length);
+    }
+}
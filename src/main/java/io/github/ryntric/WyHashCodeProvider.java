@@ -0,0 +1,58 @@
+package io.github.ryntric;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * {@link HashCodeProvider} based on wyhash (final version 4), seed 0, folded to 32 bits.
+ * <p>
+ * {@code int} and {@code long} keys are hashed as their 4 and 8 little-endian bytes, {@code String} and
+ * {@code CharSequence} keys as their UTF-16LE code units, read in place without encoding them. {@code ByteBuffer}
+ * and {@code byte[]} range keys are read in place too. wyhash is the cheapest of the bundled providers for longer
+ * byte keys. No method allocates.
+ */
+public final class WyHashCodeProvider implements HashCodeProvider {
+    public static final WyHashCodeProvider INSTANCE = new WyHashCodeProvider();
+
+    private WyHashCodeProvider() {}
+
+    private int fold(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public int provide(String key) {
+        return fold(WyHash.hash(KeyAccess.CHARS, key, 0, key.length() << 1, 0));
+    }
+
+    @Override
+    public int provide(int key) {
+        return fold(WyHash.hash(key));
+    }
+
+    @Override
+    public int provide(long key) {
+        return fold(WyHash.hash(key));
+    }
+
+    @Override
+    public int provide(byte[] key) {
+        return fold(WyHash.hash(KeyAccess.BYTES, key, 0, key.length, 0));
+    }
+
+    @Override
+    public int provide(CharSequence key) {
+        return fold(WyHash.hash(KeyAccess.CHARS, key, 0, key.length() << 1, 0));
+    }
+
+    @Override
+    public int provide(byte[] key, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, key.length);
+        return fold(WyHash.hash(KeyAccess.BYTES, key, offset, length, 0));
+    }
+
+    @Override
+    public int provide(ByteBuffer key) {
+        return fold(WyHash.hash(KeyAccess.BYTES, key, key.position(), key.remaining(), 0));
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.ryntric;
+
+/**
+ * XXH64 by Yann Collet.
+ */
+final class XxHash64 {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private XxHash64() {
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+
+    static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * XXH64 of the 8 little-endian bytes of {@code key}, with seed 0.
+     */
+    static long hash(long key) {
+        long h = P5 + 8;
+        h ^= round(0, key);
+        h = Long.rotateLeft(h, 27) * P1 + P4;
+        return avalanche(h);
+    }
+
+    /**
+     * XXH64 of the 4 little-endian bytes of {@code key}, with seed 0.
+     */
+    static long hash(int key) {
+        long h = P5 + 4;
+        h ^= (key & 0xFFFFFFFFL) * P1;
+        h = Long.rotateLeft(h, 23) * P2 + P3;
+        return avalanche(h);
+    }
+
+    static long hash(KeyAccess access, Object base, long offset, int length, long seed) {
+        long p = offset;
+        long end = offset + length;
+        long h;
+
+        if (length >= 32) {
+            long limit = end - 32;
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            do {
+                v1 = round(v1, access.getLong(base, p));
+                v2 = round(v2, access.getLong(base, p + 8));
+                v3 = round(v3, access.getLong(base, p + 16));
+                v4 = round(v4, access.getLong(base, p + 24));
+                p += 32;
+            } while (p <= limit);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = seed + P5;
+        }
+
+        h += length;
+        for (; p + 8 <= end; p += 8) {
+            h ^= round(0, access.getLong(base, p));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (p + 4 <= end) {
+            h ^= (access.getInt(base, p) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            p += 4;
+        }
+        for (; p < end; p++) {
+            h ^= access.getByte(base, p) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        return avalanche(h);
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@link Batch} handed to a {@link BatchHandler} is never empty, never larger than {@link Config#getBatchSize()},
+ * in dispatch order and emptied after the call, whether the worker drains its channel, its overflow queue or
+ * unordered lanes. Messages are {@code {producer, key, sequence}} triples, sequences counting up from 1 per producer
+ * and key.
+ */
+class BatchHandlerTest {
+    private static final int BATCH_SIZE = 8;
+    private static final int PRODUCERS = 3;
+    private static final int KEYS = 64;
+    private static final int MESSAGES = 20_000;
+
+    /**
+     * A batch handler checking every batch it is given, and the per-key order of the messages in them.
+     */
+    private static final class CheckingHandler implements BatchHandler<long[]> {
+        final AtomicReference<String> violation = new AtomicReference<>();
+        // written by the worker threads only, each owning its keys, and read once the dispatcher has shut down
+        final long[][] last = new long[PRODUCERS][KEYS];
+        final List<Batch<long[]>> batches = new ArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile CountDownLatch release;
+        volatile boolean ordered = true;
+        long handled;
+
+        @Override
+        public void handle(String workerName, Batch<long[]> batch) {
+            started.countDown();
+            awaitRelease();
+            if (batch.isEmpty()) {
+                violation.compareAndSet(null, "empty batch");
+            }
+            if (batch.size() > BATCH_SIZE) {
+                violation.compareAndSet(null, "batch of " + batch.size());
+            }
+            synchronized (this) {
+                if (!batches.contains(batch)) batches.add(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    long[] message = batch.get(i);
+                    int producer = (int) message[0];
+                    int key = (int) message[1];
+                    if (ordered && message[2] != last[producer][key] + 1) {
+                        violation.compareAndSet(null, "key " + key + " out of order: " + message[2] + " after " + last[producer][key]);
+                    }
+                    last[producer][key] = message[2];
+                    handled++;
+                }
+            }
+        }
+
+        private void awaitRelease() {
+            CountDownLatch release = this.release;
+            if (release == null) return;
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void assertValid(long expected) {
+            assertNull(violation.get());
+            assertEquals(expected, handled, "no message is lost");
+            for (Batch<long[]> batch : batches) {
+                assertTrue(batch.isEmpty(), "the batch is emptied after the call");
+                assertThrows(IndexOutOfBoundsException.class, () -> batch.get(0));
+            }
+        }
+    }
+
+    private static Config.Builder config(ChannelType channelType) {
+        return Config.builder()
+                .setWorkerCount(2)
+                .setChannelType(channelType)
+                .setBufferSize(256)
+                .setBatchSize(BATCH_SIZE);
+    }
+
+    @Test
+    void channelBatchesAreBoundedAndOrdered() throws InterruptedException {
+        assertBatchesFromProducers(config(ChannelType.MPSC).build());
+    }
+
+    @Test
+    void laneChannelBatchesAreBoundedAndOrdered() throws InterruptedException {
+        // a drain of a lane channel spans several lanes
+        assertBatchesFromProducers(config(ChannelType.SHARDED_MPSC).setProducerLanes(PRODUCERS).build());
+    }
+
+    private static void assertBatchesFromProducers(Config config) throws InterruptedException {
+        CheckingHandler handler = new CheckingHandler();
+        AffinityDispatcher<long[]> dispatcher = AffinityDispatcher.withBatchHandler("batch", handler, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                long[] sequences = new long[KEYS];
+                for (int i = 0; i < MESSAGES; i++) {
+                    int key = (i * 7 + producer) % KEYS;
+                    dispatcher.dispatch((long) key, new long[]{producer, key, ++sequences[key]});
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) producer.join();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(30)).isDrained());
+        handler.assertValid((long) PRODUCERS * MESSAGES);
+    }
+
+    @Test
+    void overflowBatchesAreBoundedAndOrdered() throws InterruptedException {
+        Config config = config(ChannelType.SPSC)
+                .setWorkerCount(1)
+                .setBufferSize(16)
+                .setOverflowPolicy(OverflowPolicy.SPILL)
+                .setOverflowQueueCapacity(1024)
+                .build();
+        CheckingHandler handler = new CheckingHandler();
+        handler.release = new CountDownLatch(1);
+        AffinityDispatcher<long[]> dispatcher = AffinityDispatcher.withBatchHandler("spill", handler, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        long[] sequences = new long[KEYS];
+        dispatcher.dispatch(0L, new long[]{0, 0, ++sequences[0]});
+        assertTrue(handler.started.await(10, TimeUnit.SECONDS));
+        // the worker is held in its first batch: the channel fills up and the rest spills
+        int messages = 1000;
+        for (int i = 1; i < messages; i++) {
+            int key = i % KEYS;
+            dispatcher.dispatch((long) key, new long[]{0, key, ++sequences[key]});
+        }
+        WorkerMetricsSnapshot metrics = dispatcher.getMetrics(0, new WorkerMetricsSnapshot());
+        assertTrue(metrics.getSpilledCount() > 0);
+        assertEquals(0, metrics.getDroppedCount());
+        handler.release.countDown();
+
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(30)).isDrained());
+        handler.assertValid(messages);
+    }
+
+    @Test
+    void unorderedBatchesAreBounded() throws InterruptedException {
+        Config config = config(ChannelType.MPSC)
+                .setWorkerCount(4)
+                .setUnorderedLaneSize(256)
+                .setWorkStealingEnabled(true)
+                .build();
+        CheckingHandler handler = new CheckingHandler();
+        handler.ordered = false;
+        AffinityDispatcher<long[]> dispatcher = AffinityDispatcher.withBatchHandler("unordered", handler, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < MESSAGES; i++) {
+                    // keyed and unordered messages interleave, so both are drained between the same batch ends
+                    if (i % 2 == 0) {
+                        dispatcher.dispatchUnordered(new long[]{producer, 0, i});
+                    } else {
+                        dispatcher.dispatch((long) i, new long[]{producer, 0, i});
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) producer.join();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(30)).isDrained());
+        handler.assertValid((long) PRODUCERS * MESSAGES);
+        assertFalse(handler.batches.isEmpty());
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every {@link CpuAffinity} plan resolved against a fake {@code /sys/devices/system/cpu} tree: 8 online CPUs on 4
+ * physical cores, CPU {@code i} and {@code i + 4} being SMT siblings, with CPUs 5 and 6 isolated.
+ */
+class CpuAffinityTest {
+    @TempDir
+    Path root;
+
+    private CpuTopology topology(String online, String isolated) throws IOException {
+        Files.writeString(root.resolve("online"), online + "\n");
+        Files.writeString(root.resolve("isolated"), isolated + "\n");
+        for (int cpu : CpuTopology.parseCpuList(online)) {
+            Path topology = Files.createDirectories(root.resolve("cpu" + cpu).resolve("topology"));
+            Files.writeString(topology.resolve("physical_package_id"), "0\n");
+            Files.writeString(topology.resolve("core_id"), (cpu % 4) + "\n");
+        }
+        return new CpuTopology(root);
+    }
+
+    private static int[] resolve(CpuAffinity affinity, CpuTopology topology, int workers) {
+        int[] cpus = new int[workers];
+        for (int i = 0; i < workers; i++) cpus[i] = affinity.resolve(i, topology);
+        return cpus;
+    }
+
+    @Test
+    void parsesTheKernelCpuListFormat() {
+        assertArrayEquals(new int[]{0, 1, 2, 3, 8, 10, 11}, CpuTopology.parseCpuList("0-3,8,10-11\n"));
+        assertArrayEquals(new int[]{5}, CpuTopology.parseCpuList("5"));
+        assertArrayEquals(new int[0], CpuTopology.parseCpuList(""));
+    }
+
+    @Test
+    void explicitCoresWrapAround() throws IOException {
+        CpuTopology topology = topology("0-7", "");
+        assertArrayEquals(new int[]{3, 5, 3, 5, 3}, resolve(CpuAffinity.cores(3, 5), topology, 5));
+        assertThrows(IllegalArgumentException.class, CpuAffinity::cores);
+        assertThrows(IllegalArgumentException.class, () -> CpuAffinity.cores(1, -1));
+    }
+
+    @Test
+    void skipFirstCoreUsesEveryOtherOnlineCpu() throws IOException {
+        CpuTopology topology = topology("0-7", "");
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7, 1}, resolve(CpuAffinity.skipFirstCore(), topology, 8));
+    }
+
+    @Test
+    void onePerPhysicalCoreSkipsSmtSiblings() throws IOException {
+        CpuTopology topology = topology("0-7", "");
+        assertArrayEquals(new int[]{0, 1, 2, 3}, topology.physicalCoreCpus());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 0}, resolve(CpuAffinity.onePerPhysicalCore(), topology, 5));
+    }
+
+    @Test
+    void isolatedCoresUseTheIsolcpusList() throws IOException {
+        assertArrayEquals(new int[]{5, 6, 5}, resolve(CpuAffinity.isolatedCores(), topology("0-7", "5-6"), 3));
+        assertArrayEquals(new int[]{-1, -1}, resolve(CpuAffinity.isolatedCores(), topology("0-7", ""), 2), "unpinned without isolated CPUs");
+    }
+
+    @Test
+    void unknownTopologyLeavesWorkersUnpinned() {
+        CpuTopology missing = new CpuTopology(root.resolve("missing"));
+        assertEquals(-1, CpuAffinity.none().resolve(0, missing));
+        assertEquals(-1, CpuAffinity.skipFirstCore().resolve(0, missing));
+        assertEquals(-1, CpuAffinity.onePerPhysicalCore().resolve(0, missing));
+        assertEquals(-1, CpuAffinity.isolatedCores().resolve(0, missing));
+        assertEquals(2, CpuAffinity.cores(2).resolve(0, missing), "explicit cores do not depend on the topology");
+    }
+
+    @Test
+    void metricsReportThePlannedAndPinnedCpu() throws InterruptedException {
+        Config config = Config.builder()
+                .setWorkerCount(2)
+                .setCpuAffinity(CpuAffinity.cores(0))
+                .build();
+        AffinityDispatcher<Long> dispatcher = new AffinityDispatcher<>("pinned", (worker, value) -> {
+        }, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        WorkerMetricsSnapshot snapshot = new WorkerMetricsSnapshot();
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        for (int i = 0; i < 2; i++) {
+            // the worker thread pins itself once started
+            while (dispatcher.getMetrics(i, snapshot).getPlannedCpu() < 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, snapshot.getPlannedCpu());
+            int pinned = snapshot.getPinnedCpu();
+            assertTrue(pinned == 0 || pinned == -1, "pinned to the planned CPU or not at all: " + pinned);
+        }
+        dispatcher.shutdown();
+
+        Config unpinned = Config.builder().setWorkerCount(1).build();
+        AffinityDispatcher<Long> free = new AffinityDispatcher<>("free", (worker, value) -> {
+        }, XxHashCodeProvider.INSTANCE, unpinned);
+        free.start();
+        assertEquals(-1, free.getMetrics(0, snapshot).getPlannedCpu());
+        assertEquals(-1, snapshot.getPinnedCpu());
+        free.shutdown();
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Claiming and committing preallocated events, see {@link EventClaim}. Events are {@code {producer, key, sequence}}
+ * triples filled in place, sequences counting up from 1 per producer and key.
+ */
+class EventClaimTest {
+    private static final int BUFFER_SIZE = 64;
+
+    /**
+     * A handler copying every event it is given, in handling order per worker.
+     */
+    private static final class Recorder implements Handler<long[]> {
+        final Map<String, List<long[]>> handled = new ConcurrentHashMap<>();
+        final Set<long[]> events = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final Map<Long, CountDownLatch> latches = new ConcurrentHashMap<>();
+        final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void handle(String workerName, long[] event) {
+            events.add(event);
+            // the event is overwritten by a later claim of its slot
+            handled.computeIfAbsent(workerName, name -> new ArrayList<>()).add(event.clone());
+            CountDownLatch latch = latches.get(event[1]);
+            if (latch != null) latch.countDown();
+            count.incrementAndGet();
+        }
+
+        CountDownLatch expect(long key, int count) {
+            CountDownLatch latch = new CountDownLatch(count);
+            latches.put(key, latch);
+            return latch;
+        }
+    }
+
+    private static AffinityDispatcher<long[]> dispatcher(String name, Recorder recorder, int workerCount) {
+        Config config = Config.builder()
+                .setWorkerCount(workerCount)
+                .setChannelType(ChannelType.MPSC)
+                .setBufferSize(BUFFER_SIZE)
+                .setBatchSize(16)
+                .build();
+        return AffinityDispatcher.withEventFactory(name, recorder, () -> new long[3], XxHashCodeProvider.INSTANCE, config);
+    }
+
+    private static void dispatch(AffinityDispatcher<long[]> dispatcher, long producer, long key, long sequence) {
+        EventClaim<long[]> claim = dispatcher.claim(key);
+        long[] event = claim.get();
+        event[0] = producer;
+        event[1] = key;
+        event[2] = sequence;
+        claim.commit();
+    }
+
+    /**
+     * Returns the first key from {@code from} on that routes to the given worker.
+     */
+    private static long keyOf(AffinityDispatcher<long[]> dispatcher, int worker, long from) {
+        for (long key = from; ; key++) {
+            int node = dispatcher.calculateIndex(XxHashCodeProvider.INSTANCE.provide(key));
+            if (dispatcher.getRoutingTable().getOwnerIndex(node) == worker) {
+                return key;
+            }
+        }
+    }
+
+    @Test
+    void uncommittedClaimBlocksOnlyItsOwnSlot() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        AffinityDispatcher<long[]> dispatcher = dispatcher("pending", recorder, 2);
+        dispatcher.start();
+        long pendingKey = keyOf(dispatcher, 0, 0);
+        long laterKey = keyOf(dispatcher, 0, pendingKey + 1);
+        long otherKey = keyOf(dispatcher, 1, 0);
+        int messages = 10;
+
+        CountDownLatch before = recorder.expect(pendingKey, messages + 1);
+        for (int i = 1; i <= messages; i++) dispatch(dispatcher, 0, pendingKey, i);
+        EventClaim<long[]> pending = dispatcher.claim(pendingKey);
+        assertThrows(IllegalStateException.class, () -> dispatcher.claim(pendingKey), "a thread has one pending claim");
+
+        // another producer claims and commits the slots after the pending one, a third one those of another worker
+        CountDownLatch other = recorder.expect(otherKey, messages);
+        Thread later = new Thread(() -> {
+            for (int i = 1; i <= messages; i++) dispatch(dispatcher, 1, laterKey, i);
+        });
+        Thread unrelated = new Thread(() -> {
+            for (int i = 1; i <= messages; i++) dispatch(dispatcher, 2, otherKey, i);
+        });
+        later.start();
+        unrelated.start();
+        later.join(10_000);
+        unrelated.join(10_000);
+        assertFalse(later.isAlive() || unrelated.isAlive(), "committing behind a pending claim does not wait");
+
+        assertTrue(other.await(10, TimeUnit.SECONDS), "the other worker is not held up");
+        assertFalse(before.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, before.getCount(), "the slots before the pending claim are handled");
+        assertEquals(2L * messages, recorder.count.get(), "the committed slots after the pending claim wait for it");
+
+        long[] event = pending.get();
+        event[0] = 0;
+        event[1] = pendingKey;
+        event[2] = messages + 1;
+        pending.commit();
+        assertThrows(IllegalStateException.class, pending::commit);
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(10)).isDrained());
+
+        // in slot order: the messages before the claim, the claimed one, then those committed after it
+        List<long[]> expected = new ArrayList<>();
+        for (int i = 1; i <= messages + 1; i++) expected.add(new long[]{0, pendingKey, i});
+        for (int i = 1; i <= messages; i++) expected.add(new long[]{1, laterKey, i});
+        List<long[]> handled = recorder.handled.get("pending-worker-th-0");
+        assertEquals(expected.size(), handled.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), handled.get(i), "message " + i);
+        }
+        assertEquals(messages, recorder.handled.get("pending-worker-th-1").size());
+    }
+
+    @Test
+    void committedClaimsKeepPerKeyOrder() throws InterruptedException {
+        int producers = 4;
+        int keys = 32;
+        int messages = 5_000;
+        Recorder recorder = new Recorder();
+        AffinityDispatcher<long[]> dispatcher = dispatcher("ordered", recorder, 2);
+        dispatcher.start();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                long[] sequences = new long[keys];
+                for (int i = 0; i < messages; i++) {
+                    int key = (i * 7 + producer) % keys;
+                    dispatch(dispatcher, producer, key, ++sequences[key]);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(30)).isDrained());
+
+        long[][] last = new long[producers][keys];
+        long handled = 0;
+        for (List<long[]> events : recorder.handled.values()) {
+            for (long[] event : events) {
+                int producer = (int) event[0];
+                int key = (int) event[1];
+                assertEquals(last[producer][key] + 1, event[2], "key " + key + " of producer " + producer + " is handled in order");
+                last[producer][key] = event[2];
+                handled++;
+            }
+        }
+        assertEquals((long) producers * messages, handled);
+        assertTrue(recorder.events.size() <= 2 * BUFFER_SIZE, "events are reused, not allocated: " + recorder.events.size());
+    }
+}
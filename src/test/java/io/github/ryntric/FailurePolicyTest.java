@@ -0,0 +1,286 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every {@link FailurePolicy} against handlers that throw on chosen messages: the counts of the worker metrics, what
+ * reaches the dead-letter handler, the thread replacement of {@code RESTART} and the rethrow of
+ * {@link VirtualMachineError}s. Messages are {@code {key, sequence}} pairs, sequences counting up from 1 per key;
+ * a negative sequence marks a message the handler throws on.
+ */
+class FailurePolicyTest {
+    private static final int KEYS = 8;
+    private static final int MESSAGES = 10_000;
+    private static final long POISON = -1;
+
+    private static final class Failure extends RuntimeException {
+        Failure(String message) {
+            super(message);
+        }
+    }
+
+    private static Config.Builder config(FailurePolicy policy) {
+        return Config.builder()
+                .setWorkerCount(1)
+                .setBufferSize(1024)
+                .setBatchSize(16)
+                .setFailurePolicy(policy)
+                .setFailureRetryAttempts(3);
+    }
+
+    /**
+     * Dispatches {@code MESSAGES} messages over the keys, with a poisoned one in place of every {@code poisonEvery}th.
+     *
+     * @return the number of poisoned messages
+     */
+    private static int dispatch(AffinityDispatcher<long[]> dispatcher, int poisonEvery) {
+        long[] sequences = new long[KEYS];
+        int poisoned = 0;
+        for (int i = 1; i <= MESSAGES; i++) {
+            int key = i % KEYS;
+            if (i % poisonEvery == 0) {
+                dispatcher.dispatch((long) key, new long[]{key, POISON});
+                poisoned++;
+            } else {
+                dispatcher.dispatch((long) key, new long[]{key, ++sequences[key]});
+            }
+        }
+        return poisoned;
+    }
+
+    private static void assertInOrder(List<long[]> handled, int expected) {
+        long[] last = new long[KEYS];
+        for (long[] message : handled) {
+            int key = (int) message[0];
+            assertEquals(last[key] + 1, message[1], "messages of key " + key + " are handled in dispatch order");
+            last[key] = message[1];
+        }
+        assertEquals(expected, handled.size(), "no message is lost");
+    }
+
+    private static WorkerMetricsSnapshot drain(AffinityDispatcher<long[]> dispatcher) {
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(30)).isDrained());
+        return dispatcher.getMetrics(0, new WorkerMetricsSnapshot());
+    }
+
+    @Test
+    void retryMakesTheConfiguredAttempts() {
+        AtomicInteger poisonAttempts = new AtomicInteger();
+        AtomicInteger flakyAttempts = new AtomicInteger();
+        // written by the worker thread only, read once the dispatcher has shut down
+        List<long[]> handled = new ArrayList<>();
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("retry", (worker, message) -> {
+            if (message[1] == POISON) {
+                poisonAttempts.incrementAndGet();
+                throw new Failure("poison");
+            }
+            // the first message of key 1 fails once, then goes through
+            if (message[0] == 1 && message[1] == 1 && flakyAttempts.incrementAndGet() == 1) {
+                throw new Failure("flaky");
+            }
+            handled.add(message);
+        }, DefaultHashCodeProvider.INSTANCE, config(FailurePolicy.RETRY).build());
+        dispatcher.start();
+        int poisoned = dispatch(dispatcher, 1000);
+        WorkerMetricsSnapshot metrics = drain(dispatcher);
+
+        assertEquals(3 * poisoned, poisonAttempts.get(), "a failing message is attempted failureRetryAttempts times");
+        assertEquals(2, flakyAttempts.get());
+        assertEquals(2L * poisoned + 1, metrics.getRetriedCount());
+        assertEquals(poisoned, metrics.getFailedCount());
+        assertEquals(0, metrics.getDeadLetteredCount());
+        assertEquals(MESSAGES, metrics.getHandledCount(), "a message given up on still counts as handled");
+        assertInOrder(handled, MESSAGES - poisoned);
+    }
+
+    @Test
+    void deadLetterReceivesTheMessageAndItsCause() {
+        List<long[]> deadLetters = new ArrayList<>();
+        List<Throwable> causes = new ArrayList<>();
+        List<long[]> handled = new ArrayList<>();
+        Config config = config(FailurePolicy.DEAD_LETTER)
+                .setDeadLetterHandler((DeadLetterHandler<long[]>) (worker, message, cause) -> {
+                    deadLetters.add(message);
+                    causes.add(cause);
+                })
+                .build();
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("dead-letter", (worker, message) -> {
+            if (message[1] == POISON) {
+                throw new Failure("poison " + message[0]);
+            }
+            handled.add(message);
+        }, DefaultHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        int poisoned = dispatch(dispatcher, 250);
+        WorkerMetricsSnapshot metrics = drain(dispatcher);
+
+        assertEquals(poisoned, metrics.getFailedCount());
+        assertEquals(poisoned, metrics.getDeadLetteredCount());
+        assertEquals(0, metrics.getRetriedCount());
+        assertEquals(poisoned, deadLetters.size());
+        for (int i = 0; i < deadLetters.size(); i++) {
+            assertEquals(POISON, deadLetters.get(i)[1]);
+            assertTrue(causes.get(i) instanceof Failure);
+            assertEquals("poison " + deadLetters.get(i)[0], causes.get(i).getMessage());
+        }
+        assertInOrder(handled, MESSAGES - poisoned);
+    }
+
+    @Test
+    void failedBatchIsDeadLetteredMessageByMessage() {
+        List<long[]> deadLetters = new ArrayList<>();
+        List<long[]> failedBatches = new ArrayList<>();
+        List<long[]> handled = new ArrayList<>();
+        Config config = config(FailurePolicy.DEAD_LETTER)
+                .setDeadLetterHandler((DeadLetterHandler<long[]>) (worker, message, cause) -> deadLetters.add(message))
+                .build();
+        AffinityDispatcher<long[]> dispatcher = AffinityDispatcher.withBatchHandler("batch", (BatchHandler<long[]>) (worker, batch) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.get(i)[1] == POISON) {
+                    for (int j = 0; j < batch.size(); j++) failedBatches.add(batch.get(j));
+                    throw new Failure("poison");
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) handled.add(batch.get(i));
+        }, DefaultHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        int poisoned = dispatch(dispatcher, 500);
+        WorkerMetricsSnapshot metrics = drain(dispatcher);
+
+        assertTrue(failedBatches.size() >= poisoned);
+        assertEquals(failedBatches.size(), metrics.getFailedCount(), "every message of a failed batch counts as failed");
+        assertEquals(failedBatches.size(), metrics.getDeadLetteredCount());
+        assertEquals(failedBatches.size(), deadLetters.size());
+        for (int i = 0; i < deadLetters.size(); i++) {
+            assertSame(failedBatches.get(i), deadLetters.get(i), "dead-lettered in batch order");
+        }
+        assertEquals(MESSAGES, handled.size() + failedBatches.size());
+        assertEquals(MESSAGES, metrics.getHandledCount());
+    }
+
+    @Test
+    void restartHandsTheChannelToANewThread() {
+        Set<String> threadNames = new HashSet<>();
+        Set<String> workerNames = new HashSet<>();
+        List<long[]> handled = new ArrayList<>();
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("restart", (worker, message) -> {
+            threadNames.add(Thread.currentThread().getName());
+            workerNames.add(worker);
+            if (message[1] == POISON) {
+                throw new Failure("poison");
+            }
+            handled.add(message);
+        }, DefaultHashCodeProvider.INSTANCE, config(FailurePolicy.RESTART).build());
+        dispatcher.start();
+        int poisoned = dispatch(dispatcher, 4000);
+        WorkerMetricsSnapshot metrics = drain(dispatcher);
+
+        assertEquals(poisoned, metrics.getRestartCount());
+        assertEquals(poisoned, metrics.getFailedCount());
+        assertEquals(1, workerNames.size(), "handlers keep seeing the worker name");
+        String workerName = workerNames.iterator().next();
+        assertEquals(poisoned + 1, threadNames.size(), "every restart runs the loop on a new thread: " + threadNames);
+        for (int restart = 1; restart <= poisoned; restart++) {
+            assertTrue(threadNames.contains(workerName + "#" + restart), threadNames::toString);
+        }
+        assertInOrder(handled, MESSAGES - poisoned);
+    }
+
+    @Test
+    void batchEndFailuresFollowThePolicy() {
+        AtomicInteger batchEnds = new AtomicInteger();
+        AtomicInteger handled = new AtomicInteger();
+        AffinityDispatcher<long[]> retrying = new AffinityDispatcher<>("batch-end-retry", new Handler<long[]>() {
+            @Override
+            public void handle(String workerName, long[] value) {
+                handled.incrementAndGet();
+            }
+
+            @Override
+            public void onBatchEnd(String workerName) {
+                // the first two calls fail, the third attempt goes through
+                if (batchEnds.incrementAndGet() <= 2) {
+                    throw new Failure("batch end");
+                }
+            }
+        }, DefaultHashCodeProvider.INSTANCE, config(FailurePolicy.RETRY).build());
+        retrying.start();
+        dispatch(retrying, Integer.MAX_VALUE);
+        WorkerMetricsSnapshot metrics = drain(retrying);
+        assertEquals(2, metrics.getRetriedCount());
+        assertEquals(0, metrics.getFailedCount(), "the messages of the batch were handled already");
+        assertTrue(batchEnds.get() >= 3);
+        assertEquals(MESSAGES, handled.get());
+
+        Set<String> threadNames = new HashSet<>();
+        List<long[]> ordered = new ArrayList<>();
+        AtomicInteger restartEnds = new AtomicInteger();
+        AffinityDispatcher<long[]> restarting = new AffinityDispatcher<>("batch-end-restart", new Handler<long[]>() {
+            @Override
+            public void handle(String workerName, long[] value) {
+                threadNames.add(Thread.currentThread().getName());
+                ordered.add(value);
+            }
+
+            @Override
+            public void onBatchEnd(String workerName) {
+                if (restartEnds.incrementAndGet() == 1) {
+                    throw new Failure("batch end");
+                }
+            }
+        }, DefaultHashCodeProvider.INSTANCE, config(FailurePolicy.RESTART).build());
+        restarting.start();
+        dispatch(restarting, Integer.MAX_VALUE);
+        metrics = drain(restarting);
+        assertEquals(1, metrics.getRestartCount());
+        assertEquals(0, metrics.getFailedCount());
+        assertInOrder(ordered, MESSAGES);
+        // the first batch may be the only one, in which case the new thread never handles a message
+        assertTrue(threadNames.size() <= 2);
+    }
+
+    @Test
+    void virtualMachineErrorsEndTheWorkerThread() throws InterruptedException {
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        AtomicInteger deadLettered = new AtomicInteger();
+        Config config = config(FailurePolicy.DEAD_LETTER)
+                .setDeadLetterHandler((DeadLetterHandler<long[]>) (name, message, cause) -> deadLettered.incrementAndGet())
+                .build();
+        OutOfMemoryError error = new OutOfMemoryError("simulated");
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("fatal", (name, message) -> {
+            Thread current = Thread.currentThread();
+            current.setUncaughtExceptionHandler((thread, e) -> uncaught.set(e));
+            worker.set(current);
+            throw error;
+        }, DefaultHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        dispatcher.dispatch(0L, new long[]{0, POISON});
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (worker.get() == null && System.nanoTime() < deadline) Thread.sleep(1);
+        assertNotNull(worker.get());
+        worker.get().join(10_000);
+        assertFalse(worker.get().isAlive(), "the error unwinds the worker loop");
+        assertSame(error, uncaught.get());
+        WorkerMetricsSnapshot metrics = dispatcher.getMetrics(0, new WorkerMetricsSnapshot());
+        assertEquals(0, metrics.getFailedCount(), "the failure policy does not apply");
+        assertEquals(0, deadLettered.get());
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The in-place overloads of every bundled {@link HashCodeProvider} must route like the {@code String} and
+ * {@code byte[]} ones, whatever the length, alignment and kind of buffer holding the key.
+ */
+class HashCodeProviderTest {
+    static final HashCodeProvider[] PROVIDERS = {
+            DefaultHashCodeProvider.INSTANCE,
+            Murmur3HashCodeProvider.INSTANCE,
+            XxHashCodeProvider.INSTANCE,
+            WyHashCodeProvider.INSTANCE
+    };
+    private static final int MAX_LENGTH = 80;
+    private static final int ROUNDS = 20;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void charSequenceHashesLikeString() {
+        for (HashCodeProvider provider : PROVIDERS) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                for (int round = 0; round < ROUNDS; round++) {
+                    char[] chars = new char[length];
+                    for (int i = 0; i < length; i++) chars[i] = (char) random.nextInt(Character.MAX_VALUE + 1);
+                    String key = new String(chars);
+                    int expected = provider.provide(key);
+                    assertEquals(expected, provider.provide(new StringBuilder(key)), () -> provider + " StringBuilder " + key.length());
+                    assertEquals(expected, provider.provide((CharSequence) key), () -> provider + " CharSequence " + key.length());
+                    String padded = "ab" + key + "cd";
+                    assertEquals(expected, provider.provide(padded.subSequence(2, 2 + length)), () -> provider + " subSequence " + key.length());
+                }
+            }
+        }
+    }
+
+    @Test
+    void byteRangeHashesLikeArray() {
+        for (HashCodeProvider provider : PROVIDERS) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                for (int offset = 0; offset < 9; offset++) {
+                    byte[] key = randomBytes(length);
+                    byte[] holder = randomBytes(offset + length + 7);
+                    System.arraycopy(key, 0, holder, offset, length);
+                    int expected = provider.provide(key);
+                    int at = offset;
+                    assertEquals(expected, provider.provide(holder, offset, length), () -> provider + " range " + at + "+" + key.length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void byteBufferHashesLikeArray() {
+        for (HashCodeProvider provider : PROVIDERS) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                for (int offset = 0; offset < 9; offset++) {
+                    byte[] key = randomBytes(length);
+                    int expected = provider.provide(key);
+                    int at = offset;
+                    ByteBuffer heap = wrap(ByteBuffer.allocate(offset + length + 7), key, offset);
+                    ByteBuffer readOnly = heap.asReadOnlyBuffer();
+                    ByteBuffer direct = wrap(ByteBuffer.allocateDirect(offset + length + 7), key, offset);
+                    ByteBuffer slice = wrap(ByteBuffer.allocate(offset + length + 7), key, offset).slice();
+                    assertEquals(expected, provider.provide(heap), () -> provider + " heap " + at + "+" + key.length);
+                    assertEquals(expected, provider.provide(readOnly), () -> provider + " read-only " + at + "+" + key.length);
+                    assertEquals(expected, provider.provide(direct), () -> provider + " direct " + at + "+" + key.length);
+                    assertEquals(expected, provider.provide(slice), () -> provider + " slice " + at + "+" + key.length);
+                    assertEquals(offset, heap.position());
+                    assertEquals(offset + length, direct.limit());
+                }
+            }
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Copies the key into the buffer at {@code offset} and leaves exactly the key remaining.
+     */
+    private static ByteBuffer wrap(ByteBuffer buffer, byte[] key, int offset) {
+        buffer.position(offset);
+        buffer.put(key);
+        buffer.limit(offset + key.length).position(offset);
+        return buffer;
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pearson's chi-squared test of how evenly every bundled {@link HashCodeProvider} spreads keys over the nodes and
+ * workers of a {@link RoutingTable}. The keys are generated from a fixed seed, so the statistics are deterministic;
+ * the critical values are the 99.9th percentiles of the chi-squared distribution for the degrees of freedom used.
+ */
+class HashDistributionTest {
+    private static final int WORKER_COUNT = 8;
+    private static final int NODES_PER_WORKER = 32;
+    private static final int KEY_COUNT = 1 << 16;
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    /**
+     * Critical values for {@code WORKER_COUNT * NODES_PER_WORKER - 1 = 255} and {@code WORKER_COUNT - 1 = 7}
+     * degrees of freedom.
+     */
+    private static final double NODE_CRITICAL_VALUE = 330.52;
+    private static final double WORKER_CRITICAL_VALUE = 24.32;
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private interface KeyFamily {
+        int hash(HashCodeProvider provider, int i);
+    }
+
+    private final RoutingTable<Object> routingTable = newRoutingTable();
+
+    @SuppressWarnings("unchecked")
+    private static RoutingTable<Object> newRoutingTable() {
+        // only the layout of the table is used, never the workers
+        Worker<Object>[] workers = (Worker<Object>[]) new Worker<?>[WORKER_COUNT];
+        return new RoutingTable<>(RoutingStrategy.VIRTUAL_NODES, WORKER_COUNT * NODES_PER_WORKER, workers, WORKER_COUNT, false);
+    }
+
+    @Test
+    void mixingProvidersSpreadSequentialIds() {
+        for (HashCodeProvider provider : HashCodeProviderTest.PROVIDERS) {
+            if (provider == DefaultHashCodeProvider.INSTANCE) continue;
+            assertUniform(provider, "sequential int", (p, i) -> p.provide(i));
+            assertUniform(provider, "sequential long", (p, i) -> p.provide((long) i));
+        }
+    }
+
+    @Test
+    void mixingProvidersSpreadTimestamps() {
+        for (HashCodeProvider provider : HashCodeProviderTest.PROVIDERS) {
+            if (provider == DefaultHashCodeProvider.INSTANCE) continue;
+            assertUniform(provider, "timestamp", (p, i) -> p.provide(TIMESTAMP + i));
+        }
+    }
+
+    @Test
+    void everyProviderSpreadsRandomKeys() {
+        byte[][] bytes = randomBytes(16);
+        String[] strings = randomStrings(16);
+        for (HashCodeProvider provider : HashCodeProviderTest.PROVIDERS) {
+            assertUniform(provider, "random byte[]", (p, i) -> p.provide(bytes[i]));
+            assertUniform(provider, "random String", (p, i) -> p.provide(strings[i]));
+        }
+    }
+
+    @Test
+    void defaultProviderClustersSequentialIds() {
+        long[][] counts = route(DefaultHashCodeProvider.INSTANCE, (p, i) -> p.provide((long) i));
+        assertTrue(chiSquared(counts[0]) > NODE_CRITICAL_VALUE, "sequential ids pile up on the first nodes");
+        assertTrue(chiSquared(counts[1]) > WORKER_CRITICAL_VALUE, "sequential ids pile up on the first workers");
+    }
+
+    private void assertUniform(HashCodeProvider provider, String family, KeyFamily keys) {
+        long[][] counts = route(provider, keys);
+        double nodes = chiSquared(counts[0]);
+        double workers = chiSquared(counts[1]);
+        assertTrue(nodes < NODE_CRITICAL_VALUE, () -> provider + " " + family + " per node: " + nodes);
+        assertTrue(workers < WORKER_CRITICAL_VALUE, () -> provider + " " + family + " per worker: " + workers);
+    }
+
+    /**
+     * Returns the number of keys routed to every node and to every worker.
+     */
+    private long[][] route(HashCodeProvider provider, KeyFamily keys) {
+        long[] nodes = new long[routingTable.size()];
+        long[] workers = new long[WORKER_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            int node = routingTable.route(keys.hash(provider, i));
+            nodes[node]++;
+            workers[routingTable.getOwnerIndex(node)]++;
+        }
+        return new long[][]{nodes, workers};
+    }
+
+    private static double chiSquared(long[] counts) {
+        double expected = (double) KEY_COUNT / counts.length;
+        double chi2 = 0;
+        for (long count : counts) {
+            double diff = count - expected;
+            chi2 += diff * diff / expected;
+        }
+        return chi2;
+    }
+
+    private static byte[][] randomBytes(int length) {
+        SplittableRandom random = new SplittableRandom(7);
+        byte[][] keys = new byte[KEY_COUNT][length];
+        for (byte[] key : keys) {
+            for (int i = 0; i < length; i++) key[i] = (byte) random.nextInt(256);
+        }
+        return keys;
+    }
+
+    private static String[] randomStrings(int length) {
+        SplittableRandom random = new SplittableRandom(11);
+        String[] keys = new String[KEY_COUNT];
+        char[] chars = new char[length];
+        for (int k = 0; k < KEY_COUNT; k++) {
+            for (int i = 0; i < length; i++) chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+            keys[k] = new String(chars);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crash replay and checkpointing of the write-ahead {@link Journal}, on its own and through a dispatcher restarted
+ * with another worker count.
+ */
+class JournalTest {
+    private static final JournalSerializer<long[]> SERIALIZER = new JournalSerializer<long[]>() {
+        @Override
+        public void serialize(long[] value, ByteBuffer buffer) {
+            buffer.putLong(value[0]).putLong(value[1]);
+        }
+
+        @Override
+        public long[] deserialize(ByteBuffer buffer) {
+            return new long[]{buffer.getLong(), buffer.getLong()};
+        }
+    };
+    /**
+     * Header, hash code and two longs, aligned to 8 bytes.
+     */
+    private static final int RECORD_SIZE = 32;
+    private static final int SEGMENT_SIZE = 16 * RECORD_SIZE;
+
+    private static final class Entry {
+        final long[] value;
+        final int hashcode;
+
+        Entry(long[] value, int hashcode) {
+            this.value = value;
+            this.hashcode = hashcode;
+        }
+    }
+
+    private static List<Entry> replay(Journal<long[]> journal) {
+        List<Entry> entries = new ArrayList<>();
+        journal.replay((value, hashcode) -> entries.add(new Entry(value, hashcode)));
+        return entries;
+    }
+
+    private static long countSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    void replaysEntriesPastTheCheckpointAfterACrash(@TempDir Path directory) throws IOException {
+        Journal<long[]> crashed = new Journal<>(directory, SEGMENT_SIZE, SERIALIZER);
+        for (int i = 0; i < 100; i++) crashed.append(i * 31, new long[]{i, -i});
+        crashed.checkpoint(40);
+        // no flush, no close: what is in the mapping survives a crash of the JVM
+
+        Journal<long[]> reopened = new Journal<>(directory, SEGMENT_SIZE, SERIALIZER);
+        List<Entry> entries = replay(reopened);
+
+        assertEquals(60, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            assertEquals(40 + i, entry.value[0]);
+            assertEquals(-(40 + i), entry.value[1]);
+            assertEquals((40 + i) * 31, entry.hashcode);
+        }
+        assertEquals(100, reopened.getNextIndex());
+    }
+
+    @Test
+    void appendsAfterReplayedEntriesAndAcknowledgesThem(@TempDir Path directory) throws IOException {
+        Journal<long[]> crashed = new Journal<>(directory, SEGMENT_SIZE, SERIALIZER);
+        for (int i = 0; i < 100; i++) crashed.append(i, new long[]{i, i});
+        crashed.checkpoint(90);
+
+        Journal<long[]> reopened = new Journal<>(directory, SEGMENT_SIZE, SERIALIZER);
+        assertEquals(10, replay(reopened).size());
+        long mark = reopened.getNextIndex();
+        // a replayed entry is appended again by its new owner before the source is acknowledged
+        reopened.append(7, new long[]{1000, 1000});
+        reopened.acknowledge(mark);
+        assertTrue(countSegments(directory) <= 2, "acknowledged segments are deleted");
+
+        List<Entry> entries = replay(new Journal<>(directory, SEGMENT_SIZE, SERIALIZER));
+        assertEquals(1, entries.size());
+        assertEquals(1000, entries.get(0).value[0]);
+        assertEquals(7, entries.get(0).hashcode);
+    }
+
+    @Test
+    void checkpointedSegmentsAreDeletedOnRoll(@TempDir Path directory) throws IOException {
+        Journal<long[]> journal = new Journal<>(directory, SEGMENT_SIZE, SERIALIZER);
+        for (int i = 0; i < 64; i++) {
+            journal.append(i, new long[]{i, i});
+            journal.checkpoint(i + 1);
+        }
+        assertTrue(countSegments(directory) <= 2);
+        assertEquals(0, replay(new Journal<>(directory, SEGMENT_SIZE, SERIALIZER)).size());
+    }
+
+    @Test
+    void tornRecordEndsTheJournal(@TempDir Path directory) throws IOException {
+        Journal<long[]> crashed = new Journal<>(directory, SEGMENT_SIZE, SERIALIZER);
+        for (int i = 0; i < 10; i++) crashed.append(i, new long[]{i, i});
+        crashed.flush();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.toString().endsWith(".log")).findFirst().orElseThrow(AssertionError::new);
+        }
+        // corrupt the payload of the eighth record, as a crash in the middle of writing it would
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF}), 7 * RECORD_SIZE + 16);
+        }
+
+        Journal<long[]> reopened = new Journal<>(directory, SEGMENT_SIZE, SERIALIZER);
+        List<Entry> entries = replay(reopened);
+        assertEquals(7, entries.size());
+        assertEquals(6, entries.get(6).value[0]);
+        assertEquals(7, reopened.getNextIndex(), "appends resume over the torn record");
+    }
+
+    @Test
+    void dispatcherReplaysUnhandledMessagesByKeyAfterACrash(@TempDir Path directory) throws InterruptedException {
+        int keys = 100;
+        int sequences = 50;
+        int handledBeforeCrash = 500;
+        CountDownLatch never = new CountDownLatch(1);
+        AtomicLong handled = new AtomicLong();
+        long[] lastBeforeCrash = new long[keys];
+        Arrays.fill(lastBeforeCrash, -1);
+        AffinityDispatcher<long[]> crashed = new AffinityDispatcher<>("journal", (worker, value) -> {
+            if (handled.incrementAndGet() > handledBeforeCrash) {
+                // the worker hangs in the middle of a batch, which is never checkpointed
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            lastBeforeCrash[(int) value[0]] = value[1];
+        }, XxHashCodeProvider.INSTANCE, config(directory, 3), SERIALIZER);
+        crashed.start();
+        for (int sequence = 0; sequence < sequences; sequence++) {
+            for (int key = 0; key < keys; key++) crashed.dispatch(key, new long[]{key, sequence});
+        }
+
+        long[] first = new long[keys];
+        long[] last = new long[keys];
+        Arrays.fill(first, -1);
+        Arrays.fill(last, -1);
+        AtomicLong gaps = new AtomicLong();
+        CountDownLatch complete = new CountDownLatch(keys);
+        AffinityDispatcher<long[]> restarted = new AffinityDispatcher<>("journal", (worker, value) -> {
+            int key = (int) value[0];
+            if (first[key] < 0) {
+                first[key] = value[1];
+            } else if (value[1] != last[key] + 1) {
+                gaps.incrementAndGet();
+            }
+            last[key] = value[1];
+            if (value[1] == sequences - 1) {
+                complete.countDown();
+            }
+        }, XxHashCodeProvider.INSTANCE, config(directory, 2), SERIALIZER);
+        restarted.start();
+
+        assertTrue(complete.await(30, TimeUnit.SECONDS), "every key is replayed to its last message");
+        restarted.shutdown();
+        assertEquals(0, gaps.get(), "replayed messages of a key are handled in order, without gaps");
+        for (int key = 0; key < keys; key++) {
+            assertTrue(first[key] <= lastBeforeCrash[key] + 1, "no message of key " + key + " is lost");
+        }
+        assertFalse(Files.exists(directory.resolve("journal").resolve("worker-2")), "the journal of a removed worker is deleted");
+    }
+
+    private static Config config(Path directory, int workerCount) {
+        return Config.builder()
+                .setWorkerCount(workerCount)
+                .setBufferSize(8192)
+                .setBatchSize(64)
+                .setJournalDirectory(directory)
+                .setJournalSegmentSize(64 << 10)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keys a producer reuses, carried to a {@link KeyedHandler}: every {@code byte[]}, {@code ByteBuffer} and
+ * {@code CharSequence} overload hands the handler a copy, so overwriting the key right after the dispatch does not
+ * change what the handler receives.
+ */
+class KeyedHandlerTest {
+
+    @Test
+    void reusedKeysAreCopied() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // written by the worker thread only, read once the dispatcher has shut down
+        List<String> received = new ArrayList<>();
+        Config config = Config.builder()
+                .setWorkerCount(1)
+                .setBufferSize(64)
+                .setPriorityLaneSize(16)
+                .build();
+        AffinityDispatcher<String> dispatcher = AffinityDispatcher.withKeyedHandler("keys", (String worker, Object key, String expected) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(expected + "=" + asString(key));
+        }, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        dispatcher.dispatch("first", "first");
+        // the worker is held, so it reads the keys only after the producer has overwritten them
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        byte[] bytes = "whole".getBytes(StandardCharsets.UTF_8);
+        dispatcher.dispatch(bytes, "whole");
+        overwrite(bytes);
+        bytes = "priority".getBytes(StandardCharsets.UTF_8);
+        dispatcher.dispatch(bytes, "priority", Priority.HIGH);
+        overwrite(bytes);
+        bytes = "try".getBytes(StandardCharsets.UTF_8);
+        assertTrue(dispatcher.tryDispatch(bytes, "try"));
+        overwrite(bytes);
+        bytes = "timed".getBytes(StandardCharsets.UTF_8);
+        assertTrue(dispatcher.dispatch(bytes, "timed", 1, TimeUnit.SECONDS));
+        overwrite(bytes);
+        byte[][] all = {"all0".getBytes(StandardCharsets.UTF_8), "all1".getBytes(StandardCharsets.UTF_8)};
+        dispatcher.dispatchAll(all, new String[]{"all0", "all1"});
+        overwrite(all[0]);
+        overwrite(all[1]);
+        bytes = "[range]".getBytes(StandardCharsets.UTF_8);
+        dispatcher.dispatch(bytes, 1, 5, "range");
+        overwrite(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        buffer.put("buffer".getBytes(StandardCharsets.UTF_8)).flip();
+        dispatcher.dispatch(buffer, "buffer");
+        buffer.clear();
+        buffer.put(new byte[16]);
+        StringBuilder chars = new StringBuilder("chars");
+        dispatcher.dispatch(chars, "chars");
+        chars.setLength(0);
+        chars.append("xxxxx");
+
+        release.countDown();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(10)).isDrained());
+        // the high-priority message overtakes the others
+        assertEquals(List.of("first=first", "priority=priority", "whole=whole", "try=try", "timed=timed", "all0=all0",
+                "all1=all1", "range=range", "buffer=buffer", "chars=chars"), received);
+    }
+
+    private static void overwrite(byte[] key) {
+        for (int i = 0; i < key.length; i++) key[i] = 'x';
+    }
+
+    private static String asString(Object key) {
+        if (key instanceof byte[]) {
+            return new String((byte[]) key, StandardCharsets.UTF_8);
+        }
+        if (key instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) key).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return (String) key;
+    }
+}
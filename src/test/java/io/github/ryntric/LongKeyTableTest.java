@@ -0,0 +1,174 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Backward-shift deletion, LRU eviction and expiry of {@link LongKeyTable}, through both state maps.
+ */
+class LongKeyTableTest {
+    private static final long TTL_MS = 500;
+
+    /**
+     * Returns {@code count} keys whose home slot is {@code home} in a table of the given capacity.
+     */
+    private static long[] keysHomedAt(int home, int capacity, int count) {
+        long[] keys = new long[count];
+        for (long key = 1, found = 0; found < count; key++) {
+            if (((int) Murmur3.fmix64(key) & (capacity - 1)) == home) {
+                keys[(int) found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void removalShiftsBackCollidingKeys() {
+        LongStateMap<String> map = new LongStateMap<>();
+        int capacity = map.capacity();
+        long[] colliding = keysHomedAt(capacity - 2, capacity, 4);
+        long[] next = keysHomedAt(capacity - 1, capacity, 1);
+        long[] wrapped = keysHomedAt(0, capacity, 1);
+        // the chain runs over the end of the table: [c0, c1 | c2, c3, n0, w0]
+        for (long key : colliding) map.put(key, "c" + key);
+        map.put(next[0], "n");
+        map.put(wrapped[0], "w");
+
+        assertEquals("c" + colliding[0], map.remove(colliding[0]));
+        assertEquals("c" + colliding[2], map.remove(colliding[2]));
+
+        assertNull(map.get(colliding[0]));
+        assertNull(map.get(colliding[2]));
+        assertEquals("c" + colliding[1], map.get(colliding[1]));
+        assertEquals("c" + colliding[3], map.get(colliding[3]));
+        assertEquals("n", map.get(next[0]));
+        assertEquals("w", map.get(wrapped[0]));
+        assertEquals(4, map.size());
+        // every entry is back within reach of its home slot: no slot is left holding a tombstone
+        assertEquals(capacity - 2, map.lookup(colliding[1]));
+        assertEquals(capacity - 1, map.lookup(colliding[3]));
+        assertEquals(0, map.lookup(next[0]));
+        assertEquals(1, map.lookup(wrapped[0]));
+    }
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(7);
+        LongStateMap<Long> map = new LongStateMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map.snapshot());
+        for (long key = 0; key < 5000; key++) assertEquals(expected.get(key), map.get(key));
+    }
+
+    @Test
+    void offHeapRecordsMoveWithTheirKeys() {
+        Random random = new Random(11);
+        try (OffHeapLongStateMap map = new OffHeapLongStateMap(4096, 2, 0, TimeUnit.SECONDS)) {
+            Map<Long, Long> expected = new HashMap<>();
+            for (int i = 0; i < 200_000; i++) {
+                long key = random.nextInt(3000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key) != null, map.remove(key));
+                } else {
+                    map.putLong(key, 0, i);
+                    map.putLong(key, 1, -i);
+                    expected.put(key, (long) i);
+                }
+            }
+            assertEquals(expected.size(), map.size());
+            for (Map.Entry<Long, long[]> entry : map.snapshot().entrySet()) {
+                long value = expected.get(entry.getKey());
+                assertEquals(value, entry.getValue()[0]);
+                assertEquals(-value, entry.getValue()[1]);
+            }
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyAccessed() {
+        LongStateMap<String> map = new LongStateMap<>(3, 0, TimeUnit.SECONDS);
+        map.put(1, "a");
+        map.put(2, "b");
+        map.put(3, "c");
+        map.get(1);
+        map.put(4, "d");
+
+        assertFalse(map.containsKey(2));
+        assertTrue(map.containsKey(1));
+        assertTrue(map.containsKey(3));
+        assertTrue(map.containsKey(4));
+        assertEquals(3, map.size());
+
+        // an update is an access as well
+        map.put(3, "c2");
+        map.put(5, "e");
+        assertFalse(map.containsKey(1));
+        assertEquals("c2", map.get(3));
+    }
+
+    @Test
+    void offHeapEvictsLeastRecentlyAccessed() {
+        try (OffHeapLongStateMap map = new OffHeapLongStateMap(2, 1, 0, TimeUnit.SECONDS)) {
+            map.putLong(1, 0, 10);
+            map.putLong(2, 0, 20);
+            map.addLong(1, 0, 1);
+            map.putLong(3, 0, 30);
+
+            assertEquals(11, map.getLong(1, 0, -1));
+            assertEquals(-1, map.getLong(2, 0, -1));
+            assertEquals(30, map.getLong(3, 0, -1));
+            // the evicted record is cleared: a new entry in its slot starts from zero
+            assertEquals(5, map.addLong(4, 0, 5));
+        }
+    }
+
+    @Test
+    void expiresEntriesNotAccessedForTheTtl() throws InterruptedException {
+        LongStateMap<String> map = new LongStateMap<>(0, TTL_MS, TimeUnit.MILLISECONDS);
+        map.put(1, "a");
+        map.put(2, "b");
+        Thread.sleep(TTL_MS * 3 / 5);
+        assertEquals("b", map.get(2));
+        Thread.sleep(TTL_MS * 3 / 5);
+
+        assertNull(map.get(1));
+        assertEquals(2, map.size(), "expired entries stay until removed");
+        assertEquals("b", map.get(2));
+        assertEquals(1, map.expire());
+        assertEquals(1, map.size());
+
+        Thread.sleep(TTL_MS * 6 / 5);
+        // an insert removes the expired entries first
+        map.put(3, "c");
+        assertEquals(1, map.size());
+        assertNull(map.put(2, "b2"), "an expired entry revived by a put has no previous value");
+    }
+
+    @Test
+    void offHeapExpiredRecordIsCleared() throws InterruptedException {
+        try (OffHeapLongStateMap map = new OffHeapLongStateMap(16, 1, TTL_MS, TimeUnit.MILLISECONDS)) {
+            map.putLong(1, 0, 42);
+            Thread.sleep(TTL_MS * 6 / 5);
+            assertFalse(map.containsKey(1));
+            assertEquals(7, map.addLong(1, 0, 7));
+        }
+    }
+}
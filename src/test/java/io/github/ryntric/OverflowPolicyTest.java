@@ -0,0 +1,206 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every {@link OverflowPolicy}, {@code tryDispatch} and timed dispatch against a single worker whose handler is
+ * blocked on a latch, so that its channel fills up and stays full until the test releases it.
+ */
+class OverflowPolicyTest {
+    private static final int BUFFER_SIZE = 16;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final int KEYS = 3;
+    private static final long TIMEOUT_MS = 100;
+
+    /**
+     * A dispatcher of one worker whose handler blocks on the first message until released, recording the messages
+     * it handles. Messages are {@code {key, sequence}} pairs, sequences counting up from 1 per key.
+     */
+    private static final class Blocked {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        // written by the worker thread only, read once the dispatcher has shut down
+        final List<long[]> handled = new ArrayList<>();
+        final long[] sequences = new long[KEYS];
+        final AffinityDispatcher<long[]> dispatcher;
+
+        Blocked(OverflowPolicy policy, ChannelType channelType) throws InterruptedException {
+            Config config = Config.builder()
+                    .setWorkerCount(1)
+                    .setChannelType(channelType)
+                    .setBufferSize(BUFFER_SIZE)
+                    .setBatchSize(4)
+                    .setOverflowPolicy(policy)
+                    .setOverflowQueueCapacity(QUEUE_CAPACITY)
+                    .build();
+            dispatcher = new AffinityDispatcher<>("overflow", (worker, message) -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.add(message);
+            }, DefaultHashCodeProvider.INSTANCE, config);
+            dispatcher.start();
+            dispatcher.dispatch(0L, next(0));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+
+        long[] next(int key) {
+            return new long[]{key, ++sequences[key]};
+        }
+
+        /**
+         * Dispatches with {@code tryDispatch} until the channel is full, and returns the number of messages it took.
+         */
+        int fill() {
+            int accepted = 0;
+            for (int i = 0; ; i++) {
+                int key = i % KEYS;
+                long[] message = new long[]{key, sequences[key] + 1};
+                if (!dispatcher.tryDispatch((long) key, message)) {
+                    return accepted;
+                }
+                sequences[key]++;
+                accepted++;
+            }
+        }
+
+        WorkerMetricsSnapshot metrics() {
+            return dispatcher.getMetrics(0, new WorkerMetricsSnapshot());
+        }
+
+        void releaseAndDrain() {
+            release.countDown();
+            assertTrue(dispatcher.shutdown(Duration.ofSeconds(10)).isDrained());
+        }
+    }
+
+    @Test
+    void blockTimesOutOnAFullChannel() throws InterruptedException {
+        Blocked blocked = new Blocked(OverflowPolicy.BLOCK, ChannelType.SPSC);
+        int accepted = blocked.fill();
+        assertTrue(accepted > 0 && accepted <= BUFFER_SIZE, "the channel takes at most its size: " + accepted);
+        assertFalse(blocked.dispatcher.tryDispatch(0L, new long[]{0, 0}), "a full channel takes nothing more");
+
+        long start = System.nanoTime();
+        assertFalse(blocked.dispatcher.dispatch(0L, new long[]{0, 0}, TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= TIMEOUT_MS, "waits for the whole timeout: " + elapsedMs);
+        assertTrue(elapsedMs < TIMEOUT_MS + 2000, "gives up soon after the timeout: " + elapsedMs);
+
+        blocked.releaseAndDrain();
+        assertEquals(accepted + 1, blocked.handled.size());
+        assertEquals(0, blocked.metrics().getDroppedCount());
+        assertInOrder(blocked.handled);
+    }
+
+    @Test
+    void dropNewestDiscardsWhatDoesNotFit() throws InterruptedException {
+        Blocked blocked = new Blocked(OverflowPolicy.DROP_NEWEST, ChannelType.SPSC);
+        int accepted = blocked.fill();
+        for (int i = 0; i < 10; i++) blocked.dispatcher.dispatch(1L, new long[]{1, -1});
+
+        assertEquals(10, blocked.metrics().getDroppedCount());
+        assertEquals(0, blocked.metrics().getSpilledCount());
+        blocked.releaseAndDrain();
+        assertEquals(accepted + 1, blocked.handled.size());
+        assertInOrder(blocked.handled);
+    }
+
+    @Test
+    void dropOldestEvictsFromTheOverflowQueue() throws InterruptedException {
+        Blocked blocked = new Blocked(OverflowPolicy.DROP_OLDEST, ChannelType.SPSC);
+        int accepted = blocked.fill();
+        int overflowing = QUEUE_CAPACITY + 5;
+        List<long[]> spilled = new ArrayList<>();
+        for (int i = 0; i < overflowing; i++) {
+            long[] message = blocked.next(i % KEYS);
+            spilled.add(message);
+            blocked.dispatcher.dispatch((long) (i % KEYS), message);
+        }
+
+        WorkerMetricsSnapshot metrics = blocked.metrics();
+        assertEquals(overflowing, metrics.getSpilledCount());
+        assertEquals(5, metrics.getDroppedCount());
+        assertEquals(QUEUE_CAPACITY, metrics.getOverflowSize());
+        blocked.releaseAndDrain();
+        assertEquals(accepted + 1 + QUEUE_CAPACITY, blocked.handled.size());
+        // the oldest spilled messages made room for the newest, which are handled after the channel in order
+        List<long[]> tail = blocked.handled.subList(accepted + 1, blocked.handled.size());
+        for (int i = 0; i < QUEUE_CAPACITY; i++) {
+            assertSame(spilled.get(5 + i), tail.get(i));
+        }
+    }
+
+    @Test
+    void spillKeepsPerKeyOrder() throws InterruptedException {
+        Blocked blocked = new Blocked(OverflowPolicy.SPILL, ChannelType.SPSC);
+        int accepted = blocked.fill();
+        int spilled = 0;
+        for (int i = 0; i < QUEUE_CAPACITY + 3; i++) {
+            int key = i % KEYS;
+            long[] message = new long[]{key, blocked.sequences[key] + 1};
+            blocked.dispatcher.dispatch((long) key, message);
+            // a dropped message leaves no gap in the sequences
+            if (blocked.metrics().getDroppedCount() == 0) {
+                blocked.sequences[key]++;
+                spilled++;
+            }
+        }
+        assertFalse(blocked.dispatcher.tryDispatch(0L, new long[]{0, 0}), "spilled messages are not overtaken");
+
+        WorkerMetricsSnapshot metrics = blocked.metrics();
+        assertEquals(QUEUE_CAPACITY, spilled);
+        assertEquals(QUEUE_CAPACITY, metrics.getSpilledCount());
+        assertEquals(3, metrics.getDroppedCount());
+        blocked.releaseAndDrain();
+        assertEquals(accepted + 1 + QUEUE_CAPACITY, blocked.handled.size());
+        assertInOrder(blocked.handled);
+    }
+
+    @Test
+    void concurrentTryDispatchNeverWaits() throws InterruptedException {
+        Blocked blocked = new Blocked(OverflowPolicy.DROP_NEWEST, ChannelType.MPSC);
+        AtomicInteger accepted = new AtomicInteger();
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (blocked.dispatcher.tryDispatch((long) i, new long[]{0, -1})) accepted.incrementAndGet();
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join(10_000);
+            assertFalse(producer.isAlive(), "a non-blocking publish never waits for a slot promised to another one");
+        }
+        assertTrue(accepted.get() <= BUFFER_SIZE, "the channel takes at most its size: " + accepted.get());
+
+        blocked.releaseAndDrain();
+        assertEquals(accepted.get() + 1, blocked.handled.size());
+    }
+
+    private static void assertInOrder(List<long[]> handled) {
+        long[] last = new long[KEYS];
+        for (long[] message : handled) {
+            int key = (int) message[0];
+            assertEquals(last[key] + 1, message[1], "messages of key " + key + " are handled in dispatch order");
+            last[key] = message[1];
+        }
+    }
+}
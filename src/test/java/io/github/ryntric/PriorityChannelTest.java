@@ -0,0 +1,151 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The starvation guard of {@link PriorityChannel}: a worker takes priority batches first, and one normal batch
+ * after {@link Config#getPriorityStarvationLimit()} priority batches in a row while normal messages wait. The
+ * worker is held in its first batch while both channels fill up. Messages are {@code {priority, sequence}} pairs,
+ * sequences counting up from 1 per priority.
+ */
+class PriorityChannelTest {
+    private static final long NORMAL = 0;
+    private static final long HIGH = 1;
+    private static final int STARVATION_LIMIT = 3;
+
+    private static Config.Builder config(int batchSize) {
+        return Config.builder()
+                .setWorkerCount(1)
+                .setBufferSize(256)
+                .setBatchSize(batchSize)
+                .setPriorityLaneSize(64)
+                .setPriorityStarvationLimit(STARVATION_LIMIT);
+    }
+
+    @Test
+    void priorityGoesFirstUntilTheStreakLimit() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // written by the worker thread only, read once the dispatcher has shut down
+        List<long[]> handled = new ArrayList<>();
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("priority", (worker, message) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(message);
+        }, XxHashCodeProvider.INSTANCE, config(1).build());
+        dispatcher.start();
+        dispatcher.dispatch(0L, new long[]{NORMAL, 0});
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        int normals = 8;
+        int priorities = normals * STARVATION_LIMIT + 16;
+        for (int i = 1; i <= normals; i++) dispatcher.dispatch(0L, new long[]{NORMAL, i});
+        for (int i = 1; i <= priorities; i++) dispatcher.dispatch(0L, new long[]{HIGH, i}, Priority.HIGH);
+        release.countDown();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(10)).isDrained());
+
+        // batches of one message: STARVATION_LIMIT priority messages, then a normal one, until the normal ones run out
+        List<long[]> expected = new ArrayList<>();
+        expected.add(new long[]{NORMAL, 0});
+        long priority = 0;
+        for (int i = 1; i <= normals; i++) {
+            for (int k = 0; k < STARVATION_LIMIT; k++) expected.add(new long[]{HIGH, ++priority});
+            expected.add(new long[]{NORMAL, i});
+        }
+        while (priority < priorities) expected.add(new long[]{HIGH, ++priority});
+        assertEquals(expected.size(), handled.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i)[0], handled.get(i)[0], "priority of message " + i);
+            assertEquals(expected.get(i)[1], handled.get(i)[1], "sequence of message " + i);
+        }
+    }
+
+    @Test
+    void saturatedPriorityLaneDoesNotStarveNormalMessages() throws InterruptedException {
+        int batchSize = 4;
+        int normals = 64;
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch normalsHandled = new CountDownLatch(normals);
+        // the priority of every batch, and the normal sequences in handling order; worker thread only
+        List<Long> batches = new ArrayList<>();
+        List<Long> normalSequences = new ArrayList<>();
+        AffinityDispatcher<long[]> dispatcher = AffinityDispatcher.withBatchHandler("saturated", (worker, batch) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long kind = batch.get(0)[0];
+            batches.add(kind);
+            for (int i = 0; i < batch.size(); i++) {
+                long[] message = batch.get(i);
+                if (message[0] != kind) {
+                    batches.add(-1L);
+                }
+                if (message[0] == NORMAL) {
+                    normalSequences.add(message[1]);
+                    normalsHandled.countDown();
+                }
+            }
+        }, XxHashCodeProvider.INSTANCE, config(batchSize).build());
+        dispatcher.start();
+        dispatcher.dispatch(0L, new long[]{HIGH, 0}, Priority.HIGH);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= normals; i++) dispatcher.dispatch(0L, new long[]{NORMAL, i});
+        // keeps the priority channel full until every normal message is handled: a full channel makes it wait
+        Thread flood = new Thread(() -> {
+            long sequence = 0;
+            while (normalsHandled.getCount() > 0) {
+                dispatcher.dispatch(0L, new long[]{HIGH, ++sequence}, Priority.HIGH);
+            }
+        });
+        flood.start();
+        while (dispatcher.getMetrics(0, new WorkerMetricsSnapshot()).getDispatchedCount() < 1 + normals + 64) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        assertTrue(normalsHandled.await(30, TimeUnit.SECONDS), "normal messages are handled under a priority flood");
+        flood.join(10_000);
+        assertFalse(flood.isAlive());
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(10)).isDrained());
+
+        assertFalse(batches.contains(-1L), "a batch is taken from one channel");
+        assertEquals(HIGH, batches.get(1), "priority messages go first once the worker is released");
+        // the priority batches taken in a row before every normal batch
+        List<Integer> streaks = new ArrayList<>();
+        int streak = 0;
+        for (int i = 1; i < batches.size() && streaks.size() < normals / batchSize; i++) {
+            if (batches.get(i) == HIGH) {
+                streak++;
+            } else {
+                streaks.add(streak);
+                streak = 0;
+            }
+        }
+        assertEquals(normals / batchSize, streaks.size(), "normal messages are taken in full batches while they wait");
+        assertEquals(STARVATION_LIMIT, streaks.get(0), "priority batches go first until the limit");
+        for (int s : streaks) {
+            assertTrue(s <= STARVATION_LIMIT, "a normal batch comes at least every " + STARVATION_LIMIT + " priority batches: " + streaks);
+        }
+        for (int i = 0; i < normals; i++) {
+            assertEquals(i + 1L, normalSequences.get(i));
+        }
+    }
+}
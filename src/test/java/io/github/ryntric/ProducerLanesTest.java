@@ -0,0 +1,115 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lanes of a sharded channel handed from a terminated producer thread to a new one, see {@link ProducerLanes}.
+ */
+class ProducerLanesTest {
+    private static final int KEYS = 4;
+
+    /**
+     * Runs the action on a new thread and waits for the thread to terminate.
+     */
+    private static void runToCompletion(Runnable action) throws InterruptedException {
+        Thread thread = new Thread(action);
+        thread.start();
+        thread.join(10_000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void laneOfATerminatedThreadIsReassigned() throws InterruptedException {
+        ProducerLanes lanes = new ProducerLanes(2);
+        AtomicInteger first = new AtomicInteger(-1);
+        AtomicInteger second = new AtomicInteger(-1);
+        runToCompletion(() -> first.set(lanes.lane()));
+        runToCompletion(() -> second.set(lanes.lane()));
+        assertEquals(0, first.get());
+        assertEquals(0, second.get(), "the lane of a terminated thread is handed to the next one");
+
+        // two live owners hold both lanes, so a third live thread gets the shared lane
+        CountDownLatch assigned = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread[] owners = new Thread[2];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = new Thread(() -> {
+                lanes.lane();
+                assigned.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            owners[i].start();
+        }
+        assertTrue(assigned.await(10, TimeUnit.SECONDS));
+        AtomicInteger shared = new AtomicInteger(-1);
+        runToCompletion(() -> shared.set(lanes.lane()));
+        assertEquals(2, shared.get());
+        done.countDown();
+        for (Thread owner : owners) owner.join();
+    }
+
+    @Test
+    void reassignedLaneKeepsPerKeyOrder() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // written by the worker thread only, read once the dispatcher has shut down
+        List<long[]> handled = new ArrayList<>();
+        Config config = Config.builder()
+                .setWorkerCount(1)
+                .setChannelType(ChannelType.SHARDED_MPSC)
+                .setProducerLanes(1)
+                .setBufferSize(256)
+                .setBatchSize(16)
+                .build();
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("lanes", (worker, message) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(message);
+        }, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+        long[] sequences = new long[KEYS];
+        // from threads of their own: the test thread would keep the only lane for good
+        runToCompletion(() -> dispatcher.dispatch(0L, new long[]{0, ++sequences[0]}));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // the worker is held, so the messages of an owner are still in the lane when the next one pushes
+        int messages = 50;
+        for (int owner = 0; owner < 3; owner++) {
+            runToCompletion(() -> {
+                for (int i = 0; i < messages; i++) {
+                    int key = i % KEYS;
+                    dispatcher.dispatch((long) key, new long[]{key, ++sequences[key]});
+                }
+            });
+        }
+        release.countDown();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(10)).isDrained());
+
+        assertEquals(1 + 3 * messages, handled.size());
+        long[] last = new long[KEYS];
+        for (long[] message : handled) {
+            int key = (int) message[0];
+            assertEquals(last[key] + 1, message[1], "messages of key " + key + " are handled in dispatch order");
+            last[key] = message[1];
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-key ordering while the rebalancer moves routing nodes away from the workers loaded by hot keys.
+ */
+class RebalanceTest {
+    private static final int PRODUCERS = 2;
+    private static final int KEYS = 512;
+    private static final int HOT_KEYS = 8;
+    private static final int MESSAGES = 150_000;
+
+    @Test
+    void movesNodesOffHotWorkersInOrder() throws InterruptedException {
+        Config config = Config.builder()
+                .setWorkerCount(4)
+                .setChannelType(ChannelType.MPSC)
+                .setBufferSize(1024)
+                .setBatchSize(64)
+                .setRebalanceIntervalMs(10)
+                .setRebalanceThreshold(0.1)
+                .setRebalanceMaxMoves(16)
+                .build();
+        // the warm-up pass dispatches as one more producer
+        long[][] last = new long[PRODUCERS + 1][KEYS];
+        String[] owners = new String[KEYS];
+        AtomicLong moved = new AtomicLong();
+        AtomicLong handled = new AtomicLong();
+        AtomicLong disorders = new AtomicLong();
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("rebalance", (worker, message) -> {
+            int producer = (int) message[0];
+            int key = (int) message[1];
+            if (message[2] != last[producer][key] + 1) {
+                disorders.incrementAndGet();
+            }
+            last[producer][key] = message[2];
+            if (owners[key] != null && !Objects.equals(owners[key], worker)) {
+                moved.incrementAndGet();
+            }
+            owners[key] = worker;
+            handled.incrementAndGet();
+        }, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+
+        // every key once, to learn its owner; the hot keys are then all taken from the same worker
+        for (int key = 0; key < KEYS; key++) dispatcher.dispatch((long) key, new long[]{PRODUCERS, key, 1});
+        while (handled.get() < KEYS) Thread.sleep(1);
+        int[] hot = new int[HOT_KEYS];
+        for (int key = 0, found = 0; key < KEYS && found < HOT_KEYS; key++) {
+            if (owners[key].equals(owners[0])) hot[found++] = key;
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                long[] sequences = new long[KEYS];
+                for (int i = 0; i < MESSAGES; i++) {
+                    // three messages out of four go to a handful of hot keys, owned by one worker after the warm-up
+                    int key = i % 4 != 0 ? hot[i % HOT_KEYS] : (i * 7 + producer) % KEYS;
+                    dispatcher.dispatch((long) key, new long[]{producer, key, ++sequences[key]});
+                }
+            }, "producer-" + p);
+            producers[p].setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+            producers[p].start();
+        }
+        for (Thread producer : producers) producer.join();
+        ShutdownReport report = dispatcher.shutdown(Duration.ofSeconds(30));
+
+        assertNull(failure.get());
+        assertTrue(report.isDrained());
+        assertEquals(0, disorders.get(), "messages of a key are handled in dispatch order");
+        assertEquals((long) PRODUCERS * MESSAGES + KEYS, handled.get(), "no message is lost");
+        assertTrue(moved.get() > 0, "keys have moved to other workers");
+    }
+}
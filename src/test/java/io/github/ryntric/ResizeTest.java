@@ -0,0 +1,107 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-key ordering across {@link AffinityDispatcher#resize(int)}, while producers keep dispatching: node handoff with
+ * virtual nodes, rehashing with a direct strategy, for single and batched dispatch.
+ */
+class ResizeTest {
+    private static final int PRODUCERS = 3;
+    private static final int KEYS = 256;
+    private static final int MESSAGES = 60_000;
+    private static final int BATCH_SIZE = 32;
+    private static final int[] WORKER_COUNTS = {2, 5, 1, 4, 3, 6, 2};
+
+    @Test
+    void handoffKeepsPerKeyOrder() throws InterruptedException {
+        assertOrderedAcrossResizes(RoutingStrategy.VIRTUAL_NODES, false);
+    }
+
+    @Test
+    void handoffKeepsPerKeyOrderOfBatches() throws InterruptedException {
+        assertOrderedAcrossResizes(RoutingStrategy.VIRTUAL_NODES, true);
+    }
+
+    @Test
+    void rehashKeepsPerKeyOrder() throws InterruptedException {
+        assertOrderedAcrossResizes(RoutingStrategy.JUMP_CONSISTENT_HASH, false);
+    }
+
+    @Test
+    void rehashKeepsPerKeyOrderOfBatches() throws InterruptedException {
+        assertOrderedAcrossResizes(RoutingStrategy.JUMP_CONSISTENT_HASH, true);
+    }
+
+    private static void assertOrderedAcrossResizes(RoutingStrategy strategy, boolean batched) throws InterruptedException {
+        Config config = Config.builder()
+                .setWorkerCount(3)
+                .setChannelType(ChannelType.MPSC)
+                .setBufferSize(1024)
+                .setBatchSize(64)
+                .setRoutingStrategy(strategy)
+                .build();
+        // written by the worker owning the key only, which the ordering guarantee makes a single thread at a time
+        long[][] last = new long[PRODUCERS][KEYS];
+        AtomicLong handled = new AtomicLong();
+        AtomicLong disorders = new AtomicLong();
+        AffinityDispatcher<long[]> dispatcher = new AffinityDispatcher<>("resize", (worker, message) -> {
+            int producer = (int) message[0];
+            int key = (int) message[1];
+            if (message[2] != last[producer][key] + 1) {
+                disorders.incrementAndGet();
+            }
+            last[producer][key] = message[2];
+            handled.incrementAndGet();
+        }, DefaultHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                long[] sequences = new long[KEYS];
+                long[] keys = new long[BATCH_SIZE];
+                long[][] values = new long[BATCH_SIZE][];
+                for (int i = 0; i < MESSAGES; ) {
+                    int count = batched ? Math.min(BATCH_SIZE, MESSAGES - i) : 1;
+                    for (int j = 0; j < count; j++, i++) {
+                        int key = (i * 7 + producer) % KEYS;
+                        keys[j] = key;
+                        values[j] = new long[]{producer, key, ++sequences[key]};
+                    }
+                    if (batched) {
+                        dispatcher.dispatchAll(count == BATCH_SIZE ? keys : Arrays.copyOf(keys, count),
+                                count == BATCH_SIZE ? values : Arrays.copyOf(values, count));
+                    } else {
+                        dispatcher.dispatch(keys[0], values[0]);
+                    }
+                }
+            }, "producer-" + p);
+            producers[p].setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+            producers[p].start();
+        }
+
+        for (int workerCount : WORKER_COUNTS) {
+            Thread.sleep(5);
+            dispatcher.resize(workerCount);
+        }
+        for (Thread producer : producers) producer.join();
+        ShutdownReport report = dispatcher.shutdown(Duration.ofSeconds(30));
+
+        assertNull(failure.get());
+        assertTrue(report.isDrained());
+        assertEquals(0, disorders.get(), "messages of a key are handled in dispatch order");
+        assertEquals((long) PRODUCERS * MESSAGES, handled.get(), "no message is lost");
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The draining {@link AffinityDispatcher#shutdown(Duration)} and its {@link ShutdownReport}, with handlers held on a
+ * latch so that messages are still in flight when the shutdown starts.
+ */
+class ShutdownTest {
+    private static final int MESSAGES = 200;
+
+    private static Config config(int workerCount) {
+        return Config.builder()
+                .setWorkerCount(workerCount)
+                .setBufferSize(1024)
+                .setBatchSize(16)
+                .build();
+    }
+
+    @Test
+    void handlesInFlightMessagesBeforeTheDeadline() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong handled = new AtomicLong();
+        AffinityDispatcher<Long> dispatcher = new AffinityDispatcher<>("drained", (worker, value) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.incrementAndGet();
+        }, XxHashCodeProvider.INSTANCE, config(2));
+        dispatcher.start();
+        for (long i = 0; i < MESSAGES; i++) dispatcher.dispatch(i, i);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // nothing has been handled yet when the shutdown starts
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        ShutdownReport report = dispatcher.shutdown(Duration.ofSeconds(30));
+        releaser.join();
+
+        assertTrue(report.isDrained(), report::toString);
+        assertEquals(MESSAGES, handled.get(), "in-flight messages are handled before the workers stop");
+        assertEquals(MESSAGES, report.getDrainedCount());
+        assertEquals(0, report.getDroppedCount());
+        assertEquals(2, report.getDrainedCounts().size());
+        assertTrue(dispatcher.awaitTermination(1, TimeUnit.SECONDS));
+        assertThrows(DispatcherTerminatedException.class, () -> dispatcher.dispatch(0L, 0L));
+    }
+
+    @Test
+    void reportsWhatAStuckHandlerLeavesBehind() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AffinityDispatcher<Long> dispatcher = new AffinityDispatcher<>("stuck", (worker, value) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, XxHashCodeProvider.INSTANCE, config(1));
+        dispatcher.start();
+        for (long i = 0; i < MESSAGES; i++) dispatcher.dispatch(i, i);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        ShutdownReport report = dispatcher.shutdown(Duration.ofMillis(200));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertFalse(report.isDrained());
+        assertTrue(elapsedMs >= 200, "waits for the deadline: " + elapsedMs);
+        assertTrue(elapsedMs < 5_000, "gives up on the stuck handler after a short grace period: " + elapsedMs);
+        // the message stuck in the handler is not handled either
+        assertEquals(MESSAGES, report.getDroppedCount(), report::toString);
+        assertEquals(0, report.getDrainedCount());
+        release.countDown();
+        assertTrue(dispatcher.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void reportsDrainedAndDroppedCountsOfASlowHandler() {
+        AtomicLong handled = new AtomicLong();
+        AffinityDispatcher<Long> dispatcher = new AffinityDispatcher<>("slow", (worker, value) -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.incrementAndGet();
+        }, XxHashCodeProvider.INSTANCE, config(1));
+        dispatcher.start();
+        for (long i = 0; i < MESSAGES; i++) dispatcher.dispatch(i, i);
+
+        ShutdownReport report = dispatcher.shutdown(Duration.ofMillis(100));
+
+        assertFalse(report.isDrained());
+        assertTrue(report.getDrainedCount() > 0, report::toString);
+        assertTrue(report.getDroppedCount() > 0, report::toString);
+        // the worker stops after its current batch, within the grace period, so the counts are final
+        assertTrue(report.getDrainedCount() <= handled.get(), report::toString);
+        assertEquals(MESSAGES, handled.get() + report.getDroppedCount(), report::toString);
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.ryntric;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unordered dispatch with work stealing while one worker is slow and the others idle: every unordered message is
+ * handled exactly once, the idle workers steal from the slow one, and the completed count of every worker still
+ * catches up with its dispatched count, which {@link Worker#awaitDrained()} waits for.
+ */
+class WorkStealingTest {
+    private static final int WORKERS = 4;
+    private static final int PRODUCERS = 3;
+    private static final int MESSAGES = 20_000;
+    private static final long SLOW_NANOS = 50_000;
+
+    @Test
+    void idleWorkersStealFromASlowOne() throws InterruptedException {
+        Config config = Config.builder()
+                .setWorkerCount(WORKERS)
+                .setChannelType(ChannelType.MPSC)
+                .setBufferSize(1024)
+                .setBatchSize(16)
+                .setUnorderedLaneSize(256)
+                .setWorkStealingEnabled(true)
+                .build();
+        // unordered messages are their id, keyed ones are negative
+        AtomicIntegerArray handled = new AtomicIntegerArray(PRODUCERS * MESSAGES);
+        AffinityDispatcher<Integer> dispatcher = new AffinityDispatcher<>("steal", (worker, id) -> {
+            if (worker.endsWith("-th-0")) {
+                LockSupport.parkNanos(SLOW_NANOS);
+            }
+            if (id >= 0) {
+                handled.incrementAndGet(id);
+            }
+        }, XxHashCodeProvider.INSTANCE, config);
+        dispatcher.start();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int base = p * MESSAGES;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < MESSAGES; i++) {
+                    dispatcher.dispatchUnordered(base + i);
+                    // keyed messages keep the slow worker busy with its own channel
+                    if (i % 4 == 0) dispatcher.dispatch((long) i, -1);
+                }
+            });
+            producers[p].setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+            producers[p].start();
+        }
+        for (Thread producer : producers) producer.join();
+        assertNull(failure.get());
+
+        for (int w = 0; w < WORKERS; w++) {
+            Worker<Integer> worker = dispatcher.getWorker(w);
+            Thread waiter = new Thread(worker::awaitDrained);
+            waiter.start();
+            waiter.join(30_000);
+            assertFalse(waiter.isAlive(), "awaitDrained terminates on " + worker.getName());
+            assertEquals(worker.getMetrics().getDispatched(), worker.getMetrics().getCompleted(),
+                    "completed catches up with dispatched on " + worker.getName());
+        }
+
+        long stolen = 0;
+        WorkerMetricsSnapshot snapshot = new WorkerMetricsSnapshot();
+        for (int w = 0; w < WORKERS; w++) stolen += dispatcher.getMetrics(w, snapshot).getStolenCount();
+        assertTrue(dispatcher.shutdown(Duration.ofSeconds(30)).isDrained());
+        assertTrue(stolen > 0, "idle workers steal unordered messages");
+        for (int id = 0; id < handled.length(); id++) {
+            assertEquals(1, handled.get(id), "message " + id + " is handled exactly once");
+        }
+    }
+}